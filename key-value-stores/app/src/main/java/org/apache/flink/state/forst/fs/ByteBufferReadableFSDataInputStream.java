@@ -0,0 +1,25 @@
+package org.apache.flink.state.forst.fs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A file opened for reading by {@link StringifiedForStFileSystem}. ForSt reads blocks into direct buffers, at the
+ * current position or at an offset.
+ */
+public abstract class ByteBufferReadableFSDataInputStream implements Closeable {
+
+    /**
+     * Fills the buffer from the current position and moves past what it read. Returns the bytes read, fewer than the
+     * buffer's remaining ones only at the end of the file.
+     */
+    public abstract int readFully(ByteBuffer buffer) throws IOException;
+
+    /**
+     * Fills the buffer from {@code position}, the current position doesn't move.
+     */
+    public abstract int readFully(long position, ByteBuffer buffer) throws IOException;
+
+    public abstract long skip(long bytes) throws IOException;
+}
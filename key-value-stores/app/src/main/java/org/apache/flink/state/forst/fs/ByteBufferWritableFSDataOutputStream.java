@@ -0,0 +1,23 @@
+package org.apache.flink.state.forst.fs;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A file created by {@link StringifiedForStFileSystem}, written sequentially from direct buffers.
+ */
+public abstract class ByteBufferWritableFSDataOutputStream implements Closeable {
+
+    /**
+     * Writes all the buffer's remaining bytes.
+     */
+    public abstract void write(ByteBuffer buffer) throws IOException;
+
+    public abstract void flush() throws IOException;
+
+    /**
+     * Makes what was written durable, as fsync.
+     */
+    public abstract void sync() throws IOException;
+}
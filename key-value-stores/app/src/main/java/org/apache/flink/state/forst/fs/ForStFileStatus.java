@@ -0,0 +1,38 @@
+package org.apache.flink.state.forst.fs;
+
+/**
+ * What {@link StringifiedForStFileSystem} knows of a file, read through JNI with these getters.
+ */
+public class ForStFileStatus {
+
+    private final String path;
+    private final long length;
+    private final long modificationTime;
+    private final boolean directory;
+
+    /**
+     * @param modificationTime milliseconds since the epoch
+     */
+    public ForStFileStatus(String path, long length, long modificationTime, boolean directory) {
+        this.path = path;
+        this.length = length;
+        this.modificationTime = modificationTime;
+        this.directory = directory;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public long getLen() {
+        return length;
+    }
+
+    public long getModificationTime() {
+        return modificationTime;
+    }
+
+    public boolean isDir() {
+        return directory;
+    }
+}
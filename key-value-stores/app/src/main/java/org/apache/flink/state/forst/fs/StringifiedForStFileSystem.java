@@ -0,0 +1,42 @@
+package org.apache.flink.state.forst.fs;
+
+import java.io.IOException;
+
+/**
+ * The file system ForSt's {@code org.forstdb.FlinkEnv} calls through JNI for every file of a disaggregated DB. The
+ * native side looks this class and its methods up by name, so the package and the signatures are Flink's; without
+ * Flink on the classpath the implementations are in org.example.
+ * <p>
+ * Paths are strings, the FlinkEnv's base path followed by the DB's. A missing path is a
+ * {@link java.io.FileNotFoundException}, any other exception fails the native call with an IO error.
+ */
+public abstract class StringifiedForStFileSystem {
+
+    /**
+     * The lookup Flink does when no file system is passed to the FlinkEnv; always pass one.
+     */
+    public static StringifiedForStFileSystem get(String uri) throws IOException {
+        throw new IOException("No file system for " + uri + ", pass one to the FlinkEnv");
+    }
+
+    public abstract boolean exists(String path) throws IOException;
+
+    public abstract ForStFileStatus getFileStatus(String path) throws IOException;
+
+    public abstract ForStFileStatus[] listStatus(String path) throws IOException;
+
+    public abstract boolean delete(String path, boolean recursive) throws IOException;
+
+    public abstract boolean mkdirs(String path) throws IOException;
+
+    public abstract boolean rename(String source, String target) throws IOException;
+
+    /**
+     * Makes {@code target} another name of {@code source}, as checkpoints do with SST files; 0 on success.
+     */
+    public abstract int link(String source, String target) throws IOException;
+
+    public abstract ByteBufferReadableFSDataInputStream open(String path) throws IOException;
+
+    public abstract ByteBufferWritableFSDataOutputStream create(String path) throws IOException;
+}
@@ -3,12 +3,415 @@
  */
 package org.example;
 
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Runs the benchmarks from the command line. The first argument names one, ingest, read, bulk, cache, space, stats,
+ * shard, tx, remote, recover or mapdb, each method below says what it takes. Without one it's a workload on a fresh
+ * store, see {@link #workload(String[])}.
+ */
 public class App {
     public String getGreeting() {
         return "Hello World!";
     }
 
-    public static void main(String[] args) {
-        System.out.println(new App().getGreeting());
+    public static void main(String[] args) throws IOException, InterruptedException, ParseException {
+        switch (args.length > 0 ? args[0] : "") {
+            case "ingest" -> ingest(args);
+            case "read" -> read(args);
+            case "bulk" -> bulk(args);
+            case "cache" -> cache(args);
+            case "stats" -> stats(args);
+            case "space" -> space(args);
+            case "shard" -> shard(args);
+            case "tx" -> transactions(args);
+            case "remote" -> remote(args);
+            case "recover" -> recover(args);
+            case "mapdb" -> mapdb(args);
+            default -> workload(args);
+        }
+    }
+
+    /**
+     * Loads a fresh store and runs a workload on it:
+     * gradle run --args="ROCKSDB A 4 30 1000000 UNIFORM"
+     * <p>
+     * Arguments are the {@link StoreBackend}, the {@link Workload}, threads, seconds, records and the {@link
+     * KeyDistribution}, every one optional.
+     */
+    private static void workload(String[] args) throws IOException, InterruptedException {
+        StoreBackend backend = StoreBackend.valueOf(args.length > 0 ? args[0].toUpperCase() : "ROCKSDB");
+        Workload workload = Workload.of(args.length > 1 ? args[1] : "A");
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        Duration duration = Duration.ofSeconds(args.length > 3 ? Long.parseLong(args[3]) : 30);
+        if (args.length > 4) workload = workload.withRecords(Long.parseLong(args[4]));
+        if (args.length > 5) workload = workload.withDistribution(KeyDistribution.valueOf(args[5].toUpperCase()));
+
+        Path directory = Files.createTempDirectory(backend.name().toLowerCase() + "-");
+        try (KeyValueStore store = backend.open(directory)) {
+            WorkloadDriver driver = new WorkloadDriver(store, workload, 42);
+            driver.load().print(System.out);
+            driver.run(threads, duration).print(System.out);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * The ingest scaling curve, from 1 to 64 writers:
+     * gradle run --args="ingest ROCKSDB GROUP_SYNC 1000000 100 virtual"
+     * <p>
+     * Arguments after "ingest" are the {@link StoreBackend}, the {@link Ingest.Commit} mode, records, batch size,
+     * "platform" or "virtual" threads and the durability, "default", "sync" or "nowal".
+     */
+    private static void ingest(String[] args) throws IOException, InterruptedException {
+        StoreBackend backend = StoreBackend.valueOf(args.length > 1 ? args[1].toUpperCase() : "ROCKSDB");
+        Ingest.Commit commit = Ingest.Commit.valueOf(args.length > 2 ? args[2].toUpperCase() : "GROUP");
+        long records = args.length > 3 ? Long.parseLong(args[3]) : 1_000_000;
+        int batchSize = args.length > 4 ? Integer.parseInt(args[4]) : 100;
+        boolean virtualThreads = args.length > 5 && args[5].equals("virtual");
+        String durability = args.length > 6 ? args[6] : "default";
+        StoreOptions options = StoreOptions.DEFAULT
+            .withSync(durability.equals("sync"))
+            .withDisableWal(durability.equals("nowal"));
+        Ingest.scale(backend, options, commit, batchSize, 100, records, virtualThreads,
+            new int[]{1, 2, 4, 8, 16, 32, 64}, System.out);
+    }
+
+    /**
+     * Every read path, cold then warm, with an 8 MB block cache, 10 bloom bits per key and a 13 byte prefix extractor:
+     * gradle run --args="read ROCKSDB 1000000 ZIPFIAN 8388608 10 13 4 10"
+     * <p>
+     * Arguments after "read" are the {@link StoreBackend}, records, the {@link KeyDistribution}, block cache bytes,
+     * bloom bits per key, prefix length, threads and seconds per run.
+     */
+    private static void read(String[] args) throws IOException, InterruptedException {
+        StoreBackend backend = StoreBackend.valueOf(args.length > 1 ? args[1].toUpperCase() : "ROCKSDB");
+        long records = args.length > 2 ? Long.parseLong(args[2]) : 1_000_000;
+        KeyDistribution distribution = KeyDistribution.valueOf(args.length > 3 ? args[3].toUpperCase() : "ZIPFIAN");
+        StoreOptions options = StoreOptions.DEFAULT
+            .withBlockCacheBytes(args.length > 4 ? Long.parseLong(args[4]) : 8 << 20)
+            .withBloomBitsPerKey(args.length > 5 ? Double.parseDouble(args[5]) : 10)
+            .withPrefixLength(args.length > 6 ? Integer.parseInt(args[6]) : ReadBenchmark.DEFAULT_PREFIX_LENGTH);
+        int threads = args.length > 7 ? Integer.parseInt(args[7]) : 4;
+        Duration duration = Duration.ofSeconds(args.length > 8 ? Long.parseLong(args[8]) : 10);
+
+        Path directory = Files.createTempDirectory(backend.name().toLowerCase() + "-read-");
+        try {
+            ReadBenchmark benchmark = new ReadBenchmark(backend, options, directory, distribution, 16, 42);
+            benchmark.load(Workload.C.withRecords(records)).print(System.out);
+            for (ReadBenchmark.Read read : ReadBenchmark.Read.values()) {
+                for (ReadBenchmark.Result result : benchmark.run(read, threads, duration)) {
+                    result.print(System.out);
+                }
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Loading random records with puts in batches of 100k versus SST files built on 4 threads from 16 partitions:
+     * gradle run --args="bulk ROCKSDB 10000000 16 4"
+     * <p>
+     * Arguments after "bulk" are the {@link StoreBackend}, records, partitions and threads.
+     */
+    private static void bulk(String[] args) throws IOException, InterruptedException {
+        StoreBackend backend = StoreBackend.valueOf(args.length > 1 ? args[1].toUpperCase() : "ROCKSDB");
+        long records = args.length > 2 ? Long.parseLong(args[2]) : 10_000_000;
+        int partitions = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        ValueGenerator values = new ValueGenerator(100, 0.5, 42);
+
+        Path directory = Files.createTempDirectory(backend.name().toLowerCase() + "-bulk-");
+        try {
+            try (KeyValueStore store = backend.open(directory.resolve("put"))) {
+                new BulkLoader(store, values, 42).putLoad(records, 100_000).print(System.out);
+            }
+            try (KeyValueStore store = backend.open(directory.resolve("bulk"))) {
+                new BulkLoader(store, values, 42)
+                    .bulkLoad(records, partitions, threads, directory.resolve("staging"))
+                    .print(System.out);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Zipfian workload B straight on the store and then behind a 64 MB off-heap {@link CachingStore}, with the GC cost
+     * of each run:
+     * gradle run --args="cache ROCKSDB B 1000000 67108864 4 10 WRITE_THROUGH"
+     * <p>
+     * Arguments after "cache" are the {@link StoreBackend}, the {@link Workload}, records, cache bytes, threads,
+     * seconds per run and the {@link CachingStore.WriteMode}.
+     */
+    private static void cache(String[] args) throws IOException, InterruptedException {
+        StoreBackend backend = StoreBackend.valueOf(args.length > 1 ? args[1].toUpperCase() : "ROCKSDB");
+        Workload workload = Workload.of(args.length > 2 ? args[2] : "B")
+            .withRecords(args.length > 3 ? Long.parseLong(args[3]) : 1_000_000)
+            .withDistribution(KeyDistribution.ZIPFIAN);
+        long cacheBytes = args.length > 4 ? Long.parseLong(args[4]) : 64 << 20;
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : 4;
+        Duration duration = Duration.ofSeconds(args.length > 6 ? Long.parseLong(args[6]) : 10);
+        CachingStore.WriteMode mode = CachingStore.WriteMode.valueOf(
+            args.length > 7 ? args[7].toUpperCase() : "WRITE_THROUGH");
+
+        Path directory = Files.createTempDirectory(backend.name().toLowerCase() + "-cache-");
+        KeyValueStore store = backend.open(directory);
+        // The cache closes the store
+        try (CachingStore cached = new CachingStore(store, cacheBytes, mode)) {
+            WorkloadDriver plain = new WorkloadDriver(store, workload, 42);
+            plain.load().print(System.out);
+            store.flush();
+
+            GcStats start = GcStats.now();
+            plain.run(threads, duration).print(System.out);
+            System.out.println("gc: " + GcStats.now().since(start));
+
+            // Same seeds, so the same keys as the plain run
+            WorkloadDriver driver = new WorkloadDriver(cached, workload, 42);
+            driver.assumeLoaded();
+            start = GcStats.now();
+            driver.run(threads, duration).print(System.out);
+            System.out.println("gc: " + GcStats.now().since(start));
+            cached.stats().print(System.out);
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Space and write amplification sampled every second while loading and running workload A:
+     * gradle run --args="space ROCKSDB A 1000000 4 30 1000"
+     * <p>
+     * Arguments after "space" are the {@link StoreBackend}, the {@link Workload}, records, threads, seconds and the
+     * sampling interval in milliseconds.
+     */
+    private static void space(String[] args) throws IOException, InterruptedException {
+        StoreBackend backend = StoreBackend.valueOf(args.length > 1 ? args[1].toUpperCase() : "ROCKSDB");
+        Workload workload = Workload.of(args.length > 2 ? args[2] : "A")
+            .withRecords(args.length > 3 ? Long.parseLong(args[3]) : 1_000_000);
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        Duration duration = Duration.ofSeconds(args.length > 5 ? Long.parseLong(args[5]) : 30);
+        Duration interval = Duration.ofMillis(args.length > 6 ? Long.parseLong(args[6]) : 1_000);
+
+        Path directory = Files.createTempDirectory(backend.name().toLowerCase() + "-space-");
+        try (KeyValueStore store = backend.open(directory)) {
+            WorkloadDriver driver = new WorkloadDriver(store, workload, 42);
+            try (SpaceTracker tracker = new SpaceTracker(store, directory, driver::bytesWritten, interval)) {
+                driver.load().print(System.out);
+                driver.run(threads, duration).print(System.out);
+                tracker.stop().print(System.out);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * A time series of latencies, GC, compactions and RocksDB statistics every second into stats.csv, with a JFR
+     * recording of the same run in stats.jfr:
+     * gradle run --args="stats ROCKSDB A 1000000 4 30 1000 stats"
+     * <p>
+     * Arguments after "stats" are the {@link StoreBackend}, the {@link Workload}, records, threads, seconds, the
+     * interval in milliseconds and the files' name without extension.
+     */
+    private static void stats(String[] args) throws IOException, InterruptedException, ParseException {
+        StoreBackend backend = StoreBackend.valueOf(args.length > 1 ? args[1].toUpperCase() : "ROCKSDB");
+        Workload workload = Workload.of(args.length > 2 ? args[2] : "A")
+            .withRecords(args.length > 3 ? Long.parseLong(args[3]) : 1_000_000);
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        Duration duration = Duration.ofSeconds(args.length > 5 ? Long.parseLong(args[5]) : 30);
+        Duration interval = Duration.ofMillis(args.length > 6 ? Long.parseLong(args[6]) : 1_000);
+        String name = args.length > 7 ? args[7] : "stats";
+
+        Path directory = Files.createTempDirectory(backend.name().toLowerCase() + "-stats-");
+        try (KeyValueStore store = backend.open(directory, StoreOptions.DEFAULT.withStatistics(true));
+             Recording recording = new Recording(Configuration.getConfiguration("default"))) {
+            WorkloadDriver driver = new WorkloadDriver(store, workload, 42);
+            recording.start();
+            try (Instrumentation instrumentation = new Instrumentation(store, driver, Path.of(name + ".csv"),
+                interval)) {
+                driver.load().print(System.out);
+                driver.run(threads, duration).print(System.out);
+                instrumentation.stop();
+            }
+            recording.dump(Path.of(name + ".jfr"));
+            System.out.println("Wrote " + name + ".csv and " + name + ".jfr");
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Workload A on one RocksDB, then hash-sharded over 1, 2, 4 and 8 instances, each shard with its own writer:
+     * gradle run --args="shard ROCKSDB INSTANCES A 1000000 8 30 8"
+     * <p>
+     * Arguments after "shard" are the {@link StoreBackend}, the {@link ShardedStore.Layout}, the {@link Workload},
+     * records, threads, seconds per run and the most shards.
+     */
+    private static void shard(String[] args) throws IOException, InterruptedException {
+        StoreBackend backend = StoreBackend.valueOf(args.length > 1 ? args[1].toUpperCase() : "ROCKSDB");
+        ShardedStore.Layout layout = ShardedStore.Layout.valueOf(
+            args.length > 2 ? args[2].toUpperCase() : "INSTANCES");
+        Workload workload = Workload.of(args.length > 3 ? args[3] : "A")
+            .withRecords(args.length > 4 ? Long.parseLong(args[4]) : 1_000_000);
+        int threads = args.length > 5 ? Integer.parseInt(args[5]) : 8;
+        Duration duration = Duration.ofSeconds(args.length > 6 ? Long.parseLong(args[6]) : 30);
+        int maxShards = args.length > 7 ? Integer.parseInt(args[7]) : 8;
+
+        Path directory = Files.createTempDirectory(backend.name().toLowerCase() + "-shard-");
+        try {
+            try (KeyValueStore store = backend.open(directory.resolve("single"))) {
+                WorkloadDriver driver = new WorkloadDriver(store, workload, 42);
+                driver.load().print(System.out);
+                driver.run(threads, duration).print(System.out);
+            }
+            for (int shards = 1; shards <= maxShards; shards *= 2) {
+                try (KeyValueStore store = new ShardedStore(backend, directory.resolve("sharded-" + shards),
+                    StoreOptions.DEFAULT, shards, layout)) {
+                    WorkloadDriver driver = new WorkloadDriver(store, workload, 42);
+                    driver.load().print(System.out);
+                    driver.run(threads, duration).print(System.out);
+                }
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Optimistic against pessimistic transactions, 8 threads incrementing 2 zipfian counters of 10000 per transaction,
+     * for each retry policy:
+     * gradle run --args="tx ROCKSDB 10000 2 8 10 5"
+     * <p>
+     * Arguments after "tx" are the {@link StoreBackend}, counters, counters per transaction, threads, seconds per run
+     * and the most attempts per transaction.
+     */
+    private static void transactions(String[] args) throws IOException, InterruptedException {
+        StoreBackend backend = StoreBackend.valueOf(args.length > 1 ? args[1].toUpperCase() : "ROCKSDB");
+        long records = args.length > 2 ? Long.parseLong(args[2]) : 10_000;
+        int keysPerTransaction = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+        Duration duration = Duration.ofSeconds(args.length > 5 ? Long.parseLong(args[5]) : 10);
+        int maxAttempts = args.length > 6 ? Integer.parseInt(args[6]) : 5;
+
+        Path directory = Files.createTempDirectory(backend.name().toLowerCase() + "-tx-");
+        try {
+            TransactionBenchmark benchmark = new TransactionBenchmark(backend, directory, records, keysPerTransaction,
+                Duration.ofMillis(100), 42);
+            for (TransactionalStore.Concurrency concurrency : TransactionalStore.Concurrency.values()) {
+                for (String policy : new String[]{"never", "immediate", "exponential"}) {
+                    benchmark.run(concurrency, RetryPolicy.of(policy, maxAttempts), threads, duration)
+                        .print(System.out);
+                }
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * ForSt with its files on a stand-in remote store, 2 ms per request and 100 MB/s, and a local file cache of 0,
+     * 16 MB, 64 MB and 256 MB:
+     * gradle run --args="remote 1000000 2000 104857600 100000 0,16777216,67108864,268435456"
+     * <p>
+     * Arguments after "remote" are records, the remote latency in microseconds, the remote bandwidth in bytes per
+     * second (0 for no limit), gets per run and the comma separated cache sizes in bytes.
+     */
+    private static void remote(String[] args) throws IOException {
+        long records = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        Duration latency = Duration.ofNanos(1_000 * (args.length > 2 ? Long.parseLong(args[2]) : 2_000));
+        long bytesPerSecond = args.length > 3 ? Long.parseLong(args[3]) : 100 << 20;
+        int gets = args.length > 4 ? Integer.parseInt(args[4]) : 100_000;
+        String cacheSizes = args.length > 5 ? args[5] : "0,16777216,67108864,268435456";
+
+        Path directory = Files.createTempDirectory("forst-remote-");
+        try {
+            DisaggregatedBenchmark benchmark = new DisaggregatedBenchmark(directory, latency, bytesPerSecond, records,
+                new ValueGenerator(100, 0.5, 42), 42);
+            for (String cacheBytes : cacheSizes.split(",")) {
+                benchmark.run(Long.parseLong(cacheBytes.trim()), gets).print(System.out);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * Recovery from a writer killed with 256 MB of unflushed WAL, for a few recovery settings and each {@link
+     * RecoveryBenchmark.Prewarm}, with a 64 MB block cache holding the index and filter blocks:
+     * gradle run --args="recover ROCKSDB 1000000 268435456 4 30 67108864 100000"
+     * <p>
+     * Arguments after "recover" are the {@link StoreBackend}, records, WAL bytes, threads, seconds per run, block cache
+     * bytes and the hot keys the prewarm reads.
+     */
+    private static void recover(String[] args) throws IOException, InterruptedException {
+        StoreBackend backend = StoreBackend.valueOf(args.length > 1 ? args[1].toUpperCase() : "ROCKSDB");
+        long records = args.length > 2 ? Long.parseLong(args[2]) : 1_000_000;
+        long walBytes = args.length > 3 ? Long.parseLong(args[3]) : 256 << 20;
+        int threads = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+        Duration duration = Duration.ofSeconds(args.length > 5 ? Long.parseLong(args[5]) : 30);
+        StoreOptions options = StoreOptions.DEFAULT.withBloomBitsPerKey(10).withCacheIndexAndFilterBlocks(true)
+            .withBlockCacheBytes(args.length > 6 ? Long.parseLong(args[6]) : 64 << 20);
+        long hotKeys = args.length > 7 ? Long.parseLong(args[7]) : 100_000;
+
+        Path directory = Files.createTempDirectory(backend.name().toLowerCase() + "-recover-");
+        try {
+            RecoveryBenchmark benchmark = new RecoveryBenchmark(backend, options, directory, records, 100, hotKeys,
+                42);
+            Path crashed = benchmark.crash(walBytes);
+            for (RecoveryBenchmark.Settings settings : new RecoveryBenchmark.Settings[]{
+                RecoveryBenchmark.Settings.DEFAULT, new RecoveryBenchmark.Settings(true, 16, -1),
+                new RecoveryBenchmark.Settings(true, 1, -1), new RecoveryBenchmark.Settings(true, 16, 64)}) {
+                for (RecoveryBenchmark.Prewarm prewarm : RecoveryBenchmark.Prewarm.values()) {
+                    benchmark.run(crashed, settings, prewarm, threads, duration, Duration.ofMillis(250))
+                        .print(System.out);
+                }
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    /**
+     * MapDB loading and reading 1M records set up like MapDBTest and then each faster {@link MapDBBenchmark.Mode}:
+     * gradle run --args="mapdb 1000000 4 16 4"
+     * <p>
+     * Arguments after "mapdb" are records, writers and hash segments for the concurrent modes, and readers.
+     */
+    private static void mapdb(String[] args) throws IOException, InterruptedException {
+        long records = args.length > 1 ? Long.parseLong(args[1]) : 1_000_000;
+        int writers = args.length > 2 ? Integer.parseInt(args[2]) : 4;
+        int segments = args.length > 3 ? Integer.parseInt(args[3]) : 16;
+        int readers = args.length > 4 ? Integer.parseInt(args[4]) : 4;
+
+        Path directory = Files.createTempDirectory("mapdb-");
+        try {
+            MapDBBenchmark benchmark = new MapDBBenchmark(directory, new ValueGenerator(100, 0.5, 42), records, 42);
+            for (MapDBBenchmark.Mode mode : MapDBBenchmark.Mode.values()) {
+                benchmark.run(mode, writers, segments, readers).print(System.out);
+            }
+        } finally {
+            delete(directory);
+        }
+    }
+
+    static void delete(Path directory) throws IOException {
+        try (Stream<Path> paths = Files.walk(directory)) {
+            for (Path path : paths.sorted(Comparator.reverseOrder()).toList()) {
+                Files.delete(path);
+            }
+        }
     }
 }
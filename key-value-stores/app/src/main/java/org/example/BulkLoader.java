@@ -0,0 +1,167 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Initial loads and backfills of random keys, like MapDBTest's 10M random records, two ways: {@link #putLoad} puts
+ * them in generation order in atomic batches, the write path of a transaction commit; {@link #bulkLoad} partitions
+ * them by key range, sorts and writes every partition to its own SST file in parallel and ingests the files. The
+ * partitions don't overlap, so the files go to the bottom level and leave no compaction behind.
+ * <p>
+ * Ids are uniform random 12 digit numbers, so keys have the same shape as every other path here, and values come
+ * from {@link ValueGenerator#forId}, so both loads write the same data. Duplicate ids are written once.
+ */
+public class BulkLoader {
+
+    static final long ID_SPACE = 1_000_000_000_000L;
+
+    /**
+     * @param pendingCompactionBytes "rocksdb.estimate-pending-compaction-bytes" right after the load
+     * @param level0Files            "rocksdb.num-files-at-level0" right after the load
+     */
+    public record Result(String store, String mode, long records, long nanos, long pendingCompactionBytes,
+                         long level0Files, long liveSstBytes) {
+
+        public void print(PrintStream out) {
+            out.printf("%-8s %-5s %10d records in %7d ms, %10.0f records/s, compaction debt %6d MB, %3d L0 files, "
+                    + "%6d MB of SST%n",
+                store, mode, records, nanos / 1_000_000, records * 1e9 / nanos, pendingCompactionBytes >> 20,
+                level0Files, liveSstBytes >> 20);
+        }
+    }
+
+    private final KeyValueStore store;
+    private final ValueGenerator values;
+    private final long seed;
+
+    public BulkLoader(KeyValueStore store, ValueGenerator values, long seed) {
+        this.store = store;
+        this.values = values;
+        this.seed = seed;
+    }
+
+    /**
+     * The distinct random ids of a load, in generation order.
+     */
+    long[] ids(long records) {
+        return ids(records, seed);
+    }
+
+    static long[] ids(long records, long seed) {
+        if (records > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("Too many records for one load: " + records);
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        long[] ids = new long[(int) records];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = random.nextLong(ID_SPACE);
+        }
+        return ids;
+    }
+
+    /**
+     * Puts the records in generation order, {@code batchRecords} per atomic batch, then flushes the memtable.
+     */
+    public Result putLoad(long records, int batchRecords) {
+        long start = System.nanoTime();
+        long[] ids = ids(records);
+        byte[] key = new byte[KeyGenerator.KEY_SIZE];
+        byte[] value = new byte[values.size()];
+        try (KeyValueStore.Batch batch = store.batch()) {
+            for (long id : ids) {
+                KeyGenerator.write(id, key, 0);
+                values.forId(id, value, 0);
+                batch.put(key, value);
+                if (batch.count() == batchRecords) {
+                    store.write(batch);
+                    batch.clear();
+                }
+            }
+            if (batch.count() > 0) store.write(batch);
+        }
+        store.flush();
+        return result("put", records, System.nanoTime() - start);
+    }
+
+    /**
+     * Splits the records into {@code partitions} key ranges, and on {@code threads} threads sorts each one and writes
+     * it to an SST file in {@code staging}, then ingests every file at once. Staging must be on the store's file
+     * system, the files are moved and not copied.
+     */
+    public Result bulkLoad(long records, int partitions, int threads, Path staging)
+        throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        long[] ids = ids(records);
+
+        // Counting sort by partition, the ids of each key range end up next to each other
+        int[] counts = new int[partitions + 1];
+        for (long id : ids) counts[partition(id, partitions) + 1]++;
+        for (int p = 0; p < partitions; p++) counts[p + 1] += counts[p];
+        long[] partitioned = new long[ids.length];
+        int[] next = Arrays.copyOf(counts, partitions);
+        for (long id : ids) partitioned[next[partition(id, partitions)]++] = id;
+
+        Files.createDirectories(staging);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Path>> futures = new ArrayList<>();
+        for (int p = 0; p < partitions; p++) {
+            int from = counts[p];
+            int to = counts[p + 1];
+            Path file = staging.resolve(String.format("bulk-%05d.sst", p));
+            if (from < to) {
+                futures.add(executor.submit(() -> writeSst(partitioned, from, to, file)));
+            }
+        }
+        List<Path> files = new ArrayList<>();
+        try {
+            for (Future<Path> future : futures) {
+                files.add(future.get());
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Writing SST files failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        store.ingest(files);
+        return result("bulk", records, System.nanoTime() - start);
+    }
+
+    private static int partition(long id, int partitions) {
+        return (int) (id / (ID_SPACE / partitions + 1));
+    }
+
+    private Path writeSst(long[] ids, int from, int to, Path file) {
+        Arrays.sort(ids, from, to);
+        byte[] key = new byte[KeyGenerator.KEY_SIZE];
+        byte[] value = new byte[values.size()];
+        try (KeyValueStore.SstWriter writer = store.sstWriter(file)) {
+            for (int i = from; i < to; i++) {
+                if (i > from && ids[i] == ids[i - 1]) continue;
+                KeyGenerator.write(ids[i], key, 0);
+                values.forId(ids[i], value, 0);
+                writer.put(key, value);
+            }
+            writer.finish();
+        }
+        return file;
+    }
+
+    private Result result(String mode, long records, long nanos) {
+        return new Result(store.name(), mode, records, nanos,
+            store.property("rocksdb.estimate-pending-compaction-bytes").orElse(0),
+            store.property("rocksdb.num-files-at-level0").orElse(0),
+            store.property("rocksdb.live-sst-files-size").orElse(0));
+    }
+}
@@ -0,0 +1,384 @@
+package org.example;
+
+import org.apache.flink.state.forst.fs.ByteBufferReadableFSDataInputStream;
+import org.apache.flink.state.forst.fs.ByteBufferWritableFSDataOutputStream;
+import org.apache.flink.state.forst.fs.ForStFileStatus;
+import org.apache.flink.state.forst.fs.StringifiedForStFileSystem;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The local disk of a disaggregated ForSt: a bounded cache of whole SST files in front of a
+ * {@link ThrottledFileSystem}. Other files (WAL, MANIFEST, CURRENT, OPTIONS) only live remotely.
+ * <p>
+ * New SST files are written through, to the remote file and a local copy the cache admits once the file is closed,
+ * as freshly flushed and compacted files are the likeliest to be read. A read of a file that isn't cached is a miss:
+ * it downloads the whole file, if it fits, and reads the copy. The least recently read files make room; a file
+ * bigger than the cache is always read remotely, and remembered so its misses don't ask the remote for its size again.
+ * With no capacity nothing is downloaded.
+ * <p>
+ * Reads of cached files take a read lock, admissions and evictions the write lock, so an evicted file is never read.
+ * Downloads happen outside the lock, two readers missing the same file may both download it and one copy is
+ * dropped.
+ */
+public class CachingFileSystem extends StringifiedForStFileSystem implements Closeable {
+
+    private final ThrottledFileSystem remote;
+    private final Path directory;
+    private final long capacityBytes;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, CachedFile> files = new ConcurrentHashMap<>();
+    // Files bigger than the cache, read remotely without downloading
+    private final Set<String> uncacheable = ConcurrentHashMap.newKeySet();
+    // Orders the reads for LRU, and names the local copies
+    private final AtomicLong clock = new AtomicLong();
+    private final AtomicLong copies = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    // Guarded by the write lock
+    private long cachedBytes;
+
+    /**
+     * @param capacityBytes 0 reads every file remotely
+     */
+    public CachingFileSystem(ThrottledFileSystem remote, Path directory, long capacityBytes) {
+        if (capacityBytes < 0) {
+            throw new IllegalArgumentException("Negative cache capacity " + capacityBytes);
+        }
+        this.remote = remote;
+        this.directory = directory;
+        this.capacityBytes = capacityBytes;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public ThrottledFileSystem remote() {
+        return remote;
+    }
+
+    public long capacityBytes() {
+        return capacityBytes;
+    }
+
+    public long cachedBytes() {
+        lock.readLock().lock();
+        try {
+            return cachedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Reads of SST files served by the local copy.
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Reads of SST files that had to go remote, downloading the file or reading it there.
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    @Override
+    public boolean exists(String path) throws IOException {
+        return remote.exists(path);
+    }
+
+    @Override
+    public ForStFileStatus getFileStatus(String path) throws IOException {
+        return remote.getFileStatus(path);
+    }
+
+    @Override
+    public ForStFileStatus[] listStatus(String path) throws IOException {
+        return remote.listStatus(path);
+    }
+
+    @Override
+    public boolean delete(String path, boolean recursive) throws IOException {
+        evict(path);
+        return remote.delete(path, recursive);
+    }
+
+    @Override
+    public boolean mkdirs(String path) throws IOException {
+        return remote.mkdirs(path);
+    }
+
+    @Override
+    public boolean rename(String source, String target) throws IOException {
+        evict(source);
+        return remote.rename(source, target);
+    }
+
+    @Override
+    public int link(String source, String target) throws IOException {
+        return remote.link(source, target);
+    }
+
+    @Override
+    public ByteBufferReadableFSDataInputStream open(String path) throws IOException {
+        return isTable(path) ? new CachedInput(path) : remote.open(path);
+    }
+
+    @Override
+    public ByteBufferWritableFSDataOutputStream create(String path) throws IOException {
+        ByteBufferWritableFSDataOutputStream output = remote.create(path);
+        return isTable(path) && capacityBytes > 0 ? new WriteThrough(path, output) : output;
+    }
+
+    /**
+     * Drops every local copy.
+     */
+    @Override
+    public void close() throws IOException {
+        lock.writeLock().lock();
+        try {
+            for (String path : files.keySet()) {
+                remove(path);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reads until the buffer is full or the file ends, returns the bytes read.
+     */
+    static int read(FileChannel channel, long position, ByteBuffer buffer) throws IOException {
+        int read = 0;
+        while (buffer.hasRemaining()) {
+            int bytes = channel.read(buffer, position + read);
+            if (bytes < 0) break;
+            read += bytes;
+        }
+        return read;
+    }
+
+    private static boolean isTable(String path) {
+        return path.endsWith(".sst");
+    }
+
+    /**
+     * Reads from the local copy if there is one, returns -1 if not.
+     */
+    private int readCached(String path, long position, ByteBuffer buffer) throws IOException {
+        lock.readLock().lock();
+        try {
+            CachedFile file = files.get(path);
+            if (file == null) return -1;
+            file.lastRead = clock.incrementAndGet();
+            return read(file.channel, position, buffer);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void download(String path) throws IOException {
+        long size = remote.getFileStatus(path).getLen();
+        if (size > capacityBytes) {
+            uncacheable.add(path);
+            return;
+        }
+        Path copy = directory.resolve(copies.incrementAndGet() + ".sst");
+        try (ByteBufferReadableFSDataInputStream input = remote.open(path);
+             FileChannel output = FileChannel.open(copy, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+            for (long position = 0; position < size; ) {
+                buffer.clear();
+                int read = input.readFully(position, buffer);
+                if (read <= 0) break;
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    output.write(buffer);
+                }
+                position += read;
+            }
+        }
+        admit(path, copy, size);
+    }
+
+    /**
+     * Makes room for the local copy by evicting the least recently read files, or deletes it if the file got
+     * cached meanwhile.
+     */
+    private void admit(String path, Path copy, long size) throws IOException {
+        lock.writeLock().lock();
+        try {
+            if (files.containsKey(path)) {
+                Files.delete(copy);
+                return;
+            }
+            while (cachedBytes + size > capacityBytes) {
+                remove(files.entrySet().stream()
+                    .min(Comparator.comparingLong(entry -> entry.getValue().lastRead)).orElseThrow().getKey());
+            }
+            files.put(path, new CachedFile(copy, FileChannel.open(copy), size, clock.incrementAndGet()));
+            cachedBytes += size;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Drops the local copy of the path and of everything under it.
+     */
+    private void evict(String path) throws IOException {
+        uncacheable.removeIf(each -> each.equals(path) || each.startsWith(path + "/"));
+        lock.writeLock().lock();
+        try {
+            for (Iterator<String> paths = files.keySet().iterator(); paths.hasNext(); ) {
+                String cached = paths.next();
+                if (cached.equals(path) || cached.startsWith(path + "/")) remove(cached);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void remove(String path) throws IOException {
+        CachedFile file = files.remove(path);
+        file.channel.close();
+        Files.delete(file.copy);
+        cachedBytes -= file.size;
+    }
+
+    private static class CachedFile {
+
+        final Path copy;
+        final FileChannel channel;
+        final long size;
+        volatile long lastRead;
+
+        CachedFile(Path copy, FileChannel channel, long size, long lastRead) {
+            this.copy = copy;
+            this.channel = channel;
+            this.size = size;
+            this.lastRead = lastRead;
+        }
+    }
+
+    private class CachedInput extends ByteBufferReadableFSDataInputStream {
+
+        final String path;
+        // Only opened when the file can't be cached
+        ByteBufferReadableFSDataInputStream remoteInput;
+        long position;
+
+        CachedInput(String path) {
+            this.path = path;
+        }
+
+        @Override
+        public int readFully(ByteBuffer buffer) throws IOException {
+            int read = readFully(position, buffer);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int readFully(long position, ByteBuffer buffer) throws IOException {
+            int read = readCached(path, position, buffer);
+            if (read >= 0) {
+                hits.increment();
+                return read;
+            }
+            misses.increment();
+            if (capacityBytes > 0 && !uncacheable.contains(path)) {
+                download(path);
+                // Unless the file is too big, or another miss already evicted it
+                read = readCached(path, position, buffer);
+                if (read >= 0) return read;
+            }
+            synchronized (this) {
+                if (remoteInput == null) remoteInput = remote.open(path);
+            }
+            return remoteInput.readFully(position, buffer);
+        }
+
+        @Override
+        public long skip(long bytes) {
+            position += bytes;
+            return bytes;
+        }
+
+        @Override
+        public synchronized void close() throws IOException {
+            if (remoteInput != null) remoteInput.close();
+        }
+    }
+
+    private class WriteThrough extends ByteBufferWritableFSDataOutputStream {
+
+        final String path;
+        final ByteBufferWritableFSDataOutputStream output;
+        final Path copy = directory.resolve(copies.incrementAndGet() + ".sst");
+        // Null once the file outgrew the cache
+        FileChannel channel;
+        long size;
+
+        WriteThrough(String path, ByteBufferWritableFSDataOutputStream output) throws IOException {
+            this.path = path;
+            this.output = output;
+            this.channel = FileChannel.open(copy, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        }
+
+        @Override
+        public void write(ByteBuffer buffer) throws IOException {
+            size += buffer.remaining();
+            if (channel != null && size > capacityBytes) {
+                channel.close();
+                Files.delete(copy);
+                channel = null;
+            }
+            if (channel != null) {
+                ByteBuffer local = buffer.duplicate();
+                while (local.hasRemaining()) {
+                    channel.write(local);
+                }
+            }
+            output.write(buffer);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            output.flush();
+        }
+
+        @Override
+        public void sync() throws IOException {
+            output.sync();
+        }
+
+        @Override
+        public void close() throws IOException {
+            output.close();
+            if (channel != null) {
+                channel.close();
+                admit(path, copy, size);
+            }
+        }
+    }
+}
@@ -0,0 +1,867 @@
+package org.example;
+
+import java.io.PrintStream;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.lang.invoke.VarHandle;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * A hot-key cache in front of another {@link KeyValueStore}, so reads of popular keys don't cross JNI or touch the
+ * block cache. Values are kept off the Java heap in 1 MB slabs allocated with the FFM API (a preview in JDK 21), so
+ * a big cache doesn't grow the old generation; the keys stay on heap in a {@link ConcurrentHashMap} index.
+ * <p>
+ * Slabs are cut into slots of power of two size classes from 64 bytes to 64 KB, like memcached: a value takes the
+ * smallest slot it fits, bigger values aren't cached. Classes take slabs while the capacity allows it and keep them;
+ * a class first used once it's all taken gets the last slab of the class with the most. Then a new value replaces the
+ * entry a CLOCK hand picks in its own class, if TinyLFU admits it: its
+ * {@link FrequencySketch} estimate must be higher than the victim's, so a scan of cold keys doesn't flush the hot
+ * ones.
+ * <p>
+ * Reads don't lock: they copy the value out of its slot and validate a stamp afterwards, like {@link
+ * java.util.concurrent.locks.StampedLock#validate}, retrying when a writer changed it meanwhile. A hit of
+ * {@link #get(byte[], byte[])} allocates nothing, the index is probed with a per-thread key. Writes to the same
+ * key are ordered by striped locks, and a value read from the store is only cached if no write to its stripe
+ * happened since, so the cache never keeps a value older than the store's.
+ * <p>
+ * With {@link WriteMode#WRITE_BACK} puts stay in the cache until the entry is evicted, {@link #flush()},
+ * {@link #syncWal()} or {@link #close()}, scans and cursors write them first. Deletes and batches always go to the store
+ * and drop the cached values. The cache owns the wrapped store and closes it.
+ */
+public class CachingStore implements KeyValueStore {
+
+    static final int MIN_SLOT = 64;
+    static final int MAX_SLOT = 64 << 10;
+    static final int SLAB_SIZE = 1 << 20;
+    private static final int STRIPES = 256;
+    // Sizes the frequency sketch, about one entry per this many bytes of capacity
+    private static final int EXPECTED_VALUE_SIZE = 128;
+    private static final ThreadLocal<Probe> PROBE = ThreadLocal.withInitial(Probe::new);
+
+    /**
+     * When puts reach the wrapped store.
+     */
+    public enum WriteMode {
+        /**
+         * Puts go to the store and then replace the cached value, or are admitted like a read.
+         */
+        WRITE_THROUGH,
+        /**
+         * Puts only go to the cache, the store gets them when they are evicted or flushed. A put the cache doesn't
+         * admit goes to the store.
+         */
+        WRITE_BACK
+    }
+
+    public record Stats(long hits, long misses, long evictions, long rejections, long writeBacks, int entries,
+                        long bytes, long slabBytes, int dirty) {
+
+        public double hitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("cache: %.1f%% hits (%d/%d), %d entries, %d MB of values in %d MB of slabs%n",
+                hitRatio() * 100, hits, hits + misses, entries, bytes >> 20, slabBytes >> 20);
+            out.printf("       %d evictions, %d rejected by TinyLFU, %d written back, %d dirty%n",
+                evictions, rejections, writeBacks, dirty);
+        }
+    }
+
+    private final KeyValueStore store;
+    private final WriteMode mode;
+    private final long capacityBytes;
+    private final Arena arena = Arena.ofShared();
+    private final ConcurrentHashMap<Key, Entry> index = new ConcurrentHashMap<>();
+    private final FrequencySketch sketch;
+    private final SizeClass[] classes;
+    // Guards the slabs and slots, every change to an entry and the counters below
+    private final ReentrantLock lock = new ReentrantLock();
+    // Orders the writes to the keys of a stripe, so the store and the cache apply them in the same order
+    private final ReentrantLock[] writeLocks = new ReentrantLock[STRIPES];
+    // Odd while a write to the stripe is in progress
+    private final AtomicLongArray versions = new AtomicLongArray(STRIPES);
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private long slabBytes;
+    private long bytes;
+    private long evictions;
+    private long rejections;
+    private long writeBacks;
+    private int dirty;
+
+    /**
+     * Caches up to {@code capacityBytes} of slabs in front of the store.
+     */
+    public CachingStore(KeyValueStore store, long capacityBytes, WriteMode mode) {
+        if (capacityBytes < SLAB_SIZE) {
+            throw new IllegalArgumentException("Capacity must hold a slab of " + SLAB_SIZE + " bytes: "
+                + capacityBytes);
+        }
+        this.store = store;
+        this.mode = mode;
+        this.capacityBytes = capacityBytes;
+        this.sketch = new FrequencySketch(capacityBytes / EXPECTED_VALUE_SIZE);
+        this.classes = new SizeClass[Integer.numberOfTrailingZeros(MAX_SLOT / MIN_SLOT) + 1];
+        for (int i = 0; i < classes.length; i++) {
+            classes[i] = new SizeClass(MIN_SLOT << i);
+        }
+        for (int i = 0; i < STRIPES; i++) {
+            writeLocks[i] = new ReentrantLock();
+        }
+    }
+
+    @Override
+    public String name() {
+        return store.name() + "+cache";
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(hits.sum(), misses.sum(), evictions, rejections, writeBacks, index.size(), bytes,
+                slabBytes, dirty);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        int hash = Arrays.hashCode(key);
+        sketch.increment(hash);
+        byte[] value = cached(key, hash);
+        if (value != null) {
+            hits.increment();
+            return value;
+        }
+        return load(key, hash);
+    }
+
+    /**
+     * Like {@link #get(byte[])}, but a hit copies the value straight from its slot into {@code into}.
+     */
+    @Override
+    public int get(byte[] key, byte[] into) {
+        int hash = Arrays.hashCode(key);
+        sketch.increment(hash);
+        int length = cached(key, hash, into);
+        if (length >= 0) {
+            hits.increment();
+            return length;
+        }
+        byte[] value = load(key, hash);
+        if (value == null) {
+            return -1;
+        }
+        System.arraycopy(value, 0, into, 0, Math.min(value.length, into.length));
+        return value.length;
+    }
+
+    /**
+     * A miss, reads the value from the store and caches it.
+     */
+    private byte[] load(byte[] key, int hash) {
+        misses.increment();
+        int stripe = Key.stripe(hash);
+        long version = versions.get(stripe);
+        byte[] value = store.get(key);
+        if (value != null) {
+            admit(new Key(key, hash), value, stripe, version);
+        }
+        return value;
+    }
+
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) {
+        List<byte[]> values = new ArrayList<>(keys.size());
+        List<Integer> missing = new ArrayList<>();
+        for (byte[] key : keys) {
+            int hash = Arrays.hashCode(key);
+            sketch.increment(hash);
+            byte[] value = cached(key, hash);
+            if (value == null) {
+                missing.add(values.size());
+            }
+            values.add(value);
+        }
+        hits.add(keys.size() - missing.size());
+        misses.add(missing.size());
+        if (missing.isEmpty()) {
+            return values;
+        }
+
+        List<byte[]> missingKeys = new ArrayList<>(missing.size());
+        long[] missingVersions = new long[missing.size()];
+        for (int i = 0; i < missing.size(); i++) {
+            byte[] key = keys.get(missing.get(i));
+            missingKeys.add(key);
+            missingVersions[i] = versions.get(new Key(key).stripe());
+        }
+        List<byte[]> fetched = store.multiGet(missingKeys);
+        for (int i = 0; i < missing.size(); i++) {
+            byte[] value = fetched.get(i);
+            values.set(missing.get(i), value);
+            if (value != null) {
+                Key lookup = new Key(missingKeys.get(i));
+                admit(lookup, value, lookup.stripe(), missingVersions[i]);
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        Key lookup = new Key(key);
+        sketch.increment(lookup.hash());
+        int stripe = lookup.stripe();
+        ReentrantLock writeLock = writeLocks[stripe];
+        writeLock.lock();
+        versions.incrementAndGet(stripe);
+        try {
+            if (mode == WriteMode.WRITE_THROUGH) {
+                store.put(key, value);
+                cache(lookup, value, false);
+            } else if (!cache(lookup, value, true)) {
+                // Not cached any more, nothing can write back an older value after this one
+                store.put(key, value);
+            }
+        } finally {
+            versions.incrementAndGet(stripe);
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        Key lookup = new Key(key);
+        int stripe = lookup.stripe();
+        ReentrantLock writeLock = writeLocks[stripe];
+        writeLock.lock();
+        versions.incrementAndGet(stripe);
+        try {
+            // Dropped before the delete, an eviction in between would write the value back
+            invalidate(List.of(lookup));
+            store.delete(key);
+        } finally {
+            versions.incrementAndGet(stripe);
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public int scan(byte[] from, int limit, BiConsumer<byte[], byte[]> visitor) {
+        writeBack();
+        return store.scan(from, limit, visitor);
+    }
+
+    @Override
+    public int rangeScan(byte[] from, byte[] to, BiConsumer<byte[], byte[]> visitor) {
+        writeBack();
+        return store.rangeScan(from, to, visitor);
+    }
+
+    @Override
+    public int prefixScan(byte[] prefix, BiConsumer<byte[], byte[]> visitor) {
+        writeBack();
+        return store.prefixScan(prefix, visitor);
+    }
+
+    @Override
+    public Cursor cursor(byte[] prefix) {
+        writeBack();
+        return store.cursor(prefix);
+    }
+
+    @Override
+    public Batch batch() {
+        return new CachingBatch(store.batch());
+    }
+
+    @Override
+    public void write(Batch batch) {
+        CachingBatch caching = (CachingBatch) batch;
+        BitSet stripes = new BitSet(STRIPES);
+        for (Key key : caching.keys) {
+            stripes.set(key.stripe());
+        }
+        // In stripe order, so two batches can't deadlock
+        for (int s = stripes.nextSetBit(0); s >= 0; s = stripes.nextSetBit(s + 1)) {
+            writeLocks[s].lock();
+            versions.incrementAndGet(s);
+        }
+        try {
+            invalidate(caching.keys);
+            store.write(caching.batch);
+        } finally {
+            for (int s = stripes.nextSetBit(0); s >= 0; s = stripes.nextSetBit(s + 1)) {
+                versions.incrementAndGet(s);
+                writeLocks[s].unlock();
+            }
+        }
+    }
+
+    @Override
+    public void syncWal() {
+        writeBack();
+        store.syncWal();
+    }
+
+    @Override
+    public void flush() {
+        writeBack();
+        store.flush();
+    }
+
+    @Override
+    public int prewarmIndexAndFilters() {
+        return store.prewarmIndexAndFilters();
+    }
+
+    @Override
+    public SstWriter sstWriter(Path file) {
+        return store.sstWriter(file);
+    }
+
+    @Override
+    public void ingest(List<Path> files) {
+        for (ReentrantLock writeLock : writeLocks) {
+            writeLock.lock();
+        }
+        for (int s = 0; s < STRIPES; s++) {
+            versions.incrementAndGet(s);
+        }
+        try {
+            // The files may overwrite any key
+            writeBack();
+            invalidate(List.copyOf(index.keySet()));
+            store.ingest(files);
+        } finally {
+            for (int s = 0; s < STRIPES; s++) {
+                versions.incrementAndGet(s);
+                writeLocks[s].unlock();
+            }
+        }
+    }
+
+    @Override
+    public OptionalLong property(String name) {
+        return store.property(name);
+    }
+
+    @Override
+    public Map<String, String> mapProperty(String name) {
+        return store.mapProperty(name);
+    }
+
+    @Override
+    public Map<String, Double> statistics() {
+        return store.statistics();
+    }
+
+    @Override
+    public boolean writeStalled() {
+        return store.writeStalled();
+    }
+
+    @Override
+    public void close() {
+        try {
+            writeBack();
+            index.clear();
+            arena.close();
+        } finally {
+            store.close();
+        }
+    }
+
+    /**
+     * The cached value, null if the key isn't cached.
+     */
+    private byte[] cached(byte[] key, int hash) {
+        for (;;) {
+            Entry entry = entry(key, hash);
+            if (entry == null) {
+                return null;
+            }
+            byte[] value = entry.read();
+            if (value != null) {
+                entry.reference();
+                return value;
+            }
+            // Rewritten or evicted while copying, the index has the new entry or none
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * Copies the cached value into {@code into}, as much of it as fits, and returns its length, -1 if the key isn't
+     * cached.
+     */
+    private int cached(byte[] key, int hash, byte[] into) {
+        for (;;) {
+            Entry entry = entry(key, hash);
+            if (entry == null) {
+                return -1;
+            }
+            int length = entry.read(into);
+            if (length >= 0) {
+                entry.reference();
+                return length;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * The key's entry, looked up with this thread's probe rather than a new {@link Key}.
+     */
+    private Entry entry(byte[] key, int hash) {
+        Probe probe = PROBE.get();
+        probe.bytes = key;
+        probe.hash = hash;
+        try {
+            return index.get(probe);
+        } finally {
+            probe.bytes = null;
+        }
+    }
+
+    /**
+     * Caches a value read from the store, unless a write to its stripe started after {@code version} was read.
+     */
+    private void admit(Key key, byte[] value, int stripe, long version) {
+        if ((version & 1) != 0) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (versions.get(stripe) == version && !index.containsKey(key)) {
+                cache(key, value, false);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Caches the value, replacing the cached one, returns false when there's no room for it.
+     */
+    private boolean cache(Key key, byte[] value, boolean dirtyValue) {
+        SizeClass sizeClass = sizeClass(value.length);
+        lock.lock();
+        try {
+            Entry current = index.get(key);
+            if (current != null && current.sizeClass == sizeClass) {
+                bytes += value.length - current.length;
+                current.write(value);
+                markDirty(current, dirtyValue);
+                current.referenced = true;
+                return true;
+            }
+            // A key already cached is hot, the new value doesn't need admission
+            int frequency = current != null ? Integer.MAX_VALUE : sketch.frequency(key.hash());
+            if (current != null) {
+                // Stale now, even if dirty
+                remove(current);
+            }
+            int slot = sizeClass == null ? -1 : allocate(sizeClass, frequency);
+            if (slot < 0) {
+                rejections++;
+                return false;
+            }
+            Entry entry = new Entry(new Key(key.bytes().clone(), key.hash()), sizeClass, slot,
+                sizeClass.segment(slot));
+            entry.write(value);
+            markDirty(entry, dirtyValue);
+            sizeClass.entries[slot] = entry;
+            index.put(entry.key, entry);
+            bytes += value.length;
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * A free slot of the class, from a new slab or the CLOCK victim's if the candidate is more frequent. -1 when
+     * TinyLFU rejects the candidate or the class has no slots.
+     */
+    private int allocate(SizeClass sizeClass, int frequency) {
+        if (sizeClass.freeCount == 0 && !sizeClass.grow() && !rebalance(sizeClass)) {
+            Entry victim = sizeClass.victim();
+            if (victim == null || sketch.frequency(victim.key.hash()) >= frequency) {
+                return -1;
+            }
+            if (victim.dirty) {
+                store.put(victim.key.bytes(), victim.copy());
+                writeBacks++;
+            }
+            remove(victim);
+            evictions++;
+        }
+        return sizeClass.free[--sizeClass.freeCount];
+    }
+
+    /**
+     * Gives a class without slabs the last slab of the class with the most, if that one has more than one. The
+     * entries in the slab are evicted, dirty ones written back first.
+     */
+    private boolean rebalance(SizeClass sizeClass) {
+        if (!sizeClass.slabs.isEmpty()) {
+            return false;
+        }
+        SizeClass from = null;
+        for (SizeClass each : classes) {
+            if (each.slabs.size() > 1 && (from == null || each.slabs.size() > from.slabs.size())) {
+                from = each;
+            }
+        }
+        if (from == null) {
+            return false;
+        }
+        int first = (from.slabs.size() - 1) * from.slotsPerSlab;
+        for (int slot = first; slot < from.entries.length; slot++) {
+            Entry entry = from.entries[slot];
+            if (entry != null) {
+                if (entry.dirty) {
+                    store.put(entry.key.bytes(), entry.copy());
+                    writeBacks++;
+                }
+                remove(entry);
+                evictions++;
+            }
+        }
+        sizeClass.add(from.shrink());
+        return true;
+    }
+
+    private void markDirty(Entry entry, boolean dirtyValue) {
+        if (entry.dirty != dirtyValue) {
+            dirty += dirtyValue ? 1 : -1;
+            entry.dirty = dirtyValue;
+        }
+    }
+
+    /**
+     * Drops the cached values of the keys, dirty or not. Called with the keys' write locks held.
+     */
+    private void invalidate(List<Key> keys) {
+        lock.lock();
+        try {
+            for (Key key : keys) {
+                Entry entry = index.get(key);
+                if (entry != null) {
+                    remove(entry);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(Entry entry) {
+        index.remove(entry.key, entry);
+        entry.removed = true;
+        // Readers copying from the slot must see it removed before it's reused
+        VarHandle.fullFence();
+        markDirty(entry, false);
+        bytes -= entry.length;
+        SizeClass sizeClass = entry.sizeClass;
+        sizeClass.entries[entry.slot] = null;
+        sizeClass.free[sizeClass.freeCount++] = entry.slot;
+    }
+
+    /**
+     * Writes the dirty values to the store in one batch.
+     */
+    private void writeBack() {
+        if (mode != WriteMode.WRITE_BACK) {
+            return;
+        }
+        lock.lock();
+        try {
+            if (dirty == 0) {
+                return;
+            }
+            try (Batch batch = store.batch()) {
+                for (Entry entry : index.values()) {
+                    if (entry.dirty) {
+                        batch.put(entry.key.bytes(), entry.copy());
+                        markDirty(entry, false);
+                        writeBacks++;
+                    }
+                }
+                store.write(batch);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The smallest class whose slots fit the value, null if it's bigger than {@link #MAX_SLOT}.
+     */
+    private SizeClass sizeClass(int length) {
+        if (length > MAX_SLOT) {
+            return null;
+        }
+        int log2 = 32 - Integer.numberOfLeadingZeros(Math.max(length, 1) - 1);
+        return classes[Math.max(0, log2 - Integer.numberOfTrailingZeros(MIN_SLOT))];
+    }
+
+    /**
+     * Slots of one size, in slabs that are never given back. Guarded by {@link #lock}.
+     */
+    private final class SizeClass {
+
+        final int slotSize;
+        final int slotsPerSlab;
+        final List<MemorySegment> slabs = new ArrayList<>();
+        Entry[] entries = new Entry[0];
+        int[] free = new int[0];
+        int freeCount;
+        int hand;
+
+        SizeClass(int slotSize) {
+            this.slotSize = slotSize;
+            this.slotsPerSlab = SLAB_SIZE / slotSize;
+        }
+
+        /**
+         * Adds a slab of free slots if the capacity allows it.
+         */
+        boolean grow() {
+            if (slabBytes + SLAB_SIZE > capacityBytes) {
+                return false;
+            }
+            add(arena.allocate(SLAB_SIZE, 64));
+            slabBytes += SLAB_SIZE;
+            return true;
+        }
+
+        void add(MemorySegment slab) {
+            slabs.add(slab);
+            int first = entries.length;
+            entries = Arrays.copyOf(entries, first + slotsPerSlab);
+            free = Arrays.copyOf(free, entries.length);
+            for (int slot = entries.length - 1; slot >= first; slot--) {
+                free[freeCount++] = slot;
+            }
+        }
+
+        /**
+         * Takes back the last slab, whose entries were removed.
+         */
+        MemorySegment shrink() {
+            int first = entries.length - slotsPerSlab;
+            int kept = 0;
+            for (int i = 0; i < freeCount; i++) {
+                if (free[i] < first) {
+                    free[kept++] = free[i];
+                }
+            }
+            freeCount = kept;
+            entries = Arrays.copyOf(entries, first);
+            free = Arrays.copyOf(free, first);
+            hand = first == 0 ? 0 : hand % first;
+            return slabs.remove(slabs.size() - 1);
+        }
+
+        MemorySegment segment(int slot) {
+            return slabs.get(slot / slotsPerSlab).asSlice((long) (slot % slotsPerSlab) * slotSize, slotSize);
+        }
+
+        /**
+         * Sweeps the CLOCK hand to the first entry not referenced since the last sweep, clearing the bits it passes.
+         */
+        Entry victim() {
+            for (int i = 0; i < 2 * entries.length; i++) {
+                Entry entry = entries[hand];
+                hand = (hand + 1) % entries.length;
+                if (entry != null) {
+                    if (!entry.referenced) {
+                        return entry;
+                    }
+                    entry.referenced = false;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * A value in a slot. The slot's bytes are only written under {@link #lock}, with {@link #stamp} odd meanwhile.
+     */
+    private static final class Entry {
+
+        final Key key;
+        final SizeClass sizeClass;
+        final int slot;
+        final MemorySegment segment;
+        volatile int length;
+        volatile int stamp;
+        volatile boolean referenced;
+        volatile boolean removed;
+        // Guarded by lock
+        boolean dirty;
+
+        Entry(Key key, SizeClass sizeClass, int slot, MemorySegment segment) {
+            this.key = key;
+            this.sizeClass = sizeClass;
+            this.slot = slot;
+            this.segment = segment;
+        }
+
+        /**
+         * A copy of the value, null if a writer changed it or the entry was removed while copying.
+         */
+        byte[] read() {
+            int before = stamp;
+            if ((before & 1) != 0) {
+                return null;
+            }
+            byte[] value = new byte[length];
+            MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, 0, value, 0, value.length);
+            // The copy must happen before checking the stamp again
+            VarHandle.acquireFence();
+            return stamp == before && !removed ? value : null;
+        }
+
+        /**
+         * Copies the value into {@code into}, as much of it as fits, and returns its length, -1 if a writer changed
+         * it or the entry was removed while copying.
+         */
+        int read(byte[] into) {
+            int before = stamp;
+            if ((before & 1) != 0) {
+                return -1;
+            }
+            int length = this.length;
+            MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, 0, into, 0, Math.min(length, into.length));
+            VarHandle.acquireFence();
+            return stamp == before && !removed ? length : -1;
+        }
+
+        void reference() {
+            // Only written when it changes, hot entries' bits stay in every core's cache
+            if (!referenced) {
+                referenced = true;
+            }
+        }
+
+        /**
+         * A copy of the value, with the lock held.
+         */
+        byte[] copy() {
+            byte[] value = new byte[length];
+            MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, 0, value, 0, value.length);
+            return value;
+        }
+
+        void write(byte[] value) {
+            stamp++;
+            VarHandle.storeStoreFence();
+            MemorySegment.copy(value, 0, segment, ValueLayout.JAVA_BYTE, 0, value.length);
+            length = value.length;
+            stamp++;
+        }
+    }
+
+    /**
+     * Index key, compares the bytes.
+     */
+    private record Key(byte[] bytes, int hash) {
+
+        Key(byte[] bytes) {
+            this(bytes, Arrays.hashCode(bytes));
+        }
+
+        int stripe() {
+            return stripe(hash);
+        }
+
+        static int stripe(int hash) {
+            return (hash ^ (hash >>> 16)) & (STRIPES - 1);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * A lookup key that is reused instead of allocating a {@link Key} per read: {@link ConcurrentHashMap#get} calls
+     * the equals of the key it's given with the keys in the index.
+     */
+    private static final class Probe {
+
+        byte[] bytes;
+        int hash;
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key other && hash == other.hash && Arrays.equals(bytes, other.bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * Remembers the keys, so {@link #write(Batch)} drops their cached values.
+     */
+    private static final class CachingBatch implements Batch {
+
+        final Batch batch;
+        final List<Key> keys = new ArrayList<>();
+
+        CachingBatch(Batch batch) {
+            this.batch = batch;
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            batch.put(key, value);
+            keys.add(new Key(key.clone()));
+        }
+
+        @Override
+        public int count() {
+            return batch.count();
+        }
+
+        @Override
+        public void clear() {
+            batch.clear();
+            keys.clear();
+        }
+
+        @Override
+        public void close() {
+            batch.close();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+/**
+ * A precomputed stream of operations in a file, memory-mapped and replayed by
+ * {@link WorkloadDriver#replay(Dataset, int)} so generating keys and values drops out of the measurement.
+ * <p>
+ * After a header, every operation is a fixed size record: the operation ordinal (1 byte), the scan length (int), the
+ * key and the value, zeros for reads and scans. Fixed size records let each thread replay its own range of the file.
+ * The ids follow the workload as a single client would issue them, the same file gives the same operations on every
+ * replay.
+ */
+public class Dataset implements AutoCloseable {
+
+    static final int MAGIC = 0x4B564453;
+    // magic, key size, value size, padding, records loaded before the operations, operations
+    static final int HEADER = 4 * 4 + 8 + 8;
+    // Mapped at most this many bytes at a time, a MappedByteBuffer can't go past 2 GB
+    static final int WINDOW = 1 << 30;
+    private static final Workload.Operation[] OPERATIONS = Workload.Operation.values();
+
+    private final FileChannel channel;
+    private final int valueSize;
+    private final long records;
+    private final long operations;
+
+    private Dataset(FileChannel channel) throws IOException {
+        this.channel = channel;
+        ByteBuffer header = ByteBuffer.allocate(HEADER);
+        channel.read(header, 0);
+        header.flip();
+        if (header.remaining() < HEADER || header.getInt() != MAGIC || header.getInt() != KeyGenerator.KEY_SIZE) {
+            throw new IOException("Not a dataset file");
+        }
+        this.valueSize = header.getInt();
+        header.getInt();
+        this.records = header.getLong();
+        this.operations = header.getLong();
+    }
+
+    public static Dataset open(Path file) throws IOException {
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            return new Dataset(channel);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Generates {@code operations} operations of the workload into the file, overwriting it.
+     */
+    public static void write(Path file, Workload workload, long operations, long seed) throws IOException {
+        int recordSize = recordSize(workload.valueSize());
+        KeyGenerator keys = new KeyGenerator(workload.distribution(), seed, workload.records());
+        ValueGenerator values = new ValueGenerator(workload.valueSize(), workload.compressibility(), seed);
+        // One random for the operations, keys and values, so the file only depends on the seed
+        SplittableRandom random = keys.random();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer buffer = ByteBuffer.allocate(Math.max(1 << 20, recordSize));
+            buffer.putInt(MAGIC).putInt(KeyGenerator.KEY_SIZE).putInt(workload.valueSize()).putInt(0)
+                .putLong(workload.records()).putLong(operations);
+            byte[] array = buffer.array();
+            long items = workload.records();
+            for (long i = 0; i < operations; i++) {
+                if (buffer.remaining() < recordSize) {
+                    flush(channel, buffer);
+                }
+                int position = buffer.position();
+                Workload.Operation operation = workload.operation(random.nextDouble());
+                array[position] = (byte) operation.ordinal();
+                buffer.putInt(position + 1, operation == Workload.Operation.SCAN
+                    ? 1 + random.nextInt(workload.scanLength()) : 0);
+                int key = position + 5;
+                if (operation == Workload.Operation.INSERT) {
+                    KeyGenerator.write(items++, array, key);
+                } else {
+                    keys.nextKey(items, array, key);
+                }
+                int value = key + KeyGenerator.KEY_SIZE;
+                if (operation == Workload.Operation.UPDATE || operation == Workload.Operation.INSERT) {
+                    values.next(random, array, value);
+                } else {
+                    Arrays.fill(array, value, value + workload.valueSize(), (byte) 0);
+                }
+                buffer.position(position + recordSize);
+            }
+            flush(channel, buffer);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    static int recordSize(int valueSize) {
+        return 1 + 4 + KeyGenerator.KEY_SIZE + valueSize;
+    }
+
+    public int valueSize() {
+        return valueSize;
+    }
+
+    /**
+     * Keys the store must hold before replaying, as loaded by {@link WorkloadDriver#load()}.
+     */
+    public long records() {
+        return records;
+    }
+
+    public long operations() {
+        return operations;
+    }
+
+    /**
+     * Reads operations {@code from} (inclusive) to {@code to} (exclusive). Not thread-safe, one per thread.
+     */
+    public Cursor cursor(long from, long to) {
+        return new Cursor(from, to);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    public class Cursor {
+
+        private final int recordSize = recordSize(valueSize);
+        private final long windowRecords = Math.max(1, WINDOW / recordSize);
+        private final long to;
+        private long next;
+        private long windowEnd;
+        private MappedByteBuffer window;
+        private int position;
+
+        Cursor(long from, long to) {
+            if (from < 0 || to > operations || from > to) {
+                throw new IndexOutOfBoundsException("Operations " + from + " to " + to + " of " + operations);
+            }
+            this.next = from;
+            this.windowEnd = from;
+            this.to = to;
+        }
+
+        /**
+         * Moves to the next operation, false at the end of the range.
+         */
+        public boolean next() throws IOException {
+            if (next == to) return false;
+            if (next == windowEnd) {
+                long records = Math.min(windowRecords, to - next);
+                window = channel.map(FileChannel.MapMode.READ_ONLY, HEADER + next * recordSize,
+                    records * recordSize);
+                windowEnd = next + records;
+                position = 0;
+            } else {
+                position += recordSize;
+            }
+            next++;
+            return true;
+        }
+
+        public Workload.Operation operation() {
+            return OPERATIONS[window.get(position)];
+        }
+
+        public int scanLength() {
+            return window.getInt(position + 1);
+        }
+
+        public void key(byte[] key) {
+            window.get(position + 5, key, 0, KeyGenerator.KEY_SIZE);
+        }
+
+        public void value(byte[] value) {
+            window.get(position + 5 + KeyGenerator.KEY_SIZE, value, 0, valueSize);
+        }
+    }
+}
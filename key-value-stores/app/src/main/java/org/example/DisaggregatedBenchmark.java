@@ -0,0 +1,165 @@
+package org.example;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.SplittableRandom;
+
+/**
+ * A {@link DisaggregatedStore} on a {@link ThrottledFileSystem} for each local cache size: loads random records,
+ * times uniform gets of the loaded keys and scans of 100 records from them, a checkpoint, and restoring from it, which
+ * opens the checkpoint with an empty cache of the same size, then times the gets again on the cold cache. The hit
+ * ratios are of the SST reads that reach the file cache, the block cache misses; the remote bytes are read for the
+ * gets and scans of the first store, downloads included.
+ * <p>
+ * Single threaded, so the latencies are the remote latency and bandwidth showing through, not queueing.
+ */
+public class DisaggregatedBenchmark {
+
+    public static final int SCAN_LENGTH = 100;
+
+    /**
+     * @param tableBytes live SST bytes after the load, what a cache must hold to miss nothing
+     * @param found      gets that found their key, all of them unless the load failed
+     */
+    public record Result(long cacheBytes, long records, long tableBytes, long loadNanos, Histogram gets, long found,
+                         Histogram scans, double hitRatio, long remoteBytesRead, long checkpointNanos,
+                         long restoreNanos, Histogram restoredGets, long restoredFound, double restoredHitRatio) {
+
+        public double putsPerSecond() {
+            return records * 1e9 / loadNanos;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("cache %7.1f MB of %7.1f MB: %8.0f puts/s, get p50 %8.1f us p99 %8.1f us, scan p50 %8.1f us "
+                    + "p99 %8.1f us, hits %5.1f%%, %7.1f MB read remotely%n",
+                cacheBytes / 1e6, tableBytes / 1e6, putsPerSecond(), gets.getValueAtPercentile(50) / 1e3,
+                gets.getValueAtPercentile(99) / 1e3, scans.getValueAtPercentile(50) / 1e3,
+                scans.getValueAtPercentile(99) / 1e3, hitRatio * 100, remoteBytesRead / 1e6);
+            out.printf("%30s checkpoint %8.1f ms, restore %8.1f ms, cold get p50 %8.1f us p99 %8.1f us, hits %5.1f%%%n",
+                "", checkpointNanos / 1e6, restoreNanos / 1e6, restoredGets.getValueAtPercentile(50) / 1e3,
+                restoredGets.getValueAtPercentile(99) / 1e3, restoredHitRatio * 100);
+        }
+    }
+
+    private final Path directory;
+    private final Duration latency;
+    private final long bytesPerSecond;
+    private final long records;
+    private final ValueGenerator values;
+    private final long seed;
+    // The random ids every run loads, gets and scans pick theirs among them so they hit stored keys
+    private final long[] ids;
+    private int runs;
+
+    /**
+     * @param latency        of every remote request
+     * @param bytesPerSecond remote bandwidth, 0 for no limit
+     */
+    public DisaggregatedBenchmark(Path directory, Duration latency, long bytesPerSecond, long records,
+                                  ValueGenerator values, long seed) {
+        this.directory = directory;
+        this.latency = latency;
+        this.bytesPerSecond = bytesPerSecond;
+        this.records = records;
+        this.values = values;
+        this.seed = seed;
+        this.ids = BulkLoader.ids(records, seed);
+    }
+
+    /**
+     * @param gets as many gets before and after the restore, a tenth as many scans
+     */
+    public Result run(long cacheBytes, int gets) {
+        Path run = directory.resolve("run-" + runs++);
+        Path local = run.resolve("local");
+        Path restoredLocal = run.resolve("restored");
+        try {
+            Files.createDirectories(local);
+            Files.createDirectories(restoredLocal);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        ThrottledFileSystem remote = new ThrottledFileSystem(run.resolve("remote"), latency, bytesPerSecond);
+        long loadNanos;
+        long tableBytes;
+        Histogram getLatency = new Histogram(WorkloadDriver.HIGHEST_LATENCY, 3);
+        long found;
+        Histogram scanLatency = new Histogram(WorkloadDriver.HIGHEST_LATENCY, 3);
+        double hitRatio;
+        long remoteBytesRead;
+        long checkpointNanos;
+        try (CachingFileSystem files = new CachingFileSystem(remote, local.resolve("cache"), cacheBytes);
+             DisaggregatedStore store = new DisaggregatedStore(files, "db", local, StoreOptions.DEFAULT)) {
+            byte[] value = new byte[values.size()];
+            long start = System.nanoTime();
+            for (long id : ids) {
+                values.forId(id, value, 0);
+                store.put(KeyGenerator.key(id), value);
+            }
+            store.flush();
+            loadNanos = System.nanoTime() - start;
+            tableBytes = store.property("rocksdb.live-sst-files-size").orElse(0);
+
+            long hits = files.hits();
+            long misses = files.misses();
+            long bytesRead = remote.bytesRead();
+            SplittableRandom random = new SplittableRandom(seed);
+            found = gets(store, gets, random, getLatency);
+            for (int i = 0; i < gets / 10; i++) {
+                byte[] from = KeyGenerator.key(ids[random.nextInt(ids.length)]);
+                long scanStart = System.nanoTime();
+                store.scan(from, SCAN_LENGTH, (k, v) -> {
+                });
+                scanLatency.recordValue(System.nanoTime() - scanStart);
+            }
+            hitRatio = ratio(files.hits() - hits, files.misses() - misses);
+            remoteBytesRead = remote.bytesRead() - bytesRead;
+
+            start = System.nanoTime();
+            store.checkpoint(Path.of("checkpoint"));
+            checkpointNanos = System.nanoTime() - start;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        try (CachingFileSystem files = new CachingFileSystem(remote, restoredLocal.resolve("cache"), cacheBytes)) {
+            long start = System.nanoTime();
+            try (DisaggregatedStore store = new DisaggregatedStore(files, "checkpoint", restoredLocal,
+                StoreOptions.DEFAULT)) {
+                long restoreNanos = System.nanoTime() - start;
+                Histogram restoredGets = new Histogram(WorkloadDriver.HIGHEST_LATENCY, 3);
+                long restoredFound = gets(store, gets, new SplittableRandom(seed + 1), restoredGets);
+                return new Result(cacheBytes, records, tableBytes, loadNanos, getLatency, found, scanLatency,
+                    hitRatio, remoteBytesRead, checkpointNanos, restoreNanos, restoredGets, restoredFound,
+                    ratio(files.hits(), files.misses()));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Times gets of random loaded keys into {@code latency}, returns how many found their value.
+     */
+    private long gets(KeyValueStore store, int gets, SplittableRandom random, Histogram latency) {
+        long found = 0;
+        for (int i = 0; i < gets; i++) {
+            byte[] key = KeyGenerator.key(ids[random.nextInt(ids.length)]);
+            long start = System.nanoTime();
+            byte[] value = store.get(key);
+            latency.recordValue(System.nanoTime() - start);
+            if (value != null) found++;
+        }
+        return found;
+    }
+
+    private static double ratio(long hits, long misses) {
+        return hits + misses == 0 ? 0 : (double) hits / (hits + misses);
+    }
+}
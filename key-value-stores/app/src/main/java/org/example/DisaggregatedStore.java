@@ -0,0 +1,44 @@
+package org.example;
+
+import org.forstdb.FlinkEnv;
+
+import java.nio.file.Path;
+
+/**
+ * {@link ForStStore} in disaggregated mode, as Flink runs it: ForSt's FlinkEnv puts every file of the DB on remote
+ * storage through a {@link CachingFileSystem}, which keeps SST files on local disk up to its capacity. The store's
+ * path, and its checkpoints', are relative to the remote root; only the info log is written locally.
+ * <p>
+ * The cache doesn't belong to the store, closing the store leaves it open.
+ */
+public class DisaggregatedStore extends ForStStore {
+
+    // The cache admits and evicts whole SST files, smaller ones than the 64 MB default make its size finer-grained
+    static final long FILE_BYTES = 8 << 20;
+
+    private final FlinkEnv env;
+
+    /**
+     * @param logDirectory an existing local directory for the info log
+     */
+    public DisaggregatedStore(CachingFileSystem files, String path, Path logDirectory, StoreOptions options) {
+        this(new FlinkEnv(files.remote().root().toString(), files), path, logDirectory, options);
+    }
+
+    private DisaggregatedStore(FlinkEnv env, String path, Path logDirectory, StoreOptions options) {
+        super(Path.of(path), options, 1, forst -> forst.setEnv(env).setDbLogDir(logDirectory.toString())
+            .setWriteBufferSize(FILE_BYTES).setTargetFileSizeBase(FILE_BYTES));
+        this.env = env;
+    }
+
+    @Override
+    public String name() {
+        return "forst-remote";
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        env.close();
+    }
+}
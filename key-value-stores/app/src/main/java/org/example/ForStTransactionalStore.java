@@ -0,0 +1,164 @@
+package org.example;
+
+import org.forstdb.OptimisticTransactionDB;
+import org.forstdb.Options;
+import org.forstdb.ReadOptions;
+import org.forstdb.RocksDB;
+import org.forstdb.RocksDBException;
+import org.forstdb.Status;
+import org.forstdb.TransactionDB;
+import org.forstdb.TransactionDBOptions;
+import org.forstdb.TransactionOptions;
+import org.forstdb.WriteOptions;
+
+import java.nio.file.Path;
+
+/**
+ * {@link TransactionalStore} on ForSt, the same code as {@link RocksDBTransactionalStore} against the
+ * org.forstdb classes, as ForStDBTest runs RockDBTest on ForSt. ForStSourceTest fails if the two drift apart.
+ * <p>
+ * Busy, TimedOut and TryAgain statuses (a conflict at commit, a lock timeout or deadlock, too little memtable history
+ * to validate) are conflicts.
+ */
+public class ForStTransactionalStore implements TransactionalStore {
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    private final Concurrency concurrency;
+    private final Options options = new Options().setCreateIfMissing(true);
+    private final TransactionDBOptions transactionDBOptions;
+    private final TransactionOptions transactionOptions;
+    private final OptimisticTransactionDB optimistic;
+    private final TransactionDB pessimistic;
+    private final RocksDB db;
+    private final WriteOptions writeOptions = new WriteOptions();
+    private final ReadOptions readOptions = new ReadOptions();
+
+    /**
+     * @param lockTimeoutMillis how long a pessimistic {@code getForUpdate} waits for a lock, ignored by optimistic
+     *                          transactions
+     */
+    public ForStTransactionalStore(Path directory, Concurrency concurrency, long lockTimeoutMillis) {
+        this.concurrency = concurrency;
+        boolean locking = concurrency == Concurrency.PESSIMISTIC;
+        this.transactionDBOptions = locking ? new TransactionDBOptions() : null;
+        this.transactionOptions = locking
+            ? new TransactionOptions().setLockTimeout(lockTimeoutMillis).setDeadlockDetect(true) : null;
+        try {
+            this.optimistic = locking ? null : OptimisticTransactionDB.open(options, directory.toString());
+            this.pessimistic = locking ? TransactionDB.open(options, transactionDBOptions, directory.toString()) : null;
+        } catch (RocksDBException e) {
+            closeOptions();
+            throw new IllegalStateException("Can't open ForSt in " + directory, e);
+        }
+        this.db = locking ? pessimistic : optimistic;
+    }
+
+    @Override
+    public String name() {
+        return "forst";
+    }
+
+    @Override
+    public Concurrency concurrency() {
+        return concurrency;
+    }
+
+    @Override
+    public Transaction begin() {
+        return new RocksTransaction(optimistic != null ? optimistic.beginTransaction(writeOptions)
+            : pessimistic.beginTransaction(writeOptions, transactionOptions));
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        try {
+            return db.get(readOptions, key);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        try {
+            db.put(writeOptions, key, value);
+        } catch (RocksDBException e) {
+            throw failure(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        db.close();
+        closeOptions();
+    }
+
+    private void closeOptions() {
+        writeOptions.close();
+        readOptions.close();
+        options.close();
+        if (transactionDBOptions != null) transactionDBOptions.close();
+        if (transactionOptions != null) transactionOptions.close();
+    }
+
+    private static IllegalStateException failure(RocksDBException e) {
+        Status.Code code = e.getStatus() == null ? null : e.getStatus().getCode();
+        if (code == Status.Code.Busy || code == Status.Code.TimedOut || code == Status.Code.TryAgain) {
+            return new ConflictException(e.getStatus().getCodeString(), e);
+        }
+        return new IllegalStateException(e);
+    }
+
+    private class RocksTransaction implements Transaction {
+
+        final org.forstdb.Transaction transaction;
+
+        RocksTransaction(org.forstdb.Transaction transaction) {
+            this.transaction = transaction;
+        }
+
+        @Override
+        public byte[] getForUpdate(byte[] key) {
+            try {
+                return transaction.getForUpdate(readOptions, key, true);
+            } catch (RocksDBException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            try {
+                transaction.put(key, value);
+            } catch (RocksDBException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void commit() {
+            try {
+                transaction.commit();
+            } catch (RocksDBException e) {
+                throw failure(e);
+            }
+        }
+
+        @Override
+        public void rollback() {
+            try {
+                transaction.rollback();
+            } catch (RocksDBException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            transaction.close();
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package org.example;
+
+/**
+ * TinyLFU's frequency estimate: a count-min sketch of 4 bit counters, 16 per expected entry in 4 rows, halved every
+ * {@code 10 * capacity} increments so old popularity fades. {@link CachingStore} admits a new key only if it has been
+ * asked for more often than the entry it would evict.
+ * <p>
+ * Updates are plain, unsynchronized writes: concurrent increments may get lost, which only makes the estimate a bit
+ * lower and keeps locks off the read path.
+ */
+final class FrequencySketch {
+
+    private static final long RESET_MASK = 0x7777_7777_7777_7777L;
+    private static final long[] SEEDS = {0x97CB_3127_2A7F_B7A9L, 0xD6E8_FEB8_6659_FD93L, 0xA4B6_8C2C_58E6_E1D5L,
+        0xBB67_AE85_84CA_A73BL};
+
+    // 16 counters per long
+    private final long[] table;
+    private final int counterMask;
+    private final int sampleSize;
+    private int additions;
+
+    /**
+     * A sketch for about {@code capacity} entries, 8 bytes each up to 4M entries.
+     */
+    FrequencySketch(long capacity) {
+        int longs = Integer.highestOneBit(Math.clamp(capacity, 64, 1 << 22) - 1) << 1;
+        this.table = new long[longs];
+        this.counterMask = longs * 16 - 1;
+        this.sampleSize = 10 * longs;
+    }
+
+    void increment(int hash) {
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = index(hash, row);
+            int shift = (index & 15) << 2;
+            long word = table[index >>> 4];
+            if (((word >>> shift) & 15) < 15) {
+                table[index >>> 4] = word + (1L << shift);
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            reset();
+        }
+    }
+
+    int frequency(int hash) {
+        int frequency = 15;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = index(hash, row);
+            frequency = Math.min(frequency, (int) ((table[index >>> 4] >>> ((index & 15) << 2)) & 15));
+        }
+        return frequency;
+    }
+
+    private int index(int hash, int row) {
+        long h = (hash + SEEDS[row]) * SEEDS[row];
+        return (int) (h ^ (h >>> 32)) & counterMask;
+    }
+
+    private void reset() {
+        for (int i = 0; i < table.length; i++) {
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        additions /= 2;
+    }
+}
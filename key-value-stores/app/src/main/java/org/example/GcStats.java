@@ -0,0 +1,34 @@
+package org.example;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+
+/**
+ * Collections, time spent in them and bytes allocated by every thread so far; subtract two snapshots to get the GC
+ * cost of a run.
+ */
+public record GcStats(long collections, long collectionMillis, long allocatedBytes) {
+
+    public static GcStats now() {
+        long collections = 0;
+        long millis = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            collections += Math.max(0, gc.getCollectionCount());
+            millis += Math.max(0, gc.getCollectionTime());
+        }
+        long allocated = ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean threads
+            ? threads.getTotalThreadAllocatedBytes() : -1;
+        return new GcStats(collections, millis, allocated);
+    }
+
+    public GcStats since(GcStats start) {
+        return new GcStats(collections - start.collections, collectionMillis - start.collectionMillis,
+            allocatedBytes - start.allocatedBytes);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d collections, %d ms in GC, %d MB allocated", collections, collectionMillis,
+            allocatedBytes >> 20);
+    }
+}
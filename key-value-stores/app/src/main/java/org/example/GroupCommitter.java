@@ -0,0 +1,168 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Group commit in front of a {@link KeyValueStore}: writer threads hand their batches to {@link #commit}, a single
+ * committer thread writes every batch waiting at that moment as one group, merged into a single write by
+ * {@link KeyValueStore#write(List)}, and, with {@code syncGroups}, syncs the WAL once for the whole group before
+ * releasing the writers. The write path and the fsync are paid per group instead of per batch.
+ * <p>
+ * On RocksDB and ForSt the group is written atomically, so a failure fails every writer of the group. Stores that
+ * don't merge batches ({@link KeyValueStore#mergesBatches()}) write them one by one and each writer gets the outcome
+ * of its own batch.
+ * <p>
+ * Backpressure: at most {@code capacity} batches wait, more writers block in {@link #commit}. While the store reports
+ * a write stall ({@link KeyValueStore#writeStalled()}) the committer holds the next group back, so the queue fills up
+ * and the writers block here instead of inside the store.
+ */
+public class GroupCommitter implements AutoCloseable {
+
+    private static final long STALL_PAUSE = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final KeyValueStore store;
+    private final boolean syncGroups;
+    private final BlockingQueue<Request> queue;
+    private final Thread committer;
+    // Commits hold the read lock from the closed check to the put, so no request is queued after close
+    private final ReentrantReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+
+    // Written by the committer thread only
+    private volatile long groups;
+    private volatile long batches;
+    private volatile long stallNanos;
+
+    private record Request(KeyValueStore.Batch batch, CompletableFuture<Void> done) {
+    }
+
+    public GroupCommitter(KeyValueStore store, int capacity, boolean syncGroups) {
+        this.store = store;
+        this.syncGroups = syncGroups;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.committer = Thread.ofPlatform().name("group-committer-" + store.name()).daemon().start(this::commitLoop);
+    }
+
+    /**
+     * Blocks until the batch is written (and synced with {@code syncGroups}), then the caller can clear and reuse it.
+     */
+    public void commit(KeyValueStore.Batch batch) throws InterruptedException {
+        Request request = new Request(batch, new CompletableFuture<>());
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("Group committer is closed");
+            }
+            queue.put(request);
+        } finally {
+            closing.readLock().unlock();
+        }
+        try {
+            request.done().join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Group commit failed", e.getCause());
+        }
+    }
+
+    public long groups() {
+        return groups;
+    }
+
+    public long batches() {
+        return batches;
+    }
+
+    /**
+     * Time the committer waited for write stalls to clear.
+     */
+    public long stallNanos() {
+        return stallNanos;
+    }
+
+    private void commitLoop() {
+        List<Request> group = new ArrayList<>();
+        List<KeyValueStore.Batch> writes = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            Request first;
+            try {
+                first = queue.poll(10, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                break;
+            }
+            if (first == null) continue;
+            group.add(first);
+            queue.drainTo(group);
+
+            if (store.writeStalled()) {
+                long start = System.nanoTime();
+                do {
+                    LockSupport.parkNanos(STALL_PAUSE);
+                } while (store.writeStalled());
+                stallNanos += System.nanoTime() - start;
+            }
+
+            groups++;
+            batches += group.size();
+            if (store.mergesBatches()) {
+                for (Request request : group) {
+                    writes.add(request.batch());
+                }
+                try {
+                    store.write(writes);
+                } catch (RuntimeException e) {
+                    // Nothing of the group was written
+                    group.forEach(request -> request.done().completeExceptionally(e));
+                    group.clear();
+                }
+                writes.clear();
+            } else {
+                group.removeIf(request -> {
+                    try {
+                        store.write(request.batch());
+                        return false;
+                    } catch (RuntimeException e) {
+                        request.done().completeExceptionally(e);
+                        return true;
+                    }
+                });
+            }
+            // The requests left were written
+            try {
+                if (syncGroups && !group.isEmpty()) {
+                    store.syncWal();
+                }
+                group.forEach(request -> request.done().complete(null));
+            } catch (RuntimeException e) {
+                group.forEach(request -> request.done().completeExceptionally(e));
+            }
+            group.clear();
+        }
+        // Interrupted, the writers still waiting would never be released
+        queue.drainTo(group);
+        for (Request request : group) {
+            request.done().completeExceptionally(new IllegalStateException("Group committer is closed"));
+        }
+    }
+
+    /**
+     * Commits the batches already waiting and stops the committer, once no writer calls {@link #commit} anymore.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        closing.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        committer.join();
+    }
+}
@@ -1,20 +1,73 @@
 package org.example;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 
 public class IOUtils {
 
     public static long getDirectorySize(File directory) {
-        long size = 0;
-        if (directory.isDirectory()) {
-            for (File file : directory.listFiles()) {
-                if (file.isFile()) {
-                    size += file.length();
-                } else {
-                    size += getDirectorySize(file);
+        return directorySize(directory.toPath());
+    }
+
+    /**
+     * Bytes of the regular files under the directory, 0 if it doesn't exist. One walk reads the sizes from the
+     * attributes the directory listing already has, and files deleted meanwhile (e.g. SST files a compaction just
+     * replaced) are skipped, so it can run while the store is writing.
+     */
+    public static long directorySize(Path directory) {
+        long[] size = {0};
+        try {
+            Files.walkFileTree(directory, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    if (attributes.isRegularFile()) {
+                        size[0] += attributes.size();
+                    }
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) throws IOException {
+                    if (e instanceof NoSuchFileException) {
+                        return FileVisitResult.CONTINUE;
+                    }
+                    throw e;
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't walk " + directory, e);
+        }
+        return size[0];
+    }
+
+    /**
+     * Copies the directory and everything under it into {@code target}, which must not exist.
+     */
+    public static void copyDirectory(Path source, Path target) {
+        try {
+            Files.walkFileTree(source, new SimpleFileVisitor<>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path directory, BasicFileAttributes attributes)
+                    throws IOException {
+                    Files.createDirectory(target.resolve(source.relativize(directory)));
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) throws IOException {
+                    Files.copy(file, target.resolve(source.relativize(file)));
+                    return FileVisitResult.CONTINUE;
                 }
-            }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't copy " + source + " to " + target, e);
         }
-        return size;
     }
 }
@@ -0,0 +1,155 @@
+package org.example;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Concurrent ingest: N writer threads, platform or virtual, fill batches of new keys and commit them, directly or
+ * through a {@link GroupCommitter}. Unlike RockDBTest's single transaction from one thread, this shows how a store
+ * scales with many producers; {@link #scale} runs it on a fresh store per writer count for a throughput curve.
+ */
+public class Ingest {
+
+    public enum Commit {
+        /**
+         * Every writer calls {@link KeyValueStore#write} itself, RocksDB groups concurrent writers internally.
+         */
+        DIRECT,
+        /**
+         * Through a {@link GroupCommitter}, with the store's own sync setting: each group of batches is one write.
+         */
+        GROUP,
+        /**
+         * Through a {@link GroupCommitter} syncing the WAL once per group, open the store without sync.
+         */
+        GROUP_SYNC
+    }
+
+    public record Result(String store, Commit commit, int writers, boolean virtualThreads, int batchSize,
+                         long records, long nanos, long groups, long stallNanos, Histogram commitLatency) {
+
+        public double recordsPerSecond() {
+            return records * 1e9 / nanos;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%-8s %-10s %4d %-8s writers  batch %5d  %10.0f records/s  %8.1f batches/group  "
+                    + "commit p50 %8.1f us  p99 %8.1f us  stalled %6d ms%n",
+                store, commit, writers, virtualThreads ? "virtual" : "platform", batchSize, recordsPerSecond(),
+                groups == 0 ? 1.0 : (double) commitLatency.getTotalCount() / groups,
+                commitLatency.getValueAtPercentile(50) / 1e3, commitLatency.getValueAtPercentile(99) / 1e3,
+                stallNanos / 1_000_000);
+        }
+    }
+
+    private final KeyValueStore store;
+    private final Commit commit;
+    private final int batchSize;
+    private final ValueGenerator values;
+    private final long seed;
+
+    public Ingest(KeyValueStore store, Commit commit, int batchSize, ValueGenerator values, long seed) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize must be positive: " + batchSize);
+        }
+        this.store = store;
+        this.commit = commit;
+        this.batchSize = batchSize;
+        this.values = values;
+        this.seed = seed;
+    }
+
+    /**
+     * Inserts {@code records} new keys (ids from 0) from {@code writers} threads, each claiming {@code batchSize}
+     * consecutive ids per batch.
+     */
+    public Result run(int writers, boolean virtualThreads, long records) throws InterruptedException {
+        AtomicLong next = new AtomicLong();
+        Recorder latency = new Recorder(WorkloadDriver.HIGHEST_LATENCY, 3);
+        GroupCommitter committer = commit == Commit.DIRECT ? null
+            // Room for a batch per writer, with more writers than that they queue on the committer
+            : new GroupCommitter(store, Math.min(writers, 1024), commit == Commit.GROUP_SYNC);
+
+        ExecutorService executor = virtualThreads
+            ? Executors.newVirtualThreadPerTaskExecutor()
+            : Executors.newFixedThreadPool(writers);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int w = 0; w < writers; w++) {
+            SplittableRandom random = new SplittableRandom(seed + w);
+            futures.add(executor.submit(() -> {
+                byte[] key = new byte[KeyGenerator.KEY_SIZE];
+                byte[] value = new byte[values.size()];
+                try (KeyValueStore.Batch batch = store.batch()) {
+                    for (long first = next.getAndAdd(batchSize); first < records; first = next.getAndAdd(batchSize)) {
+                        for (long id = first; id < Math.min(first + batchSize, records); id++) {
+                            KeyGenerator.write(id, key, 0);
+                            values.next(random, value, 0);
+                            batch.put(key, value);
+                        }
+                        long begin = System.nanoTime();
+                        if (committer == null) {
+                            store.write(batch);
+                        } else {
+                            committer.commit(batch);
+                        }
+                        latency.recordValue(System.nanoTime() - begin);
+                        batch.clear();
+                    }
+                }
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Ingest failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+            if (committer != null) committer.close();
+        }
+        long nanos = System.nanoTime() - start;
+
+        Histogram histogram = latency.getIntervalHistogram();
+        long groups = committer == null ? histogram.getTotalCount() : committer.groups();
+        long stallNanos = committer == null ? 0 : committer.stallNanos();
+        return new Result(store.name(), commit, writers, virtualThreads, batchSize, records, nanos, groups,
+            stallNanos, histogram);
+    }
+
+    /**
+     * The scaling curve: ingests {@code records} into a fresh store for every writer count, printing a line each.
+     */
+    public static List<Result> scale(StoreBackend backend, StoreOptions options, Commit commit, int batchSize,
+                                     int valueSize, long records, boolean virtualThreads, int[] writers,
+                                     PrintStream out) throws IOException, InterruptedException {
+        ValueGenerator values = new ValueGenerator(valueSize, 0.5, 42);
+        List<Result> results = new ArrayList<>();
+        for (int count : writers) {
+            Path directory = Files.createTempDirectory(backend.name().toLowerCase() + "-ingest-");
+            try (KeyValueStore store = backend.open(directory, options)) {
+                Result result = new Ingest(store, commit, batchSize, values, 42).run(count, virtualThreads, records);
+                result.print(out);
+                results.add(result);
+            } finally {
+                App.delete(directory);
+            }
+        }
+        return results;
+    }
+}
@@ -0,0 +1,153 @@
+package org.example;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes one CSV row per interval while a {@link WorkloadDriver} runs, so a p99 jump lines up with its cause: the
+ * driver's operations and latency percentiles of the interval ({@link WorkloadDriver#interval()}), GC and allocation
+ * ({@link GcStats}), whether the store stalls writes and runs flushes or compactions, and the RocksDB tickers and
+ * histograms of {@link KeyValueStore#statistics()} (empty columns unless opened with
+ * {@link StoreOptions#statistics()}).
+ * <p>
+ * Latencies are in microseconds, ticker and histogram count columns count what happened during the interval, the
+ * first row also what happened before the instrumentation started. The histograms' avg is the interval's too, but
+ * RocksDB can't give percentiles of an interval: the "_since_open" columns, as "db_get.p99_since_open", cover
+ * everything since the DB opened, so a short spike barely moves them; the driver's own p99 columns and the
+ * histograms' avg are the ones to line up with a jump. Rows are flushed as they are written, so the file can be
+ * followed during a run. The driver's {@link OperationBatchEvent}s go to JFR
+ * instead, for a recording to put them next to the JVM's own events.
+ */
+public class Instrumentation implements AutoCloseable {
+
+    private final KeyValueStore store;
+    private final WorkloadDriver driver;
+    private final BufferedWriter out;
+    private final List<String> statistics;
+    private final long start = System.nanoTime();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "instrumentation");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private GcStats gc = GcStats.now();
+    private volatile RuntimeException failure;
+
+    /**
+     * Writes the header and starts writing a row every {@code interval}.
+     */
+    public Instrumentation(KeyValueStore store, WorkloadDriver driver, Path file, Duration interval)
+        throws IOException {
+        this.store = store;
+        this.driver = driver;
+        this.statistics = RocksDBStore.STATISTICS;
+        this.out = Files.newBufferedWriter(file);
+
+        List<String> header = new ArrayList<>(List.of("seconds"));
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            String name = operation.name().toLowerCase();
+            header.addAll(List.of(name + ".ops", name + ".p50", name + ".p99", name + ".max"));
+        }
+        header.addAll(List.of("gc.collections", "gc.millis", "allocated.mb", "stalled", "flushes.running",
+            "compactions.running", "pending_compaction.mb"));
+        header.addAll(statistics);
+        write(header);
+
+        long period = interval.toNanos();
+        sampler.scheduleAtFixedRate(this::row, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops sampling, writes a last row and closes the file.
+     */
+    public void stop() throws InterruptedException, IOException {
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.MINUTES);
+        if (failure != null) {
+            throw new IllegalStateException("Instrumenting " + store.name() + " failed", failure);
+        }
+        row();
+        out.close();
+    }
+
+    @Override
+    public void close() throws IOException {
+        sampler.shutdownNow();
+        out.close();
+    }
+
+    private void row() {
+        try {
+            List<String> row = new ArrayList<>();
+            row.add(format((System.nanoTime() - start) / 1e9));
+            Map<Workload.Operation, Histogram> latencies = driver.interval();
+            for (Workload.Operation operation : Workload.Operation.values()) {
+                Histogram histogram = latencies.get(operation);
+                if (histogram == null || histogram.getTotalCount() == 0) {
+                    row.addAll(List.of("0", "", "", ""));
+                } else {
+                    row.add(Long.toString(histogram.getTotalCount()));
+                    row.add(format(histogram.getValueAtPercentile(50) / 1e3));
+                    row.add(format(histogram.getValueAtPercentile(99) / 1e3));
+                    row.add(format(histogram.getMaxValue() / 1e3));
+                }
+            }
+
+            GcStats now = GcStats.now();
+            GcStats delta = now.since(gc);
+            gc = now;
+            row.add(Long.toString(delta.collections()));
+            row.add(Long.toString(delta.collectionMillis()));
+            row.add(format(delta.allocatedBytes() / (double) (1 << 20)));
+
+            row.add(store.writeStalled() ? "1" : "0");
+            row.add(property("rocksdb.num-running-flushes", 1));
+            row.add(property("rocksdb.num-running-compactions", 1));
+            row.add(property("rocksdb.estimate-pending-compaction-bytes", 1 << 20));
+
+            Map<String, Double> values = store.statistics();
+            for (String name : statistics) {
+                Double value = values.get(name);
+                row.add(value == null ? "" : format(value));
+            }
+            write(row);
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        } catch (IOException e) {
+            failure = new UncheckedIOException(e);
+            throw failure;
+        }
+    }
+
+    private String property(String name, long unit) {
+        OptionalLong value = store.property(name);
+        return value.isEmpty() ? "" : unit == 1 ? Long.toString(value.getAsLong())
+            : format(value.getAsLong() / (double) unit);
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) && Math.abs(value) < 1e15 ? Long.toString((long) value)
+            : String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private synchronized void write(List<String> values) throws IOException {
+        out.write(String.join(",", values));
+        out.newLine();
+        out.flush();
+    }
+}
@@ -0,0 +1,25 @@
+package org.example;
+
+/**
+ * How {@link KeyGenerator} picks the next key among the {@code items} inserted so far, as in YCSB's
+ * requestdistribution.
+ */
+public enum KeyDistribution {
+    /**
+     * Every key equally likely.
+     */
+    UNIFORM,
+    /**
+     * Keys in order, wrapping around at the end.
+     */
+    SEQUENTIAL,
+    /**
+     * A few keys get most of the requests. Popular ids are hashed over the key space, otherwise the hot keys would
+     * be neighbours and share blocks.
+     */
+    ZIPFIAN,
+    /**
+     * Zipfian on recency: the most recently inserted keys are the most popular.
+     */
+    LATEST
+}
@@ -0,0 +1,95 @@
+package org.example;
+
+import java.util.SplittableRandom;
+
+/**
+ * Seeded key ids following a {@link KeyDistribution}, and their 16 byte keys written into a reused array. One per
+ * thread, the same seed gives the same keys on every run.
+ * <p>
+ * Keys are "user" followed by the zero-padded id, like the random 16 byte keys in RockDBTest, so the key order is
+ * the id order and scans read consecutive ids.
+ */
+public class KeyGenerator {
+
+    public static final int KEY_SIZE = 16;
+    private static final byte[] PREFIX = {'u', 's', 'e', 'r'};
+
+    private final KeyDistribution distribution;
+    private final SplittableRandom random;
+    private final ZipfianGenerator zipfian;
+    private long sequence;
+
+    /**
+     * @param zipfian shared precomputed generator, copied here; only used by ZIPFIAN and LATEST
+     */
+    public KeyGenerator(KeyDistribution distribution, long seed, ZipfianGenerator zipfian) {
+        this.distribution = distribution;
+        this.random = new SplittableRandom(seed);
+        this.zipfian = zipfian == null ? null : new ZipfianGenerator(zipfian);
+        // Threads walking the keys in order start at a random key, not all at the same one
+        this.sequence = -1;
+    }
+
+    public KeyGenerator(KeyDistribution distribution, long seed, long items) {
+        this(distribution, seed, distribution == KeyDistribution.ZIPFIAN || distribution == KeyDistribution.LATEST
+            ? new ZipfianGenerator(items) : null);
+    }
+
+    public SplittableRandom random() {
+        return random;
+    }
+
+    /**
+     * The next id among {@code items} ids.
+     */
+    public long nextId(long items) {
+        return switch (distribution) {
+            case UNIFORM -> random.nextLong(items);
+            case SEQUENTIAL -> {
+                if (sequence < 0) sequence = random.nextLong(items);
+                yield sequence++ % items;
+            }
+            case ZIPFIAN -> zipfianId(zipfian.next(random, items), items);
+            case LATEST -> items - 1 - zipfian.next(random, items);
+        };
+    }
+
+    /**
+     * Writes the next key into {@code key} at {@code offset}, returns its id.
+     */
+    public long nextKey(long items, byte[] key, int offset) {
+        long id = nextId(items);
+        write(id, key, offset);
+        return id;
+    }
+
+    /**
+     * The id ZIPFIAN gives the key of popularity {@code rank} among {@code items}, 0 the most popular.
+     */
+    public static long zipfianId(long rank, long items) {
+        return Math.floorMod(fnv(rank), items);
+    }
+
+    public static void write(long id, byte[] key, int offset) {
+        System.arraycopy(PREFIX, 0, key, offset, PREFIX.length);
+        for (int i = offset + KEY_SIZE - 1; i >= offset + PREFIX.length; i--, id /= 10) {
+            key[i] = (byte) ('0' + id % 10);
+        }
+    }
+
+    public static byte[] key(long id) {
+        byte[] key = new byte[KEY_SIZE];
+        write(id, key, 0);
+        return key;
+    }
+
+    // FNV-1a over the 8 bytes of the id, as YCSB scrambles its zipfian ids
+    private static long fnv(long id) {
+        long hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < 8; i++) {
+            hash ^= (id >>> (i * 8)) & 0xFF;
+            hash *= 0x100000001B3L;
+        }
+        return hash;
+    }
+}
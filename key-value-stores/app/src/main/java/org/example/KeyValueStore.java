@@ -0,0 +1,234 @@
+package org.example;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Byte array keys and values on top of RocksDB, ForSt or MapDB, so the same workload runs against every backend.
+ * <p>
+ * Keys are ordered by unsigned lexicographic comparison, which is what {@link #scan} walks. Implementations are
+ * thread-safe. Native errors are rethrown as {@link IllegalStateException}.
+ */
+public interface KeyValueStore extends AutoCloseable {
+
+    /**
+     * Short name used in reports, e.g. "rocksdb".
+     */
+    String name();
+
+    void put(byte[] key, byte[] value);
+
+    /**
+     * The value for the key, null if it isn't there.
+     */
+    byte[] get(byte[] key);
+
+    /**
+     * Copies the value for the key into {@code into}, as much of it as fits, and returns its length, -1 if the key
+     * isn't there. Stores that can do it without allocating a value per read override it.
+     */
+    default int get(byte[] key, byte[] into) {
+        byte[] value = get(key);
+        if (value == null) {
+            return -1;
+        }
+        System.arraycopy(value, 0, into, 0, Math.min(value.length, into.length));
+        return value.length;
+    }
+
+    void delete(byte[] key);
+
+    /**
+     * The values of the keys, in the same order, null for the missing ones. RocksDB and ForSt look them up in one
+     * call that batches the block reads.
+     */
+    default List<byte[]> multiGet(List<byte[]> keys) {
+        List<byte[]> values = new ArrayList<>(keys.size());
+        for (byte[] key : keys) {
+            values.add(get(key));
+        }
+        return values;
+    }
+
+    /**
+     * Visits up to {@code limit} entries in key order starting at {@code from} (inclusive), returns how many were
+     * visited.
+     */
+    int scan(byte[] from, int limit, BiConsumer<byte[], byte[]> visitor);
+
+    /**
+     * Visits the entries from {@code from} (inclusive) to {@code to} (exclusive), returns how many were visited.
+     */
+    int rangeScan(byte[] from, byte[] to, BiConsumer<byte[], byte[]> visitor);
+
+    /**
+     * Visits every entry whose key starts with {@code prefix}, returns how many were visited. With
+     * {@link StoreOptions#prefixLength()} set to the prefix length RocksDB and ForSt use the prefix blooms.
+     */
+    int prefixScan(byte[] prefix, BiConsumer<byte[], byte[]> visitor);
+
+    /**
+     * A live iterator for the keys starting with {@code prefix}, all of them with an empty one. It may walk past the
+     * last key with the prefix, callers check; with {@link StoreOptions#prefixLength()} RocksDB and ForSt use the
+     * prefix blooms.
+     */
+    Cursor cursor(byte[] prefix);
+
+    /**
+     * A new empty batch for {@link #write(Batch)}, owned by the calling thread.
+     */
+    Batch batch();
+
+    /**
+     * Applies every put of the batch, atomically on RocksDB and ForSt. The batch can be cleared and reused after.
+     */
+    void write(Batch batch);
+
+    /**
+     * Applies the puts of every batch, batches of this store, in order. RocksDB and ForSt merge them into one write,
+     * which is atomic and pays the write path once for the group: see {@link #mergesBatches()}. Other stores write them
+     * one by one and may fail after writing some.
+     */
+    default void write(List<Batch> batches) {
+        for (Batch batch : batches) {
+            write(batch);
+        }
+    }
+
+    /**
+     * Whether {@link #write(List)} writes all the batches or none of them.
+     */
+    default boolean mergesBatches() {
+        return false;
+    }
+
+    /**
+     * Forces the WAL to disk, so writes made without {@link StoreOptions#sync()} become durable. Group commit calls it
+     * once for many batches.
+     */
+    default void syncWal() {
+    }
+
+    /**
+     * Flushes the memtable to files and waits for it, so reads after a reopen come from the files.
+     */
+    default void flush() {
+    }
+
+    /**
+     * Seeks to the first key of every SST file, which opens the file and loads its index block, filter and first data
+     * block into the block cache when they are cached there, so the first requests after an open don't each pay for
+     * them. Returns the files sought, 0 for stores without SST files.
+     */
+    default int prewarmIndexAndFilters() {
+        return 0;
+    }
+
+    /**
+     * A writer for an SST file with this store's table options, to build files off-line for {@link #ingest}. Only
+     * RocksDB and ForSt have SST files.
+     */
+    default SstWriter sstWriter(Path file) {
+        throw new UnsupportedOperationException(name() + " has no SST files");
+    }
+
+    /**
+     * Adds SST files built with {@link #sstWriter} to the store, moving them. Files with disjoint key ranges go
+     * straight to the bottom level, without compaction.
+     */
+    default void ingest(List<Path> files) {
+        throw new UnsupportedOperationException(name() + " has no SST files");
+    }
+
+    /**
+     * A numeric RocksDB property such as "rocksdb.estimate-pending-compaction-bytes", empty when the store doesn't
+     * have it.
+     */
+    default OptionalLong property(String name) {
+        return OptionalLong.empty();
+    }
+
+    /**
+     * A map-valued RocksDB property such as "rocksdb.cfstats" (bytes written by flushes and compactions per level) or
+     * "rocksdb.dbstats" (WAL bytes), empty when the store doesn't have it.
+     */
+    default Map<String, String> mapProperty(String name) {
+        return Map.of();
+    }
+
+    /**
+     * RocksDB tickers and histograms, as "block_cache_miss" or "db_get.avg" (microseconds), empty unless the store was
+     * opened with {@link StoreOptions#statistics()}. Tickers and the histograms' count and avg are what happened since
+     * the previous call on this store, so calling it periodically gives a time series. The percentiles and max are
+     * since the DB opened, their names say so: "db_get.p99_since_open".
+     */
+    default Map<String, Double> statistics() {
+        return Map.of();
+    }
+
+    /**
+     * Whether the store is slowing down or stopping writes right now (e.g. too many L0 files or pending compaction
+     * bytes), writers should back off.
+     */
+    default boolean writeStalled() {
+        return false;
+    }
+
+    @Override
+    void close();
+
+    /**
+     * Entries in strictly increasing key order, written to one SST file by {@link #finish()}.
+     */
+    interface SstWriter extends AutoCloseable {
+
+        void put(byte[] key, byte[] value);
+
+        void finish();
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Entries in key order, read as it moves rather than copied up front. Used by one thread at a time, nothing is
+     * read before the first {@link #seek}.
+     */
+    interface Cursor extends AutoCloseable {
+
+        /**
+         * Moves to the first entry at or after the key.
+         */
+        void seek(byte[] key);
+
+        boolean isValid();
+
+        byte[] key();
+
+        byte[] value();
+
+        void next();
+
+        @Override
+        void close();
+    }
+
+    /**
+     * Puts accumulated by one thread. Keys and values are copied, the arrays can be reused.
+     */
+    interface Batch extends AutoCloseable {
+
+        void put(byte[] key, byte[] value);
+
+        int count();
+
+        void clear();
+
+        @Override
+        void close();
+    }
+}
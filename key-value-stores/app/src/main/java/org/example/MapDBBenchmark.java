@@ -0,0 +1,229 @@
+package org.example;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+import java.util.function.LongPredicate;
+
+/**
+ * Loads the same random records into MapDB set up each {@link Mode} and then reads them back at random, against
+ * MapDBTest's set-up as the baseline. Ids come from {@link BulkLoader}, keys from {@link KeyGenerator} and values
+ * from {@link ValueGenerator#forId}, so every mode stores the same data. Load time includes the final commit, and for
+ * the modes that need the records in key order the sort too, reported on its own as well.
+ */
+public class MapDBBenchmark {
+
+    static final int COMMIT_EVERY = 100_000;
+
+    public enum Mode {
+        /**
+         * MapDBTest: a {@code hashMap} of {@code STRING}s with transactions, committed every 100k puts by one writer.
+         */
+        BASELINE,
+        /**
+         * The baseline with {@code BYTE_ARRAY} serializers, no String encoding and decoding.
+         */
+        BINARY,
+        /**
+         * A {@code BYTE_ARRAY} hash map with as many segments as asked, loaded by concurrent writers, transactions
+         * off and the file synced every 100k puts.
+         */
+        SEGMENTED,
+        /**
+         * The {@link MapDBStore} tree, the same concurrent writers and periodic commits.
+         */
+        TREE,
+        /**
+         * The tree built bottom-up from the sorted records by {@link MapDBStore#createFrom}.
+         */
+        PUMP,
+        /**
+         * The sorted records written to an immutable {@link SortedTableStore}.
+         */
+        SORTED_TABLE
+    }
+
+    /**
+     * @param sortNanos part of {@code loadNanos}, 0 for the modes that load the records as they come
+     */
+    public record Result(Mode mode, String store, int writers, long records, long loadNanos, long sortNanos,
+                         long reads, long readNanos, long diskBytes) {
+
+        public void print(PrintStream out) {
+            out.printf("%-12s %-16s %2d writers %9d records loaded in %7d ms (%5d ms sorting), %9.0f records/s, "
+                    + "%9.0f reads/s, %6d MB on disk%n",
+                mode, store, writers, records, loadNanos / 1_000_000, sortNanos / 1_000_000,
+                records * 1e9 / loadNanos, reads * 1e9 / readNanos, diskBytes >> 20);
+        }
+    }
+
+    private final Path directory;
+    private final ValueGenerator values;
+    private final long seed;
+    private final long[] ids;
+
+    /**
+     * Runs every mode in its own subdirectory of {@code directory} on the same {@code records} random ids.
+     */
+    public MapDBBenchmark(Path directory, ValueGenerator values, long records, long seed) {
+        this.directory = directory;
+        this.values = values;
+        this.seed = seed;
+        this.ids = BulkLoader.ids(records, seed);
+    }
+
+    /**
+     * Loads the records in {@code mode}, {@code writers} and {@code segments} only apply to SEGMENTED and TREE, and
+     * then gets as many random ones from {@code readers} threads.
+     */
+    public Result run(Mode mode, int writers, int segments, int readers) throws IOException, InterruptedException {
+        Path path = directory.resolve(mode.name().toLowerCase());
+        Files.createDirectories(path);
+        if (mode == Mode.BASELINE) {
+            return baseline(path, readers);
+        }
+        if (mode != Mode.SEGMENTED && mode != Mode.TREE) {
+            writers = 1;
+        }
+        MapDBOptions options = switch (mode) {
+            case BINARY -> MapDBOptions.DEFAULT.withHash(true).withTransactions(true).withCommitEvery(COMMIT_EVERY);
+            case SEGMENTED -> MapDBOptions.DEFAULT.withHash(true).withSegments(segments).withCommitEvery(COMMIT_EVERY);
+            case TREE -> MapDBOptions.DEFAULT.withCommitEvery(COMMIT_EVERY);
+            default -> MapDBOptions.DEFAULT;
+        };
+
+        long start = System.nanoTime();
+        long[] sorted = mode == Mode.PUMP || mode == Mode.SORTED_TABLE
+            ? Arrays.stream(ids).sorted().distinct().toArray() : null;
+        long sortNanos = sorted == null ? 0 : System.nanoTime() - start;
+        KeyValueStore store = switch (mode) {
+            case PUMP -> MapDBStore.createFrom(path, options, entries(sorted));
+            case SORTED_TABLE -> SortedTableStore.create(path.resolve("table.db"), entries(sorted));
+            default -> {
+                MapDBStore loaded = new MapDBStore(path, options);
+                int threads = writers;
+                parallel(threads, writer -> {
+                    byte[] value = new byte[values.size()];
+                    for (int i = writer; i < ids.length; i += threads) {
+                        values.forId(ids[i], value, 0);
+                        loaded.put(KeyGenerator.key(ids[i]), value);
+                    }
+                });
+                loaded.flush();
+                yield loaded;
+            }
+        };
+        long loadNanos = System.nanoTime() - start;
+        try (store) {
+            long diskBytes = IOUtils.directorySize(path);
+            long readNanos = read(readers, id -> store.get(KeyGenerator.key(id)) != null);
+            return new Result(mode, store.name(), writers, ids.length, loadNanos, sortNanos, ids.length, readNanos,
+                diskBytes);
+        }
+    }
+
+    /**
+     * Exactly MapDBTest's store, with keys and values as printable ASCII Strings of the same lengths as the other
+     * modes' bytes.
+     */
+    private Result baseline(Path path, int readers) throws InterruptedException {
+        long start = System.nanoTime();
+        DB db = DBMaker
+            .fileDB(path.resolve("file.db").toFile())
+            .transactionEnable()
+            .fileMmapEnable()
+            .make();
+        try {
+            HTreeMap<String, String> map = db.hashMap("my map", Serializer.STRING, Serializer.STRING).createOrOpen();
+            byte[] value = new byte[values.size()];
+            for (int i = 0; i < ids.length; i++) {
+                values.forId(ids[i], value, 0);
+                map.put(string(KeyGenerator.key(ids[i])), string(value));
+                if (i != 0 && i % COMMIT_EVERY == 0) {
+                    db.commit();
+                }
+            }
+            db.commit();
+            long loadNanos = System.nanoTime() - start;
+            long diskBytes = IOUtils.directorySize(path);
+            long readNanos = read(readers, id -> map.get(string(KeyGenerator.key(id))) != null);
+            return new Result(Mode.BASELINE, "mapdb-string-tx", 1, ids.length, loadNanos, 0, ids.length, readNanos,
+                diskBytes);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static String string(byte[] bytes) {
+        char[] chars = new char[bytes.length];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i] = (char) ('!' + (bytes[i] & 0x3F));
+        }
+        return new String(chars);
+    }
+
+    /**
+     * The records of the sorted distinct ids, in key order.
+     */
+    private Iterator<Map.Entry<byte[], byte[]>> entries(long[] sorted) {
+        return Arrays.stream(sorted).mapToObj(id -> {
+            byte[] value = new byte[values.size()];
+            values.forId(id, value, 0);
+            return (Map.Entry<byte[], byte[]>) new AbstractMap.SimpleImmutableEntry<>(KeyGenerator.key(id), value);
+        }).iterator();
+    }
+
+    /**
+     * Gets a random loaded id per record, split between the readers, and returns the nanoseconds it took.
+     */
+    private long read(int readers, LongPredicate get) throws InterruptedException {
+        long start = System.nanoTime();
+        parallel(readers, reader -> {
+            SplittableRandom random = new SplittableRandom(seed + reader);
+            for (int i = reader; i < ids.length; i += readers) {
+                long id = ids[random.nextInt(ids.length)];
+                if (!get.test(id)) {
+                    throw new IllegalStateException("Record " + id + " is missing");
+                }
+            }
+        });
+        return System.nanoTime() - start;
+    }
+
+    private static void parallel(int threads, IntConsumer task) throws InterruptedException {
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> task.accept(thread)));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("MapDB benchmark thread failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
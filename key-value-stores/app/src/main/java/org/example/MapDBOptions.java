@@ -0,0 +1,42 @@
+package org.example;
+
+/**
+ * How {@link MapDBStore} lays out its map and when it commits, MapDB's counterpart of {@link StoreOptions}.
+ *
+ * @param hash         an {@code HTreeMap} instead of the {@code BTreeMap}: no key order, so no scans, but its
+ *                     segments take concurrent writers
+ * @param segments     hash segments, each one with its own lock, and the store's lock striping; a power of two
+ * @param transactions a write-ahead log ({@code transactionEnable()}), writes are durable and atomic at each commit
+ *                     instead of only after a clean close
+ * @param commitEvery  commit every that many writes, 0 for only on {@link KeyValueStore#flush()} and close; without
+ *                     transactions a commit syncs the file
+ */
+public record MapDBOptions(boolean hash, int segments, boolean transactions, int commitEvery) {
+
+    public static final MapDBOptions DEFAULT = new MapDBOptions(false, 8, false, 0);
+
+    public MapDBOptions {
+        if (segments < 1 || Integer.bitCount(segments) != 1) {
+            throw new IllegalArgumentException("Segments must be a power of two: " + segments);
+        }
+        if (commitEvery < 0) {
+            throw new IllegalArgumentException("Negative commit interval in " + this);
+        }
+    }
+
+    public MapDBOptions withHash(boolean hash) {
+        return new MapDBOptions(hash, segments, transactions, commitEvery);
+    }
+
+    public MapDBOptions withSegments(int segments) {
+        return new MapDBOptions(hash, segments, transactions, commitEvery);
+    }
+
+    public MapDBOptions withTransactions(boolean transactions) {
+        return new MapDBOptions(hash, segments, transactions, commitEvery);
+    }
+
+    public MapDBOptions withCommitEvery(int commitEvery) {
+        return new MapDBOptions(hash, segments, transactions, commitEvery);
+    }
+}
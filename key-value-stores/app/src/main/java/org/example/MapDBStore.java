@@ -0,0 +1,310 @@
+package org.example;
+
+import org.mapdb.BTreeMap;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+import org.mapdb.Serializer;
+import org.mapdb.StoreDirect;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.OptionalLong;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link KeyValueStore} on a memory-mapped MapDB file, keys and values through {@code Serializer.BYTE_ARRAY} rather
+ * than the {@code STRING} of MapDBTest. By default it is a {@code treeMap}, scans need the keys in order, with
+ * transactions off, so writes are durable only after {@link #close()} or {@link #flush()}; {@link MapDBOptions}
+ * switches to a segmented {@code hashMap}, a WAL and periodic commits. There is no WAL for {@link StoreOptions} to
+ * tune.
+ * <p>
+ * {@link #createFrom} builds the tree bottom-up from sorted entries, MapDB's pump, instead of inserting them one by
+ * one, and {@link #snapshot} writes it to an immutable {@link SortedTableStore}.
+ */
+public class MapDBStore implements KeyValueStore {
+
+    private final DB db;
+    private final MapDBOptions options;
+    private final ConcurrentMap<byte[], byte[]> map;
+    // Null for a hash map
+    private final BTreeMap<byte[], byte[]> tree;
+    private final AtomicLong writes = new AtomicLong();
+
+    public MapDBStore(Path directory) {
+        this(directory, MapDBOptions.DEFAULT);
+    }
+
+    public MapDBStore(Path directory, MapDBOptions options) {
+        this(directory, options, null);
+    }
+
+    private MapDBStore(Path directory, MapDBOptions options, Iterator<Map.Entry<byte[], byte[]>> sorted) {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.options = options;
+        DBMaker.Maker maker = DBMaker
+            .fileDB(directory.resolve("store.db").toFile())
+            .fileMmapEnableIfSupported();
+        if (options.hash()) maker = maker.concurrencyScale(options.segments());
+        if (options.transactions()) maker = maker.transactionEnable();
+        this.db = maker.make();
+        if (options.hash()) {
+            HTreeMap<byte[], byte[]> hash = db.hashMap("store", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY)
+                .layout(options.segments(), 16, 4)
+                .createOrOpen();
+            this.map = hash;
+            this.tree = null;
+        } else if (sorted != null) {
+            DB.TreeMapSink<byte[], byte[]> sink = db.treeMap("store", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY)
+                .createFromSink();
+            while (sorted.hasNext()) {
+                Map.Entry<byte[], byte[]> entry = sorted.next();
+                sink.put(entry.getKey(), entry.getValue());
+            }
+            this.tree = sink.create();
+            this.map = tree;
+            db.commit();
+        } else {
+            this.tree = db.treeMap("store", Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY).createOrOpen();
+            this.map = tree;
+        }
+    }
+
+    /**
+     * A new tree store in {@code directory} built from entries in strictly increasing key order, without splitting
+     * nodes or rewriting them as inserts do.
+     */
+    public static MapDBStore createFrom(Path directory, MapDBOptions options,
+                                        Iterator<Map.Entry<byte[], byte[]>> sorted) {
+        if (options.hash()) {
+            throw new IllegalArgumentException("Only a tree can be built from sorted entries");
+        }
+        return new MapDBStore(directory, options, sorted);
+    }
+
+    /**
+     * Writes every entry, in key order, to a new immutable {@link SortedTableStore} in {@code file}. Not atomic:
+     * concurrent writes may or may not be in it.
+     */
+    public SortedTableStore snapshot(Path file) {
+        return SortedTableStore.create(file, tree().entrySet().iterator());
+    }
+
+    @Override
+    public String name() {
+        return "mapdb" + (options.hash() ? "-hash" + options.segments() : "") + (options.transactions() ? "-tx" : "");
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        map.put(key, value);
+        wrote(1);
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        return map.get(key);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        map.remove(key);
+        wrote(1);
+    }
+
+    /**
+     * Commits when the writes cross a multiple of {@link MapDBOptions#commitEvery()}, on the writer's thread.
+     */
+    private void wrote(int count) {
+        int every = options.commitEvery();
+        if (every == 0) return;
+        long total = writes.addAndGet(count);
+        if (total / every != (total - count) / every) {
+            db.commit();
+        }
+    }
+
+    private BTreeMap<byte[], byte[]> tree() {
+        if (tree == null) {
+            throw new UnsupportedOperationException(name() + " has no key order");
+        }
+        return tree;
+    }
+
+    @Override
+    public int scan(byte[] from, int limit, BiConsumer<byte[], byte[]> visitor) {
+        int count = 0;
+        for (Map.Entry<byte[], byte[]> entry : tree().tailMap(from, true).entrySet()) {
+            if (count == limit) break;
+            visitor.accept(entry.getKey(), entry.getValue());
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int rangeScan(byte[] from, byte[] to, BiConsumer<byte[], byte[]> visitor) {
+        return visit(tree().subMap(from, true, to, false), visitor);
+    }
+
+    @Override
+    public int prefixScan(byte[] prefix, BiConsumer<byte[], byte[]> visitor) {
+        return visit(tree().prefixSubMap(prefix), visitor);
+    }
+
+    @Override
+    public Cursor cursor(byte[] prefix) {
+        return new MapCursor(tree());
+    }
+
+    static int visit(Map<byte[], byte[]> entries, BiConsumer<byte[], byte[]> visitor) {
+        int count = 0;
+        for (Map.Entry<byte[], byte[]> entry : entries.entrySet()) {
+            visitor.accept(entry.getKey(), entry.getValue());
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public Batch batch() {
+        return new MapBatch();
+    }
+
+    @Override
+    public void write(Batch batch) {
+        MapBatch puts = (MapBatch) batch;
+        for (int i = 0; i < puts.keys.size(); i++) {
+            map.put(puts.keys.get(i), puts.values.get(i));
+        }
+        wrote(puts.keys.size());
+    }
+
+    /**
+     * Commits only with transactions, without them there is no WAL and a commit syncs the whole file.
+     */
+    @Override
+    public void syncWal() {
+        if (options.transactions()) db.commit();
+    }
+
+    /**
+     * Commits, with or without transactions: the file is synced either way.
+     */
+    @Override
+    public void flush() {
+        db.commit();
+    }
+
+    /**
+     * "mapdb.total-size" and "mapdb.free-size", the bytes the store file takes and how many of them are free
+     * records.
+     */
+    @Override
+    public OptionalLong property(String name) {
+        if (db.getStore() instanceof StoreDirect store) {
+            switch (name) {
+                case "mapdb.total-size":
+                    return OptionalLong.of(store.getTotalSize());
+                case "mapdb.free-size":
+                    return OptionalLong.of(store.getFreeSize());
+            }
+        }
+        return OptionalLong.empty();
+    }
+
+    @Override
+    public void close() {
+        // Closing doesn't commit, uncommitted writes would be rolled back
+        if (options.transactions()) db.commit();
+        db.close();
+    }
+
+    /**
+     * A cursor on a sorted map, each seek iterates a new tail map.
+     */
+    static class MapCursor implements Cursor {
+
+        private final NavigableMap<byte[], byte[]> map;
+        private Iterator<Map.Entry<byte[], byte[]>> entries;
+        private Map.Entry<byte[], byte[]> entry;
+
+        MapCursor(NavigableMap<byte[], byte[]> map) {
+            this.map = map;
+        }
+
+        @Override
+        public void seek(byte[] key) {
+            entries = map.tailMap(key, true).entrySet().iterator();
+            next();
+        }
+
+        @Override
+        public boolean isValid() {
+            return entry != null;
+        }
+
+        @Override
+        public byte[] key() {
+            return entry.getKey();
+        }
+
+        @Override
+        public byte[] value() {
+            return entry.getValue();
+        }
+
+        @Override
+        public void next() {
+            entry = entries.hasNext() ? entries.next() : null;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * MapDB has no write batches, the puts are kept (copied) and applied one by one.
+     */
+    private static class MapBatch implements Batch {
+
+        final List<byte[]> keys = new ArrayList<>();
+        final List<byte[]> values = new ArrayList<>();
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            keys.add(key.clone());
+            values.add(value.clone());
+        }
+
+        @Override
+        public int count() {
+            return keys.size();
+        }
+
+        @Override
+        public void clear() {
+            keys.clear();
+            values.clear();
+        }
+
+        @Override
+        public void close() {
+            clear();
+        }
+    }
+}
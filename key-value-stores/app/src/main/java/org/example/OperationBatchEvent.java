@@ -0,0 +1,88 @@
+package org.example;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * JFR event for {@value #SIZE} operations of one {@link WorkloadDriver} thread, so a recording shows the store's
+ * throughput and worst latencies next to GC pauses, safepoints and the threads' native time. Like every custom event
+ * it's on in any recording, e.g. {@code -XX:StartFlightRecording:filename=run.jfr}, and costs a few field updates per
+ * operation when no recording runs.
+ */
+@Name("org.example.OperationBatch")
+@Label("Operation Batch")
+@Category("Key-Value Stores")
+@Description("Operations run by one workload thread")
+@StackTrace(false)
+class OperationBatchEvent extends Event {
+
+    static final int SIZE = 1024;
+
+    @Label("Store")
+    String store;
+
+    @Label("Phase")
+    @Description("load, the workload name or the replayed workload")
+    String phase;
+
+    @Label("Operations")
+    int operations;
+
+    @Label("Total Latency")
+    @Description("Sum of the operations' latencies, the rest of the duration went to generating keys and values")
+    @Timespan
+    long totalLatency;
+
+    @Label("Max Latency")
+    @Timespan
+    long maxLatency;
+
+    /**
+     * The event of one thread, committed every {@link #SIZE} operations.
+     */
+    static final class Batches {
+
+        private final String store;
+        private final String phase;
+        private OperationBatchEvent event;
+
+        Batches(String store, String phase) {
+            this.store = store;
+            this.phase = phase;
+        }
+
+        void record(long latency) {
+            if (event == null) {
+                event = new OperationBatchEvent();
+                event.begin();
+            }
+            event.operations++;
+            event.totalLatency += latency;
+            event.maxLatency = Math.max(event.maxLatency, latency);
+            if (event.operations == SIZE) {
+                commit();
+            }
+        }
+
+        /**
+         * Commits the operations recorded so far, if any.
+         */
+        void commit() {
+            if (event == null) {
+                return;
+            }
+            event.end();
+            if (event.shouldCommit()) {
+                event.store = store;
+                event.phase = phase;
+                event.commit();
+            }
+            event = null;
+        }
+    }
+}
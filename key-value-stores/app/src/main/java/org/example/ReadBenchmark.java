@@ -0,0 +1,174 @@
+package org.example;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The read path on its own: point gets, multiGet, prefix scans and range scans over a loaded and flushed store, each
+ * one cold, right after reopening the store with an empty block cache, then warm, running again on the same store.
+ * Only the block cache starts cold, the files stay in the OS page cache.
+ * <p>
+ * Keys follow a {@link KeyDistribution}. A multiGet asks for {@code batchSize} keys, a range scan reads
+ * {@code batchSize} consecutive keys and a prefix scan every key sharing the first {@code prefixLength} bytes of a
+ * key, 13 bytes by default, which is 1000 keys.
+ */
+public class ReadBenchmark {
+
+    static final int DEFAULT_PREFIX_LENGTH = KeyGenerator.KEY_SIZE - 3;
+
+    public enum Read {
+        GET, MULTI_GET, PREFIX_SCAN, RANGE_SCAN
+    }
+
+    /**
+     * @param keys keys read, more than operations for multiGet and scans
+     */
+    public record Result(String store, Read read, boolean warm, int threads, long operations, long keys, long nanos,
+                         Histogram latency) {
+
+        public double opsPerSecond() {
+            return operations * 1e9 / nanos;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%-8s %-12s %-4s %3d threads  %10.0f ops/s  %11.0f keys/s  p50 %8.1f us  p99 %8.1f us  "
+                    + "p999 %8.1f us%n",
+                store, read, warm ? "warm" : "cold", threads, opsPerSecond(), keys * 1e9 / nanos,
+                latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(99) / 1e3,
+                latency.getValueAtPercentile(99.9) / 1e3);
+        }
+    }
+
+    private final StoreBackend backend;
+    private final StoreOptions options;
+    private final Path directory;
+    private final KeyDistribution distribution;
+    private final int batchSize;
+    private final int prefixLength;
+    private final long seed;
+    private long records;
+    private int valueSize;
+
+    public ReadBenchmark(StoreBackend backend, StoreOptions options, Path directory, KeyDistribution distribution,
+                         int batchSize, long seed) {
+        this.backend = backend;
+        this.options = options;
+        this.directory = directory;
+        this.distribution = distribution;
+        this.batchSize = batchSize;
+        this.prefixLength = options.prefixLength() > 0 ? options.prefixLength() : DEFAULT_PREFIX_LENGTH;
+        this.seed = seed;
+    }
+
+    /**
+     * Loads the workload's records and flushes them to files.
+     */
+    public Report load(Workload workload) {
+        try (KeyValueStore store = backend.open(directory, options)) {
+            Report report = new WorkloadDriver(store, workload, seed).load();
+            store.flush();
+            records = workload.records();
+            valueSize = workload.valueSize();
+            return report;
+        }
+    }
+
+    /**
+     * Reopens the store and runs the read for the given time cold, then again warm.
+     */
+    public List<Result> run(Read read, int threads, Duration duration) throws InterruptedException {
+        if (records == 0) {
+            throw new IllegalStateException("Load the store first");
+        }
+        try (KeyValueStore store = backend.open(directory, options)) {
+            ZipfianGenerator zipfian = distribution == KeyDistribution.ZIPFIAN || distribution == KeyDistribution.LATEST
+                ? new ZipfianGenerator(records) : null;
+            Result cold = run(store, zipfian, read, false, threads, duration);
+            Result warm = run(store, zipfian, read, true, threads, duration);
+            return List.of(cold, warm);
+        }
+    }
+
+    private Result run(KeyValueStore store, ZipfianGenerator zipfian, Read read, boolean warm, int threads,
+                       Duration duration) throws InterruptedException {
+        Recorder recorder = new Recorder(WorkloadDriver.HIGHEST_LATENCY, 3);
+        LongAdder keysRead = new LongAdder();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            // Warm runs ask for other keys than the cold ones, the cache is warm, not primed with these exact keys
+            KeyGenerator keys = new KeyGenerator(distribution, seed + (warm ? threads : 0) + t + 1, zipfian);
+            futures.add(executor.submit(() -> keysRead.add(reads(store, keys, read, recorder, deadline))));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(read + " failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        long nanos = System.nanoTime() - start;
+        Histogram latency = recorder.getIntervalHistogram();
+        return new Result(store.name(), read, warm, threads, latency.getTotalCount(), keysRead.sum(), nanos, latency);
+    }
+
+    private long reads(KeyValueStore store, KeyGenerator keys, Read read, Recorder recorder, long deadline) {
+        byte[] key = new byte[KeyGenerator.KEY_SIZE];
+        // Point gets copy into it, a get doesn't allocate a value
+        byte[] into = new byte[valueSize];
+        byte[] to = new byte[KeyGenerator.KEY_SIZE];
+        byte[] prefix = new byte[prefixLength];
+        List<byte[]> batch = new ArrayList<>();
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(new byte[KeyGenerator.KEY_SIZE]);
+        }
+        long keysRead = 0;
+        long now = System.nanoTime();
+        while (now < deadline) {
+            long id = keys.nextKey(records, key, 0);
+            switch (read) {
+                case MULTI_GET -> {
+                    System.arraycopy(key, 0, batch.get(0), 0, key.length);
+                    for (int i = 1; i < batchSize; i++) keys.nextKey(records, batch.get(i), 0);
+                }
+                case PREFIX_SCAN -> System.arraycopy(key, 0, prefix, 0, prefixLength);
+                case RANGE_SCAN -> KeyGenerator.write(id + batchSize, to, 0);
+                case GET -> { }
+            }
+
+            long begin = System.nanoTime();
+            List<byte[]> values = null;
+            int found = 0;
+            switch (read) {
+                case GET -> found = store.get(key, into) < 0 ? 0 : 1;
+                case MULTI_GET -> values = store.multiGet(batch);
+                case PREFIX_SCAN -> found = store.prefixScan(prefix, (k, v) -> { });
+                case RANGE_SCAN -> found = store.rangeScan(key, to, (k, v) -> { });
+            }
+            now = System.nanoTime();
+            recorder.recordValue(now - begin);
+            if (values != null) {
+                for (byte[] value : values) {
+                    if (value != null) found++;
+                }
+            }
+            keysRead += found;
+        }
+        return keysRead;
+    }
+}
@@ -0,0 +1,371 @@
+package org.example;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Restart after a crash: {@link #crash} runs a writer in its own JVM that loads the records, flushes them, then
+ * overwrites random ones until the WAL holds the given unflushed bytes, and kills it with SIGKILL while it is still
+ * writing. Each {@link #run} copies the crashed DB and times opening it, the WAL replay, then the {@link Prewarm}
+ * stage, then zipfian gets cut into intervals until their p99 settles.
+ * <p>
+ * Steady state is the p99 of the last quarter of the run; the store is steady from the first of
+ * {@value #STEADY_INTERVALS} consecutive intervals whose p99 is within {@value #STEADY_TOLERANCE} times that.
+ * Time to steady state counts from the open, so a prewarm pays for itself only when it saves more than it takes.
+ * Last, the store is closed cleanly and reopened, an open with no WAL to replay to compare against.
+ * <p>
+ * The memtable is sized to hold the whole WAL, so nothing is flushed before the crash. The files stay in the OS page
+ * cache, only the block cache starts cold, like {@link ReadBenchmark}.
+ */
+public class RecoveryBenchmark {
+
+    static final int STEADY_INTERVALS = 3;
+    static final double STEADY_TOLERANCE = 1.2;
+    // What the writer prints once the WAL is big enough, right before it is killed
+    private static final String CRASH = "crash";
+    private static final int BATCH = 1_000;
+
+    /**
+     * What recovery can be tuned with.
+     *
+     * @param avoidFlushDuringRecovery keep the replayed writes in the memtable instead of flushing them to L0 files
+     *                                 during the open ({@code avoid_flush_during_recovery})
+     * @param fileOpeningThreads       threads opening the SST files during the open, only when they are all opened
+     *                                 ({@code max_file_opening_threads})
+     * @param maxOpenFiles             files kept open, -1 opens them all during the open ({@code max_open_files})
+     */
+    public record Settings(boolean avoidFlushDuringRecovery, int fileOpeningThreads, int maxOpenFiles) {
+
+        public static final Settings DEFAULT = new Settings(false, 16, -1);
+
+        public Settings {
+            if (fileOpeningThreads < 1 || maxOpenFiles == 0 || maxOpenFiles < -1) {
+                throw new IllegalArgumentException("Invalid settings " + fileOpeningThreads + " threads, "
+                    + maxOpenFiles + " open files");
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (avoidFlushDuringRecovery ? "no-flush" : "flush") + " " + fileOpeningThreads + " threads "
+                + (maxOpenFiles < 0 ? "all" : maxOpenFiles) + " open";
+        }
+    }
+
+    /**
+     * What is loaded into the block cache between the open and the traffic.
+     */
+    public enum Prewarm {
+        NONE,
+        /**
+         * The index and filter blocks of every SST file, see {@link KeyValueStore#prewarmIndexAndFilters()}.
+         */
+        INDEX_AND_FILTERS,
+        /**
+         * The index and filter blocks, then the hottest keys, which loads the data blocks around them.
+         */
+        HOT_KEYS
+    }
+
+    /**
+     * @param walBytes            WAL bytes left by the writer
+     * @param intervals           get latencies of each interval of the traffic
+     * @param steadyNanos         from the start of the traffic to steady state, -1 if it never settled
+     * @param reopenNanos         opening again after a clean close
+     * @param prewarmedFiles      the SST files {@link KeyValueStore#prewarmIndexAndFilters()} sought, 0 without it
+     * @param prewarmedCacheBytes what that added to the block cache, before any hot key is read
+     */
+    public record Result(String store, Settings settings, Prewarm prewarm, long walBytes, long recoveryNanos,
+                         long prewarmNanos, List<Histogram> intervals, long intervalNanos, long steadyP99,
+                         long steadyNanos, long reopenNanos, int prewarmedFiles, long prewarmedCacheBytes) {
+
+        /**
+         * From the open to steady state, -1 if it never settled.
+         */
+        public long timeToSteadyNanos() {
+            return steadyNanos < 0 ? -1 : recoveryNanos + prewarmNanos + steadyNanos;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%-8s %-28s %-17s WAL %7.1f MB: recovery %8.1f ms, prewarm %8.1f ms, steady p99 %8.1f us "
+                    + "after %8.1f ms, clean reopen %8.1f ms%n",
+                store, settings, prewarm, walBytes / 1e6, recoveryNanos / 1e6, prewarmNanos / 1e6, steadyP99 / 1e3,
+                timeToSteadyNanos() / 1e6, reopenNanos / 1e6);
+            StringBuilder p99s = new StringBuilder();
+            for (Histogram interval : intervals) {
+                p99s.append(String.format(" %.0f", interval.getValueAtPercentile(99) / 1e3));
+            }
+            out.printf("%8s p99 us every %d ms:%s%n", "", intervalNanos / 1_000_000, p99s);
+        }
+    }
+
+    private final StoreBackend backend;
+    private final StoreOptions options;
+    private final Path directory;
+    private final long records;
+    private final ValueGenerator values;
+    private final long hotKeys;
+    private final long seed;
+    private int runs;
+
+    /**
+     * @param hotKeys the most popular keys {@link Prewarm#HOT_KEYS} reads
+     */
+    public RecoveryBenchmark(StoreBackend backend, StoreOptions options, Path directory, long records, int valueSize,
+                             long hotKeys, long seed) {
+        if (backend == StoreBackend.MAPDB) {
+            throw new IllegalArgumentException("MapDB has no WAL to recover");
+        }
+        this.backend = backend;
+        this.options = options;
+        this.directory = directory;
+        this.records = records;
+        this.values = new ValueGenerator(valueSize, 0.5, seed);
+        this.hotKeys = hotKeys;
+        this.seed = seed;
+    }
+
+    /**
+     * Runs the writer until the WAL holds {@code walBytes} and kills it, returns the crashed DB's directory.
+     */
+    public Path crash(long walBytes) throws IOException, InterruptedException {
+        Path crashed = directory.resolve("crashed-" + runs++);
+        // The same JVM and classpath, with the preview features the build enables
+        List<String> command = List.of(Path.of(System.getProperty("java.home"), "bin", "java").toString(),
+            "--enable-preview", "-cp", System.getProperty("java.class.path"), RecoveryBenchmark.class.getName(),
+            backend.name(), crashed.toString(), Long.toString(records), Integer.toString(values.size()),
+            Long.toString(seed), Long.toString(walBytes), Double.toString(options.bloomBitsPerKey()),
+            Integer.toString(options.prefixLength()));
+        Process writer = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+        try (BufferedReader output = new BufferedReader(new InputStreamReader(writer.getInputStream(),
+            StandardCharsets.UTF_8))) {
+            String line;
+            do {
+                line = output.readLine();
+            } while (line != null && !line.equals(CRASH));
+            if (line == null) {
+                throw new IllegalStateException("The writer exited with " + writer.waitFor() + " before the crash");
+            }
+        } finally {
+            // SIGKILL, the WAL is left as the writer was appending to it
+            writer.destroyForcibly();
+            writer.waitFor();
+        }
+        return crashed;
+    }
+
+    /**
+     * Recovers a copy of the crashed DB with the settings, prewarms it and runs zipfian gets on {@code threads}
+     * threads for the given time.
+     */
+    public Result run(Path crashed, Settings settings, Prewarm prewarm, int threads, Duration duration,
+                      Duration interval) throws InterruptedException {
+        Path copy = directory.resolve("run-" + runs++);
+        IOUtils.copyDirectory(crashed, copy);
+        long walBytes = walBytes(copy);
+
+        long start = System.nanoTime();
+        KeyValueStore store = open(backend, copy, options, settings, walBytes);
+        long recoveryNanos = System.nanoTime() - start;
+        List<Histogram> intervals;
+        long prewarmNanos;
+        int prewarmedFiles = 0;
+        long prewarmedCacheBytes = 0;
+        try {
+            start = System.nanoTime();
+            if (prewarm != Prewarm.NONE) {
+                long cacheBytes = store.property("rocksdb.block-cache-usage").orElse(0);
+                prewarmedFiles = store.prewarmIndexAndFilters();
+                prewarmedCacheBytes = store.property("rocksdb.block-cache-usage").orElse(0) - cacheBytes;
+            }
+            if (prewarm == Prewarm.HOT_KEYS) readHotKeys(store);
+            prewarmNanos = System.nanoTime() - start;
+            intervals = traffic(store, threads, duration, interval);
+        } finally {
+            store.close();
+        }
+
+        start = System.nanoTime();
+        open(backend, copy, options, settings, walBytes).close();
+        long reopenNanos = System.nanoTime() - start;
+
+        Histogram steady = new Histogram(WorkloadDriver.HIGHEST_LATENCY, 3);
+        for (Histogram last : intervals.subList(intervals.size() - Math.max(1, intervals.size() / 4),
+            intervals.size())) {
+            steady.add(last);
+        }
+        long steadyP99 = steady.getValueAtPercentile(99);
+        return new Result(store.name(), settings, prewarm, walBytes, recoveryNanos, prewarmNanos, intervals,
+            interval.toNanos(), steadyP99, steadyNanos(intervals, steadyP99, interval.toNanos()), reopenNanos,
+            prewarmedFiles, prewarmedCacheBytes);
+    }
+
+    private void readHotKeys(KeyValueStore store) {
+        List<byte[]> batch = new ArrayList<>();
+        for (long rank = 0; rank < Math.min(hotKeys, records); rank++) {
+            batch.add(KeyGenerator.key(KeyGenerator.zipfianId(rank, records)));
+            if (batch.size() == BATCH) {
+                store.multiGet(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) store.multiGet(batch);
+    }
+
+    private List<Histogram> traffic(KeyValueStore store, int threads, Duration duration, Duration interval)
+        throws InterruptedException {
+        if (duration.compareTo(interval) < 0) {
+            throw new IllegalArgumentException("The run " + duration + " is shorter than an interval " + interval);
+        }
+        Recorder recorder = new Recorder(WorkloadDriver.HIGHEST_LATENCY, 3);
+        ZipfianGenerator zipfian = new ZipfianGenerator(records);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            KeyGenerator keys = new KeyGenerator(KeyDistribution.ZIPFIAN, seed + t + 1, zipfian);
+            futures.add(executor.submit(() -> {
+                byte[] key = new byte[KeyGenerator.KEY_SIZE];
+                for (long now = System.nanoTime(); now < deadline; ) {
+                    keys.nextKey(records, key, 0);
+                    store.get(key);
+                    long end = System.nanoTime();
+                    recorder.recordValue(end - now);
+                    now = end;
+                }
+            }));
+        }
+        // A partial last interval is dropped
+        List<Histogram> intervals = new ArrayList<>();
+        try {
+            for (long next = start + interval.toNanos(); next <= deadline; next += interval.toNanos()) {
+                TimeUnit.NANOSECONDS.sleep(next - System.nanoTime());
+                intervals.add(recorder.getIntervalHistogram());
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Gets failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        return intervals;
+    }
+
+    static long steadyNanos(List<Histogram> intervals, long steadyP99, long intervalNanos) {
+        int settled = 0;
+        for (int i = 0; i < intervals.size(); i++) {
+            settled = intervals.get(i).getValueAtPercentile(99) <= steadyP99 * STEADY_TOLERANCE ? settled + 1 : 0;
+            if (settled == Math.min(STEADY_INTERVALS, intervals.size())) {
+                return (i + 1 - settled) * intervalNanos;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Bytes of the DB's WAL files.
+     */
+    static long walBytes(Path db) {
+        try (Stream<Path> files = Files.list(db)) {
+            long bytes = 0;
+            for (Path file : files.filter(file -> file.getFileName().toString().endsWith(".log")).toList()) {
+                bytes += Files.size(file);
+            }
+            return bytes;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Can't list " + db, e);
+        }
+    }
+
+    /**
+     * The store with the recovery settings, and a memtable big enough for the WAL.
+     */
+    private static KeyValueStore open(StoreBackend backend, Path db, StoreOptions options, Settings settings,
+                                      long walBytes) {
+        long writeBufferBytes = Math.max(64 << 20, 2 * walBytes);
+        return switch (backend) {
+            case ROCKSDB -> new RocksDBStore(db, options, 1, rocks -> rocks.setWriteBufferSize(writeBufferBytes)
+                .setAvoidFlushDuringRecovery(settings.avoidFlushDuringRecovery())
+                .setMaxFileOpeningThreads(settings.fileOpeningThreads()).setMaxOpenFiles(settings.maxOpenFiles()));
+            case FORST -> new ForStStore(db, options, 1, forst -> forst.setWriteBufferSize(writeBufferBytes)
+                .setAvoidFlushDuringRecovery(settings.avoidFlushDuringRecovery())
+                .setMaxFileOpeningThreads(settings.fileOpeningThreads()).setMaxOpenFiles(settings.maxOpenFiles()));
+            case MAPDB -> throw new IllegalArgumentException("MapDB has no WAL to recover");
+        };
+    }
+
+    /**
+     * The writer {@link #crash} starts: loads ids 0 to records - 1 and flushes them with default options, then
+     * reopens with a memtable that holds the WAL and overwrites random ids. Once the WAL is big enough it prints
+     * "crash" and keeps writing until it is killed, or until its parent is gone.
+     * <p>
+     * Arguments are the {@link StoreBackend}, the directory, records, value size, seed, WAL bytes, bloom bits per key
+     * and prefix length, the last two so that the files match the benchmark's {@link StoreOptions}.
+     */
+    public static void main(String[] args) {
+        StoreBackend backend = StoreBackend.valueOf(args[0]);
+        Path db = Path.of(args[1]);
+        long records = Long.parseLong(args[2]);
+        ValueGenerator values = new ValueGenerator(Integer.parseInt(args[3]), 0.5, Long.parseLong(args[4]));
+        SplittableRandom random = new SplittableRandom(Long.parseLong(args[4]));
+        long walBytes = Long.parseLong(args[5]);
+        StoreOptions options = StoreOptions.DEFAULT.withBloomBitsPerKey(Double.parseDouble(args[6]))
+            .withPrefixLength(Integer.parseInt(args[7]));
+
+        byte[] key = new byte[KeyGenerator.KEY_SIZE];
+        byte[] value = new byte[values.size()];
+        try (KeyValueStore store = backend.open(db, options); KeyValueStore.Batch batch = store.batch()) {
+            for (long id = 0; id < records; id++) {
+                KeyGenerator.write(id, key, 0);
+                values.forId(id, value, 0);
+                batch.put(key, value);
+                if (batch.count() == BATCH) {
+                    store.write(batch);
+                    batch.clear();
+                }
+            }
+            if (batch.count() > 0) store.write(batch);
+            store.flush();
+        }
+
+        // Never closed, the process dies with it
+        KeyValueStore store = open(backend, db, options, Settings.DEFAULT, walBytes);
+        boolean crashed = false;
+        for (long puts = 1; ; puts++) {
+            KeyGenerator.write(random.nextLong(records), key, 0);
+            values.next(random, value, 0);
+            store.put(key, value);
+            if (puts % BATCH != 0) continue;
+            if (!crashed && walBytes(db) >= walBytes) {
+                System.out.println(CRASH);
+                System.out.flush();
+                crashed = true;
+            }
+            if (ProcessHandle.current().parent().map(parent -> !parent.isAlive()).orElse(true)) {
+                Runtime.getRuntime().halt(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package org.example;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.PrintStream;
+import java.util.Map;
+
+/**
+ * Throughput and latency percentiles of a {@link WorkloadDriver} phase, latencies in nanoseconds.
+ */
+public record Report(String store, String workload, int threads, long nanos,
+                     Map<Workload.Operation, Histogram> histograms) {
+
+    public long operations() {
+        return histograms.values().stream().mapToLong(Histogram::getTotalCount).sum();
+    }
+
+    public double opsPerSecond() {
+        return operations() * 1e9 / nanos;
+    }
+
+    public void print(PrintStream out) {
+        out.printf("%s workload %s, %d threads: %d ops in %d ms, %.0f ops/s%n",
+            store, workload, threads, operations(), nanos / 1_000_000, opsPerSecond());
+        histograms.forEach((operation, histogram) -> {
+            if (histogram.getTotalCount() == 0) return;
+            out.printf("  %-6s %10d ops  p50 %8.1f us  p99 %8.1f us  p999 %8.1f us  max %8.1f us%n",
+                operation, histogram.getTotalCount(),
+                histogram.getValueAtPercentile(50) / 1e3, histogram.getValueAtPercentile(99) / 1e3,
+                histogram.getValueAtPercentile(99.9) / 1e3, histogram.getMaxValue() / 1e3);
+        });
+    }
+}
@@ -0,0 +1,92 @@
+package org.example;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * When {@link TransactionExecutor} retries a transaction that hit a conflict, and when it gives up.
+ */
+public interface RetryPolicy {
+
+    /**
+     * How long to wait before the next attempt after {@code attempts} failed ones, in nanoseconds, or -1 to give up.
+     */
+    long backoffNanos(int attempts);
+
+    /**
+     * Fails on the first conflict.
+     */
+    static RetryPolicy never() {
+        return new Immediate(1);
+    }
+
+    static RetryPolicy immediate(int maxAttempts) {
+        return new Immediate(maxAttempts);
+    }
+
+    static RetryPolicy exponential(int maxAttempts, Duration base, Duration max) {
+        return new Exponential(maxAttempts, base, max);
+    }
+
+    /**
+     * "never", "immediate" or "exponential", the last two with up to {@code maxAttempts} attempts, exponential from
+     * 10 us to 10 ms.
+     */
+    static RetryPolicy of(String name, int maxAttempts) {
+        return switch (name) {
+            case "never" -> never();
+            case "immediate" -> immediate(maxAttempts);
+            case "exponential" -> exponential(maxAttempts, Duration.ofNanos(10_000), Duration.ofMillis(10));
+            default -> throw new IllegalArgumentException("Unknown retry policy " + name);
+        };
+    }
+
+    /**
+     * Retries right away, the transaction races the same writers again.
+     */
+    record Immediate(int maxAttempts) implements RetryPolicy {
+
+        public Immediate {
+            if (maxAttempts < 1) {
+                throw new IllegalArgumentException("At least one attempt: " + maxAttempts);
+            }
+        }
+
+        @Override
+        public long backoffNanos(int attempts) {
+            return attempts < maxAttempts ? 0 : -1;
+        }
+
+        @Override
+        public String toString() {
+            return maxAttempts == 1 ? "never" : "immediate, " + maxAttempts + " attempts";
+        }
+    }
+
+    /**
+     * Waits a random time up to {@code base * 2^(attempts - 1)}, capped at {@code max}: full jitter, so the
+     * transactions that collided don't collide again at the same time.
+     */
+    record Exponential(int maxAttempts, Duration base, Duration max) implements RetryPolicy {
+
+        public Exponential {
+            if (maxAttempts < 1 || base.isNegative() || base.isZero() || max.compareTo(base) < 0) {
+                throw new IllegalArgumentException("Invalid exponential backoff " + maxAttempts + ", " + base + ", "
+                    + max);
+            }
+        }
+
+        @Override
+        public long backoffNanos(int attempts) {
+            if (attempts >= maxAttempts) return -1;
+            long ceiling = base.toNanos() << Math.min(attempts - 1, 30);
+            return ThreadLocalRandom.current().nextLong(Math.min(ceiling, max.toNanos()) + 1);
+        }
+
+        @Override
+        public String toString() {
+            return "exponential " + base.toNanos() / 1_000 + " to " + max.toNanos() / 1_000 + " us, " + maxAttempts
+                + " attempts";
+        }
+    }
+}
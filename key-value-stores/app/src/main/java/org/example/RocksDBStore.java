@@ -0,0 +1,619 @@
+package org.example;
+
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.Checkpoint;
+import org.rocksdb.ColumnFamilyDescriptor;
+import org.rocksdb.ColumnFamilyHandle;
+import org.rocksdb.ColumnFamilyOptions;
+import org.rocksdb.DBOptions;
+import org.rocksdb.EnvOptions;
+import org.rocksdb.Filter;
+import org.rocksdb.FlushOptions;
+import org.rocksdb.HistogramData;
+import org.rocksdb.HistogramType;
+import org.rocksdb.IngestExternalFileOptions;
+import org.rocksdb.LRUCache;
+import org.rocksdb.LiveFileMetaData;
+import org.rocksdb.Options;
+import org.rocksdb.ReadOptions;
+import org.rocksdb.RocksDB;
+import org.rocksdb.RocksDBException;
+import org.rocksdb.RocksIterator;
+import org.rocksdb.SstFileWriter;
+import org.rocksdb.Statistics;
+import org.rocksdb.TickerType;
+import org.rocksdb.WriteBatch;
+import org.rocksdb.WriteOptions;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+
+/**
+ * {@link KeyValueStore} on a plain RocksDB, default options but for the {@link StoreOptions}. Unlike RockDBTest it
+ * doesn't go through OptimisticTransactionDB, every put is its own write. {@link ForStStore} is the same on ForSt.
+ * <p>
+ * Opened with several column families, {@link #columnFamilies()} gives a store for each one: they share the WAL, the
+ * block cache and the background threads, but each has its own memtables and SST files.
+ */
+public class RocksDBStore implements KeyValueStore {
+
+    static {
+        RocksDB.loadLibrary();
+    }
+
+    // What statistics() exports: cache and bloom hits, stalls, flush and compaction traffic, then the latencies
+    private static final TickerType[] TICKERS = {TickerType.BLOCK_CACHE_HIT, TickerType.BLOCK_CACHE_MISS,
+        TickerType.BLOOM_FILTER_USEFUL, TickerType.MEMTABLE_HIT, TickerType.MEMTABLE_MISS, TickerType.STALL_MICROS,
+        TickerType.BYTES_WRITTEN, TickerType.BYTES_READ, TickerType.FLUSH_WRITE_BYTES, TickerType.COMPACT_READ_BYTES,
+        TickerType.COMPACT_WRITE_BYTES, TickerType.WAL_FILE_SYNCED};
+    private static final HistogramType[] HISTOGRAMS = {HistogramType.DB_GET, HistogramType.DB_WRITE,
+        HistogramType.DB_MULTIGET, HistogramType.DB_SEEK, HistogramType.SST_READ_MICROS, HistogramType.WRITE_STALL,
+        HistogramType.FLUSH_TIME, HistogramType.COMPACTION_TIME, HistogramType.WAL_FILE_SYNC_MICROS};
+    private static final List<String> TICKER_NAMES = Arrays.stream(TICKERS)
+        .map(ticker -> ticker.name().toLowerCase()).toList();
+    private static final List<String> HISTOGRAM_NAMES = Arrays.stream(HISTOGRAMS)
+        .map(histogram -> histogram.name().toLowerCase()).toList();
+    // The sequence number and count in front of a WriteBatch's records
+    private static final int BATCH_HEADER = 12;
+    // The keys of statistics(), in order
+    static final List<String> STATISTICS = StoreStatistics.names(TICKER_NAMES, HISTOGRAM_NAMES);
+
+    private final Options options;
+    // Only with more than one column family, copies of the options
+    private DBOptions dbOptions;
+    private ColumnFamilyOptions columnOptions;
+    private final Statistics statistics;
+    // Shared by the column family stores, each has its own deltas
+    private final StoreStatistics.Totals tickerTotals;
+    private final StoreStatistics deltas;
+    private final Cache blockCache;
+    private final Filter bloomFilter;
+    private final RocksDB db;
+    private final WriteOptions writeOptions;
+    private final ReadOptions readOptions;
+    private final ReadOptions prefixReadOptions;
+    private final int prefixLength;
+    // Every column family of the DB, and the one this store reads and writes; only the owner closes the DB
+    private final List<ColumnFamilyHandle> columns;
+    private final ColumnFamilyHandle column;
+    private final boolean owner;
+
+    public RocksDBStore(Path directory) {
+        this(directory, StoreOptions.DEFAULT);
+    }
+
+    public RocksDBStore(Path directory, StoreOptions storeOptions) {
+        this(directory, storeOptions, 1);
+    }
+
+    /**
+     * Opens (or creates) the default column family and {@code columnFamilies - 1} more, "shard-1" and up, all with
+     * the same options. This store is the default one.
+     */
+    public RocksDBStore(Path directory, StoreOptions storeOptions, int columnFamilies) {
+        this(directory, storeOptions, columnFamilies, options -> {
+        });
+    }
+
+    /**
+     * {@code configure} sets what {@link StoreOptions} has no say in, an Env for instance, before the DB opens.
+     */
+    protected RocksDBStore(Path directory, StoreOptions storeOptions, int columnFamilies,
+        Consumer<Options> configure) {
+        if (columnFamilies < 1) {
+            throw new IllegalArgumentException("Invalid number of column families: " + columnFamilies);
+        }
+        this.writeOptions = new WriteOptions();
+        this.readOptions = new ReadOptions();
+        this.prefixReadOptions = new ReadOptions();
+        this.owner = true;
+        this.options = new Options().setCreateIfMissing(true);
+        this.prefixLength = storeOptions.prefixLength();
+        BlockBasedTableConfig table = new BlockBasedTableConfig();
+        this.blockCache = storeOptions.blockCacheBytes() > 0 ? new LRUCache(storeOptions.blockCacheBytes()) : null;
+        if (blockCache != null) table.setBlockCache(blockCache);
+        this.bloomFilter = storeOptions.bloomBitsPerKey() > 0 ? new BloomFilter(storeOptions.bloomBitsPerKey()) : null;
+        if (bloomFilter != null) table.setFilterPolicy(bloomFilter);
+        table.setCacheIndexAndFilterBlocks(storeOptions.cacheIndexAndFilterBlocks());
+        if (storeOptions.prefixLength() > 0) {
+            options.useFixedLengthPrefixExtractor(storeOptions.prefixLength());
+            // The memtable gets prefix blooms too, 10% of its size
+            options.setMemtablePrefixBloomSizeRatio(0.1);
+        }
+        options.setTableFormatConfig(table);
+        this.statistics = storeOptions.statistics() ? new Statistics() : null;
+        this.tickerTotals = new StoreStatistics.Totals(TICKERS.length);
+        this.deltas = new StoreStatistics(TICKER_NAMES, HISTOGRAM_NAMES, tickerTotals);
+        if (statistics != null) options.setStatistics(statistics);
+
+        writeOptions.setSync(storeOptions.sync()).setDisableWAL(storeOptions.disableWal());
+        for (ReadOptions read : new ReadOptions[]{readOptions, prefixReadOptions}) {
+            read.setFillCache(storeOptions.fillCache())
+                .setReadaheadSize(storeOptions.readaheadBytes())
+                .setPinData(storeOptions.pinData());
+        }
+        // With a prefix extractor, plain iterators must not use the prefix blooms or they'd skip keys across prefixes
+        readOptions.setTotalOrderSeek(storeOptions.prefixLength() > 0);
+        prefixReadOptions.setPrefixSameAsStart(true);
+        configure.accept(options);
+        try {
+            if (columnFamilies == 1) {
+                this.db = RocksDB.open(options, directory.toString());
+                this.columns = List.of(db.getDefaultColumnFamily());
+            } else {
+                List<ColumnFamilyHandle> handles = new ArrayList<>();
+                this.db = openColumnFamilies(directory, columnFamilies, handles);
+                this.columns = List.copyOf(handles);
+            }
+        } catch (RocksDBException e) {
+            closeOptions();
+            throw new IllegalStateException("Can't open RocksDB in " + directory, e);
+        }
+        this.column = columns.get(0);
+    }
+
+    private RocksDBStore(RocksDBStore owner, ColumnFamilyHandle column) {
+        this.options = owner.options;
+        this.dbOptions = owner.dbOptions;
+        this.columnOptions = owner.columnOptions;
+        this.statistics = owner.statistics;
+        this.tickerTotals = owner.tickerTotals;
+        this.deltas = new StoreStatistics(TICKER_NAMES, HISTOGRAM_NAMES, tickerTotals);
+        this.blockCache = owner.blockCache;
+        this.bloomFilter = owner.bloomFilter;
+        this.db = owner.db;
+        this.writeOptions = owner.writeOptions;
+        this.readOptions = owner.readOptions;
+        this.prefixReadOptions = owner.prefixReadOptions;
+        this.prefixLength = owner.prefixLength;
+        this.columns = owner.columns;
+        this.column = column;
+        this.owner = false;
+    }
+
+    private RocksDB openColumnFamilies(Path directory, int columnFamilies, List<ColumnFamilyHandle> handles)
+        throws RocksDBException {
+        // Copied from the Options, table config and prefix extractor included
+        dbOptions = new DBOptions(options).setCreateMissingColumnFamilies(true);
+        columnOptions = new ColumnFamilyOptions(options);
+        List<ColumnFamilyDescriptor> descriptors = new ArrayList<>();
+        descriptors.add(new ColumnFamilyDescriptor(RocksDB.DEFAULT_COLUMN_FAMILY, columnOptions));
+        for (int i = 1; i < columnFamilies; i++) {
+            descriptors.add(new ColumnFamilyDescriptor(("shard-" + i).getBytes(StandardCharsets.UTF_8),
+                columnOptions));
+        }
+        return RocksDB.open(dbOptions, directory.toString(), descriptors, handles);
+    }
+
+    /**
+     * A store for each column family, this one first. They share this store's DB and options, closing this store
+     * closes them all and closing them does nothing.
+     */
+    public List<KeyValueStore> columnFamilies() {
+        List<KeyValueStore> stores = new ArrayList<>(List.of(this));
+        for (ColumnFamilyHandle handle : columns.subList(1, columns.size())) {
+            stores.add(new RocksDBStore(this, handle));
+        }
+        return stores;
+    }
+
+    @Override
+    public String name() {
+        return "rocksdb";
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        try {
+            db.put(column, writeOptions, key, value);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        try {
+            return db.get(column, readOptions, key);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int get(byte[] key, byte[] into) {
+        try {
+            // RocksDB.NOT_FOUND is -1 too
+            return db.get(column, readOptions, key, into);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) {
+        try {
+            return db.multiGetAsList(readOptions, Collections.nCopies(keys.size(), column), keys);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        try {
+            db.delete(column, writeOptions, key);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public int scan(byte[] from, int limit, BiConsumer<byte[], byte[]> visitor) {
+        int count = 0;
+        try (RocksIterator iterator = db.newIterator(column, readOptions)) {
+            for (iterator.seek(from); iterator.isValid() && count < limit; iterator.next()) {
+                visitor.accept(iterator.key(), iterator.value());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int rangeScan(byte[] from, byte[] to, BiConsumer<byte[], byte[]> visitor) {
+        int count = 0;
+        try (RocksIterator iterator = db.newIterator(column, readOptions)) {
+            for (iterator.seek(from); iterator.isValid(); iterator.next()) {
+                byte[] key = iterator.key();
+                if (Arrays.compareUnsigned(key, to) >= 0) break;
+                visitor.accept(key, iterator.value());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int prefixScan(byte[] prefix, BiConsumer<byte[], byte[]> visitor) {
+        int count = 0;
+        try (RocksIterator iterator = db.newIterator(column, readOptions(prefix))) {
+            for (iterator.seek(prefix); iterator.isValid(); iterator.next()) {
+                byte[] key = iterator.key();
+                // prefixSameAsStart only stops at the end of the extractor's prefix, which may be shorter
+                if (Arrays.mismatch(key, 0, Math.min(key.length, prefix.length), prefix, 0, prefix.length) != -1) {
+                    break;
+                }
+                visitor.accept(key, iterator.value());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public Cursor cursor(byte[] prefix) {
+        return new RocksCursor(db.newIterator(column, readOptions(prefix)));
+    }
+
+    private ReadOptions readOptions(byte[] prefix) {
+        // A prefix shorter than the extractor's is outside its domain, prefixSameAsStart would find nothing
+        return prefixLength > 0 && prefix.length >= prefixLength ? prefixReadOptions : readOptions;
+    }
+
+    @Override
+    public Batch batch() {
+        return new RocksBatch(column);
+    }
+
+    @Override
+    public void write(Batch batch) {
+        try {
+            db.write(writeOptions, ((RocksBatch) batch).batch);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * A WriteBatch is a header, the sequence number and the count, then its records, which name their column family:
+     * the batches concatenate into one, as RocksDB's WriteBatchInternal::Append does, for a single write.
+     */
+    @Override
+    public void write(List<Batch> batches) {
+        if (batches.size() == 1) {
+            write(batches.get(0));
+            return;
+        }
+        try {
+            byte[][] records = new byte[batches.size()][];
+            int length = BATCH_HEADER;
+            int count = 0;
+            for (int i = 0; i < records.length; i++) {
+                RocksBatch batch = (RocksBatch) batches.get(i);
+                records[i] = batch.batch.data();
+                length += records[i].length - BATCH_HEADER;
+                count += batch.count();
+            }
+            ByteBuffer merged = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN).putLong(0).putInt(count);
+            for (byte[] batch : records) {
+                merged.put(batch, BATCH_HEADER, batch.length - BATCH_HEADER);
+            }
+            try (WriteBatch group = new WriteBatch(merged.array())) {
+                db.write(writeOptions, group);
+            }
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public boolean mergesBatches() {
+        return true;
+    }
+
+    @Override
+    public void syncWal() {
+        try {
+            db.syncWal();
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void flush() {
+        try (FlushOptions flush = new FlushOptions().setWaitForFlush(true)) {
+            db.flush(flush, column);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Seeks an iterator to the first key of each file rather than getting it: a get stops at the newest version, in the
+     * memtable or a file above, and never opens the files it shadows. A seek positions every level, which opens the
+     * file of each level holding the key, this one included.
+     */
+    @Override
+    public int prewarmIndexAndFilters() {
+        try (ReadOptions seekOptions = new ReadOptions().setTotalOrderSeek(true);
+             RocksIterator iterator = db.newIterator(column, seekOptions)) {
+            byte[] name = column.getName();
+            int files = 0;
+            for (LiveFileMetaData file : db.getLiveFilesMetaData()) {
+                if (!Arrays.equals(file.columnFamilyName(), name)) continue;
+                iterator.seek(file.smallestKey());
+                files++;
+            }
+            return files;
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public SstWriter sstWriter(Path file) {
+        return new RocksSstWriter(options, file);
+    }
+
+    @Override
+    public void ingest(List<Path> files) {
+        try (IngestExternalFileOptions ingest = new IngestExternalFileOptions().setMoveFiles(true)) {
+            db.ingestExternalFile(column, files.stream().map(Path::toString).toList(), ingest);
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Writes a consistent copy of the DB into a new directory, which opens as a store of its own: the SST files are
+     * hard linked, the rest copied.
+     */
+    public void checkpoint(Path directory) {
+        try (Checkpoint checkpoint = Checkpoint.create(db)) {
+            checkpoint.createCheckpoint(directory.toString());
+        } catch (RocksDBException e) {
+            throw new IllegalStateException("Can't checkpoint into " + directory, e);
+        }
+    }
+
+    @Override
+    public OptionalLong property(String name) {
+        try {
+            return OptionalLong.of(db.getLongProperty(column, name));
+        } catch (RocksDBException e) {
+            return OptionalLong.empty();
+        }
+    }
+
+    @Override
+    public Map<String, String> mapProperty(String name) {
+        try {
+            return db.getMapProperty(column, name);
+        } catch (RocksDBException e) {
+            return Map.of();
+        }
+    }
+
+    @Override
+    public synchronized Map<String, Double> statistics() {
+        if (statistics == null) {
+            return Map.of();
+        }
+        long[] tickers = new long[TICKERS.length];
+        for (int i = 0; i < TICKERS.length; i++) {
+            tickers[i] = statistics.getAndResetTickerCount(TICKERS[i]);
+        }
+        StoreStatistics.HistogramValues[] histograms = new StoreStatistics.HistogramValues[HISTOGRAMS.length];
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HistogramData data = statistics.getHistogramData(HISTOGRAMS[i]);
+            histograms[i] = new StoreStatistics.HistogramValues(data.getCount(), data.getSum(), data.getMedian(),
+                data.getPercentile99(), data.getMax());
+        }
+        return deltas.next(tickers, histograms);
+    }
+
+    @Override
+    public boolean writeStalled() {
+        try {
+            return db.getLongProperty("rocksdb.is-write-stopped") != 0
+                || db.getLongProperty("rocksdb.actual-delayed-write-rate") != 0;
+        } catch (RocksDBException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!owner) return;
+        // The default column family's handle belongs to the DB
+        for (ColumnFamilyHandle handle : columns.subList(1, columns.size())) {
+            handle.close();
+        }
+        db.close();
+        closeOptions();
+    }
+
+    private void closeOptions() {
+        writeOptions.close();
+        readOptions.close();
+        prefixReadOptions.close();
+        options.close();
+        if (dbOptions != null) dbOptions.close();
+        if (columnOptions != null) columnOptions.close();
+        if (blockCache != null) blockCache.close();
+        if (bloomFilter != null) bloomFilter.close();
+        if (statistics != null) statistics.close();
+    }
+
+    private static class RocksSstWriter implements SstWriter {
+
+        final EnvOptions envOptions = new EnvOptions();
+        final SstFileWriter writer;
+
+        RocksSstWriter(Options options, Path file) {
+            this.writer = new SstFileWriter(envOptions, options);
+            try {
+                writer.open(file.toString());
+            } catch (RocksDBException e) {
+                close();
+                throw new IllegalStateException("Can't write " + file, e);
+            }
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            try {
+                writer.put(key, value);
+            } catch (RocksDBException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void finish() {
+            try {
+                writer.finish();
+            } catch (RocksDBException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public void close() {
+            writer.close();
+            envOptions.close();
+        }
+    }
+
+    private static class RocksCursor implements Cursor {
+
+        final RocksIterator iterator;
+        // Each call of iterator.key() copies it, a merge compares it more than once
+        byte[] key;
+
+        RocksCursor(RocksIterator iterator) {
+            this.iterator = iterator;
+        }
+
+        @Override
+        public void seek(byte[] target) {
+            iterator.seek(target);
+            key = null;
+        }
+
+        @Override
+        public boolean isValid() {
+            return iterator.isValid();
+        }
+
+        @Override
+        public byte[] key() {
+            if (key == null) key = iterator.key();
+            return key;
+        }
+
+        @Override
+        public byte[] value() {
+            return iterator.value();
+        }
+
+        @Override
+        public void next() {
+            iterator.next();
+            key = null;
+        }
+
+        @Override
+        public void close() {
+            iterator.close();
+        }
+    }
+
+    private static class RocksBatch implements Batch {
+
+        final WriteBatch batch = new WriteBatch();
+        final ColumnFamilyHandle column;
+
+        RocksBatch(ColumnFamilyHandle column) {
+            this.column = column;
+        }
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            try {
+                batch.put(column, key, value);
+            } catch (RocksDBException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        @Override
+        public int count() {
+            return batch.count();
+        }
+
+        @Override
+        public void clear() {
+            batch.clear();
+        }
+
+        @Override
+        public void close() {
+            batch.close();
+        }
+    }
+}
@@ -0,0 +1,437 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.OptionalLong;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.StructuredTaskScope;
+import java.util.function.BiConsumer;
+
+/**
+ * {@link KeyValueStore} hash-partitioning the keys over independent shards, so writes don't all queue on one memtable,
+ * one WAL and one compaction pipeline as they do in RockDBTest's single OptimisticTransactionDB. A shard is a DB
+ * instance in its own directory or, sharing the WAL and the background threads, a column family of one DB.
+ * <p>
+ * Each shard has its own writer thread, a {@link GroupCommitter}: puts and batches wait for it, and concurrent ones
+ * for the same shard go to the store as one group. Deletes go straight to the shard. A batch spanning shards is
+ * atomic per shard only.
+ * <p>
+ * {@link #multiGet} and the seeks of scans fan out to the shards on virtual threads in a {@link StructuredTaskScope},
+ * the first failure cancels the rest. Scans merge a live cursor per shard in key order, one entry per shard in
+ * memory at a time.
+ */
+public class ShardedStore implements KeyValueStore {
+
+    public enum Layout {
+        /**
+         * A DB per shard, in "shard-N" subdirectories; any backend.
+         */
+        INSTANCES,
+        /**
+         * A column family per shard in one DB; RocksDB and ForSt.
+         */
+        COLUMN_FAMILIES
+    }
+
+    private static final int WRITER_CAPACITY = 1024;
+
+    private final Layout layout;
+    private final List<KeyValueStore> shards;
+    private final List<GroupCommitter> writers = new ArrayList<>();
+
+    public ShardedStore(StoreBackend backend, Path directory, StoreOptions options, int shards, Layout layout) {
+        if (shards < 1) {
+            throw new IllegalArgumentException("Invalid number of shards: " + shards);
+        }
+        this.layout = layout;
+        if (layout == Layout.COLUMN_FAMILIES) {
+            this.shards = switch (backend) {
+                case ROCKSDB -> new RocksDBStore(directory, options, shards).columnFamilies();
+                case FORST -> new ForStStore(directory, options, shards).columnFamilies();
+                case MAPDB -> throw new IllegalArgumentException("MapDB has no column families");
+            };
+        } else {
+            try {
+                Files.createDirectories(directory);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            List<KeyValueStore> stores = new ArrayList<>();
+            for (int i = 0; i < shards; i++) {
+                stores.add(backend.open(directory.resolve("shard-" + i), options));
+            }
+            this.shards = List.copyOf(stores);
+        }
+        for (KeyValueStore shard : this.shards) {
+            writers.add(new GroupCommitter(shard, WRITER_CAPACITY, false));
+        }
+    }
+
+    public int shards() {
+        return shards.size();
+    }
+
+    /**
+     * The shard of a key, from its bytes only, so the same key lands on the same shard after a reopen.
+     */
+    int shard(byte[] key) {
+        // Arrays.hashCode barely mixes the last bytes, and keys often differ only there
+        int hash = Arrays.hashCode(key) * 0x9E3779B9;
+        return Math.floorMod(hash ^ (hash >>> 16), shards.size());
+    }
+
+    @Override
+    public String name() {
+        return shards.get(0).name() + (layout == Layout.INSTANCES ? "-x" : "-cf") + shards.size();
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        int shard = shard(key);
+        try (Batch batch = shards.get(shard).batch()) {
+            batch.put(key, value);
+            commit(shard, batch);
+        }
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        return shards.get(shard(key)).get(key);
+    }
+
+    @Override
+    public int get(byte[] key, byte[] into) {
+        return shards.get(shard(key)).get(key, into);
+    }
+
+    /**
+     * One {@link KeyValueStore#multiGet} per shard holding any of the keys, in parallel.
+     */
+    @Override
+    public List<byte[]> multiGet(List<byte[]> keys) {
+        List<List<Integer>> positions = new ArrayList<>();
+        List<List<byte[]>> shardKeys = new ArrayList<>();
+        for (int i = 0; i < shards.size(); i++) {
+            positions.add(new ArrayList<>());
+            shardKeys.add(new ArrayList<>());
+        }
+        for (int i = 0; i < keys.size(); i++) {
+            int shard = shard(keys.get(i));
+            positions.get(shard).add(i);
+            shardKeys.get(shard).add(keys.get(i));
+        }
+        List<Integer> used = new ArrayList<>();
+        List<Callable<List<byte[]>>> tasks = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            if (shardKeys.get(shard).isEmpty()) continue;
+            KeyValueStore store = shards.get(shard);
+            List<byte[]> subset = shardKeys.get(shard);
+            used.add(shard);
+            tasks.add(() -> store.multiGet(subset));
+        }
+        List<List<byte[]>> results = fanOut(tasks);
+
+        byte[][] values = new byte[keys.size()][];
+        for (int i = 0; i < used.size(); i++) {
+            List<Integer> shardPositions = positions.get(used.get(i));
+            List<byte[]> shardValues = results.get(i);
+            for (int j = 0; j < shardPositions.size(); j++) {
+                values[shardPositions.get(j)] = shardValues.get(j);
+            }
+        }
+        return Arrays.asList(values);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        shards.get(shard(key)).delete(key);
+    }
+
+    @Override
+    public int scan(byte[] from, int limit, BiConsumer<byte[], byte[]> visitor) {
+        int count = 0;
+        try (Cursor cursor = cursor(new byte[0])) {
+            for (cursor.seek(from); count < limit && cursor.isValid(); cursor.next()) {
+                visitor.accept(cursor.key(), cursor.value());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int rangeScan(byte[] from, byte[] to, BiConsumer<byte[], byte[]> visitor) {
+        int count = 0;
+        try (Cursor cursor = cursor(new byte[0])) {
+            for (cursor.seek(from); cursor.isValid(); cursor.next()) {
+                byte[] key = cursor.key();
+                if (Arrays.compareUnsigned(key, to) >= 0) break;
+                visitor.accept(key, cursor.value());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public int prefixScan(byte[] prefix, BiConsumer<byte[], byte[]> visitor) {
+        int count = 0;
+        try (Cursor cursor = cursor(prefix)) {
+            for (cursor.seek(prefix); cursor.isValid(); cursor.next()) {
+                byte[] key = cursor.key();
+                if (Arrays.mismatch(key, 0, Math.min(key.length, prefix.length), prefix, 0, prefix.length) != -1) {
+                    break;
+                }
+                visitor.accept(key, cursor.value());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * A k-way merge of a cursor per shard, the shards' seeks in parallel.
+     */
+    @Override
+    public Cursor cursor(byte[] prefix) {
+        List<Cursor> cursors = new ArrayList<>(shards.size());
+        try {
+            for (KeyValueStore shard : shards) {
+                cursors.add(shard.cursor(prefix));
+            }
+        } catch (RuntimeException e) {
+            cursors.forEach(Cursor::close);
+            throw e;
+        }
+        return new MergedCursor(cursors);
+    }
+
+    @Override
+    public Batch batch() {
+        return new ShardedBatch();
+    }
+
+    /**
+     * Hands each shard's part of the batch to the shard's writer, the parts in parallel.
+     */
+    @Override
+    public void write(Batch batch) {
+        ShardedBatch sharded = (ShardedBatch) batch;
+        List<Callable<Void>> tasks = new ArrayList<>();
+        for (int shard = 0; shard < shards.size(); shard++) {
+            Batch part = sharded.parts[shard];
+            if (part == null || part.count() == 0) continue;
+            GroupCommitter writer = writers.get(shard);
+            tasks.add(() -> {
+                writer.commit(part);
+                return null;
+            });
+        }
+        if (tasks.size() == 1) {
+            call(tasks.get(0));
+        } else if (!tasks.isEmpty()) {
+            fanOut(tasks);
+        }
+    }
+
+    @Override
+    public void syncWal() {
+        fanOut(shards.stream().<Callable<Void>>map(shard -> () -> {
+            shard.syncWal();
+            return null;
+        }).toList());
+    }
+
+    @Override
+    public void flush() {
+        fanOut(shards.stream().<Callable<Void>>map(shard -> () -> {
+            shard.flush();
+            return null;
+        }).toList());
+    }
+
+    @Override
+    public int prewarmIndexAndFilters() {
+        return fanOut(shards.stream().<Callable<Integer>>map(shard -> shard::prewarmIndexAndFilters).toList())
+            .stream().mapToInt(Integer::intValue).sum();
+    }
+
+    /**
+     * The property summed over the shards, empty unless every shard has it. With column families, DB-wide properties
+     * such as the WAL's are counted once per shard.
+     */
+    @Override
+    public OptionalLong property(String name) {
+        long sum = 0;
+        for (KeyValueStore shard : shards) {
+            OptionalLong value = shard.property(name);
+            if (value.isEmpty()) return OptionalLong.empty();
+            sum += value.getAsLong();
+        }
+        return OptionalLong.of(sum);
+    }
+
+    @Override
+    public boolean writeStalled() {
+        return shards.stream().anyMatch(KeyValueStore::writeStalled);
+    }
+
+    @Override
+    public void close() {
+        try {
+            for (GroupCommitter writer : writers) {
+                writer.close();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted closing " + name(), e);
+        } finally {
+            // With column families the first shard owns the DB, it closes last
+            for (int i = shards.size() - 1; i >= 0; i--) {
+                shards.get(i).close();
+            }
+        }
+    }
+
+    private void commit(int shard, Batch batch) {
+        try {
+            writers.get(shard).commit(batch);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted writing to " + name(), e);
+        }
+    }
+
+    /**
+     * Runs the tasks on their own virtual threads and returns their results in order, or throws the first failure.
+     */
+    private <T> List<T> fanOut(List<Callable<T>> tasks) {
+        try (var scope = new StructuredTaskScope.ShutdownOnFailure()) {
+            List<StructuredTaskScope.Subtask<T>> subtasks = new ArrayList<>();
+            for (Callable<T> task : tasks) {
+                subtasks.add(scope.fork(task));
+            }
+            scope.join().throwIfFailed(e -> e instanceof RuntimeException runtime ? runtime
+                : new IllegalStateException(name() + " failed", e));
+            List<T> results = new ArrayList<>(subtasks.size());
+            for (StructuredTaskScope.Subtask<T> subtask : subtasks) {
+                results.add(subtask.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for the shards of " + name(), e);
+        }
+    }
+
+    private <T> T call(Callable<T> task) {
+        try {
+            return task.call();
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted writing to " + name(), e);
+        } catch (Exception e) {
+            throw new IllegalStateException(name() + " failed", e);
+        }
+    }
+
+    /**
+     * The shards' cursors in a queue, the one at the smallest key first: only their current entries are held.
+     */
+    private class MergedCursor implements Cursor {
+
+        final List<Cursor> cursors;
+        final PriorityQueue<Cursor> queue;
+
+        MergedCursor(List<Cursor> cursors) {
+            this.cursors = cursors;
+            this.queue = new PriorityQueue<>(cursors.size(), (a, b) -> Arrays.compareUnsigned(a.key(), b.key()));
+        }
+
+        @Override
+        public void seek(byte[] key) {
+            queue.clear();
+            fanOut(cursors.stream().<Callable<Void>>map(cursor -> () -> {
+                cursor.seek(key);
+                return null;
+            }).toList());
+            for (Cursor cursor : cursors) {
+                if (cursor.isValid()) queue.add(cursor);
+            }
+        }
+
+        @Override
+        public boolean isValid() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public byte[] key() {
+            return queue.element().key();
+        }
+
+        @Override
+        public byte[] value() {
+            return queue.element().value();
+        }
+
+        @Override
+        public void next() {
+            Cursor cursor = queue.remove();
+            cursor.next();
+            if (cursor.isValid()) queue.add(cursor);
+        }
+
+        @Override
+        public void close() {
+            cursors.forEach(Cursor::close);
+        }
+    }
+
+    /**
+     * A batch per shard, created on the first put for it.
+     */
+    private class ShardedBatch implements Batch {
+
+        final Batch[] parts = new Batch[shards.size()];
+        int count;
+
+        @Override
+        public void put(byte[] key, byte[] value) {
+            int shard = shard(key);
+            if (parts[shard] == null) {
+                parts[shard] = shards.get(shard).batch();
+            }
+            parts[shard].put(key, value);
+            count++;
+        }
+
+        @Override
+        public int count() {
+            return count;
+        }
+
+        @Override
+        public void clear() {
+            for (Batch part : parts) {
+                if (part != null) part.clear();
+            }
+            count = 0;
+        }
+
+        @Override
+        public void close() {
+            for (Batch part : parts) {
+                if (part != null) part.close();
+            }
+        }
+    }
+}
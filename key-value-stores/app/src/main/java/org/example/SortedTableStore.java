@@ -0,0 +1,144 @@
+package org.example;
+
+import org.mapdb.Serializer;
+import org.mapdb.SortedTableMap;
+import org.mapdb.volume.MappedFileVol;
+import org.mapdb.volume.Volume;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.function.BiConsumer;
+
+/**
+ * Read-only {@link KeyValueStore} on a MapDB {@code SortedTableMap}: the entries written once, in key order, to
+ * fixed-size pages of a memory-mapped file, with the first key of every page in a table to binary search. No
+ * free-space management, no tree nodes to update, so it is smaller and faster to read than a {@link MapDBStore}, and
+ * immutable. Good for snapshots and lookup data rebuilt in bulk.
+ */
+public class SortedTableStore implements KeyValueStore {
+
+    private final Volume volume;
+    private final SortedTableMap<byte[], byte[]> map;
+
+    private SortedTableStore(Volume volume, SortedTableMap<byte[], byte[]> map) {
+        this.volume = volume;
+        this.map = map;
+    }
+
+    /**
+     * Writes entries in strictly increasing key order to a new table in {@code file} and opens it.
+     */
+    public static SortedTableStore create(Path file, Iterator<Map.Entry<byte[], byte[]>> sorted) {
+        try {
+            Files.createDirectories(file.toAbsolutePath().getParent());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        Volume volume = MappedFileVol.FACTORY.makeVolume(file.toString(), false);
+        SortedTableMap.Sink<byte[], byte[]> sink = SortedTableMap
+            .create(volume, Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY)
+            .createFromSink();
+        while (sorted.hasNext()) {
+            Map.Entry<byte[], byte[]> entry = sorted.next();
+            sink.put(entry.getKey(), entry.getValue());
+        }
+        SortedTableMap<byte[], byte[]> map = sink.create();
+        volume.sync();
+        return new SortedTableStore(volume, map);
+    }
+
+    /**
+     * Opens a table written by {@link #create}, mapped read-only.
+     */
+    public static SortedTableStore open(Path file) {
+        if (!Files.isRegularFile(file)) {
+            throw new IllegalArgumentException("No sorted table in " + file);
+        }
+        Volume volume = MappedFileVol.FACTORY.makeVolume(file.toString(), true);
+        return new SortedTableStore(volume, SortedTableMap.open(volume, Serializer.BYTE_ARRAY, Serializer.BYTE_ARRAY));
+    }
+
+    @Override
+    public String name() {
+        return "mapdb-sorted";
+    }
+
+    @Override
+    public void put(byte[] key, byte[] value) {
+        throw new UnsupportedOperationException(name() + " is read-only");
+    }
+
+    @Override
+    public byte[] get(byte[] key) {
+        return map.get(key);
+    }
+
+    @Override
+    public void delete(byte[] key) {
+        throw new UnsupportedOperationException(name() + " is read-only");
+    }
+
+    @Override
+    public int scan(byte[] from, int limit, BiConsumer<byte[], byte[]> visitor) {
+        int count = 0;
+        for (Map.Entry<byte[], byte[]> entry : map.tailMap(from, true).entrySet()) {
+            if (count == limit) break;
+            visitor.accept(entry.getKey(), entry.getValue());
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public int rangeScan(byte[] from, byte[] to, BiConsumer<byte[], byte[]> visitor) {
+        return MapDBStore.visit(map.subMap(from, true, to, false), visitor);
+    }
+
+    @Override
+    public int prefixScan(byte[] prefix, BiConsumer<byte[], byte[]> visitor) {
+        int count = 0;
+        for (Map.Entry<byte[], byte[]> entry : map.tailMap(prefix, true).entrySet()) {
+            byte[] key = entry.getKey();
+            if (key.length < prefix.length || !Arrays.equals(key, 0, prefix.length, prefix, 0, prefix.length)) {
+                break;
+            }
+            visitor.accept(key, entry.getValue());
+            count++;
+        }
+        return count;
+    }
+
+    @Override
+    public Cursor cursor(byte[] prefix) {
+        return new MapDBStore.MapCursor(map);
+    }
+
+    @Override
+    public Batch batch() {
+        throw new UnsupportedOperationException(name() + " is read-only");
+    }
+
+    @Override
+    public void write(Batch batch) {
+        throw new UnsupportedOperationException(name() + " is read-only");
+    }
+
+    /**
+     * "mapdb.total-size", the bytes of the table, all of them live.
+     */
+    @Override
+    public OptionalLong property(String name) {
+        return name.equals("mapdb.total-size") ? OptionalLong.of(volume.length()) : OptionalLong.empty();
+    }
+
+    @Override
+    public void close() {
+        map.close();
+    }
+}
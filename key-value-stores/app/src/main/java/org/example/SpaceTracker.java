@@ -0,0 +1,200 @@
+package org.example;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.OptionalLong;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+/**
+ * Samples the footprint of a store from a background thread while a workload runs, instead of measuring the directory
+ * once between phases: the bytes on disk, what the store estimates is live, and the bytes it wrote to the WAL and to
+ * its table files (flushes and compactions) against the logical bytes the workload put.
+ * <p>
+ * Space amplification is disk bytes per live byte, RocksDB's "rocksdb.estimate-live-data-size" or MapDB's used
+ * records. Write amplification is WAL plus table bytes per logical byte, RocksDB and ForSt only: MapDB writes through
+ * a memory map and doesn't count them. On Linux the write_bytes of {@code /proc/self/io} give a third figure for
+ * every backend: the kernel counts the pages the process dirties, memory-mapped ones included.
+ */
+public class SpaceTracker implements AutoCloseable {
+
+    private static final Path PROC_IO = Path.of("/proc/self/io");
+
+    /**
+     * One sample, the byte counters since the tracker started and -1 when the store doesn't report them.
+     */
+    public record Sample(long millis, long logicalBytes, long diskBytes, long sstBytes, long liveBytes,
+                         long walBytes, long tableBytes, long deviceBytes) {
+
+        /**
+         * Disk bytes per live byte, NaN when the store doesn't estimate its live data.
+         */
+        public double spaceAmplification() {
+            return liveBytes <= 0 ? Double.NaN : (double) diskBytes / liveBytes;
+        }
+
+        /**
+         * WAL, flush and compaction bytes per logical byte, NaN when the store doesn't count them.
+         */
+        public double writeAmplification() {
+            return logicalBytes <= 0 || walBytes < 0 || tableBytes < 0 ? Double.NaN
+                : (double) (walBytes + tableBytes) / logicalBytes;
+        }
+
+        /**
+         * Bytes the process wrote to the block devices per logical byte, NaN off Linux.
+         */
+        public double deviceAmplification() {
+            return logicalBytes <= 0 || deviceBytes < 0 ? Double.NaN : (double) deviceBytes / logicalBytes;
+        }
+    }
+
+    public record Result(String store, List<Sample> samples) {
+
+        public Sample last() {
+            return samples.get(samples.size() - 1);
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%s space, MB and amplification:%n", store);
+            out.printf("  %8s %10s %10s %10s %10s %10s %10s %7s %7s %7s%n", "seconds", "logical", "disk", "sst",
+                "live", "wal", "tables", "space", "write", "device");
+            for (Sample sample : samples) {
+                out.printf("  %8.1f %10.1f %10.1f %10.1f %10.1f %10.1f %10.1f %7.2f %7.2f %7.2f%n",
+                    sample.millis() / 1e3, megabytes(sample.logicalBytes()), megabytes(sample.diskBytes()),
+                    megabytes(sample.sstBytes()), megabytes(sample.liveBytes()), megabytes(sample.walBytes()),
+                    megabytes(sample.tableBytes()), sample.spaceAmplification(), sample.writeAmplification(),
+                    sample.deviceAmplification());
+            }
+        }
+
+        private static double megabytes(long bytes) {
+            return bytes < 0 ? Double.NaN : bytes / (double) (1 << 20);
+        }
+    }
+
+    private final KeyValueStore store;
+    private final Path directory;
+    private final LongSupplier logicalBytes;
+    private final long start = System.nanoTime();
+    private final long logicalStart;
+    private final long walStart;
+    private final long tableStart;
+    private final long deviceStart;
+    private final List<Sample> samples = new ArrayList<>();
+    private final ScheduledExecutorService sampler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "space-tracker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private volatile RuntimeException failure;
+
+    /**
+     * Starts sampling the store in {@code directory} every {@code interval}, {@code logicalBytes} counts the key
+     * and value bytes put, e.g. {@link WorkloadDriver#bytesWritten()}.
+     */
+    public SpaceTracker(KeyValueStore store, Path directory, LongSupplier logicalBytes, Duration interval) {
+        this.store = store;
+        this.directory = directory;
+        this.logicalBytes = logicalBytes;
+        this.logicalStart = logicalBytes.getAsLong();
+        this.walStart = walBytes(store);
+        this.tableStart = tableBytes(store);
+        this.deviceStart = deviceBytes();
+        long period = interval.toNanos();
+        sampler.scheduleAtFixedRate(this::record, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Takes a sample now.
+     */
+    public Sample sample() {
+        long wal = walBytes(store);
+        long table = tableBytes(store);
+        long device = deviceBytes();
+        OptionalLong live = store.property("rocksdb.estimate-live-data-size");
+        if (live.isEmpty()) {
+            OptionalLong total = store.property("mapdb.total-size");
+            OptionalLong free = store.property("mapdb.free-size");
+            if (total.isPresent() && free.isPresent()) {
+                live = OptionalLong.of(total.getAsLong() - free.getAsLong());
+            }
+        }
+        return new Sample((System.nanoTime() - start) / 1_000_000,
+            logicalBytes.getAsLong() - logicalStart,
+            IOUtils.directorySize(directory),
+            store.property("rocksdb.total-sst-files-size").orElse(-1),
+            live.orElse(-1),
+            wal < 0 ? -1 : wal - walStart,
+            table < 0 ? -1 : table - tableStart,
+            device < 0 ? -1 : device - deviceStart);
+    }
+
+    /**
+     * Stops sampling and takes a last sample, the store must still be open.
+     */
+    public Result stop() throws InterruptedException {
+        sampler.shutdown();
+        sampler.awaitTermination(1, TimeUnit.MINUTES);
+        if (failure != null) {
+            throw new IllegalStateException("Sampling " + store.name() + " failed", failure);
+        }
+        synchronized (samples) {
+            samples.add(sample());
+            return new Result(store.name(), List.copyOf(samples));
+        }
+    }
+
+    @Override
+    public void close() {
+        sampler.shutdownNow();
+    }
+
+    private void record() {
+        try {
+            Sample sample = sample();
+            synchronized (samples) {
+                samples.add(sample);
+            }
+        } catch (RuntimeException e) {
+            failure = e;
+            throw e;
+        }
+    }
+
+    private static long walBytes(KeyValueStore store) {
+        String bytes = store.mapProperty("rocksdb.dbstats").get("db.wal_bytes_written");
+        return bytes == null ? -1 : Long.parseLong(bytes);
+    }
+
+    /**
+     * Bytes written by flushes (to L0) and compactions, RocksDB reports them in GB with 6 decimals, so about KB
+     * precision.
+     */
+    private static long tableBytes(KeyValueStore store) {
+        Map<String, String> stats = store.mapProperty("rocksdb.cfstats");
+        String gigabytes = stats.get("compaction.Sum.WriteGB");
+        return gigabytes == null ? -1 : Math.round(Double.parseDouble(gigabytes) * (1L << 30));
+    }
+
+    private static long deviceBytes() {
+        try {
+            for (String line : Files.readAllLines(PROC_IO)) {
+                if (line.startsWith("write_bytes:")) {
+                    return Long.parseLong(line.substring("write_bytes:".length()).trim());
+                }
+            }
+        } catch (IOException | SecurityException e) {
+            // Not Linux, or no procfs
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,53 @@
+package org.example;
+
+import java.nio.file.Path;
+
+/**
+ * The backends behind {@link KeyValueStore}, each one opens (or creates) a store in a directory.
+ */
+public enum StoreBackend {
+    ROCKSDB {
+        @Override
+        public KeyValueStore open(Path directory, StoreOptions options) {
+            return new RocksDBStore(directory, options);
+        }
+
+        @Override
+        public TransactionalStore openTransactional(Path directory, TransactionalStore.Concurrency concurrency,
+                                                    long lockTimeoutMillis) {
+            return new RocksDBTransactionalStore(directory, concurrency, lockTimeoutMillis);
+        }
+    },
+    FORST {
+        @Override
+        public KeyValueStore open(Path directory, StoreOptions options) {
+            return new ForStStore(directory, options);
+        }
+
+        @Override
+        public TransactionalStore openTransactional(Path directory, TransactionalStore.Concurrency concurrency,
+                                                    long lockTimeoutMillis) {
+            return new ForStTransactionalStore(directory, concurrency, lockTimeoutMillis);
+        }
+    },
+    MAPDB {
+        @Override
+        public KeyValueStore open(Path directory, StoreOptions options) {
+            return new MapDBStore(directory);
+        }
+    };
+
+    public KeyValueStore open(Path directory) {
+        return open(directory, StoreOptions.DEFAULT);
+    }
+
+    public abstract KeyValueStore open(Path directory, StoreOptions options);
+
+    /**
+     * Opens (or creates) a store with transactions, RocksDB and ForSt only.
+     */
+    public TransactionalStore openTransactional(Path directory, TransactionalStore.Concurrency concurrency,
+                                                long lockTimeoutMillis) {
+        throw new UnsupportedOperationException(this + " has no read-modify-write transactions");
+    }
+}
@@ -0,0 +1,83 @@
+package org.example;
+
+/**
+ * Tuning shared by the backends, each one applies what it supports; MapDB ignores all of it, it has
+ * {@link MapDBOptions}.
+ *
+ * @param sync            fsync the WAL on every write (RocksDB and ForSt {@code WriteOptions.sync})
+ * @param disableWal      skip the WAL, writes not yet flushed are lost on a crash ({@code WriteOptions.disableWAL})
+ * @param blockCacheBytes LRU block cache size, 0 keeps the default
+ * @param bloomBitsPerKey bloom filter bits per key in every SST file (10 is about 1% false positives), 0 for none
+ * @param prefixLength    fixed length prefix extractor for prefix scans and prefix blooms, 0 for none
+ * @param fillCache       whether blocks read go into the block cache ({@code ReadOptions.fillCache})
+ * @param readaheadBytes  iterator readahead, 0 lets RocksDB ramp it up on sequential reads
+ * @param pinData         pin the blocks of iterators in memory instead of copying ({@code ReadOptions.pinData})
+ * @param statistics      collect tickers and histograms for {@link KeyValueStore#statistics()}, a few percent slower
+ * @param cacheIndexAndFilterBlocks index and filter blocks go into the block cache, competing with the data blocks,
+ *                                  instead of living with each open file ({@code cache_index_and_filter_blocks})
+ */
+public record StoreOptions(boolean sync, boolean disableWal, long blockCacheBytes, double bloomBitsPerKey,
+                           int prefixLength, boolean fillCache, long readaheadBytes, boolean pinData,
+                           boolean statistics, boolean cacheIndexAndFilterBlocks) {
+
+    public static final StoreOptions DEFAULT = new StoreOptions(false, false, 0, 0, 0, true, 0, false, false, false);
+
+    public StoreOptions {
+        if (sync && disableWal) {
+            throw new IllegalArgumentException("Can't sync writes without a WAL");
+        }
+        if (blockCacheBytes < 0 || bloomBitsPerKey < 0 || prefixLength < 0 || readaheadBytes < 0) {
+            throw new IllegalArgumentException("Negative sizes in " + this);
+        }
+    }
+
+    public StoreOptions withSync(boolean sync) {
+        return new StoreOptions(sync, disableWal, blockCacheBytes, bloomBitsPerKey, prefixLength, fillCache,
+            readaheadBytes, pinData, statistics, cacheIndexAndFilterBlocks);
+    }
+
+    public StoreOptions withDisableWal(boolean disableWal) {
+        return new StoreOptions(sync, disableWal, blockCacheBytes, bloomBitsPerKey, prefixLength, fillCache,
+            readaheadBytes, pinData, statistics, cacheIndexAndFilterBlocks);
+    }
+
+    public StoreOptions withBlockCacheBytes(long blockCacheBytes) {
+        return new StoreOptions(sync, disableWal, blockCacheBytes, bloomBitsPerKey, prefixLength, fillCache,
+            readaheadBytes, pinData, statistics, cacheIndexAndFilterBlocks);
+    }
+
+    public StoreOptions withBloomBitsPerKey(double bloomBitsPerKey) {
+        return new StoreOptions(sync, disableWal, blockCacheBytes, bloomBitsPerKey, prefixLength, fillCache,
+            readaheadBytes, pinData, statistics, cacheIndexAndFilterBlocks);
+    }
+
+    public StoreOptions withPrefixLength(int prefixLength) {
+        return new StoreOptions(sync, disableWal, blockCacheBytes, bloomBitsPerKey, prefixLength, fillCache,
+            readaheadBytes, pinData, statistics, cacheIndexAndFilterBlocks);
+    }
+
+    public StoreOptions withFillCache(boolean fillCache) {
+        return new StoreOptions(sync, disableWal, blockCacheBytes, bloomBitsPerKey, prefixLength, fillCache,
+            readaheadBytes, pinData, statistics, cacheIndexAndFilterBlocks);
+    }
+
+    public StoreOptions withReadaheadBytes(long readaheadBytes) {
+        return new StoreOptions(sync, disableWal, blockCacheBytes, bloomBitsPerKey, prefixLength, fillCache,
+            readaheadBytes, pinData, statistics, cacheIndexAndFilterBlocks);
+    }
+
+    public StoreOptions withPinData(boolean pinData) {
+        return new StoreOptions(sync, disableWal, blockCacheBytes, bloomBitsPerKey, prefixLength, fillCache,
+            readaheadBytes, pinData, statistics, cacheIndexAndFilterBlocks);
+    }
+
+    public StoreOptions withStatistics(boolean statistics) {
+        return new StoreOptions(sync, disableWal, blockCacheBytes, bloomBitsPerKey, prefixLength, fillCache,
+            readaheadBytes, pinData, statistics, cacheIndexAndFilterBlocks);
+    }
+
+    public StoreOptions withCacheIndexAndFilterBlocks(boolean cacheIndexAndFilterBlocks) {
+        return new StoreOptions(sync, disableWal, blockCacheBytes, bloomBitsPerKey, prefixLength, fillCache,
+            readaheadBytes, pinData, statistics, cacheIndexAndFilterBlocks);
+    }
+}
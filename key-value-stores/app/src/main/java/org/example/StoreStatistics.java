@@ -0,0 +1,106 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What {@link KeyValueStore#statistics()} reports for {@link RocksDBStore} and {@link ForStStore}, which only differ in
+ * the JNI classes they read the tickers and histograms from. One per store, so each store of a DB reports what
+ * happened since its own previous call.
+ * <p>
+ * Tickers are read with getAndReset and moved into the {@link Totals} of the DB, so the column family stores that
+ * share the DB's Statistics don't take the counts from each other. Histograms are never reset: their count and sum
+ * give deltas, but only their percentiles are exposed, which can't be subtracted, so those stay since the DB opened.
+ */
+final class StoreStatistics {
+
+    private static final List<String> HISTOGRAM_SUFFIXES = List.of(".count", ".avg", ".p50_since_open",
+        ".p99_since_open", ".max_since_open");
+
+    /**
+     * A histogram as read from the DB, everything since it opened.
+     */
+    record HistogramValues(long count, long sum, double p50, double p99, double max) {
+    }
+
+    /**
+     * The tickers since the DB opened, shared by the stores of its column families.
+     */
+    static final class Totals {
+
+        private final long[] tickers;
+
+        Totals(int tickers) {
+            this.tickers = new long[tickers];
+        }
+
+        /**
+         * Adds the counts just read and reset, returns the totals.
+         */
+        synchronized long[] add(long[] counts) {
+            for (int i = 0; i < tickers.length; i++) {
+                tickers[i] += counts[i];
+            }
+            return tickers.clone();
+        }
+    }
+
+    private final List<String> tickers;
+    private final List<String> histograms;
+    private final Totals totals;
+    // What the previous call saw, it reports the difference
+    private long[] previousTickers;
+    private final long[] previousCounts;
+    private final long[] previousSums;
+
+    StoreStatistics(List<String> tickers, List<String> histograms, Totals totals) {
+        this.tickers = tickers;
+        this.histograms = histograms;
+        this.totals = totals;
+        this.previousTickers = new long[tickers.size()];
+        this.previousCounts = new long[histograms.size()];
+        this.previousSums = new long[histograms.size()];
+    }
+
+    /**
+     * The keys of {@link #next}, in order: the tickers, then count, avg and the percentiles of each histogram.
+     */
+    static List<String> names(List<String> tickers, List<String> histograms) {
+        List<String> names = new ArrayList<>(tickers);
+        for (String histogram : histograms) {
+            for (String suffix : HISTOGRAM_SUFFIXES) {
+                names.add(histogram + suffix);
+            }
+        }
+        return List.copyOf(names);
+    }
+
+    /**
+     * @param tickerCounts what the tickers counted since they were last reset, in the order of the names
+     * @param values       every histogram, in the order of the names
+     */
+    synchronized Map<String, Double> next(long[] tickerCounts, HistogramValues[] values) {
+        long[] totalTickers = totals.add(tickerCounts);
+        Map<String, Double> statistics = new LinkedHashMap<>();
+        for (int i = 0; i < tickers.size(); i++) {
+            statistics.put(tickers.get(i), (double) (totalTickers[i] - previousTickers[i]));
+        }
+        previousTickers = totalTickers;
+        for (int i = 0; i < histograms.size(); i++) {
+            HistogramValues data = values[i];
+            String name = histograms.get(i);
+            long count = data.count() - previousCounts[i];
+            long sum = data.sum() - previousSums[i];
+            previousCounts[i] = data.count();
+            previousSums[i] = data.sum();
+            statistics.put(name + ".count", (double) count);
+            statistics.put(name + ".avg", count == 0 ? 0 : (double) sum / count);
+            statistics.put(name + ".p50_since_open", data.p50());
+            statistics.put(name + ".p99_since_open", data.p99());
+            statistics.put(name + ".max_since_open", data.max());
+        }
+        return statistics;
+    }
+}
@@ -0,0 +1,263 @@
+package org.example;
+
+import org.apache.flink.state.forst.fs.ByteBufferReadableFSDataInputStream;
+import org.apache.flink.state.forst.fs.ByteBufferWritableFSDataOutputStream;
+import org.apache.flink.state.forst.fs.ForStFileStatus;
+import org.apache.flink.state.forst.fs.StringifiedForStFileSystem;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * A local directory standing in for remote storage behind a disaggregated ForSt: every request (a metadata call, a
+ * read, creating, syncing or closing a file) waits the given latency first, and the bytes read and written share
+ * one link of the given bandwidth, so concurrent transfers queue behind each other. Appends don't wait the latency,
+ * as an object store client buffers them into a few uploads.
+ */
+public class ThrottledFileSystem extends StringifiedForStFileSystem {
+
+    private final Path root;
+    private final long latencyNanos;
+    private final long bytesPerSecond;
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder bytesRead = new LongAdder();
+    private final LongAdder bytesWritten = new LongAdder();
+    // When the link is done with the transfers already queued, System.nanoTime() based
+    private long linkFreeAt;
+
+    /**
+     * @param bytesPerSecond 0 for no limit
+     */
+    public ThrottledFileSystem(Path root, Duration latency, long bytesPerSecond) {
+        if (latency.isNegative() || bytesPerSecond < 0) {
+            throw new IllegalArgumentException("Invalid latency " + latency + " or bandwidth " + bytesPerSecond);
+        }
+        this.root = root;
+        this.latencyNanos = latency.toNanos();
+        this.bytesPerSecond = bytesPerSecond;
+        try {
+            Files.createDirectories(root);
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't create " + root, e);
+        }
+    }
+
+    /**
+     * The directory the remote paths are in, the base path of a FlinkEnv on this file system.
+     */
+    public Path root() {
+        return root;
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    @Override
+    public boolean exists(String path) {
+        request();
+        return Files.exists(Path.of(path));
+    }
+
+    @Override
+    public ForStFileStatus getFileStatus(String path) throws IOException {
+        request();
+        return status(path);
+    }
+
+    @Override
+    public ForStFileStatus[] listStatus(String path) throws IOException {
+        request();
+        List<ForStFileStatus> statuses = new ArrayList<>();
+        try (Stream<Path> children = Files.list(Path.of(path))) {
+            for (Path child : children.toList()) {
+                statuses.add(status(child.toString()));
+            }
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path);
+        }
+        return statuses.toArray(new ForStFileStatus[0]);
+    }
+
+    @Override
+    public boolean delete(String path, boolean recursive) throws IOException {
+        request();
+        Path file = Path.of(path);
+        if (recursive && Files.isDirectory(file)) {
+            try (Stream<Path> paths = Files.walk(file)) {
+                for (Path each : paths.sorted(Comparator.reverseOrder()).toList()) {
+                    Files.delete(each);
+                }
+            }
+            return true;
+        }
+        return Files.deleteIfExists(file);
+    }
+
+    @Override
+    public boolean mkdirs(String path) throws IOException {
+        request();
+        Files.createDirectories(Path.of(path));
+        return true;
+    }
+
+    @Override
+    public boolean rename(String source, String target) throws IOException {
+        request();
+        try {
+            Files.move(Path.of(source), Path.of(target), StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(source);
+        }
+        return true;
+    }
+
+    @Override
+    public int link(String source, String target) throws IOException {
+        request();
+        try {
+            Files.createLink(Path.of(target), Path.of(source));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(source);
+        }
+        return 0;
+    }
+
+    @Override
+    public ByteBufferReadableFSDataInputStream open(String path) throws IOException {
+        request();
+        try {
+            return new Input(FileChannel.open(Path.of(path)));
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path);
+        }
+    }
+
+    @Override
+    public ByteBufferWritableFSDataOutputStream create(String path) throws IOException {
+        request();
+        return new Output(FileChannel.open(Path.of(path), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+            StandardOpenOption.TRUNCATE_EXISTING));
+    }
+
+    private static ForStFileStatus status(String path) throws IOException {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(Path.of(path), BasicFileAttributes.class);
+            return new ForStFileStatus(path, attributes.isDirectory() ? 0 : attributes.size(),
+                attributes.lastModifiedTime().toMillis(), attributes.isDirectory());
+        } catch (NoSuchFileException e) {
+            throw new FileNotFoundException(path);
+        }
+    }
+
+    private void request() {
+        requests.increment();
+        if (latencyNanos > 0) LockSupport.parkNanos(latencyNanos);
+    }
+
+    private void transfer(long bytes) {
+        if (bytesPerSecond == 0 || bytes <= 0) return;
+        long wait;
+        synchronized (this) {
+            long now = System.nanoTime();
+            linkFreeAt = Math.max(linkFreeAt, now) + bytes * 1_000_000_000 / bytesPerSecond;
+            wait = linkFreeAt - now;
+        }
+        LockSupport.parkNanos(wait);
+    }
+
+    private class Input extends ByteBufferReadableFSDataInputStream {
+
+        final FileChannel channel;
+        long position;
+
+        Input(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public int readFully(ByteBuffer buffer) throws IOException {
+            int read = readFully(position, buffer);
+            position += read;
+            return read;
+        }
+
+        @Override
+        public int readFully(long position, ByteBuffer buffer) throws IOException {
+            request();
+            int read = CachingFileSystem.read(channel, position, buffer);
+            bytesRead.add(read);
+            transfer(read);
+            return read;
+        }
+
+        @Override
+        public long skip(long bytes) {
+            position += bytes;
+            return bytes;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    private class Output extends ByteBufferWritableFSDataOutputStream {
+
+        final FileChannel channel;
+
+        Output(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        @Override
+        public void write(ByteBuffer buffer) throws IOException {
+            int bytes = buffer.remaining();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            bytesWritten.add(bytes);
+            transfer(bytes);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void sync() throws IOException {
+            request();
+            channel.force(false);
+        }
+
+        @Override
+        public void close() throws IOException {
+            request();
+            channel.close();
+        }
+    }
+}
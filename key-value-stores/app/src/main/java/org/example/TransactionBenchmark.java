@@ -0,0 +1,154 @@
+package org.example;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Threads incrementing counters in read-modify-write transactions, {@code getForUpdate} then {@code put} on a few
+ * zipfian keys each, so the hot keys are contended, as RockDBTest's single uncontended transaction never is. Every
+ * run starts from a fresh store and ends by checking that the counters add up to the committed increments: neither
+ * concurrency control may lose an update.
+ * <p>
+ * Latency is from the first attempt to the commit, conflicts, retries and backoff included; transactions given up
+ * aren't in it.
+ */
+public class TransactionBenchmark {
+
+    /**
+     * @param conflicts failed attempts, retried or given up
+     */
+    public record Result(String store, TransactionalStore.Concurrency concurrency, RetryPolicy policy, int threads,
+                         long commits, long conflicts, long givenUp, long nanos, Histogram latency) {
+
+        public double transactionsPerSecond() {
+            return commits * 1e9 / nanos;
+        }
+
+        /**
+         * Failed attempts per attempt.
+         */
+        public double conflictRate() {
+            long attempts = commits + conflicts;
+            return attempts == 0 ? 0 : (double) conflicts / attempts;
+        }
+
+        public void print(PrintStream out) {
+            out.printf("%-6s %-11s %2d threads, %-40s %8.0f tx/s, conflict rate %5.1f%%, %6d given up, "
+                    + "p50 %8.1f us  p99 %8.1f us  max %8.1f us%n",
+                store, concurrency, threads, policy, transactionsPerSecond(), conflictRate() * 100, givenUp,
+                latency.getValueAtPercentile(50) / 1e3, latency.getValueAtPercentile(99) / 1e3,
+                latency.getMaxValue() / 1e3);
+        }
+    }
+
+    private final StoreBackend backend;
+    private final Path directory;
+    private final long records;
+    private final int keysPerTransaction;
+    private final Duration lockTimeout;
+    private final long seed;
+    private final ZipfianGenerator zipfian;
+    private int runs;
+
+    /**
+     * @param records            counters, the zipfian key space
+     * @param keysPerTransaction counters incremented by each transaction, in random order, so pessimistic
+     *                           transactions can deadlock
+     * @param lockTimeout        how long a pessimistic transaction waits for a lock
+     */
+    public TransactionBenchmark(StoreBackend backend, Path directory, long records, int keysPerTransaction,
+                                Duration lockTimeout, long seed) {
+        if (keysPerTransaction < 1) {
+            throw new IllegalArgumentException("At least one key per transaction: " + keysPerTransaction);
+        }
+        this.backend = backend;
+        this.directory = directory;
+        this.records = records;
+        this.keysPerTransaction = keysPerTransaction;
+        this.lockTimeout = lockTimeout;
+        this.seed = seed;
+        this.zipfian = new ZipfianGenerator(records);
+    }
+
+    public Result run(TransactionalStore.Concurrency concurrency, RetryPolicy policy, int threads, Duration duration)
+        throws InterruptedException {
+        Path path = directory.resolve(concurrency.name().toLowerCase() + "-" + runs++);
+        try (TransactionalStore store = backend.openTransactional(path, concurrency, lockTimeout.toMillis())) {
+            byte[] key = new byte[KeyGenerator.KEY_SIZE];
+            for (long id = 0; id < records; id++) {
+                KeyGenerator.write(id, key, 0);
+                store.put(key, counter(0));
+            }
+
+            TransactionExecutor executor = new TransactionExecutor(store, policy);
+            Recorder recorder = new Recorder(WorkloadDriver.HIGHEST_LATENCY, 3);
+            ExecutorService pool = Executors.newFixedThreadPool(threads);
+            long start = System.nanoTime();
+            long deadline = start + duration.toNanos();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                KeyGenerator keys = new KeyGenerator(KeyDistribution.ZIPFIAN, seed + t + 1, zipfian);
+                futures.add(pool.submit(() -> increments(executor, keys, recorder, deadline)));
+            }
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(concurrency + " transactions failed", e.getCause());
+            } finally {
+                pool.shutdownNow();
+            }
+            long nanos = System.nanoTime() - start;
+
+            long sum = 0;
+            for (long id = 0; id < records; id++) {
+                KeyGenerator.write(id, key, 0);
+                sum += ByteBuffer.wrap(store.get(key)).getLong();
+            }
+            if (sum != executor.commits() * keysPerTransaction) {
+                throw new IllegalStateException("Lost updates: the counters add up to " + sum + " after "
+                    + executor.commits() + " commits of " + keysPerTransaction + " increments");
+            }
+            return new Result(store.name(), concurrency, policy, threads, executor.commits(), executor.conflicts(),
+                executor.givenUp(), nanos, recorder.getIntervalHistogram());
+        }
+    }
+
+    private void increments(TransactionExecutor executor, KeyGenerator keys, Recorder recorder, long deadline) {
+        byte[][] transactionKeys = new byte[keysPerTransaction][KeyGenerator.KEY_SIZE];
+        while (System.nanoTime() < deadline) {
+            for (byte[] key : transactionKeys) {
+                keys.nextKey(records, key, 0);
+            }
+            long start = System.nanoTime();
+            try {
+                executor.execute(transaction -> {
+                    for (byte[] key : transactionKeys) {
+                        long value = ByteBuffer.wrap(transaction.getForUpdate(key)).getLong();
+                        transaction.put(key, counter(value + 1));
+                    }
+                    return null;
+                });
+                recorder.recordValue(System.nanoTime() - start);
+            } catch (TransactionalStore.ConflictException e) {
+                // Given up, the executor counted it
+            }
+        }
+    }
+
+    private static byte[] counter(long value) {
+        return ByteBuffer.allocate(Long.BYTES).putLong(value).array();
+    }
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs read-modify-write transactions on a {@link TransactionalStore}, retrying the whole transaction after a
+ * {@link TransactionalStore.ConflictException} as long as the {@link RetryPolicy} says so. Thread-safe, one executor
+ * for every thread of a workload, it counts commits, conflicts and transactions given up.
+ */
+public class TransactionExecutor {
+
+    /**
+     * The reads and writes of a transaction, run again from the start on every attempt.
+     */
+    public interface Body<T> {
+        T run(TransactionalStore.Transaction transaction);
+    }
+
+    private final TransactionalStore store;
+    private final RetryPolicy policy;
+    private final LongAdder commits = new LongAdder();
+    private final LongAdder conflicts = new LongAdder();
+    private final LongAdder givenUp = new LongAdder();
+
+    public TransactionExecutor(TransactionalStore store, RetryPolicy policy) {
+        this.store = store;
+        this.policy = policy;
+    }
+
+    /**
+     * Runs and commits the body, returns what it returned. Throws the last conflict when the policy gives up.
+     */
+    public <T> T execute(Body<T> body) {
+        for (int attempts = 1; ; attempts++) {
+            TransactionalStore.Transaction transaction = store.begin();
+            try {
+                T result = body.run(transaction);
+                transaction.commit();
+                commits.increment();
+                return result;
+            } catch (TransactionalStore.ConflictException e) {
+                transaction.rollback();
+                conflicts.increment();
+                long backoff = policy.backoffNanos(attempts);
+                if (backoff < 0) {
+                    givenUp.increment();
+                    throw e;
+                }
+                if (backoff > 0) LockSupport.parkNanos(backoff);
+            } finally {
+                transaction.close();
+            }
+        }
+    }
+
+    public long commits() {
+        return commits.sum();
+    }
+
+    /**
+     * Failed attempts, retried or not.
+     */
+    public long conflicts() {
+        return conflicts.sum();
+    }
+
+    public long givenUp() {
+        return givenUp.sum();
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+/**
+ * A store with read-modify-write transactions, RockDBTest's OptimisticTransactionDB or a pessimistic TransactionDB,
+ * for {@link TransactionExecutor} and {@link TransactionBenchmark}. Open one with
+ * {@link StoreBackend#openTransactional}.
+ */
+public interface TransactionalStore extends AutoCloseable {
+
+    enum Concurrency {
+        /**
+         * No locks, {@link Transaction#commit()} fails if a key read with {@link Transaction#getForUpdate} was
+         * written by another transaction since.
+         */
+        OPTIMISTIC,
+        /**
+         * {@link Transaction#getForUpdate} locks the key until commit or rollback, it fails after the lock timeout or
+         * on a deadlock.
+         */
+        PESSIMISTIC
+    }
+
+    String name();
+
+    Concurrency concurrency();
+
+    /**
+     * A new transaction, owned by the calling thread.
+     */
+    Transaction begin();
+
+    /**
+     * Reads the last committed value, outside any transaction.
+     */
+    byte[] get(byte[] key);
+
+    /**
+     * Writes a value outside any transaction, e.g. to load the store.
+     */
+    void put(byte[] key, byte[] value);
+
+    @Override
+    void close();
+
+    interface Transaction extends AutoCloseable {
+
+        /**
+         * Reads a key and declares the intent to write it: optimistic transactions validate it at commit, pessimistic
+         * ones lock it now.
+         */
+        byte[] getForUpdate(byte[] key);
+
+        void put(byte[] key, byte[] value);
+
+        /**
+         * Applies the writes, or throws a {@link ConflictException} and applies none.
+         */
+        void commit();
+
+        void rollback();
+
+        /**
+         * Releases the transaction, rolling it back if it wasn't committed.
+         */
+        @Override
+        void close();
+    }
+
+    /**
+     * Another transaction got in the way: a write conflict found at commit, a lock timeout or a deadlock. Retrying
+     * the whole transaction may succeed.
+     */
+    class ConflictException extends IllegalStateException {
+
+        public ConflictException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package org.example;
+
+import java.util.SplittableRandom;
+
+/**
+ * Seeded values of a fixed size with a target compressibility, copied into a reused array.
+ * <p>
+ * Like db_bench's compression_ratio: a pool of random bytes is built once, each 256 byte chunk of it repeating a
+ * random run of {@code compressibility * 256} bytes, so a block compressor shrinks values to about that fraction.
+ * 1 is incompressible. Values are slices of the pool at random offsets. The pool is immutable, one generator can be
+ * shared by every thread, each with its own random.
+ */
+public class ValueGenerator {
+
+    static final int CHUNK = 256;
+    static final int POOL_SIZE = 1 << 20;
+
+    private final int size;
+    private final byte[] pool;
+
+    public ValueGenerator(int size, double compressibility, long seed) {
+        if (size < 0 || compressibility <= 0 || compressibility > 1) {
+            throw new IllegalArgumentException("Invalid value size " + size + " or compressibility " + compressibility);
+        }
+        this.size = size;
+        this.pool = new byte[POOL_SIZE + size];
+        SplittableRandom random = new SplittableRandom(seed);
+        int run = Math.max(1, (int) Math.round(CHUNK * compressibility));
+        byte[] raw = new byte[run];
+        for (int chunk = 0; chunk < pool.length; chunk += CHUNK) {
+            random.nextBytes(raw);
+            for (int i = chunk; i < Math.min(chunk + CHUNK, pool.length); i++) {
+                pool[i] = raw[(i - chunk) % run];
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Fills {@code value} from {@code offset} with {@link #size()} bytes.
+     */
+    public void next(SplittableRandom random, byte[] value, int offset) {
+        System.arraycopy(pool, random.nextInt(POOL_SIZE), value, offset, size);
+    }
+
+    /**
+     * Fills {@code value} from {@code offset} with the value of an id, the same one on every call, so different load
+     * paths write the same data in any order.
+     */
+    public void forId(long id, byte[] value, int offset) {
+        // SplitMix64 finalizer, spreads consecutive ids over the pool
+        long z = id * 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        z ^= z >>> 31;
+        System.arraycopy(pool, (int) Math.floorMod(z, (long) POOL_SIZE), value, offset, size);
+    }
+
+    public byte[] next(SplittableRandom random) {
+        byte[] value = new byte[size];
+        next(random, value, 0);
+        return value;
+    }
+}
@@ -0,0 +1,82 @@
+package org.example;
+
+/**
+ * A YCSB-style operation mix: the proportions of reads, updates, scans and inserts add up to 1. The presets follow
+ * YCSB's core workloads, {@link #A} update heavy, {@link #B} read mostly, {@link #C} read only, {@link #D} read
+ * latest and {@link #E} short ranges.
+ *
+ * @param records         keys loaded before the run
+ * @param valueSize       bytes per value
+ * @param scanLength      longest scan, each scan reads a uniform number of entries between 1 and this
+ * @param distribution    how the keys of reads, updates and scans are picked, inserts always append
+ * @param compressibility fraction of its size a value compresses to, see {@link ValueGenerator}
+ */
+public record Workload(String name, double read, double update, double scan, double insert,
+                       long records, int valueSize, int scanLength,
+                       KeyDistribution distribution, double compressibility) {
+
+    public static final Workload A = new Workload("A", 0.5, 0.5, 0, 0, 100_000, 100, 100,
+        KeyDistribution.ZIPFIAN, 0.5);
+    public static final Workload B = new Workload("B", 0.95, 0.05, 0, 0, 100_000, 100, 100,
+        KeyDistribution.ZIPFIAN, 0.5);
+    public static final Workload C = new Workload("C", 1, 0, 0, 0, 100_000, 100, 100,
+        KeyDistribution.ZIPFIAN, 0.5);
+    public static final Workload D = new Workload("D", 0.95, 0, 0, 0.05, 100_000, 100, 100,
+        KeyDistribution.LATEST, 0.5);
+    public static final Workload E = new Workload("E", 0, 0, 0.95, 0.05, 100_000, 100, 100,
+        KeyDistribution.ZIPFIAN, 0.5);
+
+    public Workload {
+        if (read < 0 || update < 0 || scan < 0 || insert < 0 || Math.abs(read + update + scan + insert - 1) > 1e-9) {
+            throw new IllegalArgumentException("Proportions must be positive and add up to 1: " + name);
+        }
+        if (records <= 0 || valueSize < 0 || scanLength <= 0 || compressibility <= 0 || compressibility > 1) {
+            throw new IllegalArgumentException("Invalid sizes for workload " + name);
+        }
+    }
+
+    public static Workload of(String name) {
+        return switch (name.toUpperCase()) {
+            case "A" -> A;
+            case "B" -> B;
+            case "C" -> C;
+            case "D" -> D;
+            case "E" -> E;
+            default -> throw new IllegalArgumentException("Unknown workload " + name);
+        };
+    }
+
+    public Workload withRecords(long records) {
+        return new Workload(name, read, update, scan, insert, records, valueSize, scanLength, distribution,
+            compressibility);
+    }
+
+    public Workload withValueSize(int valueSize) {
+        return new Workload(name, read, update, scan, insert, records, valueSize, scanLength, distribution,
+            compressibility);
+    }
+
+    public Workload withDistribution(KeyDistribution distribution) {
+        return new Workload(name, read, update, scan, insert, records, valueSize, scanLength, distribution,
+            compressibility);
+    }
+
+    public Workload withCompressibility(double compressibility) {
+        return new Workload(name, read, update, scan, insert, records, valueSize, scanLength, distribution,
+            compressibility);
+    }
+
+    /**
+     * The operation for a uniform random number in [0, 1).
+     */
+    Operation operation(double random) {
+        if (random < read) return Operation.READ;
+        if (random < read + update) return Operation.UPDATE;
+        if (random < read + update + scan) return Operation.SCAN;
+        return Operation.INSERT;
+    }
+
+    public enum Operation {
+        READ, UPDATE, SCAN, INSERT
+    }
+}
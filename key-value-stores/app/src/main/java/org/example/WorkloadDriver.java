@@ -0,0 +1,281 @@
+package org.example;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs a {@link Workload} against a {@link KeyValueStore}: {@link #load()} inserts the initial records, then
+ * {@link #run(int, Duration)} issues the operation mix from several threads for a fixed time, or
+ * {@link #replay(Dataset, int)} replays a precomputed {@link Dataset}. Keys follow the workload's
+ * {@link KeyDistribution} among the ones inserted so far, a read may race with the insert of the newest id and miss
+ * it.
+ * <p>
+ * Every operation is timed with {@link System#nanoTime()} into one HdrHistogram {@link Recorder} per operation type,
+ * recorders are wait-free for the threads writing to them. Keys and values are generated into arrays reused by each
+ * thread (the stores copy them) and reads copy the value into the same array with
+ * {@link KeyValueStore#get(byte[], byte[])}, so the loop doesn't allocate besides what the store does and one JFR
+ * {@link OperationBatchEvent} per {@value OperationBatchEvent#SIZE} operations. {@link #interval()} gives the
+ * latencies since its previous call while a phase runs, for time series.
+ */
+public class WorkloadDriver {
+
+    // Up to an hour in nanoseconds, 3 significant digits
+    static final long HIGHEST_LATENCY = 3_600_000_000_000L;
+
+    private final KeyValueStore store;
+    private final Workload workload;
+    private final long seed;
+    private final ValueGenerator values;
+    // Next id to insert
+    private final AtomicLong inserted = new AtomicLong();
+    private final LongAdder bytesWritten = new LongAdder();
+    // The running phase's recorders and what interval() took from them, guarded by this
+    private Recorder[] recorders;
+    private Histogram[] taken;
+    // Recorded by phases that ended after the last interval(), guarded by this
+    private final Map<Workload.Operation, Histogram> untaken = new EnumMap<>(Workload.Operation.class);
+
+    public WorkloadDriver(KeyValueStore store, Workload workload, long seed) {
+        this.store = store;
+        this.workload = workload;
+        this.seed = seed;
+        this.values = new ValueGenerator(workload.valueSize(), workload.compressibility(), seed);
+    }
+
+    /**
+     * Inserts the workload's records in id order from a single thread.
+     */
+    public Report load() {
+        Recorder recorder = begin()[Workload.Operation.INSERT.ordinal()];
+        OperationBatchEvent.Batches batches = new OperationBatchEvent.Batches(store.name(), "load");
+        SplittableRandom random = new SplittableRandom(seed);
+        byte[] key = new byte[KeyGenerator.KEY_SIZE];
+        byte[] value = new byte[workload.valueSize()];
+        long start = System.nanoTime();
+        for (long id = inserted.get(); id < workload.records(); id = inserted.incrementAndGet()) {
+            KeyGenerator.write(id, key, 0);
+            values.next(random, value, 0);
+            long begin = System.nanoTime();
+            store.put(key, value);
+            long latency = System.nanoTime() - begin;
+            recorder.recordValue(latency);
+            batches.record(latency);
+            bytesWritten.add(key.length + value.length);
+        }
+        batches.commit();
+        long nanos = System.nanoTime() - start;
+        return new Report(store.name(), "load", 1, nanos, end());
+    }
+
+    /**
+     * Key and value bytes put so far by the load and the runs, what write amplification is measured against.
+     */
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * The latencies recorded by the loads, runs and replays since the previous call, each one once. The phases'
+     * {@link Report}s still have all of theirs.
+     */
+    public synchronized Map<Workload.Operation, Histogram> interval() {
+        Map<Workload.Operation, Histogram> histograms = new EnumMap<>(Workload.Operation.class);
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            Histogram histogram = new Histogram(HIGHEST_LATENCY, 3);
+            Histogram ended = untaken.remove(operation);
+            if (ended != null) {
+                histogram.add(ended);
+            }
+            if (recorders != null) {
+                Histogram recorded = recorders[operation.ordinal()].getIntervalHistogram();
+                taken[operation.ordinal()].add(recorded);
+                histogram.add(recorded);
+            }
+            histograms.put(operation, histogram);
+        }
+        return histograms;
+    }
+
+    /**
+     * Takes the workload's records as inserted, for a store another driver loaded, e.g. the same store behind a
+     * {@link CachingStore}.
+     */
+    public void assumeLoaded() {
+        inserted.accumulateAndGet(workload.records(), Math::max);
+    }
+
+    /**
+     * Runs the operation mix from {@code threads} threads for the given time, the store must be loaded.
+     */
+    public Report run(int threads, Duration duration) throws InterruptedException {
+        checkLoaded(workload.records());
+        // zeta(records) is computed once and copied to every thread
+        ZipfianGenerator zipfian = workload.distribution() == KeyDistribution.ZIPFIAN
+            || workload.distribution() == KeyDistribution.LATEST ? new ZipfianGenerator(inserted.get()) : null;
+        long deadline = System.nanoTime() + duration.toNanos();
+        return drive(workload.name(), threads, (thread, recorders, batches) -> {
+            // A different seed per thread, the same ones on every run
+            KeyGenerator keys = new KeyGenerator(workload.distribution(), seed + 1 + thread, zipfian);
+            SplittableRandom random = keys.random();
+            byte[] key = new byte[KeyGenerator.KEY_SIZE];
+            byte[] value = new byte[workload.valueSize()];
+            long now = System.nanoTime();
+            while (now < deadline) {
+                Workload.Operation operation = workload.operation(random.nextDouble());
+                int scanLength = 0;
+                switch (operation) {
+                    case INSERT -> {
+                        KeyGenerator.write(inserted.getAndIncrement(), key, 0);
+                        values.next(random, value, 0);
+                    }
+                    case UPDATE -> {
+                        keys.nextKey(inserted.get(), key, 0);
+                        values.next(random, value, 0);
+                    }
+                    case SCAN -> {
+                        keys.nextKey(inserted.get(), key, 0);
+                        scanLength = 1 + random.nextInt(workload.scanLength());
+                    }
+                    case READ -> keys.nextKey(inserted.get(), key, 0);
+                }
+                now = execute(operation, key, value, scanLength, recorders, batches);
+            }
+        });
+    }
+
+    /**
+     * Replays every operation of the dataset, each thread its own share of the file. The store must hold the
+     * dataset's records, loaded with the same workload.
+     */
+    public Report replay(Dataset dataset, int threads) throws InterruptedException {
+        checkLoaded(dataset.records());
+        if (dataset.valueSize() != workload.valueSize()) {
+            throw new IllegalArgumentException("Dataset values are " + dataset.valueSize() + " bytes, not "
+                + workload.valueSize());
+        }
+        long operations = dataset.operations();
+        return drive(workload.name() + " replay", threads, (thread, recorders, batches) -> {
+            Dataset.Cursor cursor = dataset.cursor(operations * thread / threads,
+                operations * (thread + 1) / threads);
+            byte[] key = new byte[KeyGenerator.KEY_SIZE];
+            byte[] value = new byte[workload.valueSize()];
+            try {
+                while (cursor.next()) {
+                    Workload.Operation operation = cursor.operation();
+                    cursor.key(key);
+                    if (operation == Workload.Operation.UPDATE || operation == Workload.Operation.INSERT) {
+                        cursor.value(value);
+                    }
+                    execute(operation, key, value, cursor.scanLength(), recorders, batches);
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Can't map the dataset", e);
+            }
+        });
+    }
+
+    private void checkLoaded(long records) {
+        if (inserted.get() < records) {
+            throw new IllegalStateException("Load the store before running workload " + workload.name());
+        }
+    }
+
+    /**
+     * Runs one operation and records its latency, returns the time it finished.
+     */
+    private long execute(Workload.Operation operation, byte[] key, byte[] value, int scanLength,
+                         Recorder[] recorders, OperationBatchEvent.Batches batches) {
+        long begin = System.nanoTime();
+        switch (operation) {
+            // Into the thread's value array, reads don't allocate a value either
+            case READ -> store.get(key, value);
+            case UPDATE, INSERT -> store.put(key, value);
+            case SCAN -> store.scan(key, scanLength, (k, v) -> { });
+        }
+        long end = System.nanoTime();
+        recorders[operation.ordinal()].recordValue(end - begin);
+        batches.record(end - begin);
+        if (operation == Workload.Operation.UPDATE || operation == Workload.Operation.INSERT) {
+            bytesWritten.add(key.length + value.length);
+        }
+        return end;
+    }
+
+    private interface Task {
+        void run(int thread, Recorder[] recorders, OperationBatchEvent.Batches batches);
+    }
+
+    /**
+     * New recorders for a phase, one per operation type.
+     */
+    private synchronized Recorder[] begin() {
+        recorders = new Recorder[Workload.Operation.values().length];
+        taken = new Histogram[recorders.length];
+        for (int i = 0; i < recorders.length; i++) {
+            recorders[i] = new Recorder(HIGHEST_LATENCY, 3);
+            taken[i] = new Histogram(HIGHEST_LATENCY, 3);
+        }
+        return recorders;
+    }
+
+    /**
+     * Every latency of the phase, the ones {@link #interval()} took included.
+     */
+    private synchronized Map<Workload.Operation, Histogram> end() {
+        Map<Workload.Operation, Histogram> histograms = new EnumMap<>(Workload.Operation.class);
+        for (Workload.Operation operation : Workload.Operation.values()) {
+            Histogram rest = recorders[operation.ordinal()].getIntervalHistogram();
+            untaken.computeIfAbsent(operation, o -> new Histogram(HIGHEST_LATENCY, 3)).add(rest);
+            Histogram all = taken[operation.ordinal()];
+            all.add(rest);
+            histograms.put(operation, all);
+        }
+        recorders = null;
+        taken = null;
+        return histograms;
+    }
+
+    private Report drive(String name, int threads, Task task) throws InterruptedException {
+        Recorder[] recorders = begin();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            futures.add(executor.submit(() -> {
+                OperationBatchEvent.Batches batches = new OperationBatchEvent.Batches(store.name(), name);
+                try {
+                    task.run(thread, recorders, batches);
+                } finally {
+                    batches.commit();
+                }
+            }));
+        }
+        try {
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Workload " + name + " failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+        long nanos = System.nanoTime() - start;
+        return new Report(store.name(), name, threads, nanos, end());
+    }
+}
@@ -0,0 +1,77 @@
+package org.example;
+
+import java.util.SplittableRandom;
+
+/**
+ * Zipfian ids in [0, items) with 0 the most popular, the algorithm from Gray et al. "Quickly Generating
+ * Billion-Record Synthetic Databases" that YCSB uses.
+ * <p>
+ * Computing zeta(items) is a sum over every item, so it is done once and copied to each thread with
+ * {@link #ZipfianGenerator(ZipfianGenerator)}; when items grow (inserts) only the new terms are added.
+ * Not thread-safe.
+ */
+public class ZipfianGenerator {
+
+    public static final double THETA = 0.99;
+
+    private final double theta;
+    private final double alpha;
+    private final double zeta2;
+    private final double half;
+    private long items;
+    private double zetan;
+    private double eta;
+
+    public ZipfianGenerator(long items) {
+        this(items, THETA);
+    }
+
+    public ZipfianGenerator(long items, double theta) {
+        if (items <= 0) {
+            throw new IllegalArgumentException("items must be positive: " + items);
+        }
+        this.theta = theta;
+        this.alpha = 1 / (1 - theta);
+        this.zeta2 = zeta(0, 2, theta, 0);
+        this.half = 1 + Math.pow(0.5, theta);
+        this.items = items;
+        this.zetan = zeta(0, items, theta, 0);
+        this.eta = eta();
+    }
+
+    public ZipfianGenerator(ZipfianGenerator other) {
+        this.theta = other.theta;
+        this.alpha = other.alpha;
+        this.zeta2 = other.zeta2;
+        this.half = other.half;
+        this.items = other.items;
+        this.zetan = other.zetan;
+        this.eta = other.eta;
+    }
+
+    private static double zeta(long from, long to, double theta, double initial) {
+        double sum = initial;
+        for (long i = from; i < to; i++) {
+            sum += 1 / Math.pow(i + 1, theta);
+        }
+        return sum;
+    }
+
+    private double eta() {
+        return (1 - Math.pow(2.0 / items, 1 - theta)) / (1 - zeta2 / zetan);
+    }
+
+    public long next(SplittableRandom random, long items) {
+        if (items > this.items) {
+            zetan = zeta(this.items, items, theta, zetan);
+            this.items = items;
+            eta = eta();
+        }
+        double u = random.nextDouble();
+        double uz = u * zetan;
+        if (uz < 1) return 0;
+        if (uz < half) return 1;
+        // Items may have shrunk back for a caller with an older count, never go past it
+        return Math.min(items - 1, (long) (this.items * Math.pow(eta * u - eta + 1, alpha)));
+    }
+}
@@ -0,0 +1,71 @@
+package org.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BulkLoaderTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ValueGenerator values = new ValueGenerator(100, 0.5, 1);
+
+    @Test
+    public void bulkAndPutLoadsWriteTheSameData() throws Exception {
+        for (StoreBackend backend : new StoreBackend[]{StoreBackend.ROCKSDB, StoreBackend.FORST}) {
+            try (KeyValueStore put = backend.open(folder.newFolder().toPath());
+                 KeyValueStore bulk = backend.open(folder.newFolder().toPath())) {
+                BulkLoader.Result putResult = new BulkLoader(put, values, 7).putLoad(20_000, 3_000);
+                BulkLoader.Result bulkResult = new BulkLoader(bulk, values, 7)
+                    .bulkLoad(20_000, 8, 3, folder.newFolder().toPath());
+                assertEquals(20_000, bulkResult.records());
+                assertTrue(bulkResult.liveSstBytes() > 0);
+                // Disjoint sorted files go below L0
+                assertEquals(0, bulkResult.level0Files());
+                assertEquals(0, bulkResult.pendingCompactionBytes());
+                assertTrue(putResult.liveSstBytes() > 0);
+
+                List<String> fromPut = new ArrayList<>();
+                List<String> fromBulk = new ArrayList<>();
+                put.scan(KeyGenerator.key(0), Integer.MAX_VALUE, (k, v) -> fromPut.add(entry(k, v)));
+                bulk.scan(KeyGenerator.key(0), Integer.MAX_VALUE, (k, v) -> fromBulk.add(entry(k, v)));
+                assertEquals(backend.name(), fromPut, fromBulk);
+                // A few of the 20000 random ids collide
+                long distinct = Arrays.stream(new BulkLoader(put, values, 7).ids(20_000)).distinct().count();
+                assertEquals(distinct, fromBulk.size());
+            }
+        }
+    }
+
+    @Test
+    public void stagedFilesAreMoved() throws Exception {
+        var staging = folder.newFolder().toPath();
+        try (KeyValueStore store = StoreBackend.ROCKSDB.open(folder.newFolder().toPath())) {
+            new BulkLoader(store, values, 1).bulkLoad(1_000, 4, 2, staging);
+            // 4 partitions of the id space, every one gets some of 1000 uniform ids
+            assertNotNull(store.get(KeyGenerator.key(new BulkLoader(store, values, 1).ids(1)[0])));
+        }
+        try (var files = Files.list(staging)) {
+            assertEquals(0, files.count());
+        }
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void mapDBHasNoSstFiles() {
+        try (KeyValueStore store = StoreBackend.MAPDB.open(folder.getRoot().toPath())) {
+            store.sstWriter(folder.getRoot().toPath().resolve("x.sst"));
+        }
+    }
+
+    private static String entry(byte[] key, byte[] value) {
+        return new String(key) + Arrays.hashCode(value);
+    }
+}
@@ -0,0 +1,221 @@
+package org.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class CachingStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final ValueGenerator VALUES = new ValueGenerator(150, 0.5, 1);
+
+    // 50 to 149 bytes, in the 64, 128 and 256 byte slots
+    private static byte[] value(long id, int version) {
+        byte[] value = new byte[150];
+        VALUES.forId(id * 1_000 + version, value, 0);
+        return Arrays.copyOf(value, 50 + (int) (id % 100));
+    }
+
+    @Test
+    public void hitsAfterTheFirstRead() throws Exception {
+        KeyValueStore store = StoreBackend.ROCKSDB.open(folder.getRoot().toPath());
+        try (CachingStore cache = new CachingStore(store, 4 << 20, CachingStore.WriteMode.WRITE_THROUGH)) {
+            for (long id = 0; id < 1_000; id++) {
+                store.put(KeyGenerator.key(id), value(id, 0));
+            }
+            for (int round = 0; round < 3; round++) {
+                for (long id = 0; id < 1_000; id++) {
+                    assertArrayEquals(value(id, 0), cache.get(KeyGenerator.key(id)));
+                }
+            }
+            assertNull(cache.get(KeyGenerator.key(1_000)));
+            assertEquals(2_000, cache.stats().hits());
+            assertEquals(1_001, cache.stats().misses());
+            assertEquals(1_000, cache.stats().entries());
+
+            cache.put(KeyGenerator.key(1), value(1, 1));
+            assertArrayEquals(value(1, 1), cache.get(KeyGenerator.key(1)));
+            assertArrayEquals(value(1, 1), store.get(KeyGenerator.key(1)));
+            cache.delete(KeyGenerator.key(2));
+            assertNull(cache.get(KeyGenerator.key(2)));
+            assertNull(store.get(KeyGenerator.key(2)));
+
+            // A value bigger than the largest slot still reads through
+            cache.put(KeyGenerator.key(3), new byte[CachingStore.MAX_SLOT + 1]);
+            assertEquals(CachingStore.MAX_SLOT + 1, cache.get(KeyGenerator.key(3)).length);
+
+            List<byte[]> values = cache.multiGet(List.of(KeyGenerator.key(0), KeyGenerator.key(2)));
+            assertArrayEquals(value(0, 0), values.get(0));
+            assertNull(values.get(1));
+        }
+    }
+
+    @Test
+    public void writeBackKeepsPutsUntilFlushed() throws Exception {
+        KeyValueStore store = StoreBackend.ROCKSDB.open(folder.getRoot().toPath());
+        try (CachingStore cache = new CachingStore(store, 4 << 20, CachingStore.WriteMode.WRITE_BACK)) {
+            cache.put(KeyGenerator.key(1), value(1, 0));
+            assertNull(store.get(KeyGenerator.key(1)));
+            assertArrayEquals(value(1, 0), cache.get(KeyGenerator.key(1)));
+            assertEquals(1, cache.stats().dirty());
+
+            // Scans see the cached puts
+            assertEquals(1, cache.scan(KeyGenerator.key(0), 10, (k, v) -> assertArrayEquals(value(1, 0), v)));
+            assertArrayEquals(value(1, 0), store.get(KeyGenerator.key(1)));
+            assertEquals(0, cache.stats().dirty());
+
+            cache.put(KeyGenerator.key(1), value(1, 1));
+            cache.flush();
+            assertArrayEquals(value(1, 1), store.get(KeyGenerator.key(1)));
+
+            // Batches go to the store and drop the cached value
+            try (KeyValueStore.Batch batch = cache.batch()) {
+                cache.put(KeyGenerator.key(1), value(1, 2));
+                batch.put(KeyGenerator.key(1), value(1, 3));
+                cache.write(batch);
+            }
+            assertArrayEquals(value(1, 3), cache.get(KeyGenerator.key(1)));
+            assertArrayEquals(value(1, 3), store.get(KeyGenerator.key(1)));
+        }
+    }
+
+    @Test
+    public void evictedPutsReachTheStore() throws Exception {
+        KeyValueStore store = StoreBackend.ROCKSDB.open(folder.getRoot().toPath());
+        // A single slab, 16384 slots of 64 bytes
+        try (CachingStore cache = new CachingStore(store, CachingStore.SLAB_SIZE,
+            CachingStore.WriteMode.WRITE_BACK)) {
+            for (long id = 0; id < 50_000; id++) {
+                // The second half more often, so TinyLFU lets it evict the first
+                for (int i = id < 25_000 ? 1 : 3; i > 0; i--) {
+                    cache.put(KeyGenerator.key(id), value(id * 100, 0));
+                }
+            }
+            CachingStore.Stats stats = cache.stats();
+            assertTrue("entries " + stats.entries(), stats.entries() <= CachingStore.SLAB_SIZE / 64);
+            assertTrue("evictions " + stats.evictions(), stats.evictions() > 0);
+            assertTrue("written back " + stats.writeBacks(), stats.writeBacks() > 0);
+            for (long id = 0; id < 50_000; id++) {
+                assertArrayEquals(value(id * 100, 0), cache.get(KeyGenerator.key(id)));
+            }
+            cache.flush();
+            for (long id = 0; id < 50_000; id += 97) {
+                assertArrayEquals(value(id * 100, 0), store.get(KeyGenerator.key(id)));
+            }
+        }
+    }
+
+    @Test
+    public void hotKeysSurviveAScan() throws Exception {
+        KeyValueStore store = StoreBackend.ROCKSDB.open(folder.getRoot().toPath());
+        try (CachingStore cache = new CachingStore(store, CachingStore.SLAB_SIZE,
+            CachingStore.WriteMode.WRITE_THROUGH)) {
+            for (long id = 0; id < 100_000; id++) {
+                store.put(KeyGenerator.key(id), new byte[40]);
+            }
+            for (int round = 0; round < 5; round++) {
+                for (long id = 0; id < 1_000; id++) {
+                    cache.get(KeyGenerator.key(id));
+                }
+            }
+            // Each read once, less frequent than the hot keys
+            for (long id = 1_000; id < 100_000; id++) {
+                cache.get(KeyGenerator.key(id));
+            }
+            long hits = cache.stats().hits();
+            for (long id = 0; id < 1_000; id++) {
+                cache.get(KeyGenerator.key(id));
+            }
+            // Plain CLOCK would have replaced them all, the sketch's collisions and aging let a few go
+            long hotHits = cache.stats().hits() - hits;
+            assertTrue("hot hits " + hotHits, hotHits >= 950);
+            assertTrue(cache.stats().rejections() > 0);
+        }
+    }
+
+    @Test
+    public void readsIntoTheCallersArray() throws Exception {
+        KeyValueStore store = StoreBackend.ROCKSDB.open(folder.getRoot().toPath());
+        try (CachingStore cache = new CachingStore(store, 4 << 20, CachingStore.WriteMode.WRITE_THROUGH)) {
+            cache.put(KeyGenerator.key(1), value(1, 0));
+            byte[] into = new byte[CachingStore.MIN_SLOT];
+            // A hit from the slot, and RocksDB reading into the array itself
+            for (KeyValueStore source : List.of(cache, store)) {
+                assertEquals(value(1, 0).length, source.get(KeyGenerator.key(1), into));
+                assertArrayEquals(Arrays.copyOf(value(1, 0), into.length), into);
+            }
+            assertEquals(-1, cache.get(KeyGenerator.key(2), into));
+            assertEquals(1, cache.stats().hits());
+            assertEquals(1, cache.stats().misses());
+        }
+    }
+
+    @Test
+    public void aClassUsedLateTakesASlab() throws Exception {
+        KeyValueStore store = StoreBackend.ROCKSDB.open(folder.getRoot().toPath());
+        try (CachingStore cache = new CachingStore(store, 2L * CachingStore.SLAB_SIZE,
+            CachingStore.WriteMode.WRITE_BACK)) {
+            // Both slabs to the 64 byte class
+            for (long id = 0; id < 2L * CachingStore.SLAB_SIZE / 64; id++) {
+                cache.put(KeyGenerator.key(id), new byte[40]);
+            }
+            assertEquals(2L * CachingStore.SLAB_SIZE, cache.stats().slabBytes());
+
+            byte[] big = new byte[1000];
+            cache.put(KeyGenerator.key(1_000_000), big);
+            long hits = cache.stats().hits();
+            assertArrayEquals(big, cache.get(KeyGenerator.key(1_000_000)));
+            assertEquals(hits + 1, cache.stats().hits());
+            assertEquals(2L * CachingStore.SLAB_SIZE, cache.stats().slabBytes());
+            // The 64 byte values evicted with the slab were written back
+            assertEquals(CachingStore.SLAB_SIZE / 64, cache.stats().writeBacks());
+            assertArrayEquals(new byte[40], store.get(KeyGenerator.key(2L * CachingStore.SLAB_SIZE / 64 - 1)));
+        }
+    }
+
+    @Test
+    public void neverKeepsAStaleValue() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (CachingStore.WriteMode mode : CachingStore.WriteMode.values()) {
+            KeyValueStore store = StoreBackend.ROCKSDB.open(folder.newFolder().toPath());
+            try (CachingStore cache = new CachingStore(store, CachingStore.SLAB_SIZE, mode)) {
+                List<Future<?>> futures = new ArrayList<>();
+                for (int t = 0; t < 4; t++) {
+                    int thread = t;
+                    futures.add(executor.submit(() -> {
+                        SplittableRandom random = new SplittableRandom(thread);
+                        for (int i = 0; i < 20_000; i++) {
+                            long id = random.nextInt(200);
+                            switch (random.nextInt(4)) {
+                                case 0 -> cache.put(KeyGenerator.key(id), value(id, random.nextInt(1000)));
+                                case 1 -> cache.delete(KeyGenerator.key(id));
+                                default -> cache.get(KeyGenerator.key(id));
+                            }
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                cache.flush();
+                for (long id = 0; id < 200; id++) {
+                    assertArrayEquals(mode + " " + id, store.get(KeyGenerator.key(id)),
+                        cache.get(KeyGenerator.key(id)));
+                }
+            }
+        }
+        executor.shutdown();
+    }
+}
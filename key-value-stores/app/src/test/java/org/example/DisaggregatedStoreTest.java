@@ -0,0 +1,137 @@
+package org.example;
+
+import org.apache.flink.state.forst.fs.ByteBufferReadableFSDataInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DisaggregatedStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] value(long id) {
+        return ("value" + id).getBytes();
+    }
+
+    @Test
+    public void filesLiveRemotelyAndFlushedOnesAreCached() throws Exception {
+        Path local = folder.newFolder().toPath();
+        ThrottledFileSystem remote = new ThrottledFileSystem(folder.newFolder().toPath(), Duration.ZERO, 0);
+        try (CachingFileSystem files = new CachingFileSystem(remote, local.resolve("cache"), 1 << 30);
+             DisaggregatedStore store = new DisaggregatedStore(files, "db", local, StoreOptions.DEFAULT)) {
+            for (long id = 0; id < 1_000; id++) {
+                store.put(KeyGenerator.key(id), value(id));
+            }
+            store.flush();
+            assertTrue(Files.list(remote.root().resolve("db")).anyMatch(file -> file.toString().endsWith(".sst")));
+            assertTrue(files.cachedBytes() > 0);
+
+            // The flushed file was written through, reading it goes to the local copy
+            long remoteReads = remote.bytesRead();
+            assertArrayEquals(value(42), store.get(KeyGenerator.key(42)));
+            List<String> scanned = new ArrayList<>();
+            store.scan(KeyGenerator.key(995), 100, (key, value) -> scanned.add(new String(value)));
+            assertEquals(List.of("value995", "value996", "value997", "value998", "value999"), scanned);
+            assertTrue(files.hits() > 0);
+            assertEquals(0, files.misses());
+            assertEquals(remoteReads, remote.bytesRead());
+        }
+    }
+
+    @Test
+    public void withoutCacheEveryReadIsRemote() throws Exception {
+        Path local = folder.newFolder().toPath();
+        ThrottledFileSystem remote = new ThrottledFileSystem(folder.newFolder().toPath(), Duration.ZERO, 0);
+        try (CachingFileSystem files = new CachingFileSystem(remote, local.resolve("cache"), 0);
+             DisaggregatedStore store = new DisaggregatedStore(files, "db", local,
+                 StoreOptions.DEFAULT.withFillCache(false))) {
+            for (long id = 0; id < 1_000; id++) {
+                store.put(KeyGenerator.key(id), value(id));
+            }
+            store.flush();
+            long remoteReads = remote.bytesRead();
+            assertArrayEquals(value(7), store.get(KeyGenerator.key(7)));
+            assertEquals(0, files.cachedBytes());
+            assertEquals(0, files.hits());
+            assertTrue(files.misses() > 0);
+            assertTrue(remote.bytesRead() > remoteReads);
+        }
+    }
+
+    @Test
+    public void uncachedReadsOnlyAskForTheFileSizeOnce() throws Exception {
+        ThrottledFileSystem remote = new ThrottledFileSystem(folder.newFolder().toPath(), Duration.ZERO, 0);
+        Path table = Files.write(remote.root().resolve("1.sst"), new byte[100]);
+        // Nothing to download into, and a file bigger than the cache
+        for (long capacity : new long[]{0, 10}) {
+            try (CachingFileSystem files = new CachingFileSystem(remote, folder.newFolder().toPath(), capacity);
+                 ByteBufferReadableFSDataInputStream input = files.open(table.toString())) {
+                long requests = remote.requests();
+                for (int read = 0; read < 3; read++) {
+                    assertEquals(100, input.readFully(0, ByteBuffer.allocate(100)));
+                }
+                // The open and the reads, plus the size of the file when there is a cache
+                assertEquals(capacity == 0 ? 4 : 5, remote.requests() - requests);
+                assertEquals(0, files.cachedBytes());
+                assertEquals(3, files.misses());
+            }
+        }
+    }
+
+    @Test
+    public void restoresFromARemoteCheckpoint() throws Exception {
+        Path local = folder.newFolder().toPath();
+        Path restoredLocal = folder.newFolder().toPath();
+        ThrottledFileSystem remote = new ThrottledFileSystem(folder.newFolder().toPath(), Duration.ZERO, 0);
+        try (CachingFileSystem files = new CachingFileSystem(remote, local.resolve("cache"), 1 << 30)) {
+            try (DisaggregatedStore store = new DisaggregatedStore(files, "db", local, StoreOptions.DEFAULT)) {
+                store.put(KeyGenerator.key(1), value(1));
+                store.flush();
+                store.checkpoint(Path.of("checkpoint"));
+                store.put(KeyGenerator.key(2), value(2));
+            }
+        }
+        assertTrue(Files.exists(remote.root().resolve("checkpoint").resolve("CURRENT")));
+
+        // A cold cache: the first read of the restored files downloads them
+        try (CachingFileSystem files = new CachingFileSystem(remote, restoredLocal.resolve("cache"), 1 << 30);
+             DisaggregatedStore store = new DisaggregatedStore(files, "checkpoint", restoredLocal,
+                 StoreOptions.DEFAULT)) {
+            assertArrayEquals(value(1), store.get(KeyGenerator.key(1)));
+            assertNull(store.get(KeyGenerator.key(2)));
+            assertTrue(files.misses() > 0);
+            assertTrue(files.cachedBytes() > 0);
+        }
+    }
+
+    @Test
+    public void benchmarkMissesOnlyWithoutCacheOrAfterRestore() throws Exception {
+        DisaggregatedBenchmark benchmark = new DisaggregatedBenchmark(folder.getRoot().toPath(),
+            Duration.ofNanos(10_000), 0, 20_000, new ValueGenerator(100, 0.5, 42), 42);
+        DisaggregatedBenchmark.Result everything = benchmark.run(1 << 30, 500);
+        assertTrue(everything.tableBytes() > 0);
+        assertEquals(1.0, everything.hitRatio(), 0);
+        assertEquals(0, everything.remoteBytesRead());
+        assertEquals(500, everything.restoredGets().getTotalCount());
+        // The gets look up loaded keys, not ids below the smallest one the files could skip
+        assertEquals(500, everything.found());
+        assertEquals(500, everything.restoredFound());
+        assertTrue(everything.restoredHitRatio() < 1);
+
+        DisaggregatedBenchmark.Result none = benchmark.run(0, 500);
+        assertEquals(0, none.hitRatio(), 0);
+        assertTrue(none.remoteBytesRead() > 0);
+        assertEquals(50, none.scans().getTotalCount());
+        assertEquals(500, none.found());
+    }
+}
@@ -0,0 +1,37 @@
+package org.example;
+
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * ForStStore and ForStTransactionalStore are the RocksDB stores against the org.forstdb classes: once the package and
+ * names are the same, only the class comment may differ. A change made to one of the two and not the other fails here.
+ */
+public class ForStSourceTest {
+
+    private static final Path SOURCES = Path.of("src/main/java/org/example");
+
+    @Test
+    public void forStStoreIsRocksDBStore() throws Exception {
+        assertEquals(normalized("RocksDBStore"), normalized("ForStStore"));
+    }
+
+    @Test
+    public void forStTransactionalStoreIsRocksDBTransactionalStore() throws Exception {
+        assertEquals(normalized("RocksDBTransactionalStore"), normalized("ForStTransactionalStore"));
+    }
+
+    private static String normalized(String name) throws Exception {
+        String source = Files.readString(SOURCES.resolve(name + ".java"))
+            .replace("org.forstdb.", "org.rocksdb.")
+            .replace("ForSt", "RocksDB")
+            .replace("\"forst\"", "\"rocksdb\"");
+        // Without the class comment, the one place they say what they are
+        int comment = source.indexOf("/**");
+        return source.substring(0, comment) + source.substring(source.indexOf("*/", comment) + 2);
+    }
+}
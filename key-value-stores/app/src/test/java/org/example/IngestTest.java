@@ -0,0 +1,125 @@
+package org.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class IngestTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final ValueGenerator values = new ValueGenerator(100, 0.5, 1);
+
+    @Test
+    public void everyModeWritesEveryRecord() throws Exception {
+        for (StoreBackend backend : StoreBackend.values()) {
+            for (Ingest.Commit commit : Ingest.Commit.values()) {
+                for (boolean virtualThreads : new boolean[]{false, true}) {
+                    try (KeyValueStore store = backend.open(folder.newFolder().toPath())) {
+                        Ingest.Result result = new Ingest(store, commit, 64, values, 1)
+                            .run(4, virtualThreads, 10_001);
+                        String mode = backend + " " + commit + " " + virtualThreads;
+                        assertEquals(mode, 10_001, result.records());
+                        // 157 batches, the last one with a single record
+                        assertEquals(mode, 157, result.commitLatency().getTotalCount());
+                        assertTrue(mode, result.groups() >= 1 && result.groups() <= 157);
+                        assertNotNull(mode, store.get(KeyGenerator.key(0)));
+                        assertNotNull(mode, store.get(KeyGenerator.key(10_000)));
+                        assertNull(mode, store.get(KeyGenerator.key(10_001)));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void groupsWaitingBatches() throws Exception {
+        try (KeyValueStore store = StoreBackend.ROCKSDB.open(folder.getRoot().toPath())) {
+            Ingest.Result result = new Ingest(store, Ingest.Commit.GROUP_SYNC, 10, values, 1).run(16, true, 20_000);
+            assertEquals(2_000, result.commitLatency().getTotalCount());
+            // Writers wait for the fsync together, so groups hold more than one batch
+            assertTrue("groups " + result.groups(), result.groups() < 2_000);
+        }
+    }
+
+    @Test
+    public void holdsGroupsBackWhileTheStoreStalls() throws Exception {
+        AtomicBoolean stalled = new AtomicBoolean(true);
+        try (KeyValueStore store = new MapDBStore(folder.getRoot().toPath()) {
+            @Override
+            public boolean writeStalled() {
+                return stalled.get();
+            }
+        }) {
+            GroupCommitter committer = new GroupCommitter(store, 1, false);
+            CountDownLatch committed = new CountDownLatch(1);
+            Thread writer = Thread.ofVirtual().start(() -> {
+                try (KeyValueStore.Batch batch = store.batch()) {
+                    batch.put(KeyGenerator.key(1), new byte[1]);
+                    committer.commit(batch);
+                    committed.countDown();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+            Thread.sleep(50);
+            assertEquals(1, committed.getCount());
+            assertNull(store.get(KeyGenerator.key(1)));
+
+            stalled.set(false);
+            committed.await();
+            writer.join();
+            committer.close();
+            assertNotNull(store.get(KeyGenerator.key(1)));
+            assertTrue(committer.stallNanos() > 0);
+        }
+    }
+
+    @Test
+    public void writersRacingCloseAreCommittedOrRejected() throws Exception {
+        try (KeyValueStore store = new MapDBStore(folder.getRoot().toPath())) {
+            GroupCommitter committer = new GroupCommitter(store, 1, false);
+            AtomicInteger rejected = new AtomicInteger();
+            List<Thread> writers = new ArrayList<>();
+            for (int w = 0; w < 8; w++) {
+                int writer = w;
+                writers.add(Thread.ofVirtual().start(() -> {
+                    try (KeyValueStore.Batch batch = store.batch()) {
+                        for (long id = 0; ; id++) {
+                            batch.put(KeyGenerator.key(writer * 1_000_000L + id), new byte[1]);
+                            committer.commit(batch);
+                            batch.clear();
+                        }
+                    } catch (IllegalStateException e) {
+                        rejected.incrementAndGet();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }));
+            }
+            Thread.sleep(50);
+            committer.close();
+            // A writer whose batch was queued after the committer stopped would wait forever
+            for (Thread writer : writers) {
+                assertTrue(writer.join(Duration.ofSeconds(10)));
+            }
+            assertEquals(8, rejected.get());
+            assertTrue(committer.batches() > 0);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void syncNeedsTheWal() {
+        StoreOptions.DEFAULT.withSync(true).withDisableWal(true);
+    }
+}
@@ -0,0 +1,109 @@
+package org.example;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class InstrumentationTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void statisticsOnlyWhenEnabled() throws Exception {
+        try (KeyValueStore store = StoreBackend.ROCKSDB.open(folder.newFolder().toPath())) {
+            assertTrue(store.statistics().isEmpty());
+        }
+        try (KeyValueStore store = StoreBackend.FORST.open(folder.newFolder().toPath(),
+            StoreOptions.DEFAULT.withStatistics(true))) {
+            store.put(KeyGenerator.key(1), new byte[10]);
+            store.get(KeyGenerator.key(1));
+            Map<String, Double> statistics = store.statistics();
+            assertEquals(1, statistics.get("db_get.count"), 0);
+            assertEquals(1, statistics.get("memtable_hit"), 0);
+            // Percentiles can't be per interval, the column names say they aren't
+            assertFalse(statistics.containsKey("db_get.p99"));
+            assertTrue(statistics.containsKey("db_get.p99_since_open"));
+            // Since the previous call
+            assertEquals(0, store.statistics().get("db_get.count"), 0);
+        }
+    }
+
+    @Test
+    public void columnFamiliesCountFromTheirOwnPreviousCall() throws Exception {
+        try (RocksDBStore owner = new RocksDBStore(folder.newFolder().toPath(),
+            StoreOptions.DEFAULT.withStatistics(true), 2)) {
+            List<KeyValueStore> stores = owner.columnFamilies();
+            stores.get(0).put(KeyGenerator.key(1), new byte[10]);
+            stores.get(0).get(KeyGenerator.key(1));
+            assertEquals(1, stores.get(1).statistics().get("memtable_hit"), 0);
+            // The other store's call didn't take the counts away
+            assertEquals(1, stores.get(0).statistics().get("memtable_hit"), 0);
+            assertEquals(RocksDBStore.STATISTICS, List.copyOf(stores.get(1).statistics().keySet()));
+        }
+    }
+
+    @Test
+    public void writesEveryOperationOnce() throws Exception {
+        Path csv = folder.getRoot().toPath().resolve("run.csv");
+        try (KeyValueStore store = StoreBackend.ROCKSDB.open(folder.newFolder().toPath(),
+            StoreOptions.DEFAULT.withStatistics(true))) {
+            WorkloadDriver driver = new WorkloadDriver(store, Workload.A.withRecords(10_000), 1);
+            Report load;
+            Report run;
+            try (Instrumentation instrumentation = new Instrumentation(store, driver, csv, Duration.ofMillis(50))) {
+                load = driver.load();
+                run = driver.run(2, Duration.ofMillis(300));
+                instrumentation.stop();
+            }
+
+            List<String> lines = Files.readAllLines(csv);
+            List<String> header = Arrays.asList(lines.get(0).split(",", -1));
+            assertTrue(lines.size() > 3);
+            assertTrue(header.contains("block_cache_miss"));
+            long reads = 0;
+            long writes = 0;
+            for (String line : lines.subList(1, lines.size())) {
+                String[] row = line.split(",", -1);
+                assertEquals(line, header.size(), row.length);
+                reads += Long.parseLong(row[header.indexOf("read.ops")]);
+                writes += Long.parseLong(row[header.indexOf("insert.ops")])
+                    + Long.parseLong(row[header.indexOf("update.ops")]);
+            }
+            assertEquals(10_000, load.operations());
+            assertEquals(run.histograms().get(Workload.Operation.READ).getTotalCount(), reads);
+            assertEquals(10_000 + run.histograms().get(Workload.Operation.UPDATE).getTotalCount(), writes);
+        }
+    }
+
+    @Test
+    public void recordsOperationBatchesInJfr() throws Exception {
+        Path jfr = folder.getRoot().toPath().resolve("load.jfr");
+        try (KeyValueStore store = StoreBackend.MAPDB.open(folder.newFolder().toPath());
+             Recording recording = new Recording()) {
+            recording.enable("org.example.OperationBatch");
+            recording.start();
+            new WorkloadDriver(store, Workload.C.withRecords(5_000), 1).load();
+            recording.stop();
+            recording.dump(jfr);
+        }
+        List<RecordedEvent> events = RecordingFile.readAllEvents(jfr);
+        // 4 full batches and the rest
+        assertEquals(5, events.size());
+        assertEquals(5_000, events.stream().mapToInt(e -> e.getInt("operations")).sum());
+        assertEquals("mapdb", events.get(0).getString("store"));
+        assertEquals("load", events.get(0).getString("phase"));
+    }
+}
@@ -0,0 +1,93 @@
+package org.example;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.zip.Deflater;
+
+import static java.nio.charset.StandardCharsets.US_ASCII;
+import static org.junit.Assert.*;
+
+public class KeyGeneratorTest {
+
+    @Test
+    public void keysSortLikeIds() {
+        assertEquals("user000000000000", new String(KeyGenerator.key(0), US_ASCII));
+        assertEquals("user000000001234", new String(KeyGenerator.key(1234), US_ASCII));
+        String key99 = new String(KeyGenerator.key(99), US_ASCII);
+        assertTrue(key99.compareTo(new String(KeyGenerator.key(100), US_ASCII)) < 0);
+
+        byte[] keys = new byte[2 * KeyGenerator.KEY_SIZE];
+        KeyGenerator.write(7, keys, KeyGenerator.KEY_SIZE);
+        assertEquals("user000000000007", new String(keys, KeyGenerator.KEY_SIZE, KeyGenerator.KEY_SIZE, US_ASCII));
+    }
+
+    @Test
+    public void sameSeedSameKeys() {
+        for (KeyDistribution distribution : KeyDistribution.values()) {
+            KeyGenerator a = new KeyGenerator(distribution, 42, 1000);
+            KeyGenerator b = new KeyGenerator(distribution, 42, 1000);
+            for (int i = 0; i < 1000; i++) {
+                long id = a.nextId(1000);
+                assertEquals(distribution.name(), id, b.nextId(1000));
+                assertTrue(distribution.name(), id >= 0 && id < 1000);
+            }
+        }
+    }
+
+    @Test
+    public void sequentialWraps() {
+        KeyGenerator keys = new KeyGenerator(KeyDistribution.SEQUENTIAL, 1, 10);
+        long first = keys.nextId(10);
+        for (int i = 1; i < 25; i++) {
+            assertEquals((first + i) % 10, keys.nextId(10));
+        }
+    }
+
+    @Test
+    public void zipfianIsSkewed() {
+        int[] counts = counts(KeyDistribution.ZIPFIAN, 10_000, 100_000);
+        Arrays.sort(counts);
+        long top = 0;
+        for (int i = counts.length - 100; i < counts.length; i++) top += counts[i];
+        // With theta 0.99 the top 1% of 10000 keys get about 60% of the requests, uniform would give 1%
+        assertTrue("top 1% got " + top, top > 50_000);
+    }
+
+    @Test
+    public void latestPrefersRecentKeys() {
+        int[] counts = counts(KeyDistribution.LATEST, 10_000, 100_000);
+        assertTrue(counts[9_999] > counts[0] * 100L);
+        // Keys inserted meanwhile become the most popular
+        KeyGenerator keys = new KeyGenerator(KeyDistribution.LATEST, 1, 10_000);
+        int newest = 0;
+        for (int i = 0; i < 1000; i++) {
+            if (keys.nextId(20_000) == 19_999) newest++;
+        }
+        assertTrue(newest > 50);
+    }
+
+    @Test
+    public void valuesCompressToTheirRatio() {
+        for (double ratio : new double[]{0.25, 0.5, 1}) {
+            ValueGenerator values = new ValueGenerator(4096, ratio, 1);
+            byte[] value = values.next(new SplittableRandom(1));
+            Deflater deflater = new Deflater();
+            deflater.setInput(value);
+            deflater.finish();
+            int compressed = deflater.deflate(new byte[8192]);
+            deflater.end();
+            assertEquals("ratio " + ratio, ratio, (double) compressed / value.length, 0.1);
+        }
+    }
+
+    private static int[] counts(KeyDistribution distribution, int items, int samples) {
+        KeyGenerator keys = new KeyGenerator(distribution, 1, items);
+        int[] counts = new int[items];
+        for (int i = 0; i < samples; i++) {
+            counts[(int) keys.nextId(items)]++;
+        }
+        return counts;
+    }
+}
@@ -0,0 +1,202 @@
+package org.example;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.junit.Assert.*;
+
+@RunWith(Parameterized.class)
+public class KeyValueStoreTest {
+
+    @Parameterized.Parameters(name = "{0}")
+    public static StoreBackend[] backends() {
+        return StoreBackend.values();
+    }
+
+    @Parameterized.Parameter
+    public StoreBackend backend;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private KeyValueStore store;
+
+    @Before
+    public void open() {
+        store = backend.open(folder.getRoot().toPath().resolve("db"));
+    }
+
+    @After
+    public void close() {
+        store.close();
+    }
+
+    @Test
+    public void putGetDelete() {
+        assertNull(store.get(bytes("missing")));
+        store.put(bytes("key"), bytes("value"));
+        assertArrayEquals(bytes("value"), store.get(bytes("key")));
+        store.put(bytes("key"), bytes("other"));
+        assertArrayEquals(bytes("other"), store.get(bytes("key")));
+        store.delete(bytes("key"));
+        assertNull(store.get(bytes("key")));
+    }
+
+    @Test
+    public void scansInUnsignedKeyOrder() {
+        for (String key : List.of("b", "d", "a", "c", "e")) {
+            store.put(bytes(key), bytes(key.toUpperCase()));
+        }
+        store.put(new byte[]{(byte) 0xFF}, bytes("last"));
+
+        List<String> visited = new ArrayList<>();
+        int count = store.scan(bytes("b"), 3, (k, v) -> visited.add(new String(k, UTF_8) + new String(v, UTF_8)));
+        assertEquals(3, count);
+        assertEquals(List.of("bB", "cC", "dD"), visited);
+
+        visited.clear();
+        assertEquals(2, store.scan(bytes("e"), 10, (k, v) -> visited.add(new String(v, UTF_8))));
+        assertEquals(List.of("E", "last"), visited);
+    }
+
+    @Test
+    public void multiGetKeepsTheOrder() {
+        store.put(bytes("a"), bytes("A"));
+        store.put(bytes("c"), bytes("C"));
+        List<byte[]> values = store.multiGet(List.of(bytes("c"), bytes("b"), bytes("a")));
+        assertEquals(3, values.size());
+        assertArrayEquals(bytes("C"), values.get(0));
+        assertNull(values.get(1));
+        assertArrayEquals(bytes("A"), values.get(2));
+    }
+
+    @Test
+    public void rangeAndPrefixScans() {
+        for (String key : List.of("aa", "ab", "abc", "b", "ba", "c")) {
+            store.put(bytes(key), bytes(key));
+        }
+        List<String> visited = new ArrayList<>();
+        assertEquals(3, store.rangeScan(bytes("ab"), bytes("ba"), (k, v) -> visited.add(new String(k, UTF_8))));
+        assertEquals(List.of("ab", "abc", "b"), visited);
+
+        visited.clear();
+        assertEquals(2, store.prefixScan(bytes("ab"), (k, v) -> visited.add(new String(k, UTF_8))));
+        assertEquals(List.of("ab", "abc"), visited);
+        assertEquals(0, store.prefixScan(bytes("d"), (k, v) -> { }));
+    }
+
+    @Test
+    public void cursorSeeksAgain() {
+        for (String key : List.of("a", "b", "c")) {
+            store.put(bytes(key), bytes(key.toUpperCase()));
+        }
+        try (KeyValueStore.Cursor cursor = store.cursor(new byte[0])) {
+            cursor.seek(bytes("bb"));
+            assertArrayEquals(bytes("c"), cursor.key());
+            assertArrayEquals(bytes("C"), cursor.value());
+            cursor.next();
+            assertFalse(cursor.isValid());
+
+            cursor.seek(bytes("a"));
+            assertArrayEquals(bytes("a"), cursor.key());
+            cursor.next();
+            assertArrayEquals(bytes("b"), cursor.key());
+        }
+    }
+
+    @Test
+    public void prefixExtractorKeepsScansCorrectAfterFlush() {
+        store.close();
+        StoreOptions options = StoreOptions.DEFAULT.withPrefixLength(13).withBloomBitsPerKey(10)
+            .withBlockCacheBytes(1 << 20).withPinData(true).withReadaheadBytes(64 << 10);
+        store = backend.open(folder.getRoot().toPath().resolve("prefix"), options);
+        for (long id = 0; id < 3_000; id++) {
+            store.put(KeyGenerator.key(id), KeyGenerator.key(id));
+        }
+        store.flush();
+        store.put(KeyGenerator.key(1_500), bytes("memtable"));
+
+        // user000000001, ids 1000 to 1999
+        assertEquals(1_000, store.prefixScan(Arrays.copyOf(KeyGenerator.key(1_000), 13), (k, v) -> { }));
+        assertEquals(1, store.prefixScan(KeyGenerator.key(1_000), (k, v) -> { }));
+        // Shorter than the extractor's prefix, and scans crossing prefixes, still see every key
+        assertEquals(3_000, store.prefixScan(bytes("user"), (k, v) -> { }));
+        assertEquals(20, store.rangeScan(KeyGenerator.key(990), KeyGenerator.key(1_010), (k, v) -> { }));
+        assertEquals(30, store.scan(KeyGenerator.key(985), 30, (k, v) -> { }));
+        assertArrayEquals(bytes("memtable"), store.get(KeyGenerator.key(1_500)));
+    }
+
+    @Test
+    public void prewarmsIndexAndFiltersIntoTheBlockCache() {
+        store.close();
+        StoreOptions options = StoreOptions.DEFAULT.withBloomBitsPerKey(10).withBlockCacheBytes(8 << 20)
+            .withCacheIndexAndFilterBlocks(true);
+        store = backend.open(folder.getRoot().toPath().resolve("prewarm"), options);
+        for (long id = 0; id < 3_000; id++) {
+            store.put(KeyGenerator.key(id), KeyGenerator.key(id));
+        }
+        store.flush();
+        store.close();
+        store = backend.open(folder.getRoot().toPath().resolve("prewarm"), options);
+        if (backend == StoreBackend.MAPDB) {
+            assertEquals(0, store.prewarmIndexAndFilters());
+            return;
+        }
+        long before = store.property("rocksdb.block-cache-usage").orElseThrow();
+        assertEquals(1, store.prewarmIndexAndFilters());
+        assertTrue(store.property("rocksdb.block-cache-usage").orElseThrow() > before);
+    }
+
+    @Test
+    public void copiesReusedArrays() {
+        byte[] key = KeyGenerator.key(1);
+        byte[] value = bytes("first");
+        store.put(key, value);
+        KeyGenerator.write(2, key, 0);
+        System.arraycopy(bytes("other"), 0, value, 0, value.length);
+        store.put(key, value);
+        assertArrayEquals(bytes("first"), store.get(KeyGenerator.key(1)));
+        assertArrayEquals(bytes("other"), store.get(KeyGenerator.key(2)));
+    }
+
+    @Test
+    public void writesAGroupOfBatches() {
+        List<KeyValueStore.Batch> batches = new ArrayList<>();
+        for (String key : List.of("a", "b", "c")) {
+            KeyValueStore.Batch batch = store.batch();
+            batch.put(bytes(key), bytes(key.toUpperCase()));
+            batch.put(bytes(key + key), bytes(key));
+            batches.add(batch);
+        }
+        // The last put of a key wins, as in one batch
+        batches.get(2).put(bytes("a"), bytes("last"));
+        store.write(batches);
+        assertArrayEquals(bytes("last"), store.get(bytes("a")));
+        assertArrayEquals(bytes("B"), store.get(bytes("b")));
+        assertArrayEquals(bytes("c"), store.get(bytes("cc")));
+        assertEquals(backend != StoreBackend.MAPDB, store.mergesBatches());
+        batches.forEach(KeyValueStore.Batch::close);
+    }
+
+    @Test
+    public void reopens() {
+        store.put(bytes("key"), bytes("value"));
+        store.close();
+        store = backend.open(folder.getRoot().toPath().resolve("db"));
+        assertArrayEquals(bytes("value"), store.get(bytes("key")));
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(UTF_8);
+    }
+}
@@ -0,0 +1,122 @@
+package org.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.junit.Assert.*;
+
+public class MapDBStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] value(long id) {
+        return ("value" + id).getBytes();
+    }
+
+    private static List<Map.Entry<byte[], byte[]>> entries(long records) {
+        return LongStream.range(0, records)
+            .mapToObj(id -> (Map.Entry<byte[], byte[]>) new AbstractMap.SimpleImmutableEntry<>(KeyGenerator.key(id),
+                value(id)))
+            .toList();
+    }
+
+    @Test
+    public void hashMapHasNoKeyOrder() throws Exception {
+        MapDBOptions options = MapDBOptions.DEFAULT.withHash(true).withSegments(4);
+        try (MapDBStore store = new MapDBStore(folder.getRoot().toPath(), options)) {
+            assertEquals("mapdb-hash4", store.name());
+            for (long id = 0; id < 1_000; id++) {
+                store.put(KeyGenerator.key(id), value(id));
+            }
+            store.delete(KeyGenerator.key(1));
+            assertArrayEquals(value(0), store.get(KeyGenerator.key(0)));
+            assertNull(store.get(KeyGenerator.key(1)));
+            assertThrows(UnsupportedOperationException.class, () -> store.scan(KeyGenerator.key(0), 10, (k, v) -> {
+            }));
+            assertThrows(IllegalArgumentException.class,
+                () -> MapDBStore.createFrom(folder.newFolder().toPath(), options, entries(1).iterator()));
+        }
+        assertThrows(IllegalArgumentException.class, () -> options.withSegments(6));
+    }
+
+    @Test
+    public void periodicCommitsSurviveAReopen() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        MapDBOptions options = MapDBOptions.DEFAULT.withTransactions(true).withCommitEvery(100);
+        try (MapDBStore store = new MapDBStore(directory, options)) {
+            assertEquals("mapdb-tx", store.name());
+            try (KeyValueStore.Batch batch = store.batch()) {
+                for (long id = 0; id < 250; id++) {
+                    batch.put(KeyGenerator.key(id), value(id));
+                }
+                store.write(batch);
+            }
+            store.put(KeyGenerator.key(250), value(250));
+        }
+        try (MapDBStore store = new MapDBStore(directory, options)) {
+            assertEquals(251, store.scan(KeyGenerator.key(0), Integer.MAX_VALUE, (k, v) -> {
+            }));
+            assertArrayEquals(value(250), store.get(KeyGenerator.key(250)));
+        }
+    }
+
+    @Test
+    public void pumpAndSortedTableHoldTheSameEntries() throws Exception {
+        List<Map.Entry<byte[], byte[]>> entries = entries(5_000);
+        Path table = folder.getRoot().toPath().resolve("table.db");
+        try (MapDBStore tree = MapDBStore.createFrom(folder.newFolder().toPath(), MapDBOptions.DEFAULT,
+            entries.iterator())) {
+            assertArrayEquals(value(4_999), tree.get(KeyGenerator.key(4_999)));
+            // Still an ordinary tree after the pump
+            tree.put(KeyGenerator.key(5_000), value(5_000));
+            tree.snapshot(table).close();
+            tree.put(KeyGenerator.key(5_001), value(5_001));
+
+            try (SortedTableStore snapshot = SortedTableStore.open(table)) {
+                assertNull(snapshot.get(KeyGenerator.key(5_001)));
+                List<String> fromTree = new ArrayList<>();
+                List<String> fromSnapshot = new ArrayList<>();
+                tree.rangeScan(KeyGenerator.key(0), KeyGenerator.key(5_001), (k, v) -> fromTree.add(entry(k, v)));
+                snapshot.scan(KeyGenerator.key(0), Integer.MAX_VALUE, (k, v) -> fromSnapshot.add(entry(k, v)));
+                assertEquals(5_001, fromSnapshot.size());
+                assertEquals(fromTree, fromSnapshot);
+
+                // Ids 0 to 99
+                byte[] prefix = "user0000000000".getBytes();
+                assertEquals(100, snapshot.prefixScan(prefix, (k, v) -> {
+                }));
+                assertEquals(tree.prefixScan(prefix, (k, v) -> {
+                }), snapshot.prefixScan(prefix, (k, v) -> {
+                }));
+                assertThrows(UnsupportedOperationException.class, () -> snapshot.put(KeyGenerator.key(1), value(1)));
+            }
+        }
+    }
+
+    @Test
+    public void benchmarkReadsBackEveryMode() throws Exception {
+        MapDBBenchmark benchmark = new MapDBBenchmark(folder.getRoot().toPath(), new ValueGenerator(100, 0.5, 1),
+            20_000, 7);
+        for (MapDBBenchmark.Mode mode : MapDBBenchmark.Mode.values()) {
+            MapDBBenchmark.Result result = benchmark.run(mode, 2, 4, 2);
+            assertEquals(20_000, result.records());
+            assertTrue(mode + " " + result.diskBytes(), result.diskBytes() > 20_000 * 100);
+            boolean sorts = mode == MapDBBenchmark.Mode.PUMP || mode == MapDBBenchmark.Mode.SORTED_TABLE;
+            assertEquals(mode.toString(), sorts, result.sortNanos() > 0);
+            assertTrue(mode.toString(), result.sortNanos() <= result.loadNanos());
+        }
+    }
+
+    private static String entry(byte[] key, byte[] value) {
+        return new String(key) + "=" + new String(value);
+    }
+}
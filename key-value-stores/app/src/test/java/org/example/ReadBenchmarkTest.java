@@ -0,0 +1,56 @@
+package org.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class ReadBenchmarkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void readsColdThenWarm() throws Exception {
+        StoreOptions options = StoreOptions.DEFAULT.withBlockCacheBytes(1 << 20).withBloomBitsPerKey(10)
+            .withPrefixLength(ReadBenchmark.DEFAULT_PREFIX_LENGTH);
+        for (StoreBackend backend : StoreBackend.values()) {
+            ReadBenchmark benchmark = new ReadBenchmark(backend, options, folder.newFolder().toPath(),
+                KeyDistribution.UNIFORM, 8, 1);
+            benchmark.load(Workload.C.withRecords(5_000));
+            for (ReadBenchmark.Read read : ReadBenchmark.Read.values()) {
+                List<ReadBenchmark.Result> results = benchmark.run(read, 2, Duration.ofMillis(100));
+                assertEquals(2, results.size());
+                assertFalse(results.get(0).warm());
+                assertTrue(results.get(1).warm());
+                for (ReadBenchmark.Result result : results) {
+                    String run = backend + " " + read;
+                    assertTrue(run, result.operations() > 0);
+                    long perOperation = switch (read) {
+                        case GET -> 1;
+                        case MULTI_GET, RANGE_SCAN -> 8;
+                        // Prefixes of 1000 ids, 5000 records
+                        case PREFIX_SCAN -> 1_000;
+                    };
+                    // Every key exists, but range scans starting near the end read fewer
+                    if (read == ReadBenchmark.Read.RANGE_SCAN) {
+                        assertTrue(run, result.keys() > result.operations() * 7);
+                    } else {
+                        assertEquals(run, result.operations() * perOperation, result.keys());
+                    }
+                    result.print(System.out);
+                }
+            }
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void runNeedsLoad() throws Exception {
+        new ReadBenchmark(StoreBackend.MAPDB, StoreOptions.DEFAULT, folder.getRoot().toPath(),
+            KeyDistribution.UNIFORM, 8, 1).run(ReadBenchmark.Read.GET, 1, Duration.ofMillis(10));
+    }
+}
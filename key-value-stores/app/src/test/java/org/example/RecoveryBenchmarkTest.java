@@ -0,0 +1,68 @@
+package org.example;
+
+import org.HdrHistogram.Histogram;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class RecoveryBenchmarkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void recoversEveryRecordFromTheKilledWriter() throws Exception {
+        for (StoreBackend backend : new StoreBackend[]{StoreBackend.ROCKSDB, StoreBackend.FORST}) {
+            RecoveryBenchmark benchmark = new RecoveryBenchmark(backend, StoreOptions.DEFAULT,
+                folder.newFolder().toPath(), 20_000, 100, 1_000, 42);
+            Path crashed = benchmark.crash(1 << 20);
+            assertTrue(backend.toString(), RecoveryBenchmark.walBytes(crashed) >= 1 << 20);
+
+            StoreOptions options = StoreOptions.DEFAULT.withBlockCacheBytes(8 << 20)
+                .withCacheIndexAndFilterBlocks(true);
+            RecoveryBenchmark.Result result = new RecoveryBenchmark(backend, options, folder.newFolder().toPath(),
+                20_000, 100, 1_000, 42).run(crashed, new RecoveryBenchmark.Settings(true, 1, -1),
+                RecoveryBenchmark.Prewarm.HOT_KEYS, 2, Duration.ofMillis(500), Duration.ofMillis(50));
+            result.print(System.out);
+            assertTrue(result.walBytes() >= 1 << 20);
+            assertTrue(result.recoveryNanos() > 0);
+            assertTrue(result.prewarmNanos() > 0);
+            // The seeks read from every file, so the block cache grew, not just the time
+            assertTrue(backend.toString(), result.prewarmedFiles() > 0);
+            assertTrue(backend.toString(), result.prewarmedCacheBytes() > 0);
+            assertEquals(10, result.intervals().size());
+            assertTrue(result.intervals().stream().allMatch(interval -> interval.getTotalCount() > 0));
+
+            // The crashed DB itself is untouched by the run, every loaded record is there after the replay
+            try (KeyValueStore store = backend.open(crashed)) {
+                assertEquals(20_000, store.scan(KeyGenerator.key(0), Integer.MAX_VALUE, (k, v) -> { }));
+            }
+        }
+    }
+
+    @Test
+    public void steadyFromTheFirstIntervalsWithinTolerance() {
+        List<Histogram> intervals = new ArrayList<>();
+        for (long p99 : new long[]{5_000, 1_100, 3_000, 1_000, 1_100, 1_050, 1_000}) {
+            Histogram interval = new Histogram(WorkloadDriver.HIGHEST_LATENCY, 3);
+            interval.recordValue(p99);
+            intervals.add(interval);
+        }
+        // 1100 alone, then three in a row from the fourth interval
+        assertEquals(300, RecoveryBenchmark.steadyNanos(intervals, 1_000, 100));
+        assertEquals(-1, RecoveryBenchmark.steadyNanos(intervals, 500, 100));
+        assertEquals(0, RecoveryBenchmark.steadyNanos(intervals.subList(3, 5), 1_000, 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mapDBHasNoWal() {
+        new RecoveryBenchmark(StoreBackend.MAPDB, StoreOptions.DEFAULT, folder.getRoot().toPath(), 1, 100, 1, 42);
+    }
+}
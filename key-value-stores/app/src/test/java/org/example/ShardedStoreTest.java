@@ -0,0 +1,124 @@
+package org.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+public class ShardedStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static byte[] value(long id) {
+        return ("value" + id).getBytes();
+    }
+
+    @Test
+    public void readsAndScansLikeOneStore() throws Exception {
+        for (ShardedStore.Layout layout : ShardedStore.Layout.values()) {
+            for (StoreBackend backend : new StoreBackend[]{StoreBackend.ROCKSDB, StoreBackend.FORST}) {
+                Path directory = folder.newFolder().toPath();
+                try (KeyValueStore single = backend.open(folder.newFolder().toPath());
+                     ShardedStore sharded = new ShardedStore(backend, directory, StoreOptions.DEFAULT, 4, layout)) {
+                    assertEquals(backend.name().toLowerCase() + (layout == ShardedStore.Layout.INSTANCES
+                        ? "-x4" : "-cf4"), sharded.name());
+                    try (KeyValueStore.Batch batch = sharded.batch()) {
+                        for (long id = 0; id < 500; id++) {
+                            batch.put(KeyGenerator.key(id), value(id));
+                            single.put(KeyGenerator.key(id), value(id));
+                        }
+                        sharded.write(batch);
+                    }
+                    for (long id = 500; id < 1_000; id++) {
+                        sharded.put(KeyGenerator.key(id), value(id));
+                        single.put(KeyGenerator.key(id), value(id));
+                    }
+                    sharded.delete(KeyGenerator.key(7));
+                    single.delete(KeyGenerator.key(7));
+                    assertNull(sharded.get(KeyGenerator.key(7)));
+                    assertArrayEquals(value(8), sharded.get(KeyGenerator.key(8)));
+
+                    List<byte[]> keys = List.of(KeyGenerator.key(3), KeyGenerator.key(7), KeyGenerator.key(999),
+                        KeyGenerator.key(2_000), KeyGenerator.key(4));
+                    List<byte[]> values = sharded.multiGet(keys);
+                    for (int i = 0; i < keys.size(); i++) {
+                        assertArrayEquals(single.get(keys.get(i)), values.get(i));
+                    }
+
+                    assertEquals(entries(single, 100), entries(sharded, 100));
+                    assertEquals(entries(single, Integer.MAX_VALUE), entries(sharded, Integer.MAX_VALUE));
+                    List<String> range = new ArrayList<>();
+                    sharded.rangeScan(KeyGenerator.key(90), KeyGenerator.key(110),
+                        (k, v) -> range.add(new String(k)));
+                    assertEquals(20, range.size());
+                    assertEquals(new String(KeyGenerator.key(90)), range.get(0));
+                    // Ids 100 to 199
+                    assertEquals(100, sharded.prefixScan("user0000000001".getBytes(), (k, v) -> {
+                    }));
+
+                    // Every shard got some of the keys
+                    int[] counts = new int[sharded.shards()];
+                    for (long id = 0; id < 1_000; id++) {
+                        counts[sharded.shard(KeyGenerator.key(id))]++;
+                    }
+                    for (int count : counts) {
+                        assertTrue(count > 150);
+                    }
+                }
+                // The shards are found again after a reopen
+                try (ShardedStore sharded = new ShardedStore(backend, directory, StoreOptions.DEFAULT, 4, layout)) {
+                    assertArrayEquals(value(999), sharded.get(KeyGenerator.key(999)));
+                    assertEquals(999, sharded.scan(KeyGenerator.key(0), Integer.MAX_VALUE, (k, v) -> {
+                    }));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void concurrentWritersEachReachTheirShard() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try (ShardedStore sharded = new ShardedStore(StoreBackend.ROCKSDB, folder.getRoot().toPath(),
+            StoreOptions.DEFAULT, 4, ShardedStore.Layout.COLUMN_FAMILIES)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                long first = t * 1_000L;
+                futures.add(executor.submit(() -> {
+                    for (long id = first; id < first + 1_000; id++) {
+                        sharded.put(KeyGenerator.key(id), value(id));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            sharded.flush();
+            assertEquals(8_000, sharded.scan(KeyGenerator.key(0), Integer.MAX_VALUE, (k, v) -> {
+            }));
+            assertTrue(sharded.property("rocksdb.estimate-num-keys").getAsLong() >= 8_000);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void mapDBHasNoColumnFamilies() {
+        assertThrows(IllegalArgumentException.class, () -> new ShardedStore(StoreBackend.MAPDB,
+            folder.getRoot().toPath(), StoreOptions.DEFAULT, 2, ShardedStore.Layout.COLUMN_FAMILIES));
+    }
+
+    private static List<String> entries(KeyValueStore store, int limit) {
+        List<String> entries = new ArrayList<>();
+        store.scan(KeyGenerator.key(0), limit, (k, v) -> entries.add(new String(k) + "=" + new String(v)));
+        return entries;
+    }
+}
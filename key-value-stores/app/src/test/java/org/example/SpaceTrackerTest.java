@@ -0,0 +1,59 @@
+package org.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class SpaceTrackerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void directorySizeCountsNestedFiles() throws Exception {
+        Path root = folder.getRoot().toPath();
+        Files.write(root.resolve("a"), new byte[100]);
+        Files.createDirectories(root.resolve("b/c"));
+        Files.write(root.resolve("b/c/d"), new byte[23]);
+        assertEquals(123, IOUtils.directorySize(root));
+        assertEquals(123, IOUtils.getDirectorySize(new File(folder.getRoot(), ".")));
+        assertEquals(0, IOUtils.directorySize(root.resolve("missing")));
+    }
+
+    @Test
+    public void samplesWhileLoading() throws Exception {
+        for (StoreBackend backend : StoreBackend.values()) {
+            Path directory = folder.newFolder().toPath();
+            try (KeyValueStore store = backend.open(directory)) {
+                WorkloadDriver driver = new WorkloadDriver(store, Workload.A.withRecords(20_000), 1);
+                SpaceTracker.Result result;
+                try (SpaceTracker tracker = new SpaceTracker(store, directory, driver::bytesWritten,
+                    Duration.ofMillis(10))) {
+                    driver.load();
+                    store.flush();
+                    result = tracker.stop();
+                }
+
+                SpaceTracker.Sample last = result.last();
+                assertEquals(backend.name(), 20_000 * (16 + 100), last.logicalBytes());
+                assertTrue(backend.name(), last.diskBytes() > 0);
+                assertTrue(backend.name(), last.liveBytes() > 0);
+                assertTrue(backend.name(), last.spaceAmplification() > 0);
+                if (backend == StoreBackend.MAPDB) {
+                    assertTrue(Double.isNaN(last.writeAmplification()));
+                } else {
+                    // Every byte went to the WAL and then to L0
+                    assertTrue(backend + " " + last, last.writeAmplification() > 1.5);
+                    assertTrue(backend.name(), last.sstBytes() > 0);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class TransactionBenchmarkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static final byte[] KEY = KeyGenerator.key(1);
+
+    @Test
+    public void optimisticCommitFailsAfterAConcurrentWrite() {
+        try (TransactionalStore store = StoreBackend.ROCKSDB.openTransactional(folder.getRoot().toPath(),
+            TransactionalStore.Concurrency.OPTIMISTIC, 100)) {
+            TransactionExecutor executor = new TransactionExecutor(store, RetryPolicy.immediate(3));
+            AtomicInteger attempts = new AtomicInteger();
+            byte[] read = executor.execute(transaction -> {
+                byte[] value = transaction.getForUpdate(KEY);
+                // Someone else writes the key between the read and the commit, once
+                if (attempts.incrementAndGet() == 1) store.put(KEY, "other".getBytes());
+                transaction.put(KEY, "mine".getBytes());
+                return value;
+            });
+            assertEquals(2, attempts.get());
+            assertArrayEquals("other".getBytes(), read);
+            assertArrayEquals("mine".getBytes(), store.get(KEY));
+            assertEquals(1, executor.commits());
+            assertEquals(1, executor.conflicts());
+
+            TransactionExecutor impatient = new TransactionExecutor(store, RetryPolicy.never());
+            assertThrows(TransactionalStore.ConflictException.class, () -> impatient.execute(transaction -> {
+                transaction.getForUpdate(KEY);
+                store.put(KEY, "other".getBytes());
+                transaction.put(KEY, "lost".getBytes());
+                return null;
+            }));
+            assertEquals(1, impatient.givenUp());
+            assertArrayEquals("other".getBytes(), store.get(KEY));
+        }
+    }
+
+    @Test
+    public void pessimisticLockTimesOut() throws Exception {
+        for (StoreBackend backend : new StoreBackend[]{StoreBackend.ROCKSDB, StoreBackend.FORST}) {
+            try (TransactionalStore store = backend.openTransactional(folder.newFolder().toPath(),
+                TransactionalStore.Concurrency.PESSIMISTIC, 50);
+                 TransactionalStore.Transaction holder = store.begin()) {
+                holder.getForUpdate(KEY);
+                // Another thread, the lock would be reentrant for this one
+                CompletableFuture.runAsync(() -> {
+                    try (TransactionalStore.Transaction transaction = store.begin()) {
+                        assertThrows(TransactionalStore.ConflictException.class,
+                            () -> transaction.getForUpdate(KEY));
+                    }
+                }).get();
+                holder.put(KEY, "held".getBytes());
+                holder.commit();
+                assertArrayEquals("held".getBytes(), store.get(KEY));
+            }
+        }
+        assertThrows(UnsupportedOperationException.class, () -> StoreBackend.MAPDB.openTransactional(
+            folder.newFolder().toPath(), TransactionalStore.Concurrency.OPTIMISTIC, 50));
+    }
+
+    @Test
+    public void contendedCountersAddUp() throws Exception {
+        TransactionBenchmark benchmark = new TransactionBenchmark(StoreBackend.ROCKSDB, folder.getRoot().toPath(),
+            50, 2, Duration.ofMillis(20), 7);
+        for (TransactionalStore.Concurrency concurrency : TransactionalStore.Concurrency.values()) {
+            // The run throws if the counters don't add up
+            TransactionBenchmark.Result result = benchmark.run(concurrency,
+                RetryPolicy.exponential(10, Duration.ofNanos(1_000), Duration.ofMillis(1)), 4, Duration.ofSeconds(1));
+            assertTrue(result.commits() > 0);
+            assertEquals(result.commits(), result.latency().getTotalCount());
+            assertTrue(result.conflictRate() >= 0 && result.conflictRate() < 1);
+        }
+    }
+
+    @Test
+    public void exponentialBackoffGrowsToItsCap() {
+        RetryPolicy policy = RetryPolicy.exponential(5, Duration.ofNanos(100), Duration.ofNanos(250));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(policy.backoffNanos(1) <= 100);
+            assertTrue(policy.backoffNanos(4) <= 250);
+        }
+        assertEquals(-1, policy.backoffNanos(5));
+        assertEquals(0, RetryPolicy.immediate(2).backoffNanos(1));
+        assertEquals(-1, RetryPolicy.never().backoffNanos(1));
+    }
+}
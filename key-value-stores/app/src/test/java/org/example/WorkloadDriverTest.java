@@ -0,0 +1,77 @@
+package org.example;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.Assert.*;
+
+public class WorkloadDriverTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void picksOperationsByProportion() {
+        Workload workload = new Workload("mix", 0.25, 0.25, 0.25, 0.25, 10, 10, 10, KeyDistribution.UNIFORM, 1);
+        assertEquals(Workload.Operation.READ, workload.operation(0.1));
+        assertEquals(Workload.Operation.UPDATE, workload.operation(0.3));
+        assertEquals(Workload.Operation.SCAN, workload.operation(0.6));
+        assertEquals(Workload.Operation.INSERT, workload.operation(0.9));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsProportionsNotAddingUpToOne() {
+        new Workload("bad", 0.5, 0.4, 0, 0, 10, 10, 10, KeyDistribution.UNIFORM, 1);
+    }
+
+    @Test
+    public void runsEveryOperationOnEveryBackend() throws Exception {
+        Workload workload = new Workload("mix", 0.4, 0.3, 0.2, 0.1, 1_000, 100, 10, KeyDistribution.ZIPFIAN, 0.5);
+        for (StoreBackend backend : StoreBackend.values()) {
+            try (KeyValueStore store = backend.open(folder.newFolder(backend.name()).toPath())) {
+                WorkloadDriver driver = new WorkloadDriver(store, workload, 1);
+
+                Report load = driver.load();
+                assertEquals(1_000, load.operations());
+                assertNotNull(store.get(KeyGenerator.key(999)));
+
+                Report run = driver.run(2, Duration.ofMillis(300));
+                assertEquals(2, run.threads());
+                assertTrue(run.opsPerSecond() > 0);
+                for (Workload.Operation operation : Workload.Operation.values()) {
+                    assertTrue(backend + " " + operation, run.histograms().get(operation).getTotalCount() > 0);
+                }
+                run.print(System.out);
+            }
+        }
+    }
+
+    @Test
+    public void replaysADataset() throws Exception {
+        Workload workload = new Workload("mix", 0.4, 0.3, 0.2, 0.1, 1_000, 100, 10, KeyDistribution.LATEST, 0.5);
+        Path file = folder.newFile("ops").toPath();
+        Dataset.write(file, workload, 10_000, 1);
+        try (KeyValueStore store = StoreBackend.ROCKSDB.open(folder.newFolder("db").toPath());
+             Dataset dataset = Dataset.open(file)) {
+            WorkloadDriver driver = new WorkloadDriver(store, workload, 1);
+            driver.load();
+            Report replay = driver.replay(dataset, 3);
+            assertEquals(10_000, replay.operations());
+            // 10% inserts appended after the loaded ids, in order
+            long inserts = replay.histograms().get(Workload.Operation.INSERT).getTotalCount();
+            assertNotNull(store.get(KeyGenerator.key(1_000 + inserts - 1)));
+            assertNull(store.get(KeyGenerator.key(1_000 + inserts)));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void runNeedsLoad() throws Exception {
+        try (KeyValueStore store = StoreBackend.MAPDB.open(folder.getRoot().toPath())) {
+            new WorkloadDriver(store, Workload.C, 1).run(1, Duration.ofMillis(10));
+        }
+    }
+}
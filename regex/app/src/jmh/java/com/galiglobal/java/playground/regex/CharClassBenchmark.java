@@ -0,0 +1,130 @@
+package com.galiglobal.java.playground.regex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Vector API pre-pass from short ids to 4 KB lines: {@link #scanVector()} against {@link #scanScalar()} looking
+ * for a run of 12 digits, which the inputs don't have, so every byte is read; then the numeric patterns on the
+ * engines with and without a {@link CharClassPrefilter} in front. Lines are lowercase words and numbers of up to 7
+ * digits, a length of 10 is RegexApp's random numbers.
+ * <p>
+ * gradle jmh -Pjmh.includes=CharClassBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CharClassBenchmark {
+
+    static final List<String> REGEXPS = List.of(Regexps.PHONE_2.regex(), Regexps.SOCIAL.regex(),
+        Regexps.STATES.regex(), Regexps.DATE.regex());
+
+    @Param({"16", "32", "64"})
+    public int lanes;
+
+    // Bytes per input
+    @Param({"10", "64", "512", "4096"})
+    public int length;
+
+    @Param({"UTIL", "BYTECODE"})
+    public RegexEngine engine;
+
+    @Param({"1000"})
+    public int records;
+
+    private byte[][] lines;
+    private String[] inputs;
+    private CharClassScanner scanner;
+    private MultiPatternMatcher plain;
+    private MultiPatternMatcher prefiltered;
+    private long[] bits;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(RegexBenchmark.SEED);
+        lines = new byte[records][];
+        inputs = new String[records];
+        for (int i = 0; i < records; i++) {
+            String line = length <= 10 ? String.valueOf(random.nextInt(1_000_000_000)) : line(random, length);
+            inputs[i] = line;
+            lines[i] = line.getBytes(StandardCharsets.ISO_8859_1);
+        }
+        scanner = CharClassScanner.of("[0-9]", lanes);
+        plain = engine.compile(REGEXPS);
+        prefiltered = new PrefilteredMultiPatternMatcher(new CharClassPrefilter(REGEXPS, lanes), engine.compile(REGEXPS));
+        bits = new long[plain.words()];
+    }
+
+    private static String line(Random random, int length) {
+        StringBuilder line = new StringBuilder(length + 16);
+        while (line.length() < length) {
+            if (random.nextBoolean()) {
+                line.append(random.nextInt(10_000_000));
+            } else {
+                for (int i = random.nextInt(3, 9); i > 0; i--) line.append((char) ('a' + random.nextInt(26)));
+            }
+            line.append(' ');
+        }
+        line.setLength(length);
+        return line.toString();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        plain.close();
+        prefiltered.close();
+    }
+
+    @Benchmark
+    public long scanVector() {
+        long found = 0;
+        for (byte[] line : lines) found += scanner.indexOfRun(line, 0, line.length, 12);
+        return found;
+    }
+
+    @Benchmark
+    public long scanScalar() {
+        long found = 0;
+        for (byte[] line : lines) found += scanner.indexOfRunScalar(line, 0, line.length, 12);
+        return found;
+    }
+
+    @Benchmark
+    public long matchPlain() {
+        long total = 0;
+        for (String input : inputs) {
+            plain.match(input, bits, 0);
+            total += bits[0];
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long matchPrefiltered() {
+        long total = 0;
+        for (String input : inputs) {
+            prefiltered.match(input, bits, 0);
+            total += bits[0];
+        }
+        return total;
+    }
+}
@@ -0,0 +1,100 @@
+package com.galiglobal.java.playground.regex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Scanning a log file through a memory-mapped {@link LogScanner} versus the usual {@link BufferedReader#readLine()}
+ * with a String per line. Divide the file size by the score for the bandwidth, LogScanner also prints it.
+ * <p>
+ * gradle jmh -Pjmh.includes=LogScanBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LogScanBenchmark {
+
+    @Param({"HYPERSCAN", "HYPERSCAN_FFM", "UTIL"})
+    public RegexEngine engine;
+
+    @Param({"64"})
+    public int megabytes;
+
+    private Path file;
+    private MultiPatternMatcher matcher;
+    private LogScanner scanner;
+    private long[] bits;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("regex-", ".log");
+        Random random = new Random(RegexBenchmark.SEED);
+        String[] levels = {"INFO", "WARN", "ERROR", "DEBUG"};
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            long written = 0;
+            while (written < megabytes * 1_000_000L) {
+                String line = "2021-12-" + (10 + random.nextInt(20)) + " " + levels[random.nextInt(4)]
+                    + " request " + random.nextLong() + " from user" + random.nextInt(100000)
+                    + (random.nextInt(100) == 0 ? " contact 555-123-" + (1000 + random.nextInt(9000)) : "")
+                    + " took " + random.nextInt(1000) + "ms";
+                writer.write(line);
+                writer.newLine();
+                written += line.length() + 1;
+            }
+        }
+        matcher = engine.compile(MultiPatternBenchmark.rules(8));
+        scanner = new LogScanner(matcher);
+        bits = new long[matcher.words()];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        matcher.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public long mapped() throws IOException {
+        return scanner.scan(file).matchedLines();
+    }
+
+    @Benchmark
+    public long readLine() throws IOException {
+        long matched = 0;
+        try (BufferedReader reader = Files.newBufferedReader(file)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                matcher.match(line, bits, 0);
+                for (long word : bits) {
+                    if (word != 0) {
+                        matched++;
+                        break;
+                    }
+                }
+            }
+        }
+        return matched;
+    }
+}
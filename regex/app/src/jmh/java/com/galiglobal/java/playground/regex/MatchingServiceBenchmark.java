@@ -0,0 +1,69 @@
+package com.galiglobal.java.playground.regex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Scaling of {@link MatchingService#matchAll(List)} with the number of threads, compare the score of every
+ * thread count with threads=1.
+ * <p>
+ * gradle jmh -Pjmh.includes=MatchingServiceBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MatchingServiceBenchmark {
+
+    @Param({"HYPERSCAN", "RE2J"})
+    public RegexEngine engine;
+
+    @Param({"1", "2", "4", "8", "16", "32"})
+    public int threads;
+
+    @Param({"100000", "1000000"})
+    public int records;
+
+    @Param({"128"})
+    public int rules;
+
+    private List<String> inputs;
+    private MatchingService service;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        inputs = new Random(RegexBenchmark.SEED)
+            .longs(records, 10, 1000000000)
+            .mapToObj(String::valueOf)
+            .collect(Collectors.toList());
+        service = new MatchingService(engine, MultiPatternBenchmark.rules(rules), threads);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        service.close();
+    }
+
+    @Benchmark
+    public List<int[]> matchAll() {
+        return service.matchAll(inputs);
+    }
+}
@@ -0,0 +1,100 @@
+package com.galiglobal.java.playground.regex;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One scan (Hyperscan) versus N scans (the other engines) to find which of N rules match each input.
+ * <p>
+ * {@link #matchAll()} is the batch API writing bitsets into a preallocated array, with the gc profiler
+ * (enabled in build.gradle) its gc.alloc.rate.norm should be ~0 B/op for UTIL and HYPERSCAN.
+ * <p>
+ * gradle jmh -Pjmh.includes=MultiPatternBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class MultiPatternBenchmark {
+
+    @Param
+    public RegexEngine engine;
+
+    // Number of rules compiled into the matcher
+    @Param({"8", "128", "512"})
+    public int rules;
+
+    @Param({"10000"})
+    public int records;
+
+    private String[] inputs;
+    private MultiPatternMatcher matcher;
+    private long[] results;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        inputs = new Random(RegexBenchmark.SEED)
+            .longs(records, 10, 1000000000)
+            .mapToObj(String::valueOf)
+            .toArray(String[]::new);
+        matcher = engine.compile(rules(rules));
+        results = new long[records * matcher.words()];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        matcher.close();
+    }
+
+    /**
+     * The patterns every engine can compile, padded with generated numeric rules up to {@code count}.
+     */
+    static List<String> rules(int count) {
+        List<String> rules = new ArrayList<>(count);
+        for (Regexps r : List.of(Regexps.EMAIL, Regexps.DATE, Regexps.EMAIL_2, Regexps.PHONE_2, Regexps.SOCIAL,
+            Regexps.STATES)) {
+            if (rules.size() < count) rules.add(r.regex());
+        }
+        for (int i = rules.size(); i < count; i++) {
+            rules.add((100 + i) + "[0-9]{2}");
+        }
+        return rules;
+    }
+
+    @Benchmark
+    public long match() {
+        long total = 0;
+        for (String r : inputs) {
+            total += matcher.match(r).length;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long matchAll() {
+        matcher.matchAll(inputs, results);
+        long total = 0;
+        for (long word : results) {
+            total += Long.bitCount(word);
+        }
+        return total;
+    }
+}
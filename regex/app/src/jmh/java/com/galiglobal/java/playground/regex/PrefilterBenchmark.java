@@ -0,0 +1,99 @@
+package com.galiglobal.java.playground.regex;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RegexApp's inputs against the patterns with required literals (all but BOMB and DATE, which accept any number),
+ * with and without the {@link LiteralPrefilter}. With the prefilter, the inputs it saw and rejected are reported as
+ * {@link Counters} next to the timings.
+ * <p>
+ * gradle jmh -Pjmh.includes=PrefilterBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class PrefilterBenchmark {
+
+    static final List<String> REGEXPS = List.of(Regexps.EMAIL.regex(), Regexps.EMAIL_2.regex(),
+        Regexps.PHONE_2.regex(), Regexps.RANDOM.regex(), Regexps.SOCIAL.regex(), Regexps.STATES.regex());
+
+    @Param({"HYPERSCAN", "RE2J", "UTIL"})
+    public RegexEngine engine;
+
+    @Param({"false", "true"})
+    public boolean prefilter;
+
+    @Param({"10000"})
+    public int records;
+
+    private String[] inputs;
+    private MultiPatternMatcher matcher;
+
+    /**
+     * Inputs the prefilter saw and rejected in each iteration, 0 without the prefilter.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long inputs;
+        public long rejected;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            inputs = 0;
+            rejected = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        inputs = new Random(RegexBenchmark.SEED)
+            .longs(records, 10, 1000000000)
+            .mapToObj(String::valueOf)
+            .toArray(String[]::new);
+        matcher = prefilter ? new PrefilteredMultiPatternMatcher(engine, REGEXPS) : engine.compile(REGEXPS);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        matcher.close();
+    }
+
+    @Benchmark
+    public long match(Counters counters) {
+        Prefilter filter = matcher instanceof PrefilteredMultiPatternMatcher prefiltered ? prefiltered.prefilter()
+            : null;
+        long seen = filter == null ? 0 : filter.inputs();
+        long rejected = filter == null ? 0 : filter.rejected();
+        long total = 0;
+        for (String r : inputs) {
+            total += matcher.match(r).length;
+        }
+        if (filter != null) {
+            counters.inputs += filter.inputs() - seen;
+            counters.rejected += filter.rejected() - rejected;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,166 @@
+package com.galiglobal.java.playground.regex;
+
+import com.gliwka.hyperscan.util.PatternFilter;
+import org.apache.regexp.RE;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * JMH version of {@link RegexApp}: every engine against every pattern over the same random inputs.
+ * <p>
+ * Run it with the gc profiler (configured in build.gradle) to get allocations per batch:
+ * gradle jmh -Pjmh.includes=RegexBenchmark
+ * <p>
+ * Combinations an engine can't compile (Apache RE with BOMB and RANDOM, Hyperscan with RANDOM) fail in
+ * setup and JMH reports them as errors, RegexApp falls back to a dummy pattern instead. HYPERSCAN_FFM matches
+ * RANDOM with its java.util.regex fallback.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RegexBenchmark {
+
+    // Fixed seed, so every engine sees exactly the same inputs
+    static final long SEED = 42;
+
+    // Like RegexApp's "without compilation" paths, but the compiled patterns come from the cache
+    static final PatternCache CACHE = new PatternCache(16 * 1024 * 1024);
+
+    public enum Engine {
+        HYPERSCAN {
+            @Override
+            Predicate<String> compile(String regex) throws Exception {
+                //not thread-safe, create per thread
+                PatternFilter filter = new PatternFilter(List.of(Pattern.compile(regex)));
+                return r -> {
+                    for (Matcher m : filter.filter(r)) {
+                        if (m.find()) return true;
+                    }
+                    return false;
+                };
+            }
+        },
+        HYPERSCAN_FFM {
+            @Override
+            Predicate<String> compile(String regex) {
+                // Same libhs as the PatternFilter path above, called through the FFM API instead of JNI
+                MultiPatternMatcher matcher = new FfmHyperscanMultiPatternMatcher(List.of(regex));
+                long[] bits = new long[1];
+                return r -> {
+                    matcher.match(r, bits, 0);
+                    return bits[0] != 0;
+                };
+            }
+        },
+        APACHE_RE {
+            @Override
+            Predicate<String> compile(String regex) throws Exception {
+                RE re = new RE(regex);
+                return re::match;
+            }
+        },
+        UTIL {
+            @Override
+            Predicate<String> compile(String regex) {
+                return r -> Pattern.matches(regex, r);
+            }
+        },
+        UTIL_COMPILED {
+            @Override
+            Predicate<String> compile(String regex) {
+                Pattern p = Pattern.compile(regex);
+                return r -> p.matcher(r).find();
+            }
+        },
+        UTIL_CACHED {
+            @Override
+            Predicate<String> compile(String regex) {
+                return r -> CACHE.find(RegexEngine.UTIL, regex, 0, r);
+            }
+        },
+        RE2J {
+            @Override
+            Predicate<String> compile(String regex) {
+                return r -> com.google.re2j.Pattern.matches(regex, r);
+            }
+        },
+        RE2J_COMPILED {
+            @Override
+            Predicate<String> compile(String regex) {
+                com.google.re2j.Pattern p = com.google.re2j.Pattern.compile(regex);
+                return r -> p.matcher(r).find();
+            }
+        },
+        RE2J_CACHED {
+            @Override
+            Predicate<String> compile(String regex) {
+                return r -> CACHE.find(RegexEngine.RE2J, regex, 0, r);
+            }
+        },
+        BYTECODE {
+            @Override
+            Predicate<String> compile(String regex) {
+                MultiPatternMatcher matcher = new BytecodeMultiPatternMatcher(List.of(regex));
+                long[] bits = new long[1];
+                return r -> {
+                    matcher.match(r, bits, 0);
+                    return bits[0] != 0;
+                };
+            }
+        };
+
+        abstract Predicate<String> compile(String regex) throws Exception;
+    }
+
+    @Param
+    public Engine engine;
+
+    @Param
+    public Regexps pattern;
+
+    // Number of input strings matched per benchmark op, same shape as RegexApp's totalRecords
+    @Param({"1000", "100000"})
+    public int records;
+
+    private String[] inputs;
+    private Predicate<String> matcher;
+
+    @Setup(Level.Trial)
+    public void setup() throws Exception {
+        inputs = new Random(SEED)
+            .longs(records, 10, 1000000000)
+            .mapToObj(String::valueOf)
+            .toArray(String[]::new);
+        matcher = engine.compile(pattern.regex());
+    }
+
+    @Benchmark
+    public long match() {
+        // Returning the count keeps the JIT from eliminating the loop
+        long total = 0;
+        for (String r : inputs) {
+            if (matcher.test(r)) total++;
+        }
+        return total;
+    }
+}
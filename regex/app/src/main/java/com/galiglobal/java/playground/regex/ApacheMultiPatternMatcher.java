@@ -0,0 +1,89 @@
+package com.galiglobal.java.playground.regex;
+
+import org.apache.regexp.CharacterIterator;
+import org.apache.regexp.RE;
+import org.apache.regexp.RESyntaxException;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Apache (Jakarta) regexp backend, N scans per input.
+ */
+public class ApacheMultiPatternMatcher implements MultiPatternMatcher {
+
+    private final RE[] res;
+    private final CharSequenceIterator iterator = new CharSequenceIterator();
+    private final Latin1CharSequence view = new Latin1CharSequence();
+
+    public ApacheMultiPatternMatcher(List<String> regexps) {
+        this.res = new RE[regexps.size()];
+        for (int i = 0; i < res.length; i++) {
+            try {
+                res[i] = new RE(regexps.get(i));
+            } catch (RESyntaxException e) {
+                throw new IllegalArgumentException("Apache Regex can't compile " + regexps.get(i), e);
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return res.length;
+    }
+
+    @Override
+    public void match(CharSequence input, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        iterator.input = input;
+        for (int i = 0; i < res.length; i++) {
+            if (res[i].match(iterator, 0)) bits[offset + (i >>> 6)] |= 1L << i;
+        }
+        iterator.input = null;
+    }
+
+    @Override
+    public void match(CharSequence input, long[] candidates, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        iterator.input = input;
+        for (int i = 0; i < res.length; i++) {
+            if ((candidates[i >>> 6] & 1L << i) != 0 && res[i].match(iterator, 0)) {
+                bits[offset + (i >>> 6)] |= 1L << i;
+            }
+        }
+        iterator.input = null;
+    }
+
+    @Override
+    public void match(ByteBuffer bytes, int from, int to, long[] bits, int offset) {
+        match(view.wrap(bytes, from, to), bits, offset);
+    }
+
+    /**
+     * Reusable view of the input, {@link RE#match(String)} wraps every input in a new iterator.
+     */
+    private static class CharSequenceIterator implements CharacterIterator {
+
+        CharSequence input;
+
+        @Override
+        public String substring(int beginIndex, int endIndex) {
+            return input.subSequence(beginIndex, endIndex).toString();
+        }
+
+        @Override
+        public String substring(int beginIndex) {
+            return substring(beginIndex, input.length());
+        }
+
+        @Override
+        public char charAt(int pos) {
+            return input.charAt(pos);
+        }
+
+        @Override
+        public boolean isEnd(int pos) {
+            return pos >= input.length();
+        }
+    }
+}
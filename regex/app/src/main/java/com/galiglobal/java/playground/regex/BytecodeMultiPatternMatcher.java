@@ -0,0 +1,385 @@
+package com.galiglobal.java.playground.regex;
+
+import javax.tools.DiagnosticCollector;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.ToolProvider;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiles the patterns to Java bytecode: every pattern becomes a {@link Dfa}, the DFAs become the source of one
+ * class, with a method per pattern that walks its automaton as a {@code switch} over the states inside the loop over
+ * the input, and the class is compiled with javac and loaded in memory, like {@code java24-25/InMemAOT.java}.
+ * <p>
+ * There is no interpreter left at match time: the transitions are constant compares C2 compiles to a few branches
+ * per char, and an accepting or dead state returns straight away. It pays off on short fixed-format fields like
+ * {@link Regexps#PHONE_2}, {@link Regexps#SOCIAL}, {@link Regexps#DATE} and {@link Regexps#STATES}. Patterns
+ * {@link Dfa} doesn't support fall back to java.util.regex.
+ * <p>
+ * Needs a JDK, javac comes from {@link ToolProvider#getSystemJavaCompiler()}. Compiling takes hundreds of
+ * milliseconds, create matchers up front; the generated code is stateless, the fallback matchers are not.
+ */
+public class BytecodeMultiPatternMatcher implements MultiPatternMatcher {
+
+    static final String PACKAGE = "com.galiglobal.java.playground.regex.generated";
+    private static final AtomicInteger CLASSES = new AtomicInteger();
+
+    /**
+     * Superclass of the generated classes, public so a class from another class loader can extend it.
+     */
+    public abstract static class Generated {
+
+        /**
+         * Sets the bits of the compiled patterns matching the input, without clearing the others.
+         */
+        public abstract void find(CharSequence input, long[] bits, int offset);
+
+        protected static boolean dollar(CharSequence input, int n, boolean atN2, boolean atN1, boolean atN) {
+            return Dfa.dollar(input, n, atN2, atN1, atN);
+        }
+    }
+
+    private final int size;
+    private final Generated generated;
+    private final String source;
+    private final int classBytes;
+    private final int[] fallbackIds;
+    private final Matcher[] fallbackMatchers;
+    private final Latin1CharSequence view = new Latin1CharSequence();
+
+    public BytecodeMultiPatternMatcher(List<String> regexps) {
+        this.size = regexps.size();
+        List<Integer> ids = new ArrayList<>();
+        List<Dfa> dfas = new ArrayList<>();
+        List<Integer> fallback = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            String regex = regexps.get(id);
+            // Same syntax errors as the other engines
+            Pattern.compile(regex);
+            try {
+                dfas.add(Dfa.compile(regex));
+                ids.add(id);
+            } catch (IllegalArgumentException e) {
+                fallback.add(id);
+            }
+        }
+        this.fallbackIds = fallback.stream().mapToInt(Integer::intValue).toArray();
+        this.fallbackMatchers = fallback.stream()
+            .map(id -> Pattern.compile(regexps.get(id)).matcher(""))
+            .toArray(Matcher[]::new);
+
+        String className = "Patterns" + CLASSES.getAndIncrement();
+        this.source = source(className, ids.stream().mapToInt(Integer::intValue).toArray(), dfas);
+        byte[] bytecode = javac(PACKAGE + "." + className, source);
+        this.classBytes = bytecode.length;
+        this.generated = load(PACKAGE + "." + className, bytecode);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of patterns matched with java.util.regex because {@link Dfa} doesn't support them.
+     */
+    public int fallbackCount() {
+        return fallbackIds.length;
+    }
+
+    /**
+     * Size of the generated class file, it lives in metaspace, outside the heap.
+     */
+    public int classBytes() {
+        return classBytes;
+    }
+
+    /**
+     * The generated Java source.
+     */
+    public String source() {
+        return source;
+    }
+
+    @Override
+    public void match(CharSequence input, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        generated.find(input, bits, offset);
+        for (int i = 0; i < fallbackMatchers.length; i++) {
+            if (fallbackMatchers[i].reset(input).find()) {
+                int id = fallbackIds[i];
+                bits[offset + (id >>> 6)] |= 1L << id;
+            }
+        }
+    }
+
+    @Override
+    public void match(ByteBuffer bytes, int from, int to, long[] bits, int offset) {
+        match(view.wrap(bytes, from, to), bits, offset);
+    }
+
+    // ----- source generation -----
+
+    static String source(String className, int[] ids, List<Dfa> dfas) {
+        StringBuilder java = new StringBuilder();
+        java.append("package ").append(PACKAGE).append(";\n\n");
+        java.append("public final class ").append(className).append(" extends ")
+            .append(Generated.class.getCanonicalName()).append(" {\n\n");
+        java.append("    @Override\n");
+        java.append("    public void find(CharSequence s, long[] bits, int offset) {\n");
+        for (int i = 0; i < ids.length; i++) {
+            java.append("        if (find").append(ids[i]).append("(s)) bits[offset + ").append(ids[i] >>> 6)
+                .append("] |= 1L << ").append(ids[i] & 63).append(";\n");
+        }
+        java.append("    }\n");
+        for (int i = 0; i < ids.length; i++) {
+            method(java, ids[i], dfas.get(i));
+        }
+        java.append("}\n");
+        return java.toString();
+    }
+
+    private static void method(StringBuilder java, int id, Dfa dfa) {
+        // Doubled backslashes, as in a string literal, can't make a unicode escape
+        java.append("\n    // ").append(dfa.regex.replace("\\", "\\\\").replace('\n', ' ').replace('\r', ' '))
+            .append("\n");
+        if (dfa.anchoredEnd) {
+            java.append("    private static final boolean[] ACCEPT").append(id).append(" = {");
+            for (int s = 0; s < dfa.states(); s++) java.append(s == 0 ? "" : ", ").append(dfa.accepting[s]);
+            java.append("};\n\n");
+        }
+        java.append("    private static boolean find").append(id).append("(CharSequence s) {\n");
+        if (exit(dfa, 0) != null) {
+            java.append("        return ").append(exit(dfa, 0)).append(";\n    }\n");
+            return;
+        }
+        java.append("        int n = s.length();\n");
+        java.append("        int state = 0;\n");
+        if (dfa.anchoredEnd) java.append("        boolean atN2 = false;\n        boolean atN1 = false;\n");
+        java.append("        for (int i = 0; i < n; i++) {\n");
+        if (dfa.anchoredEnd) {
+            java.append("            if (i >= n - 2) {\n");
+            java.append("                if (i == n - 2) atN2 = ACCEPT").append(id).append("[state];\n");
+            java.append("                else atN1 = ACCEPT").append(id).append("[state];\n");
+            java.append("            }\n");
+        }
+        java.append("            char c = s.charAt(i);\n");
+        java.append("            switch (state) {\n");
+        for (int state = 0; state < dfa.states(); state++) {
+            if (exit(dfa, state) != null) continue;
+            java.append("                case ").append(state).append(":\n");
+            if (transitions(java, dfa, state)) java.append("                    break;\n");
+        }
+        java.append("            }\n");
+        java.append("        }\n");
+        if (dfa.anchoredEnd) {
+            java.append("        return dollar(s, n, atN2, atN1, ACCEPT").append(id).append("[state]);\n");
+        } else {
+            // Accepting states return in the loop
+            java.append("        return false;\n");
+        }
+        java.append("    }\n");
+    }
+
+    /**
+     * "true" or "false" if reaching the state ends the search, null if it doesn't.
+     */
+    private static String exit(Dfa dfa, int state) {
+        if (dfa.dead[state]) return "false";
+        if (!dfa.anchoredEnd && dfa.accepting[state]) return "true";
+        return null;
+    }
+
+    /**
+     * One if per target state over its char ranges, the target covering most chars is the else. Returns false if
+     * every branch returns, then a break after them doesn't compile.
+     */
+    private static boolean transitions(StringBuilder java, Dfa dfa, int state) {
+        int[] row = dfa.next[state];
+        int intervals = dfa.boundaries.length;
+        long[] coverage = new long[dfa.states()];
+        for (int k = 0; k < intervals; k++) coverage[row[k]] += end(dfa, k) - dfa.boundaries[k] + 1;
+        int fallthrough = 0;
+        for (int t = 0; t < coverage.length; t++) {
+            if (coverage[t] > coverage[fallthrough]) fallthrough = t;
+        }
+
+        String indent = "                    ";
+        boolean first = true;
+        boolean continues = exit(dfa, fallthrough) == null;
+        for (int target = 0; target < dfa.states(); target++) {
+            if (target == fallthrough || coverage[target] == 0) continue;
+            List<String> conditions = new ArrayList<>();
+            for (int k = 0; k < intervals; k++) {
+                if (row[k] != target) continue;
+                int lo = dfa.boundaries[k];
+                int hi = end(dfa, k);
+                // Consecutive intervals to the same target make one range
+                while (k + 1 < intervals && row[k + 1] == target) hi = end(dfa, ++k);
+                conditions.add(condition(lo, hi));
+            }
+            if (conditions.size() > 1) conditions.replaceAll(c -> c.contains("&&") ? "(" + c + ")" : c);
+            java.append(indent).append(first ? "if (" : "} else if (").append(String.join(" || ", conditions))
+                .append(") {\n");
+            java.append(indent).append("    ").append(go(dfa, target)).append("\n");
+            first = false;
+            continues |= exit(dfa, target) == null;
+        }
+        if (first) {
+            java.append(indent).append(go(dfa, fallthrough)).append("\n");
+        } else {
+            java.append(indent).append("} else {\n");
+            java.append(indent).append("    ").append(go(dfa, fallthrough)).append("\n");
+            java.append(indent).append("}\n");
+        }
+        return continues;
+    }
+
+    private static int end(Dfa dfa, int interval) {
+        return interval + 1 < dfa.boundaries.length ? dfa.boundaries[interval + 1] - 1 : Character.MAX_VALUE;
+    }
+
+    private static String condition(int lo, int hi) {
+        if (lo == hi) return "c == " + lo;
+        if (lo == 0) return "c <= " + hi;
+        if (hi == Character.MAX_VALUE) return "c >= " + lo;
+        return "c >= " + lo + " && c <= " + hi;
+    }
+
+    private static String go(Dfa dfa, int target) {
+        if (dfa.anchoredEnd && dfa.dead[target]) {
+            // As in Dfa.find, $ can still match before the final line terminator the DFA died on
+            return "return dollar(s, n, atN2, atN1, false);";
+        }
+        String exit = exit(dfa, target);
+        return exit != null ? "return " + exit + ";" : "state = " + target + ";";
+    }
+
+    // ----- in-memory javac, as in java24-25/InMemAOT.java -----
+
+    private static class StringSource extends SimpleJavaFileObject {
+
+        private final String code;
+
+        StringSource(String name, String code) {
+            super(URI.create("string:///" + name.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.code = code;
+        }
+
+        @Override
+        public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+            return code;
+        }
+    }
+
+    private static class MemClass extends SimpleJavaFileObject {
+
+        private final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        MemClass(String name) {
+            super(URI.create("mem:///" + name.replace('.', '/') + Kind.CLASS.extension), Kind.CLASS);
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return bos;
+        }
+
+        byte[] bytes() {
+            return bos.toByteArray();
+        }
+    }
+
+    private static class MemFM extends ForwardingJavaFileManager<JavaFileManager> {
+
+        private final Map<String, MemClass> classes = new ConcurrentHashMap<>();
+
+        MemFM(JavaFileManager fm) {
+            super(fm);
+        }
+
+        @Override
+        public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                   FileObject sibling) {
+            MemClass mc = new MemClass(className);
+            classes.put(className, mc);
+            return mc;
+        }
+    }
+
+    // One loader per matcher, so its class is unloaded with it
+    private static class MemLoader extends ClassLoader {
+
+        MemLoader() {
+            super(Generated.class.getClassLoader());
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    private static byte[] javac(String name, String source) {
+        JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+        if (javac == null) {
+            throw new IllegalStateException("No system Java compiler, the bytecode engine needs a JDK");
+        }
+        DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
+        try (MemFM fm = new MemFM(javac.getStandardFileManager(diagnostics, null, null))) {
+            // Generated lives in this module's classes or jar, which isn't always on java.class.path (e.g. in tests)
+            List<String> options = List.of("-g:none", "-proc:none", "-classpath", classpath());
+            if (!javac.getTask(null, fm, diagnostics, options, null, List.of(new StringSource(name, source))).call()) {
+                throw new IllegalStateException("Generated matcher doesn't compile: " + diagnostics.getDiagnostics());
+            }
+            return fm.classes.get(name).bytes();
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't compile generated matcher " + name, e);
+        }
+    }
+
+    private static Generated load(String name, byte[] bytecode) {
+        try {
+            Class<?> type = new MemLoader().define(name, bytecode);
+            return (Generated) type.getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Can't load generated matcher " + name, e);
+        }
+    }
+
+    private static String classpath() {
+        String classpath = System.getProperty("java.class.path");
+        CodeSource codeSource = Generated.class.getProtectionDomain().getCodeSource();
+        if (codeSource == null || codeSource.getLocation() == null) return classpath;
+        try {
+            String own = Path.of(codeSource.getLocation().toURI()).toString();
+            return String.join(File.pathSeparator, own, classpath);
+        } catch (URISyntaxException e) {
+            return classpath;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BytecodeMultiPatternMatcher{patterns=" + size + ", fallback=" + Arrays.toString(fallbackIds) + "}";
+    }
+}
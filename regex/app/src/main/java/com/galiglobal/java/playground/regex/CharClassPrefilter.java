@@ -0,0 +1,173 @@
+package com.galiglobal.java.playground.regex;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects, per pattern, the inputs without a long enough run of the chars the pattern can match.
+ * <p>
+ * Every match is a run of at least {@link Dfa.Span#minLength()} chars of the pattern's alphabet, all the chars of its
+ * classes and literals. RegexApp's phone, SSN and date patterns only read digits and {@code -}, so a random number
+ * shorter than the pattern is rejected for them, and the states pattern needs two capitals. The runs are found with a
+ * {@link CharClassScanner}, one per distinct alphabet and length. Patterns outside the {@link Dfa} subset, that match
+ * the empty string or whose alphabet goes beyond Latin-1 (e.g. {@code .}) are candidates for every input.
+ * <p>
+ * The input is read as Latin-1: a {@link Latin1CharSequence} in place, anything else copied into a thread-local
+ * array. Chars above 0xFF are truncated, which can only turn a byte out of an alphabet into one in it.
+ * <p>
+ * Immutable once built and safe to share between threads, the counters are {@link LongAdder}s.
+ */
+public class CharClassPrefilter implements Prefilter {
+
+    private final int size;
+    private final long[] unconstrained;
+    private final boolean anyUnconstrained;
+    // Per distinct (alphabet, length): the scanner, the run it needs and the patterns it constrains
+    private final CharClassScanner[] scanners;
+    private final int[] minRuns;
+    private final long[][] patterns;
+
+    private final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[256]);
+    private final LongAdder inputs = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public CharClassPrefilter(List<String> regexps) {
+        this(regexps, 0);
+    }
+
+    /**
+     * @param lanes bytes per vector step, see {@link CharClassScanner#CharClassScanner(int[], int)}
+     */
+    public CharClassPrefilter(List<String> regexps, int lanes) {
+        this.size = regexps.size();
+        int words = MultiPatternMatcher.words(size);
+        this.unconstrained = new long[words];
+        Map<List<Integer>, long[]> groups = new LinkedHashMap<>();
+        for (int id = 0; id < size; id++) {
+            Dfa.Span span = span(regexps.get(id));
+            if (span == null) {
+                unconstrained[id >>> 6] |= 1L << id;
+                continue;
+            }
+            List<Integer> key = new ArrayList<>();
+            key.add(span.minLength());
+            for (int c : span.alphabet()) key.add(c);
+            groups.computeIfAbsent(key, k -> new long[words])[id >>> 6] |= 1L << id;
+        }
+        this.anyUnconstrained = Arrays.stream(unconstrained).anyMatch(word -> word != 0);
+        this.scanners = new CharClassScanner[groups.size()];
+        this.minRuns = new int[groups.size()];
+        this.patterns = new long[groups.size()][];
+        int g = 0;
+        for (Map.Entry<List<Integer>, long[]> group : groups.entrySet()) {
+            List<Integer> key = group.getKey();
+            minRuns[g] = key.get(0);
+            scanners[g] = new CharClassScanner(key.subList(1, key.size()).stream().mapToInt(c -> c).toArray(), lanes);
+            patterns[g++] = group.getValue();
+        }
+    }
+
+    /**
+     * The span of a pattern, null if it doesn't constrain the input.
+     */
+    private static Dfa.Span span(String regex) {
+        Dfa.Span span;
+        try {
+            span = Dfa.span(regex);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        int[] alphabet = span.alphabet();
+        boolean latin1 = alphabet.length > 0 && alphabet[alphabet.length - 1] <= 0xFF;
+        boolean everyByte = alphabet.length == 2 && alphabet[0] == 0 && alphabet[1] >= 0xFF;
+        return span.minLength() > 0 && latin1 && !everyByte ? span : null;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of distinct scans per input.
+     */
+    public int scanners() {
+        return scanners.length;
+    }
+
+    @Override
+    public boolean mayMatch(CharSequence input) {
+        inputs.increment();
+        if (anyUnconstrained) return true;
+        byte[] bytes = bytes(input);
+        int from = from(input);
+        int to = from + input.length();
+        for (int g = 0; g < scanners.length; g++) {
+            if (scanners[g].indexOfRun(bytes, from, to, minRuns[g]) >= 0) return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    @Override
+    public boolean candidates(CharSequence input, long[] bits, int offset) {
+        inputs.increment();
+        int words = unconstrained.length;
+        System.arraycopy(unconstrained, 0, bits, offset, words);
+        boolean any = anyUnconstrained;
+        byte[] bytes = bytes(input);
+        int from = from(input);
+        int to = from + input.length();
+        for (int g = 0; g < scanners.length; g++) {
+            if (scanners[g].indexOfRun(bytes, from, to, minRuns[g]) >= 0) {
+                for (int w = 0; w < words; w++) bits[offset + w] |= patterns[g][w];
+                any = true;
+            }
+        }
+        if (!any) rejected.increment();
+        return any;
+    }
+
+    @SuppressWarnings("deprecation")
+    private byte[] bytes(CharSequence input) {
+        if (input instanceof Latin1CharSequence latin1) return latin1.array();
+        int length = input.length();
+        byte[] bytes = scratch.get();
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+            scratch.set(bytes);
+        }
+        if (input instanceof String string) {
+            // Drops the high byte of each char, a plain copy for a Latin-1 string
+            string.getBytes(0, length, bytes, 0);
+        } else {
+            for (int i = 0; i < length; i++) bytes[i] = (byte) input.charAt(i);
+        }
+        return bytes;
+    }
+
+    private static int from(CharSequence input) {
+        return input instanceof Latin1CharSequence latin1 ? latin1.offset() : 0;
+    }
+
+    @Override
+    public long inputs() {
+        return inputs.sum();
+    }
+
+    @Override
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "CharClassPrefilter{patterns=" + size + ", unconstrained=" + Arrays.stream(unconstrained)
+            .mapToInt(Long::bitCount).sum() + ", scanners=" + scanners.length + ", inputs=" + inputs()
+            + ", rejectRate=" + rejectRate() + "}";
+    }
+}
@@ -0,0 +1,166 @@
+package com.galiglobal.java.playground.regex;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.util.Arrays;
+
+/**
+ * Finds runs of the bytes of a character class in Latin-1 text with the Vector API ({@code jdk.incubator.vector}),
+ * 16, 32 or 64 bytes per step. It is the pre-pass of {@link CharClassPrefilter}.
+ * <p>
+ * A class is a union of ranges, the chars above 0xFF are dropped. Every step loads one vector, tests it against each
+ * range with a subtraction and an unsigned compare and turns the mask into a long, one bit per lane. Runs inside the
+ * step are found with shifts and ands on that long, runs across steps by carrying the length of the run at the end
+ * of the previous step. The tail shorter than a vector goes through a lookup table, so does a whole input shorter
+ * than one vector, e.g. a 10 digit id with 16 lanes or more.
+ * <p>
+ * Immutable and safe to share between threads.
+ */
+public final class CharClassScanner {
+
+    private final VectorSpecies<Byte> species;
+    private final int lanes;
+    // Range k is [lo[k], lo[k] + width[k]] as unsigned bytes
+    private final byte[] lo;
+    private final byte[] width;
+    private final boolean[] table = new boolean[256];
+
+    /**
+     * @param ranges sorted [lo, hi] pairs, as in {@link Dfa.Span#alphabet()}
+     * @param lanes  16, 32 or 64, or 0 for the widest the hardware has
+     */
+    public CharClassScanner(int[] ranges, int lanes) {
+        this.species = species(lanes);
+        this.lanes = species.length();
+        int count = 0;
+        byte[] lo = new byte[ranges.length / 2];
+        byte[] width = new byte[ranges.length / 2];
+        for (int i = 0; i < ranges.length && ranges[i] <= 0xFF; i += 2) {
+            int hi = Math.min(ranges[i + 1], 0xFF);
+            lo[count] = (byte) ranges[i];
+            width[count++] = (byte) (hi - ranges[i]);
+            for (int c = ranges[i]; c <= hi; c++) table[c] = true;
+        }
+        this.lo = Arrays.copyOf(lo, count);
+        this.width = Arrays.copyOf(width, count);
+    }
+
+    /**
+     * The class of a regex made of a single class, e.g. {@code [0-9]} or {@code \w}.
+     */
+    public static CharClassScanner of(String charClass, int lanes) {
+        return new CharClassScanner(Dfa.span(charClass).alphabet(), lanes);
+    }
+
+    private static VectorSpecies<Byte> species(int lanes) {
+        return switch (lanes) {
+            case 0 -> ByteVector.SPECIES_PREFERRED;
+            case 16 -> ByteVector.SPECIES_128;
+            case 32 -> ByteVector.SPECIES_256;
+            case 64 -> ByteVector.SPECIES_512;
+            default -> throw new IllegalArgumentException("Lanes must be 16, 32, 64 or 0, not " + lanes);
+        };
+    }
+
+    public int lanes() {
+        return lanes;
+    }
+
+    public boolean contains(int c) {
+        return c >= 0 && c <= 0xFF && table[c];
+    }
+
+    /**
+     * End of the run of class bytes starting at {@code from}: the first index of {@code bytes[from, to)} not in the
+     * class, {@code to} if there is none.
+     */
+    public int span(byte[] bytes, int from, int to) {
+        int i = from;
+        for (int upper = from + species.loopBound(to - from); i < upper; i += lanes) {
+            long members = members(bytes, i);
+            if (members != lanesMask()) return i + Long.numberOfTrailingZeros(~members);
+        }
+        while (i < to && table[bytes[i] & 0xFF]) i++;
+        return i;
+    }
+
+    /**
+     * Start of the first run of at least {@code minRun} class bytes in {@code bytes[from, to)}, -1 if there is none.
+     */
+    public int indexOfRun(byte[] bytes, int from, int to, int minRun) {
+        if (minRun <= 0) return from;
+        // Class bytes right before i
+        int run = 0;
+        int i = from;
+        for (int upper = from + species.loopBound(to - from); i < upper; i += lanes) {
+            long members = members(bytes, i);
+            int head = Long.numberOfTrailingZeros(~members);
+            if (run + head >= minRun) return i - run;
+            if (head == lanes) {
+                run += lanes;
+                continue;
+            }
+            int start = indexOfRun(members, minRun);
+            if (start >= 0) return i + start;
+            // Class bytes at the end of the step, lane lanes - 1 shifted to bit 63
+            run = Long.numberOfLeadingZeros(~(members << (64 - lanes)));
+        }
+        for (; i < to; i++) {
+            if (!table[bytes[i] & 0xFF]) {
+                run = 0;
+            } else if (++run >= minRun) {
+                return i - run + 1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Same as {@link #indexOfRun(byte[], int, int, int)} one byte at a time, the baseline of the vector path.
+     */
+    public int indexOfRunScalar(byte[] bytes, int from, int to, int minRun) {
+        if (minRun <= 0) return from;
+        int run = 0;
+        for (int i = from; i < to; i++) {
+            if (!table[bytes[i] & 0xFF]) {
+                run = 0;
+            } else if (++run >= minRun) {
+                return i - run + 1;
+            }
+        }
+        return -1;
+    }
+
+    // Bit k is set if bytes[i + k] is in the class
+    private long members(byte[] bytes, int i) {
+        ByteVector v = ByteVector.fromArray(species, bytes, i);
+        VectorMask<Byte> members = species.maskAll(false);
+        for (int k = 0; k < lo.length; k++) {
+            members = members.or(v.sub(lo[k]).compare(VectorOperators.UNSIGNED_LE, width[k]));
+        }
+        return members.toLong();
+    }
+
+    private long lanesMask() {
+        return lanes == 64 ? -1L : (1L << lanes) - 1;
+    }
+
+    /**
+     * Lowest bit starting {@code minRun} consecutive set bits, -1 if there is none. Doubling: after each step bit k
+     * of {@code runs} is set if the {@code length} bits from k are.
+     */
+    private static int indexOfRun(long members, int minRun) {
+        // A step with a byte out of the class has no run of 64
+        if (minRun >= 64) return -1;
+        long runs = members;
+        for (int length = 1; length < minRun && runs != 0; ) {
+            int shift = Math.min(length, minRun - length);
+            runs &= runs >>> shift;
+            length += shift;
+        }
+        return runs == 0 ? -1 : Long.numberOfTrailingZeros(runs);
+    }
+}
@@ -0,0 +1,75 @@
+package com.galiglobal.java.playground.regex;
+
+/**
+ * Input wrapper that aborts a runaway java.util.regex match. java.util.regex reads the input through
+ * {@link #charAt(int)} while it backtracks, so checking the clock there bounds the time of any match:
+ * <pre>
+ * pattern.matcher(new DeadlineCharSequence(input, timeoutNanos)).find()
+ * </pre>
+ * throws {@link RegexTimeoutException} once {@code timeoutNanos} have passed. The clock is only read every
+ * {@link #CHECK_INTERVAL} calls to keep the common case cheap.
+ * <p>
+ * The wrapper is mutable, {@link #arm} points it to the next input with a new deadline, so a matcher can reuse one
+ * for all its matches; only {@link #subSequence} creates new wrappers.
+ */
+public class DeadlineCharSequence implements CharSequence {
+
+    static final int CHECK_INTERVAL = 1024;
+
+    private CharSequence input;
+    private long deadline;
+    private int calls;
+
+    /**
+     * An unarmed wrapper over the empty input, call {@link #arm} before matching.
+     */
+    public DeadlineCharSequence() {
+        this("", 0L);
+    }
+
+    public DeadlineCharSequence(CharSequence input, long timeoutNanos) {
+        arm(input, timeoutNanos);
+    }
+
+    private DeadlineCharSequence(CharSequence input, long deadline, int calls) {
+        this.input = input;
+        this.deadline = deadline;
+        this.calls = calls;
+    }
+
+    /**
+     * Wraps {@code input} with a deadline {@code timeoutNanos} from now.
+     */
+    public DeadlineCharSequence arm(CharSequence input, long timeoutNanos) {
+        this.input = input;
+        this.deadline = System.nanoTime() + timeoutNanos;
+        this.calls = 0;
+        return this;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (++calls == CHECK_INTERVAL) {
+            calls = 0;
+            if (System.nanoTime() - deadline > 0) {
+                throw new RegexTimeoutException("Match deadline exceeded on input of length " + input.length());
+            }
+        }
+        return input.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return input.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new DeadlineCharSequence(input.subSequence(start, end), deadline, 0);
+    }
+
+    @Override
+    public String toString() {
+        return input.toString();
+    }
+}
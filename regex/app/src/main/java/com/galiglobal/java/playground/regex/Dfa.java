@@ -0,0 +1,710 @@
+package com.galiglobal.java.playground.regex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+
+/**
+ * Deterministic automaton answering {@link java.util.regex.Matcher#find()} for a regex in one pass over the input,
+ * the input of {@link BytecodeMultiPatternMatcher}.
+ * <p>
+ * Only the regular subset of java.util.regex is supported: literals, classes, {@code .}, groups, alternation, greedy
+ * and lazy quantifiers, {@code ^} at the start and {@code $} at the end of the whole pattern and a leading
+ * {@code (?s)}. Anything else (backreferences, lookarounds, word boundaries, possessive quantifiers, other flags)
+ * throws {@link IllegalArgumentException}, as does a pattern whose DFA has more than {@link #MAX_STATES} states. The
+ * automaton reads UTF-16 chars, so {@code .} and negated classes match half of a surrogate pair where java.util.regex
+ * matches the whole code point; the patterns this is for are ASCII fields.
+ * <p>
+ * The regex is parsed into a tree, the tree into a Thompson NFA and the NFA into a DFA by subset construction, adding
+ * the start state at every step unless the pattern starts with {@code ^}. Without {@code $} the first accepting state
+ * ends the search, so accepting states are sinks. The DFA is then minimized. Chars are grouped in intervals that no
+ * class of the pattern splits and transitions are per interval.
+ */
+public final class Dfa {
+
+    // Keeps a generated find method well under HugeMethodLimit (8000 bytes), bigger methods are never JIT compiled
+    static final int MAX_STATES = 256;
+    static final int MAX_NFA_STATES = 10_000;
+    // Before minimization
+    private static final int MAX_SUBSET_STATES = 10_000;
+    private static final int MAX_CHAR = Character.MAX_VALUE;
+
+    private static final int[] ALL = {0, MAX_CHAR};
+    private static final int[] DIGIT = {'0', '9'};
+    private static final int[] WORD = {'0', '9', 'A', 'Z', '_', '_', 'a', 'z'};
+    private static final int[] SPACE = {'\t', '\r', ' ', ' '};
+    private static final int[] LINE_TERMINATORS = {'\n', '\n', '\r', '\r', 0x85, 0x85, 0x2028, 0x2029};
+
+    final String regex;
+    // Interval k is [boundaries[k], boundaries[k + 1] - 1], the last one ends at Character.MAX_VALUE
+    final int[] boundaries;
+    // next[state][interval], state 0 is the start state
+    final int[][] next;
+    final boolean[] accepting;
+    // States that can't reach an accepting state
+    final boolean[] dead;
+    final boolean anchoredStart;
+    final boolean anchoredEnd;
+
+    private Dfa(String regex, int[] boundaries, int[][] next, boolean[] accepting, boolean[] dead,
+                boolean anchoredStart, boolean anchoredEnd) {
+        this.regex = regex;
+        this.boundaries = boundaries;
+        this.next = next;
+        this.accepting = accepting;
+        this.dead = dead;
+        this.anchoredStart = anchoredStart;
+        this.anchoredEnd = anchoredEnd;
+    }
+
+    /**
+     * @throws IllegalArgumentException if the pattern is outside the supported subset or its DFA is too big
+     */
+    public static Dfa compile(String regex) {
+        Parser parser = new Parser(regex);
+        Node tree = parser.parse();
+        Nfa nfa = new Nfa();
+        int start = nfa.build(tree, Nfa.ACCEPT);
+        return build(regex, nfa, start, parser.anchoredStart, parser.anchoredEnd);
+    }
+
+    /**
+     * The chars a match of the regex can contain and the length of its shortest match, parsed without building the
+     * automaton: every match is a run of at least {@code minLength} chars of {@code alphabet}, sorted [lo, hi] pairs.
+     * Anchors aren't taken into account, {@code $} never adds a char.
+     *
+     * @throws IllegalArgumentException if the pattern is outside the supported subset
+     */
+    static Span span(String regex) {
+        Node tree = new Parser(regex).parse();
+        return new Span(alphabet(tree), (int) Math.min(minLength(tree), Integer.MAX_VALUE));
+    }
+
+    record Span(int[] alphabet, int minLength) {
+    }
+
+    public static boolean supports(String regex) {
+        try {
+            compile(regex);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    public int states() {
+        return next.length;
+    }
+
+    /**
+     * Interprets the automaton, the reference for the generated code.
+     */
+    public boolean find(CharSequence input) {
+        int n = input.length();
+        int state = 0;
+        boolean atN2 = false;
+        boolean atN1 = false;
+        for (int i = 0; i < n; i++) {
+            if (!anchoredEnd && accepting[state]) return true;
+            if (i == n - 2) atN2 = accepting[state];
+            if (i == n - 1) atN1 = accepting[state];
+            // The last two chars can be a line terminator $ matches before, even once the DFA is dead on them
+            if (dead[state]) return anchoredEnd && dollar(input, n, atN2, atN1, false);
+            state = next[state][interval(input.charAt(i))];
+        }
+        return anchoredEnd ? dollar(input, n, atN2, atN1, accepting[state]) : accepting[state];
+    }
+
+    private int interval(char c) {
+        int k = Arrays.binarySearch(boundaries, c);
+        return k >= 0 ? k : -k - 2;
+    }
+
+    /**
+     * Whether {@code $} matches given the accepting state after n - 2, n - 1 and n chars. Like java.util.regex
+     * without MULTILINE, {@code $} also matches before a final line terminator.
+     */
+    static boolean dollar(CharSequence input, int n, boolean atN2, boolean atN1, boolean atN) {
+        if (atN) return true;
+        if (atN1) {
+            char c = input.charAt(n - 1);
+            // Not between \r and \n
+            if (c == '\n' ? n < 2 || input.charAt(n - 2) != '\r' : c == '\r' || c == 0x85 || (c | 1) == 0x2029) {
+                return true;
+            }
+        }
+        return atN2 && input.charAt(n - 2) == '\r' && input.charAt(n - 1) == '\n';
+    }
+
+    // ----- regex tree -----
+
+    private sealed interface Node {
+    }
+
+    // Sorted, disjoint and non-adjacent [lo, hi] pairs
+    private record Chars(int[] ranges) implements Node {
+    }
+
+    private record Seq(List<Node> items) implements Node {
+    }
+
+    private record Alt(List<Node> alternatives) implements Node {
+    }
+
+    // max -1 is unbounded
+    private record Repeat(Node node, int min, int max) implements Node {
+    }
+
+    private static final Node EMPTY = new Seq(List.of());
+
+    private static int[] alphabet(Node node) {
+        if (node instanceof Chars c) return c.ranges();
+        if (node instanceof Repeat repeat) return alphabet(repeat.node());
+        List<Node> children = node instanceof Seq seq ? seq.items() : ((Alt) node).alternatives();
+        int[] alphabet = new int[0];
+        for (Node child : children) alphabet = union(alphabet, alphabet(child));
+        return alphabet;
+    }
+
+    private static long minLength(Node node) {
+        if (node instanceof Chars) return 1;
+        if (node instanceof Repeat repeat) return Math.min(repeat.min() * minLength(repeat.node()), Integer.MAX_VALUE);
+        if (node instanceof Seq seq) {
+            return Math.min(seq.items().stream().mapToLong(Dfa::minLength).sum(), Integer.MAX_VALUE);
+        }
+        return ((Alt) node).alternatives().stream().mapToLong(Dfa::minLength).min().orElse(0);
+    }
+
+    private static final class Parser {
+
+        private final String regex;
+        private int pos;
+        private int depth;
+        private boolean dotAll;
+        boolean anchoredStart;
+        boolean anchoredEnd;
+
+        Parser(String regex) {
+            this.regex = regex;
+        }
+
+        Node parse() {
+            try {
+                if (regex.startsWith("(?s)")) {
+                    dotAll = true;
+                    pos = 4;
+                }
+                if (regex.startsWith("^", pos)) {
+                    anchoredStart = true;
+                    pos++;
+                }
+                Node node = alternation();
+                if (pos < regex.length()) throw unsupported("Unbalanced )");
+                if (node instanceof Alt && (anchoredStart || anchoredEnd)) {
+                    throw unsupported("Anchor on a single alternative");
+                }
+                return node;
+            } catch (IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Incomplete regex " + regex, e);
+            }
+        }
+
+        private IllegalArgumentException unsupported(String reason) {
+            return new IllegalArgumentException(reason + " at " + pos + " in " + regex);
+        }
+
+        private Node alternation() {
+            List<Node> alternatives = new ArrayList<>();
+            alternatives.add(sequence());
+            while (pos < regex.length() && regex.charAt(pos) == '|') {
+                pos++;
+                alternatives.add(sequence());
+            }
+            return alternatives.size() == 1 ? alternatives.get(0) : new Alt(alternatives);
+        }
+
+        private Node sequence() {
+            List<Node> items = new ArrayList<>();
+            while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+                items.add(repeat(atom()));
+            }
+            return items.size() == 1 ? items.get(0) : new Seq(items);
+        }
+
+        private Node repeat(Node atom) {
+            if (pos >= regex.length()) return atom;
+            char c = regex.charAt(pos);
+            int min;
+            int max;
+            if (c == '*') {
+                min = 0;
+                max = -1;
+                pos++;
+            } else if (c == '+') {
+                min = 1;
+                max = -1;
+                pos++;
+            } else if (c == '?') {
+                min = 0;
+                max = 1;
+                pos++;
+            } else if (c == '{') {
+                int end = regex.indexOf('}', pos);
+                if (end < 0) throw unsupported("Unclosed repetition");
+                String[] bounds = regex.substring(pos + 1, end).split(",", -1);
+                try {
+                    min = Integer.parseInt(bounds[0]);
+                    max = bounds.length == 1 ? min : bounds[1].isEmpty() ? -1 : Integer.parseInt(bounds[1]);
+                } catch (NumberFormatException e) {
+                    throw unsupported("Bad repetition");
+                }
+                if (bounds.length > 2 || (max != -1 && max < min)) throw unsupported("Bad repetition");
+                pos = end + 1;
+            } else {
+                return atom;
+            }
+            if (pos < regex.length() && regex.charAt(pos) == '+') throw unsupported("Possessive quantifier");
+            // Lazy doesn't change whether there is a match
+            if (pos < regex.length() && regex.charAt(pos) == '?') pos++;
+            return new Repeat(atom, min, max);
+        }
+
+        private Node atom() {
+            char c = regex.charAt(pos);
+            switch (c) {
+                case '(':
+                    return group();
+                case '[':
+                    return new Chars(charClass());
+                case '.':
+                    pos++;
+                    return new Chars(dotAll ? ALL : complement(LINE_TERMINATORS));
+                case '$':
+                    if (pos != regex.length() - 1 || depth > 0) throw unsupported("$ before the end");
+                    pos++;
+                    anchoredEnd = true;
+                    return EMPTY;
+                case '^':
+                    throw unsupported("^ after the start");
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                    throw unsupported("Dangling quantifier");
+                case '\\':
+                    if (regex.startsWith("\\Q", pos)) return quoted();
+                    return new Chars(escape());
+                default:
+                    pos++;
+                    return new Chars(new int[]{c, c});
+            }
+        }
+
+        private Node group() {
+            pos++;
+            if (regex.startsWith("?:", pos)) {
+                pos += 2;
+            } else if (regex.startsWith("?<", pos) && Character.isLetter(regex.charAt(pos + 2))) {
+                pos = regex.indexOf('>', pos) + 1;
+            } else if (regex.startsWith("?", pos)) {
+                throw unsupported("Lookaround or flags");
+            }
+            depth++;
+            Node node = alternation();
+            depth--;
+            if (pos >= regex.length() || regex.charAt(pos) != ')') throw unsupported("Unclosed group");
+            pos++;
+            return node;
+        }
+
+        private Node quoted() {
+            int end = regex.indexOf("\\E", pos + 2);
+            String literal = regex.substring(pos + 2, end < 0 ? regex.length() : end);
+            pos = end < 0 ? regex.length() : end + 2;
+            List<Node> chars = new ArrayList<>();
+            for (char c : literal.toCharArray()) chars.add(new Chars(new int[]{c, c}));
+            return new Seq(chars);
+        }
+
+        private int[] charClass() {
+            pos++;
+            boolean negated = regex.charAt(pos) == '^';
+            if (negated) pos++;
+            int[] chars = new int[0];
+            boolean first = true;
+            while (regex.charAt(pos) != ']' || first) {
+                first = false;
+                char c = regex.charAt(pos);
+                if (c == '[' || regex.startsWith("&&", pos)) throw unsupported("Nested class");
+                int[] item;
+                if (c == '\\') {
+                    item = escape();
+                } else {
+                    pos++;
+                    item = new int[]{c, c};
+                }
+                if (regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+                    pos++;
+                    int[] to;
+                    if (regex.charAt(pos) == '\\') {
+                        to = escape();
+                    } else {
+                        char hi = regex.charAt(pos++);
+                        to = new int[]{hi, hi};
+                    }
+                    if (item.length != 2 || item[0] != item[1] || to.length != 2 || to[0] != to[1]) {
+                        throw unsupported("Class in a range");
+                    }
+                    if (to[0] < item[0]) throw unsupported("Illegal range");
+                    item = new int[]{item[0], to[0]};
+                }
+                chars = union(chars, item);
+            }
+            pos++;
+            return negated ? complement(chars) : chars;
+        }
+
+        /**
+         * The chars of the escape at {@code pos}, one [c, c] pair for a single char.
+         */
+        private int[] escape() {
+            char c = regex.charAt(pos + 1);
+            pos += 2;
+            switch (c) {
+                case 'd':
+                    return DIGIT;
+                case 'D':
+                    return complement(DIGIT);
+                case 'w':
+                    return WORD;
+                case 'W':
+                    return complement(WORD);
+                case 's':
+                    return SPACE;
+                case 'S':
+                    return complement(SPACE);
+                case 't':
+                    return new int[]{'\t', '\t'};
+                case 'n':
+                    return new int[]{'\n', '\n'};
+                case 'r':
+                    return new int[]{'\r', '\r'};
+                case 'f':
+                    return new int[]{'\f', '\f'};
+                case 'a':
+                    return new int[]{7, 7};
+                case 'e':
+                    return new int[]{27, 27};
+                case 'x':
+                    return hex(2);
+                case 'u':
+                    return hex(4);
+                default:
+                    // \b \B \A \z \Z \G \p{..} \1 \k<..> octal and the rest have no DFA equivalent here
+                    if (Character.isLetterOrDigit(c)) throw unsupported("Unsupported escape \\" + c);
+                    return new int[]{c, c};
+            }
+        }
+
+        private int[] hex(int digits) {
+            try {
+                int c = Integer.parseInt(regex.substring(pos, pos + digits), 16);
+                pos += digits;
+                return new int[]{c, c};
+            } catch (NumberFormatException e) {
+                throw unsupported("Bad hex escape");
+            }
+        }
+    }
+
+    // ----- char sets as sorted [lo, hi] pairs -----
+
+    private static int[] union(int[] a, int[] b) {
+        int[] all = Arrays.copyOf(a, a.length + b.length);
+        System.arraycopy(b, 0, all, a.length, b.length);
+        Integer[] pairs = new Integer[all.length / 2];
+        for (int i = 0; i < pairs.length; i++) pairs[i] = i;
+        Arrays.sort(pairs, (x, y) -> Integer.compare(all[2 * x], all[2 * y]));
+        int[] merged = new int[all.length];
+        int size = 0;
+        for (int p : pairs) {
+            int lo = all[2 * p];
+            int hi = all[2 * p + 1];
+            if (size > 0 && lo <= merged[size - 1] + 1) {
+                merged[size - 1] = Math.max(merged[size - 1], hi);
+            } else {
+                merged[size++] = lo;
+                merged[size++] = hi;
+            }
+        }
+        return Arrays.copyOf(merged, size);
+    }
+
+    private static int[] complement(int[] ranges) {
+        int[] complement = new int[ranges.length + 2];
+        int size = 0;
+        int from = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (ranges[i] > from) {
+                complement[size++] = from;
+                complement[size++] = ranges[i] - 1;
+            }
+            from = ranges[i + 1] + 1;
+        }
+        if (from <= MAX_CHAR) {
+            complement[size++] = from;
+            complement[size++] = MAX_CHAR;
+        }
+        return Arrays.copyOf(complement, size);
+    }
+
+    private static boolean contains(int[] ranges, int c) {
+        for (int i = 0; i < ranges.length; i += 2) {
+            if (c >= ranges[i] && c <= ranges[i + 1]) return true;
+        }
+        return false;
+    }
+
+    // ----- Thompson NFA -----
+
+    private static final class Nfa {
+
+        static final int ACCEPT = 0;
+
+        // Per state: the chars it consumes and where it goes, or null and its epsilon transitions
+        final List<int[]> chars = new ArrayList<>();
+        final List<Integer> targets = new ArrayList<>();
+        final List<int[]> epsilons = new ArrayList<>();
+
+        Nfa() {
+            add(null, -1, new int[0]);
+        }
+
+        private int add(int[] ranges, int target, int[] eps) {
+            if (chars.size() == MAX_NFA_STATES) {
+                throw new IllegalArgumentException("NFA bigger than " + MAX_NFA_STATES + " states");
+            }
+            chars.add(ranges);
+            targets.add(target);
+            epsilons.add(eps);
+            return chars.size() - 1;
+        }
+
+        /**
+         * Builds the states matching {@code node} and then continuing at {@code next}, returns the first one.
+         */
+        int build(Node node, int next) {
+            if (node instanceof Chars c) {
+                return add(c.ranges(), next, null);
+            }
+            if (node instanceof Seq seq) {
+                for (int i = seq.items().size() - 1; i >= 0; i--) next = build(seq.items().get(i), next);
+                return next;
+            }
+            if (node instanceof Alt alt) {
+                int[] starts = new int[alt.alternatives().size()];
+                for (int i = 0; i < starts.length; i++) starts[i] = build(alt.alternatives().get(i), next);
+                return add(null, -1, starts);
+            }
+            Repeat repeat = (Repeat) node;
+            int current = next;
+            if (repeat.max() == -1) {
+                int loop = add(null, -1, null);
+                epsilons.set(loop, new int[]{build(repeat.node(), loop), next});
+                current = loop;
+            } else {
+                for (int i = repeat.min(); i < repeat.max(); i++) {
+                    current = add(null, -1, new int[]{build(repeat.node(), current), next});
+                }
+            }
+            for (int i = 0; i < repeat.min(); i++) current = build(repeat.node(), current);
+            return current;
+        }
+
+        BitSet closure(BitSet states) {
+            BitSet closure = (BitSet) states.clone();
+            ArrayDeque<Integer> stack = new ArrayDeque<>();
+            states.stream().forEach(stack::push);
+            while (!stack.isEmpty()) {
+                int[] eps = epsilons.get(stack.pop());
+                if (eps == null) continue;
+                for (int e : eps) {
+                    if (!closure.get(e)) {
+                        closure.set(e);
+                        stack.push(e);
+                    }
+                }
+            }
+            return closure;
+        }
+    }
+
+    // ----- subset construction and minimization -----
+
+    private static Dfa build(String regex, Nfa nfa, int start, boolean anchoredStart, boolean anchoredEnd) {
+        TreeSet<Integer> bounds = new TreeSet<>(List.of(0));
+        for (int[] ranges : nfa.chars) {
+            if (ranges == null) continue;
+            for (int i = 0; i < ranges.length; i += 2) {
+                bounds.add(ranges[i]);
+                if (ranges[i + 1] < MAX_CHAR) bounds.add(ranges[i + 1] + 1);
+            }
+        }
+        int[] boundaries = bounds.stream().mapToInt(Integer::intValue).toArray();
+        int width = boundaries.length;
+
+        // Intervals consumed by each NFA state, the bounds never split a range
+        BitSet[] consumes = new BitSet[nfa.chars.size()];
+        for (int s = 0; s < consumes.length; s++) {
+            int[] ranges = nfa.chars.get(s);
+            if (ranges == null) continue;
+            consumes[s] = new BitSet(width);
+            for (int k = 0; k < width; k++) {
+                if (contains(ranges, boundaries[k])) consumes[s].set(k);
+            }
+        }
+
+        BitSet single = new BitSet();
+        single.set(start);
+        BitSet startSet = nfa.closure(single);
+        List<BitSet> sets = new ArrayList<>();
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<int[]> transitions = new ArrayList<>();
+        sets.add(startSet);
+        ids.put(startSet, 0);
+        Queue<Integer> queue = new ArrayDeque<>(List.of(0));
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            BitSet set = sets.get(state);
+            int[] row = new int[width];
+            transitions.add(null);
+            if (!anchoredEnd && set.get(Nfa.ACCEPT)) {
+                // The search is over, accepting states are sinks
+                Arrays.fill(row, state);
+                transitions.set(state, row);
+                continue;
+            }
+            for (int k = 0; k < width; k++) {
+                BitSet moved = new BitSet();
+                for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                    if (consumes[s] != null && consumes[s].get(k)) moved.set(nfa.targets.get(s));
+                }
+                BitSet target = nfa.closure(moved);
+                if (!anchoredStart) target.or(startSet);
+                Integer id = ids.get(target);
+                if (id == null) {
+                    if (sets.size() == MAX_SUBSET_STATES) {
+                        throw new IllegalArgumentException(
+                            "DFA bigger than " + MAX_SUBSET_STATES + " states: " + regex);
+                    }
+                    id = sets.size();
+                    sets.add(target);
+                    ids.put(target, id);
+                    queue.add(id);
+                }
+                row[k] = id;
+            }
+            transitions.set(state, row);
+        }
+
+        boolean[] accepting = new boolean[sets.size()];
+        for (int s = 0; s < accepting.length; s++) accepting[s] = sets.get(s).get(Nfa.ACCEPT);
+        return minimize(regex, boundaries, transitions.toArray(new int[0][]), accepting, anchoredStart, anchoredEnd);
+    }
+
+    /**
+     * Moore's partition refinement, then merges the intervals every state treats the same.
+     */
+    private static Dfa minimize(String regex, int[] boundaries, int[][] next, boolean[] accepting,
+                                boolean anchoredStart, boolean anchoredEnd) {
+        int n = next.length;
+        int width = boundaries.length;
+        int[] block = new int[n];
+        for (int s = 0; s < n; s++) block[s] = accepting[s] ? 1 : 0;
+        int blocks = -1;
+        while (true) {
+            Map<List<Integer>, Integer> signatures = new HashMap<>();
+            int[] refined = new int[n];
+            for (int s = 0; s < n; s++) {
+                List<Integer> signature = new ArrayList<>(width + 1);
+                signature.add(block[s]);
+                for (int k = 0; k < width; k++) signature.add(block[next[s][k]]);
+                refined[s] = signatures.computeIfAbsent(signature, key -> signatures.size());
+            }
+            block = refined;
+            if (signatures.size() == blocks) break;
+            blocks = signatures.size();
+        }
+        if (blocks > MAX_STATES) {
+            throw new IllegalArgumentException("DFA bigger than " + MAX_STATES + " states: " + regex);
+        }
+
+        // Renumber so the start state is 0 and the others follow in discovery order
+        int[] order = new int[blocks];
+        Arrays.fill(order, -1);
+        int[] representative = new int[blocks];
+        int count = 0;
+        Queue<Integer> queue = new ArrayDeque<>(List.of(0));
+        order[block[0]] = count++;
+        representative[block[0]] = 0;
+        while (!queue.isEmpty()) {
+            int s = queue.poll();
+            for (int k = 0; k < width; k++) {
+                int b = block[next[s][k]];
+                if (order[b] == -1) {
+                    order[b] = count++;
+                    representative[b] = next[s][k];
+                    queue.add(next[s][k]);
+                }
+            }
+        }
+        int[][] minimal = new int[count][width];
+        boolean[] minimalAccepting = new boolean[count];
+        for (int b = 0; b < blocks; b++) {
+            if (order[b] == -1) continue;
+            int s = representative[b];
+            minimalAccepting[order[b]] = accepting[s];
+            for (int k = 0; k < width; k++) minimal[order[b]][k] = order[block[next[s][k]]];
+        }
+
+        // Merge adjacent intervals with the same column
+        List<Integer> keep = new ArrayList<>(List.of(0));
+        for (int k = 1; k < width; k++) {
+            int previous = keep.get(keep.size() - 1);
+            boolean same = true;
+            for (int[] row : minimal) same &= row[k] == row[previous];
+            if (!same) keep.add(k);
+        }
+        int[] merged = keep.stream().mapToInt(k -> boundaries[k]).toArray();
+        for (int s = 0; s < count; s++) {
+            int[] row = minimal[s];
+            minimal[s] = keep.stream().mapToInt(k -> row[k]).toArray();
+        }
+
+        // Dead states: no path to an accepting state
+        boolean[] live = minimalAccepting.clone();
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int s = 0; s < count; s++) {
+                if (live[s]) continue;
+                for (int t : minimal[s]) {
+                    if (live[t]) {
+                        live[s] = true;
+                        changed = true;
+                        break;
+                    }
+                }
+            }
+        }
+        boolean[] dead = new boolean[count];
+        for (int s = 0; s < count; s++) dead[s] = !live[s];
+        return new Dfa(regex, merged, minimal, minimalAccepting, dead, anchoredStart, anchoredEnd);
+    }
+}
@@ -0,0 +1,481 @@
+package com.galiglobal.java.playground.regex;
+
+import org.bytedeco.javacpp.Loader;
+
+import java.lang.foreign.Arena;
+import java.lang.foreign.FunctionDescriptor;
+import java.lang.foreign.Linker;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.SymbolLookup;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static java.lang.foreign.ValueLayout.ADDRESS;
+import static java.lang.foreign.ValueLayout.JAVA_BYTE;
+import static java.lang.foreign.ValueLayout.JAVA_INT;
+import static java.lang.foreign.ValueLayout.JAVA_LONG;
+
+/**
+ * Hyperscan backend calling libhs through the Foreign Function &amp; Memory API ({@code java.lang.foreign}, a preview
+ * in JDK 21, final in 22) instead of the JNI bindings of {@link HyperscanMultiPatternMatcher}. Same database, flags
+ * and java.util.regex fallback, the differences are in how the bytes get to hs_scan:
+ * <ul>
+ * <li>{@link #match(MemorySegment, long, long, long[], int)} scans any native segment in place, a mapped file or an
+ * off-heap buffer, and so does {@link #match(ByteBuffer, int, int, long[], int)} for direct buffers. Bytes are read
+ * as ISO-8859-1 against a second database compiled without UTF-8 mode, as in the JNI matcher.</li>
+ * <li>A {@link CharSequence} is UTF-8 encoded and copied into a reused native segment, heap memory can't be passed to
+ * a downcall in JDK 21.</li>
+ * <li>Matches come back through an upcall stub, which sets the bit of the id in the caller's bitset. With
+ * SINGLEMATCH there is at most one upcall per pattern and scan.</li>
+ * </ul>
+ * The library is the one bundled with hyperscan-java, extracted by javacpp; the downcall handles are looked up once.
+ * <p>
+ * The database is immutable and shared by the matchers created with {@link #FfmHyperscanMultiPatternMatcher(
+ * FfmHyperscanMultiPatternMatcher)}, each with its own scratch space and native memory, so one per thread. Each
+ * matcher's memory is freed by {@link #close()} or, like the JNI wrapper's, once the matcher is unreachable. The
+ * database is reference counted and freed with the last matcher using it, whichever closes first.
+ */
+public class FfmHyperscanMultiPatternMatcher implements MultiPatternMatcher {
+
+    private static final int HS_SUCCESS = 0;
+    private static final int HS_MODE_BLOCK = 1;
+
+    private static final MethodHandle HS_COMPILE_MULTI;
+    private static final MethodHandle HS_FREE_COMPILE_ERROR;
+    private static final MethodHandle HS_FREE_DATABASE;
+    private static final MethodHandle HS_DATABASE_SIZE;
+    private static final MethodHandle HS_ALLOC_SCRATCH;
+    private static final MethodHandle HS_FREE_SCRATCH;
+    private static final MethodHandle HS_SCAN;
+    private static final FunctionDescriptor MATCH_EVENT_HANDLER =
+        FunctionDescriptor.of(JAVA_INT, JAVA_INT, JAVA_LONG, JAVA_LONG, JAVA_INT, ADDRESS);
+    private static final MethodHandle ON_MATCH;
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    static {
+        Linker linker = Linker.nativeLinker();
+        SymbolLookup libhs = SymbolLookup.libraryLookup(
+            Path.of(Loader.load(com.gliwka.hyperscan.jni.hyperscan.class)), Arena.global());
+        HS_COMPILE_MULTI = downcall(linker, libhs, "hs_compile_multi", FunctionDescriptor.of(JAVA_INT,
+            ADDRESS, ADDRESS, ADDRESS, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS, ADDRESS));
+        HS_FREE_COMPILE_ERROR = downcall(linker, libhs, "hs_free_compile_error", FunctionDescriptor.of(JAVA_INT,
+            ADDRESS));
+        HS_FREE_DATABASE = downcall(linker, libhs, "hs_free_database", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        HS_DATABASE_SIZE = downcall(linker, libhs, "hs_database_size", FunctionDescriptor.of(JAVA_INT,
+            ADDRESS, ADDRESS));
+        HS_ALLOC_SCRATCH = downcall(linker, libhs, "hs_alloc_scratch", FunctionDescriptor.of(JAVA_INT,
+            ADDRESS, ADDRESS));
+        HS_FREE_SCRATCH = downcall(linker, libhs, "hs_free_scratch", FunctionDescriptor.of(JAVA_INT, ADDRESS));
+        HS_SCAN = downcall(linker, libhs, "hs_scan", FunctionDescriptor.of(JAVA_INT,
+            ADDRESS, ADDRESS, JAVA_INT, JAVA_INT, ADDRESS, ADDRESS, ADDRESS));
+        try {
+            ON_MATCH = MethodHandles.lookup().findVirtual(MatchSink.class, "onMatch",
+                MethodType.methodType(int.class, int.class, long.class, long.class, int.class, MemorySegment.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static MethodHandle downcall(Linker linker, SymbolLookup lookup, String name,
+                                         FunctionDescriptor descriptor) {
+        return linker.downcallHandle(lookup.find(name).orElseThrow(
+            () -> new IllegalStateException(name + " not found in libhs")), descriptor);
+    }
+
+    private final int size;
+    private final SharedDatabase shared;
+    // hs_database_t *, NULL if every pattern fell back to java.util.regex
+    private final MemorySegment database;
+    // The byte mode database, once this matcher's scratch space fits it
+    private MemorySegment byteDatabase = MemorySegment.NULL;
+    private final int[] fallbackIds;
+    private final List<String> fallbackRegexps;
+    private final Matcher[] fallbackMatchers;
+
+    //not thread-safe, create per thread
+    private final Arena arena = Arena.ofShared();
+    // hs_scratch_t **, hs_alloc_scratch may move the scratch space when it grows for the byte database
+    private final MemorySegment scratch = arena.allocate(ADDRESS);
+    // The upcall stub targets the sink, not this matcher, so the stub doesn't keep the matcher reachable
+    private final MatchSink sink = new MatchSink();
+    private final MemorySegment onMatch;
+    private final Cleaner.Cleanable cleanable;
+
+    private byte[] bytes = new byte[256];
+    private final ScanBuffer buffer = new ScanBuffer();
+    // The direct buffer last scanned in place, wrapped once and not per line
+    private ByteBuffer mapped;
+    private MemorySegment mappedSegment;
+    private byte[] fallbackBytes = new byte[0];
+    private final Latin1CharSequence view = new Latin1CharSequence();
+
+    /**
+     * Compiles the patterns into a new database. Patterns Hyperscan rejects are matched with java.util.regex:
+     * hs_compile_multi reports the first one it can't compile, which is dropped before compiling the rest again.
+     */
+    public FfmHyperscanMultiPatternMatcher(List<String> regexps) {
+        this.size = regexps.size();
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < size; id++) ids.add(id);
+        List<Integer> fallback = new ArrayList<>();
+        MemorySegment compiled = MemorySegment.NULL;
+        while (!ids.isEmpty()) {
+            try {
+                compiled = compile(regexps, ids, HyperscanMultiPatternMatcher.FLAGS);
+                break;
+            } catch (PatternRejected e) {
+                fallback.add(ids.remove(e.index));
+            }
+        }
+        fallback.sort(null);
+        this.shared = new SharedDatabase(compiled, regexps, ids);
+        this.database = compiled;
+        this.fallbackIds = fallback.stream().mapToInt(Integer::intValue).toArray();
+        this.fallbackRegexps = fallback.stream().map(regexps::get).toList();
+        this.fallbackMatchers = matchers(fallbackRegexps);
+        allocScratch(database);
+        this.onMatch = Linker.nativeLinker().upcallStub(ON_MATCH.bindTo(sink), MATCH_EVENT_HANDLER, arena);
+        this.cleanable = CLEANER.register(this, new Release(arena, scratch, shared, buffer));
+    }
+
+    /**
+     * Another matcher on the same database, with its own scratch space, for another thread. The database stays until
+     * every matcher on it is closed.
+     */
+    public FfmHyperscanMultiPatternMatcher(FfmHyperscanMultiPatternMatcher shared) {
+        shared.shared.retain();
+        this.size = shared.size;
+        this.shared = shared.shared;
+        this.database = shared.database;
+        this.fallbackIds = shared.fallbackIds;
+        this.fallbackRegexps = shared.fallbackRegexps;
+        this.fallbackMatchers = matchers(fallbackRegexps);
+        allocScratch(database);
+        this.onMatch = Linker.nativeLinker().upcallStub(ON_MATCH.bindTo(sink), MATCH_EVENT_HANDLER, arena);
+        this.cleanable = CLEANER.register(this, new Release(arena, scratch, this.shared, buffer));
+    }
+
+    /**
+     * hs_compile_multi of the patterns with these ids, all with the same flags.
+     *
+     * @throws PatternRejected with the position in {@code ids} of the first pattern Hyperscan can't compile
+     */
+    private static MemorySegment compile(List<String> regexps, List<Integer> ids, int flagsOfAll) {
+        try (Arena compile = Arena.ofConfined()) {
+            MemorySegment databaseOut = compile.allocate(ADDRESS);
+            MemorySegment errorOut = compile.allocate(ADDRESS);
+            MemorySegment expressions = compile.allocateArray(ADDRESS, ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                expressions.setAtIndex(ADDRESS, i, compile.allocateUtf8String(regexps.get(ids.get(i))));
+            }
+            MemorySegment flags = compile.allocateArray(JAVA_INT, ids.size());
+            for (int i = 0; i < ids.size(); i++) {
+                flags.setAtIndex(JAVA_INT, i, flagsOfAll);
+            }
+            MemorySegment idArray = compile.allocateArray(JAVA_INT,
+                ids.stream().mapToInt(Integer::intValue).toArray());
+            int status = (int) HS_COMPILE_MULTI.invokeExact(expressions, flags, idArray, ids.size(),
+                HS_MODE_BLOCK, MemorySegment.NULL, databaseOut, errorOut);
+            if (status == HS_SUCCESS) {
+                return databaseOut.get(ADDRESS, 0);
+            }
+            // hs_compile_error_t { char *message; int expression; }
+            MemorySegment error = errorOut.get(ADDRESS, 0).reinterpret(ADDRESS.byteSize() + JAVA_INT.byteSize());
+            String message = error.get(ADDRESS, 0).reinterpret(Integer.MAX_VALUE).getUtf8String(0);
+            int expression = error.get(JAVA_INT, ADDRESS.byteSize());
+            int unused = (int) HS_FREE_COMPILE_ERROR.invokeExact(error);
+            if (expression < 0) {
+                throw new IllegalArgumentException("Hyperscan can't compile the database: " + message);
+            }
+            throw new PatternRejected(expression, message);
+        } catch (IllegalArgumentException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("hs_compile_multi failed", e);
+        }
+    }
+
+    private static Matcher[] matchers(List<String> regexps) {
+        return regexps.stream().map(r -> Pattern.compile(r).matcher("")).toArray(Matcher[]::new);
+    }
+
+    /**
+     * Allocates the scratch space, or grows it to fit one more database.
+     */
+    private void allocScratch(MemorySegment database) {
+        if (database.equals(MemorySegment.NULL)) return;
+        int status;
+        try {
+            status = (int) HS_ALLOC_SCRATCH.invokeExact(database, scratch);
+        } catch (Throwable e) {
+            throw new IllegalStateException("hs_alloc_scratch failed", e);
+        }
+        if (status != HS_SUCCESS) {
+            // A constructor failing, nothing else frees this matcher's memory
+            if (cleanable == null) new Release(arena, scratch, shared, buffer).run();
+            throw new IllegalStateException("hs_alloc_scratch failed: " + status);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of patterns matched with java.util.regex because Hyperscan doesn't support them.
+     */
+    public int fallbackCount() {
+        return fallbackIds.length;
+    }
+
+    /**
+     * Size of the compiled native database in bytes, 0 if every pattern fell back to java.util.regex.
+     */
+    public long databaseSize() {
+        if (database.equals(MemorySegment.NULL)) return 0;
+        try (Arena call = Arena.ofConfined()) {
+            MemorySegment sizeOut = call.allocate(JAVA_LONG);
+            int status = (int) HS_DATABASE_SIZE.invokeExact(database, sizeOut);
+            if (status != HS_SUCCESS) throw new IllegalStateException("hs_database_size failed: " + status);
+            return sizeOut.get(JAVA_LONG, 0);
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalStateException("hs_database_size failed", e);
+        }
+    }
+
+    @Override
+    public void match(CharSequence input, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        if (!database.equals(MemorySegment.NULL)) {
+            if (bytes.length < input.length() * 3) {
+                bytes = new byte[Math.max(2 * bytes.length, input.length() * 3)];
+            }
+            int length = HyperscanMultiPatternMatcher.utf8(input, bytes);
+            MemorySegment segment = buffer.fit(length);
+            MemorySegment.copy(bytes, 0, segment, JAVA_BYTE, 0, length);
+            scan(database, segment, length, bits, offset);
+        }
+        fallback(input, bits, offset);
+    }
+
+    /**
+     * Scans direct buffers (e.g. a mapped file) in place, like {@link #match(MemorySegment, long, long, long[], int)},
+     * heap ones are copied into the native buffer first. {@code from} and {@code to} are absolute indexes as in every
+     * engine, the segments span the whole buffer whatever its position and limit.
+     */
+    @Override
+    public void match(ByteBuffer bytes, int from, int to, long[] bits, int offset) {
+        if (!bytes.isDirect()) {
+            int length = to - from;
+            MemorySegment segment = buffer.fit(length);
+            MemorySegment.copy(MemorySegment.ofBuffer(bytes.duplicate().clear()), JAVA_BYTE, from, segment, JAVA_BYTE,
+                0, length);
+            match(segment, 0, length, bits, offset);
+            return;
+        }
+        if (bytes != mapped) {
+            mapped = bytes;
+            mappedSegment = MemorySegment.ofBuffer(bytes.duplicate().clear());
+        }
+        match(mappedSegment, from, to, bits, offset);
+    }
+
+    /**
+     * Scans {@code segment[from, to)} in place, the segment must be native. Every byte is a char, ISO-8859-1 as the
+     * java.util.regex fallback reads them.
+     */
+    public void match(MemorySegment segment, long from, long to, long[] bits, int offset) {
+        if (!segment.isNative()) throw new IllegalArgumentException("hs_scan needs a native segment");
+        if (to - from > Integer.MAX_VALUE) throw new IllegalArgumentException("hs_scan takes at most 2 GB");
+        MultiPatternMatcher.clear(bits, offset, words());
+        int length = (int) (to - from);
+        if (!database.equals(MemorySegment.NULL)) {
+            scan(byteDatabase(), segment.asSlice(from, length), length, bits, offset);
+        }
+        if (fallbackMatchers.length > 0) {
+            if (fallbackBytes.length < length) fallbackBytes = new byte[length];
+            MemorySegment.copy(segment, JAVA_BYTE, from, fallbackBytes, 0, length);
+            fallback(view.wrap(fallbackBytes, 0, length), bits, offset);
+        }
+    }
+
+    private MemorySegment byteDatabase() {
+        if (byteDatabase.equals(MemorySegment.NULL)) {
+            MemorySegment compiled = shared.byteDatabase();
+            allocScratch(compiled);
+            byteDatabase = compiled;
+        }
+        return byteDatabase;
+    }
+
+    private void scan(MemorySegment database, MemorySegment input, int length, long[] bits, int offset) {
+        sink.bits = bits;
+        sink.offset = offset;
+        int status;
+        try {
+            status = (int) HS_SCAN.invokeExact(database, input, length, 0, scratch.get(ADDRESS, 0), onMatch,
+                MemorySegment.NULL);
+        } catch (Throwable e) {
+            throw new IllegalStateException("hs_scan failed", e);
+        } finally {
+            sink.bits = null;
+        }
+        if (status != HS_SUCCESS) {
+            throw new IllegalStateException("hs_scan failed: " + status);
+        }
+    }
+
+    private void fallback(CharSequence input, long[] bits, int offset) {
+        for (int i = 0; i < fallbackMatchers.length; i++) {
+            if (fallbackMatchers[i].reset(input).find()) {
+                int id = fallbackIds[i];
+                bits[offset + (id >>> 6)] |= 1L << id;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        cleanable.clean();
+        mapped = null;
+        mappedSegment = null;
+    }
+
+    /**
+     * Where the upcall stub writes, the bitset of the scan in progress.
+     */
+    private static class MatchSink {
+
+        long[] bits;
+        int offset;
+
+        /**
+         * Called by hs_scan for every match, with SINGLEMATCH once per pattern.
+         */
+        int onMatch(int id, long from, long to, int flags, MemorySegment context) {
+            bits[offset + (id >>> 6)] |= 1L << id;
+            // 0 keeps scanning
+            return 0;
+        }
+    }
+
+    /**
+     * The native copy of the input, in an arena of its own so that growing it frees the smaller one instead of
+     * keeping it until the matcher closes. Shared arenas, as close() or the cleaner may run on another thread.
+     */
+    private static final class ScanBuffer {
+
+        private Arena arena = Arena.ofShared();
+        private MemorySegment segment = arena.allocate(256);
+
+        /**
+         * The buffer, grown at least twice to hold {@code length} bytes.
+         */
+        MemorySegment fit(long length) {
+            if (segment.byteSize() < length) {
+                Arena grown = Arena.ofShared();
+                MemorySegment bigger = grown.allocate(Math.max(2 * segment.byteSize(), length));
+                arena.close();
+                arena = grown;
+                segment = bigger;
+            }
+            return segment;
+        }
+
+        void close() {
+            arena.close();
+        }
+    }
+
+    /**
+     * The databases of the matchers sharing them, freed when the last one is released.
+     */
+    private static final class SharedDatabase {
+
+        final MemorySegment database;
+        final List<String> regexps;
+        final List<Integer> ids;
+        // Compiled on the first byte scan of any matcher
+        MemorySegment byteDatabase = MemorySegment.NULL;
+        int references = 1;
+
+        SharedDatabase(MemorySegment database, List<String> regexps, List<Integer> ids) {
+            this.database = database;
+            this.regexps = List.copyOf(regexps);
+            this.ids = List.copyOf(ids);
+        }
+
+        synchronized void retain() {
+            if (references == 0) throw new IllegalStateException("The database is closed");
+            references++;
+        }
+
+        synchronized MemorySegment byteDatabase() {
+            if (byteDatabase.equals(MemorySegment.NULL)) {
+                try {
+                    byteDatabase = compile(regexps, ids, HyperscanMultiPatternMatcher.BYTE_FLAGS);
+                } catch (PatternRejected e) {
+                    throw new IllegalArgumentException("Hyperscan can't compile " + regexps.get(ids.get(e.index))
+                        + " for bytes: " + e.getMessage());
+                }
+            }
+            return byteDatabase;
+        }
+
+        synchronized void release() throws Throwable {
+            if (--references > 0) return;
+            for (MemorySegment each : new MemorySegment[]{database, byteDatabase}) {
+                if (!each.equals(MemorySegment.NULL)) {
+                    int unused = (int) HS_FREE_DATABASE.invokeExact(each);
+                }
+            }
+        }
+    }
+
+    /**
+     * hs_compile_multi rejected the pattern at {@code index} of the ids.
+     */
+    private static class PatternRejected extends IllegalArgumentException {
+
+        final int index;
+
+        PatternRejected(int index, String message) {
+            super(message);
+            this.index = index;
+        }
+    }
+
+    /**
+     * Frees the native memory of a matcher and releases its database, run once by {@link #close()} or by the cleaner.
+     */
+    private record Release(Arena arena, MemorySegment scratch, SharedDatabase database, ScanBuffer buffer)
+        implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                MemorySegment space = scratch.get(ADDRESS, 0);
+                if (!space.equals(MemorySegment.NULL)) {
+                    int unused = (int) HS_FREE_SCRATCH.invokeExact(space);
+                }
+                database.release();
+            } catch (Throwable e) {
+                throw new IllegalStateException("Freeing Hyperscan memory failed", e);
+            } finally {
+                buffer.close();
+                arena.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,317 @@
+package com.galiglobal.java.playground.regex;
+
+import com.gliwka.hyperscan.jni.hs_compile_error_t;
+import com.gliwka.hyperscan.jni.hs_database_t;
+import com.gliwka.hyperscan.jni.hs_scratch_t;
+import com.gliwka.hyperscan.jni.match_event_handler;
+import com.gliwka.hyperscan.wrapper.Expression;
+import com.gliwka.hyperscan.wrapper.ExpressionFlag;
+import com.gliwka.hyperscan.wrapper.Scanner;
+import org.bytedeco.javacpp.BytePointer;
+import org.bytedeco.javacpp.IntPointer;
+import org.bytedeco.javacpp.Pointer;
+import org.bytedeco.javacpp.PointerPointer;
+import org.bytedeco.javacpp.SizeTPointer;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.gliwka.hyperscan.jni.hyperscan.HS_FLAG_ALLOWEMPTY;
+import static com.gliwka.hyperscan.jni.hyperscan.HS_FLAG_SINGLEMATCH;
+import static com.gliwka.hyperscan.jni.hyperscan.HS_FLAG_UTF8;
+import static com.gliwka.hyperscan.jni.hyperscan.HS_MODE_BLOCK;
+import static com.gliwka.hyperscan.jni.hyperscan.HS_SUCCESS;
+import static com.gliwka.hyperscan.jni.hyperscan.hs_alloc_scratch;
+import static com.gliwka.hyperscan.jni.hyperscan.hs_compile_multi;
+import static com.gliwka.hyperscan.jni.hyperscan.hs_database_size;
+import static com.gliwka.hyperscan.jni.hyperscan.hs_free_compile_error;
+import static com.gliwka.hyperscan.jni.hyperscan.hs_free_database;
+import static com.gliwka.hyperscan.jni.hyperscan.hs_free_scratch;
+import static com.gliwka.hyperscan.jni.hyperscan.hs_scan;
+
+/**
+ * Hyperscan backend: all the patterns go into one native database, and a single scan reports every matching id.
+ * <p>
+ * Unlike {@link com.gliwka.hyperscan.util.PatternFilter} the scan result is final, there is no second pass with
+ * java.util.regex. Patterns Hyperscan doesn't support (e.g. {@link Regexps#RANDOM}) are matched with
+ * java.util.regex after the scan.
+ * <p>
+ * This goes to the JNI bindings under the hyperscan-java wrapper: {@link Scanner#scan} copies every input into a
+ * new byte[] and returns a list of {@code Match} objects, here the input is UTF-8 encoded into a reused native
+ * buffer and the match callback sets bits straight into the caller's bitset, so scanning doesn't allocate.
+ * <p>
+ * Bytes ({@link #match(ByteBuffer, int, int, long[], int)}) are one char each, ISO-8859-1 like the
+ * java.util.regex fallback and the other engines read them: they are scanned against a second database compiled
+ * without UTF-8 mode, built on the first byte scan. Log bytes need not be valid UTF-8, and Hyperscan's behavior on
+ * invalid UTF-8 in UTF-8 mode is undefined.
+ */
+public class HyperscanMultiPatternMatcher implements MultiPatternMatcher {
+
+    static final int FLAGS = HS_FLAG_UTF8 | HS_FLAG_ALLOWEMPTY | HS_FLAG_SINGLEMATCH;
+    // Every byte a char, for the byte path
+    static final int BYTE_FLAGS = HS_FLAG_ALLOWEMPTY | HS_FLAG_SINGLEMATCH;
+
+    private final int size;
+    private final List<String> expressions = new ArrayList<>();
+    private final int[] ids;
+    private final hs_database_t database;
+    // Compiled on the first byte scan, the scratch grows to fit it too
+    private hs_database_t byteDatabase;
+    //not thread-safe, create per thread
+    private final hs_scratch_t scratch;
+    private final MatchHandler handler = new MatchHandler();
+    private final int[] fallbackIds;
+    private final Matcher[] fallbackMatchers;
+
+    private byte[] bytes = new byte[256];
+    private BytePointer buffer = new BytePointer(bytes.length);
+    // The direct buffer last scanned in place, wrapped once and not per line
+    private ByteBuffer mapped;
+    private BytePointer mappedPointer;
+    private final Latin1CharSequence view = new Latin1CharSequence();
+
+    public HyperscanMultiPatternMatcher(List<String> regexps) {
+        this.size = regexps.size();
+
+        List<Integer> ids = new ArrayList<>();
+        List<Integer> fallback = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            if (expression(regexps.get(id), id).validate().isValid()) {
+                expressions.add(regexps.get(id));
+                ids.add(id);
+            } else {
+                fallback.add(id);
+            }
+        }
+
+        this.ids = ids.stream().mapToInt(Integer::intValue).toArray();
+        this.fallbackIds = fallback.stream().mapToInt(Integer::intValue).toArray();
+        this.fallbackMatchers = fallback.stream()
+            .map(id -> Pattern.compile(regexps.get(id)).matcher(""))
+            .toArray(Matcher[]::new);
+
+        if (expressions.isEmpty()) {
+            this.database = null;
+            this.scratch = null;
+        } else {
+            this.database = compile(expressions, this.ids, FLAGS);
+            this.scratch = new hs_scratch_t();
+            int status = hs_alloc_scratch(database, scratch);
+            if (status != HS_SUCCESS) {
+                hs_free_database(database);
+                throw new IllegalStateException("hs_alloc_scratch failed: " + status);
+            }
+        }
+    }
+
+    private static hs_database_t compile(List<String> expressions, int[] ids, int flagsOfAll) {
+        int[] flags = new int[ids.length];
+        Arrays.fill(flags, flagsOfAll);
+        try (var patterns = new PointerPointer<BytePointer>(expressions.size())
+                 .putString(expressions.toArray(new String[0]), StandardCharsets.UTF_8);
+             var flagsPointer = new IntPointer(flags);
+             var idsPointer = new IntPointer(ids);
+             var databaseOut = new PointerPointer<hs_database_t>(1);
+             var errorOut = new PointerPointer<hs_compile_error_t>(1)) {
+            int status = hs_compile_multi(patterns, flagsPointer, idsPointer, ids.length, HS_MODE_BLOCK, null,
+                databaseOut, errorOut);
+            if (status != HS_SUCCESS) {
+                var error = new hs_compile_error_t(errorOut.get(0));
+                String message = error.message().getString();
+                int expression = error.expression();
+                hs_free_compile_error(error);
+                throw new IllegalArgumentException("Hyperscan can't compile "
+                    + (expression >= 0 ? expressions.get(expression) : "the database") + ": " + message);
+            }
+            return new hs_database_t(databaseOut.get(0));
+        }
+    }
+
+    private static Expression expression(String regex, int id) {
+        return new Expression(regex, EnumSet.of(
+            ExpressionFlag.UTF8, ExpressionFlag.ALLOWEMPTY, ExpressionFlag.SINGLEMATCH), id);
+    }
+
+    /**
+     * Whether Hyperscan runs on this platform and supports the pattern, otherwise this matcher falls back to
+     * java.util.regex for it.
+     */
+    public static boolean supports(String regex) {
+        return Scanner.getIsValidPlatform() && expression(regex, 0).validate().isValid();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Number of patterns matched with java.util.regex because Hyperscan doesn't support them.
+     */
+    public int fallbackCount() {
+        return fallbackIds.length;
+    }
+
+    /**
+     * Size of the compiled native database in bytes, 0 if every pattern fell back to java.util.regex.
+     */
+    public long databaseSize() {
+        if (database == null) return 0;
+        try (var size = new SizeTPointer(1)) {
+            hs_database_size(database, size);
+            return size.get();
+        }
+    }
+
+    @Override
+    public void match(CharSequence input, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        if (database != null) {
+            int length = encode(input);
+            buffer.put(bytes, 0, length);
+            scan(database, buffer.position(0), length, bits, offset);
+        }
+        fallback(input, bits, offset);
+    }
+
+    /**
+     * Scans the bytes as ISO-8859-1 chars, direct buffers (e.g. a mapped file) in place, heap ones copied into the
+     * native buffer.
+     */
+    @Override
+    public void match(ByteBuffer bytes, int from, int to, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        if (database != null) {
+            BytePointer input;
+            if (bytes.isDirect()) {
+                if (bytes != mapped) {
+                    if (mappedPointer != null) mappedPointer.close();
+                    mapped = bytes;
+                    mappedPointer = new BytePointer(bytes);
+                }
+                input = mappedPointer.position(from);
+            } else {
+                grow(to - from);
+                bytes.get(from, this.bytes, 0, to - from);
+                buffer.put(this.bytes, 0, to - from);
+                input = buffer.position(0);
+            }
+            scan(byteDatabase(), input, to - from, bits, offset);
+        }
+        if (fallbackMatchers.length > 0) {
+            fallback(view.wrap(bytes, from, to), bits, offset);
+        }
+    }
+
+    private hs_database_t byteDatabase() {
+        if (byteDatabase == null) {
+            hs_database_t compiled = compile(expressions, ids, BYTE_FLAGS);
+            int status = hs_alloc_scratch(compiled, scratch);
+            if (status != HS_SUCCESS) {
+                hs_free_database(compiled);
+                throw new IllegalStateException("hs_alloc_scratch failed: " + status);
+            }
+            byteDatabase = compiled;
+        }
+        return byteDatabase;
+    }
+
+    private void scan(hs_database_t database, BytePointer input, int length, long[] bits, int offset) {
+        handler.bits = bits;
+        handler.offset = offset;
+        int status = hs_scan(database, input, length, 0, scratch, handler, null);
+        handler.bits = null;
+        if (status != HS_SUCCESS) {
+            throw new IllegalStateException("hs_scan failed: " + status);
+        }
+    }
+
+    private void fallback(CharSequence input, long[] bits, int offset) {
+        for (int i = 0; i < fallbackMatchers.length; i++) {
+            if (fallbackMatchers[i].reset(input).find()) {
+                int id = fallbackIds[i];
+                bits[offset + (id >>> 6)] |= 1L << id;
+            }
+        }
+    }
+
+    /**
+     * UTF-8 encodes the input into {@link #bytes}, growing it and the native buffer when needed.
+     */
+    private int encode(CharSequence input) {
+        grow(input.length() * 3);
+        return utf8(input, bytes);
+    }
+
+    private void grow(int length) {
+        if (bytes.length < length) {
+            bytes = new byte[length];
+            buffer.close();
+            buffer = new BytePointer(bytes.length);
+        }
+    }
+
+    /**
+     * UTF-8 encodes the input into {@code bytes}, which must have room for 3 bytes per char, returns the length.
+     */
+    static int utf8(CharSequence input, byte[] bytes) {
+        int n = input.length();
+        int length = 0;
+        for (int i = 0; i < n; i++) {
+            char c = input.charAt(i);
+            if (c < 0x80) {
+                bytes[length++] = (byte) c;
+            } else if (c < 0x800) {
+                bytes[length++] = (byte) (0xC0 | (c >> 6));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < n && Character.isLowSurrogate(input.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, input.charAt(++i));
+                bytes[length++] = (byte) (0xF0 | (cp >> 18));
+                bytes[length++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                bytes[length++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // lone surrogate, same replacement as String.getBytes
+                bytes[length++] = '?';
+            } else {
+                bytes[length++] = (byte) (0xE0 | (c >> 12));
+                bytes[length++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                bytes[length++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return length;
+    }
+
+    @Override
+    public void close() {
+        if (scratch != null) hs_free_scratch(scratch);
+        if (database != null) hs_free_database(database);
+        if (byteDatabase != null) hs_free_database(byteDatabase);
+        buffer.close();
+        if (mappedPointer != null) mappedPointer.close();
+        mapped = null;
+        handler.close();
+    }
+
+    /**
+     * Called by hs_scan for every match, with SINGLEMATCH once per pattern.
+     */
+    private static class MatchHandler extends match_event_handler {
+
+        long[] bits;
+        int offset;
+
+        @Override
+        public int call(int id, long from, long to, int flags, Pointer context) {
+            bits[offset + (id >>> 6)] |= 1L << id;
+            // 0 keeps scanning
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.galiglobal.java.playground.regex;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link CharSequence} view over bytes, one byte per char (ISO-8859-1), so the regex engines can read a line of a
+ * mapped file without decoding it into a String. For ASCII logs this is the same as UTF-8; multi-byte UTF-8
+ * characters show up as one char per byte.
+ * <p>
+ * The view is mutable, {@link #wrap} points it to another line, so one instance can serve a whole file. A line of a
+ * {@link ByteBuffer} is bulk-copied into an array the view reuses: java.util.regex calls {@link #charAt} several
+ * times per char and per pattern, and reading a mapped buffer pays its bounds and liveness checks on every call.
+ */
+public class Latin1CharSequence implements CharSequence {
+
+    private byte[] bytes;
+    private int from;
+    private int length;
+    // Reused by wrap(ByteBuffer, ...), grows to the longest line
+    private byte[] copy = new byte[0];
+
+    public Latin1CharSequence() {
+    }
+
+    public Latin1CharSequence(byte[] bytes, int from, int to) {
+        wrap(bytes, from, to);
+    }
+
+    public Latin1CharSequence(ByteBuffer bytes, int from, int to) {
+        wrap(bytes, from, to);
+    }
+
+    /**
+     * Points this view to {@code bytes[from, to)}, without copying.
+     */
+    public Latin1CharSequence wrap(byte[] bytes, int from, int to) {
+        if (from < 0 || to < from || to > bytes.length) {
+            throw new IndexOutOfBoundsException("[" + from + ", " + to + ") out of length " + bytes.length);
+        }
+        this.bytes = bytes;
+        this.from = from;
+        this.length = to - from;
+        return this;
+    }
+
+    /**
+     * Points this view to a copy of {@code bytes[from, to)}, absolute indexes, the position of the buffer is ignored.
+     */
+    public Latin1CharSequence wrap(ByteBuffer bytes, int from, int to) {
+        if (from < 0 || to < from || to > bytes.limit()) {
+            throw new IndexOutOfBoundsException("[" + from + ", " + to + ") out of limit " + bytes.limit());
+        }
+        if (copy.length < to - from) {
+            copy = new byte[Math.max(to - from, copy.length * 2)];
+        }
+        bytes.get(from, copy, 0, to - from);
+        return wrap(copy, 0, to - from);
+    }
+
+    // The wrapped bytes, for scanners reading them in place
+    byte[] array() {
+        return bytes;
+    }
+
+    int offset() {
+        return from;
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index " + index + ", length " + length);
+        }
+        return (char) (bytes[from + index] & 0xFF);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (start < 0 || end < start || end > length) {
+            throw new IndexOutOfBoundsException("[" + start + ", " + end + ") out of length " + length);
+        }
+        return new String(bytes, from + start, end - start, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return new String(bytes, from, length, StandardCharsets.ISO_8859_1);
+    }
+}
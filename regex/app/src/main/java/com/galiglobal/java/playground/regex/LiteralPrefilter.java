@@ -0,0 +1,203 @@
+package com.galiglobal.java.playground.regex;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rejects the inputs that can't match any pattern of a set without calling a regex engine.
+ * <p>
+ * The {@link RequiredLiterals} of every pattern go into one Aho-Corasick automaton, so a single pass over the input
+ * finds which patterns are still candidates. The automaton is built as a full DFA over the characters that appear in
+ * the literals (every other character maps to symbol 0), scanning is one array lookup per character.
+ * <p>
+ * Immutable once built and safe to share between threads, the counters are {@link LongAdder}s.
+ */
+public class LiteralPrefilter implements Prefilter {
+
+    private final int size;
+    // Patterns without required literals, always candidates
+    private final BitSet unconstrained;
+    private final long[] unconstrainedBits;
+    private final List<Set<String>> literals;
+
+    // Symbol of each ASCII character, the map has the rest
+    private final int[] ascii = new int[128];
+    private final Map<Character, Integer> alphabet;
+    private final int width;
+    private final int[] transitions;
+    // Pattern ids whose literal ends in each state, including the ones reached through failure links
+    private final BitSet[] outputs;
+    private final long[][] outputBits;
+    private final boolean[] accepting;
+
+    private final LongAdder inputs = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public LiteralPrefilter(List<String> regexps) {
+        this.size = regexps.size();
+        this.unconstrained = new BitSet(size);
+        this.literals = new ArrayList<>(size);
+        this.alphabet = new HashMap<>();
+
+        for (int id = 0; id < size; id++) {
+            Set<String> required = RequiredLiterals.of(regexps.get(id));
+            literals.add(required);
+            if (required == null) {
+                unconstrained.set(id);
+            } else {
+                for (String literal : required) {
+                    for (char c : literal.toCharArray()) alphabet.putIfAbsent(c, alphabet.size() + 1);
+                }
+            }
+        }
+        this.width = alphabet.size() + 1;
+        alphabet.forEach((c, symbol) -> {
+            if (c < ascii.length) ascii[c] = symbol;
+        });
+
+        // Trie
+        List<int[]> trie = new ArrayList<>();
+        List<BitSet> out = new ArrayList<>();
+        trie.add(new int[width]);
+        out.add(new BitSet(size));
+        for (int id = 0; id < size; id++) {
+            if (literals.get(id) == null) continue;
+            for (String literal : literals.get(id)) {
+                int state = 0;
+                for (char c : literal.toCharArray()) {
+                    int symbol = alphabet.get(c);
+                    if (trie.get(state)[symbol] == 0) {
+                        trie.get(state)[symbol] = trie.size();
+                        trie.add(new int[width]);
+                        out.add(new BitSet(size));
+                    }
+                    state = trie.get(state)[symbol];
+                }
+                out.get(state).set(id);
+            }
+        }
+
+        // Failure links, breadth first, turning the trie into a DFA
+        int states = trie.size();
+        this.transitions = new int[states * width];
+        this.outputs = out.toArray(new BitSet[0]);
+        int[] fail = new int[states];
+        Queue<Integer> queue = new ArrayDeque<>();
+        for (int symbol = 0; symbol < width; symbol++) {
+            int next = trie.get(0)[symbol];
+            transitions[symbol] = next;
+            if (next != 0) queue.add(next);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            outputs[state].or(outputs[fail[state]]);
+            for (int symbol = 0; symbol < width; symbol++) {
+                int next = trie.get(state)[symbol];
+                if (next != 0) {
+                    fail[next] = transitions[fail[state] * width + symbol];
+                    transitions[state * width + symbol] = next;
+                    queue.add(next);
+                } else {
+                    transitions[state * width + symbol] = transitions[fail[state] * width + symbol];
+                }
+            }
+        }
+        this.accepting = new boolean[states];
+        for (int state = 0; state < states; state++) accepting[state] = !outputs[state].isEmpty();
+        int words = MultiPatternMatcher.words(size);
+        this.unconstrainedBits = Arrays.copyOf(unconstrained.toLongArray(), words);
+        this.outputBits = new long[states][];
+        for (int state = 0; state < states; state++) {
+            outputBits[state] = Arrays.copyOf(outputs[state].toLongArray(), words);
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Required literals of pattern {@code id}, null if it has none and every input is a candidate.
+     */
+    public Set<String> literals(int id) {
+        return literals.get(id);
+    }
+
+    @Override
+    public boolean mayMatch(CharSequence input) {
+        inputs.increment();
+        if (!unconstrained.isEmpty()) return true;
+        int state = 0;
+        for (int i = 0; i < input.length(); i++) {
+            state = transitions[state * width + symbol(input.charAt(i))];
+            if (accepting[state]) return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Ids of the patterns that may match the input, only these need to run on a regex engine.
+     */
+    public BitSet candidates(CharSequence input) {
+        inputs.increment();
+        BitSet candidates = (BitSet) unconstrained.clone();
+        int state = 0;
+        for (int i = 0; i < input.length(); i++) {
+            state = transitions[state * width + symbol(input.charAt(i))];
+            if (accepting[state]) candidates.or(outputs[state]);
+        }
+        if (candidates.isEmpty()) rejected.increment();
+        return candidates;
+    }
+
+    @Override
+    public boolean candidates(CharSequence input, long[] bits, int offset) {
+        inputs.increment();
+        int words = unconstrainedBits.length;
+        System.arraycopy(unconstrainedBits, 0, bits, offset, words);
+        boolean any = !unconstrained.isEmpty();
+        int state = 0;
+        for (int i = 0; i < input.length(); i++) {
+            state = transitions[state * width + symbol(input.charAt(i))];
+            if (accepting[state]) {
+                long[] output = outputBits[state];
+                for (int w = 0; w < words; w++) bits[offset + w] |= output[w];
+                any = true;
+            }
+        }
+        if (!any) rejected.increment();
+        return any;
+    }
+
+    private int symbol(char c) {
+        if (c < ascii.length) return ascii[c];
+        Integer symbol = alphabet.get(c);
+        return symbol == null ? 0 : symbol;
+    }
+
+    @Override
+    public long inputs() {
+        return inputs.sum();
+    }
+
+    @Override
+    public long rejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "LiteralPrefilter{patterns=" + size + ", unconstrained=" + unconstrained.cardinality()
+            + ", states=" + outputs.length + ", inputs=" + inputs() + ", rejectRate=" + rejectRate() + "}";
+    }
+}
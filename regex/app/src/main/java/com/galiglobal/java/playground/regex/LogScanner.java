@@ -0,0 +1,153 @@
+package com.galiglobal.java.playground.regex;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Scans a log file line by line with a {@link MultiPatternMatcher} without creating a String per line.
+ * <p>
+ * The file is memory-mapped with {@link FileChannel#map} in windows of up to 1 GB (a {@link MappedByteBuffer} is
+ * indexed by int), each window ending at a line break, and every line is handed to
+ * {@link MultiPatternMatcher#match(java.nio.ByteBuffer, int, int, long[], int)} as a range of the mapped buffer:
+ * Hyperscan scans it in place, re2j reads ASCII lines as bytes and the other engines read it through a reused
+ * {@link Latin1CharSequence}, so the steady state allocates nothing per line outside the engines. Lines end at
+ * {@code \n}, a trailing {@code \r} is dropped.
+ * <p>
+ * Not thread-safe, like the matcher it wraps.
+ * <p>
+ * {@link #main} scans a file with {@link Regexps#all()}, also reachable as {@code RegexApp <file> [engine]}.
+ */
+public class LogScanner {
+
+    static final int MAX_WINDOW = 1 << 30;
+
+    /**
+     * Called for every line matching at least one pattern.
+     */
+    @FunctionalInterface
+    public interface MatchListener {
+
+        /**
+         * @param lineOffset offset of the first byte of the line in the file
+         * @param lineLength length of the line in bytes, without the line break
+         * @param bits       bitset of the matching patterns, see {@link MultiPatternMatcher#ids}, only valid during
+         *                   the call
+         */
+        void onMatch(long lineOffset, int lineLength, long[] bits);
+    }
+
+    /**
+     * @param counts lines matched by each pattern, by id
+     */
+    public record Result(long bytes, long lines, long matchedLines, long[] counts, long nanos) {
+
+        public double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes / 1e6 / (nanos / 1e9);
+        }
+    }
+
+    private final MultiPatternMatcher matcher;
+    private final int window;
+    private final long[] bits;
+
+    public LogScanner(MultiPatternMatcher matcher) {
+        this(matcher, MAX_WINDOW);
+    }
+
+    LogScanner(MultiPatternMatcher matcher, int window) {
+        if (window < 1 || window > MAX_WINDOW) {
+            throw new IllegalArgumentException("window must be in [1, " + MAX_WINDOW + "]: " + window);
+        }
+        this.matcher = matcher;
+        this.window = window;
+        this.bits = new long[matcher.words()];
+    }
+
+    public Result scan(Path file) throws IOException {
+        return scan(file, (offset, length, bits) -> {
+        });
+    }
+
+    public Result scan(Path file, MatchListener listener) throws IOException {
+        long start = System.nanoTime();
+        long[] counts = new long[matcher.size()];
+        long lines = 0;
+        long matchedLines = 0;
+        long size;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = channel.size();
+            long position = 0;
+            while (position < size) {
+                int length = (int) Math.min(window, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean last = position + length == size;
+
+                // The window ends after its last line break, a line longer than the window is cut
+                int end = length;
+                if (!last) {
+                    while (end > 0 && buffer.get(end - 1) != '\n') end--;
+                    if (end == 0) end = length;
+                }
+
+                int from = 0;
+                while (from < end) {
+                    int to = from;
+                    while (to < end && buffer.get(to) != '\n') to++;
+                    int next = to + 1;
+                    if (to > from && buffer.get(to - 1) == '\r') to--;
+
+                    matcher.match(buffer, from, to, bits, 0);
+                    lines++;
+                    boolean matched = false;
+                    for (int w = 0; w < bits.length; w++) {
+                        long word = bits[w];
+                        matched |= word != 0;
+                        while (word != 0) {
+                            counts[(w << 6) + Long.numberOfTrailingZeros(word)]++;
+                            word &= word - 1;
+                        }
+                    }
+                    if (matched) {
+                        matchedLines++;
+                        listener.onMatch(position + from, to - from, bits);
+                    }
+                    from = next;
+                }
+                position += end;
+            }
+        }
+        return new Result(size, lines, matchedLines, counts, System.nanoTime() - start);
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: LogScanner <file> [" + Arrays.toString(RegexEngine.values()) + "] [maxOffsets]");
+            System.exit(1);
+        }
+        Path file = Path.of(args[0]);
+        RegexEngine engine = args.length > 1 ? RegexEngine.valueOf(args[1]) : RegexEngine.HYPERSCAN;
+        int maxOffsets = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        List<String> regexps = Regexps.all();
+
+        try (MultiPatternMatcher matcher = engine.compile(regexps)) {
+            int[] printed = {0};
+            Result result = new LogScanner(matcher).scan(file, (offset, length, bits) -> {
+                if (printed[0]++ < maxOffsets) {
+                    System.out.println("offset " + offset + ", length " + length + ": "
+                        + Arrays.toString(MultiPatternMatcher.ids(bits, 0, bits.length)));
+                }
+            });
+            System.out.println("> " + engine + " scanned " + result.lines() + " lines, " + result.bytes() + " bytes in "
+                + result.nanos() / 1000000 + " ms (" + String.format("%.1f", result.megabytesPerSecond()) + " MB/s), "
+                + result.matchedLines() + " lines matched");
+            for (int id = 0; id < regexps.size(); id++) {
+                System.out.println(Regexps.values()[id] + "," + result.counts()[id]);
+            }
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.galiglobal.java.playground.regex;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe batch matching on top of the non thread-safe {@link MultiPatternMatcher}s.
+ * <p>
+ * The service owns one matcher (for Hyperscan: one scanner and its scratch space) per worker thread, in a bounded
+ * pool, and splits every batch across a {@link ForkJoinPool} of the same size. A worker borrows a matcher for a
+ * whole chunk of inputs, not for every input.
+ * <p>
+ * {@link #close()} lets the batches already running finish before it frees the matchers, later ones throw.
+ */
+public class MatchingService implements Closeable {
+
+    // Inputs per leaf task, big enough to make borrowing a matcher negligible
+    static final int CHUNK_SIZE = 1024;
+
+    private final ForkJoinPool pool;
+    private final BlockingQueue<MultiPatternMatcher> matchers;
+    private volatile boolean closed;
+
+    public MatchingService(RegexEngine engine, List<String> regexps) {
+        this(engine, regexps, Runtime.getRuntime().availableProcessors());
+    }
+
+    public MatchingService(RegexEngine engine, List<String> regexps, int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.pool = new ForkJoinPool(parallelism);
+        this.matchers = new ArrayBlockingQueue<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            matchers.add(engine.compile(regexps));
+        }
+    }
+
+    public int parallelism() {
+        return pool.getParallelism();
+    }
+
+    /**
+     * Matches every input in parallel. The result at index i holds the ids of the patterns matching input i,
+     * see {@link MultiPatternMatcher#match(String)}.
+     */
+    public List<int[]> matchAll(List<String> inputs) {
+        if (closed) {
+            throw new IllegalStateException("The matching service is closed");
+        }
+        int[][] results = new int[inputs.size()][];
+        try {
+            pool.invoke(new MatchTask(inputs, results, 0, inputs.size()));
+        } catch (RejectedExecutionException e) {
+            // Closed after the check
+            throw new IllegalStateException("The matching service is closed", e);
+        }
+        return Arrays.asList(results);
+    }
+
+    /**
+     * Waits for the running batches, whose tasks still borrow matchers, then frees every matcher.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        pool.shutdown();
+        boolean interrupted = false;
+        while (!pool.isTerminated()) {
+            try {
+                pool.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                // Freeing the matchers before the tasks are done would be a native use after free
+                interrupted = true;
+            }
+        }
+        List<MultiPatternMatcher> idle = new ArrayList<>();
+        matchers.drainTo(idle);
+        idle.forEach(MultiPatternMatcher::close);
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private MultiPatternMatcher borrow() {
+        try {
+            return matchers.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a matcher", e);
+        }
+    }
+
+    private class MatchTask extends RecursiveAction {
+
+        private final List<String> inputs;
+        private final int[][] results;
+        private final int from;
+        private final int to;
+
+        MatchTask(List<String> inputs, int[][] results, int from, int to) {
+            this.inputs = inputs;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CHUNK_SIZE) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new MatchTask(inputs, results, from, middle), new MatchTask(inputs, results, middle, to));
+                return;
+            }
+            MultiPatternMatcher matcher = borrow();
+            try {
+                for (int i = from; i < to; i++) {
+                    results[i] = matcher.match(inputs.get(i));
+                }
+            } finally {
+                matchers.add(matcher);
+            }
+        }
+    }
+}
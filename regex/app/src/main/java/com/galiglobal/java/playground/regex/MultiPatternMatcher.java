@@ -0,0 +1,115 @@
+package com.galiglobal.java.playground.regex;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Answers "which of these N patterns match this input". The whole pattern set is compiled once, when the
+ * matcher is created, and the id of a pattern is its position in the list it was compiled from.
+ * <p>
+ * Matching follows {@link java.util.regex.Matcher#find()}: a pattern matches if it matches anywhere in the input.
+ * Implementations are not thread-safe, create one per thread.
+ * <p>
+ * For batches, {@link #match(CharSequence, long[], int)} and {@link #matchAll(CharSequence[], long[])} write the
+ * result as a bitset, one bit per pattern, into an array owned by the caller. The matchers reuse their own matchers
+ * and scratch space, so with java.util.regex and Hyperscan the steady state doesn't allocate; re2j and Apache RE
+ * still allocate some per-call state inside the libraries.
+ */
+public interface MultiPatternMatcher extends Closeable {
+
+    /**
+     * Number of patterns compiled into this matcher.
+     */
+    int size();
+
+    /**
+     * Number of longs a result bitset takes.
+     */
+    default int words() {
+        return words(size());
+    }
+
+    /**
+     * Overwrites the {@link #words()} longs of {@code bits} starting at {@code offset} with the bitset of the
+     * patterns matching the input: bit {@code id % 64} of {@code bits[offset + id / 64]} is set if pattern
+     * {@code id} matches.
+     */
+    void match(CharSequence input, long[] bits, int offset);
+
+    /**
+     * Same as {@link #match(CharSequence, long[], int)} over {@code bytes[from, to)}, e.g. a line of a mapped file,
+     * read as ISO-8859-1. The default wraps the range in a new {@link Latin1CharSequence}, a copy of the line per
+     * call; the engines override it, reading the bytes in place or through a view they reuse.
+     */
+    default void match(ByteBuffer bytes, int from, int to, long[] bits, int offset) {
+        match(new Latin1CharSequence(bytes, from, to), bits, offset);
+    }
+
+    /**
+     * Same as {@link #match(CharSequence, long[], int)} limited to the patterns set in {@code candidates}, a bitset
+     * of {@link #words()} longs from index 0 as written by {@link Prefilter#candidates}. Engines scanning pattern by
+     * pattern skip the others, the default matches all of them and masks the result.
+     */
+    default void match(CharSequence input, long[] candidates, long[] bits, int offset) {
+        match(input, bits, offset);
+        for (int w = 0; w < words(); w++) {
+            bits[offset + w] &= candidates[w];
+        }
+    }
+
+    /**
+     * Matches every input, the bitset of {@code inputs[i]} starts at {@code results[i * words()]}.
+     */
+    default void matchAll(CharSequence[] inputs, long[] results) {
+        int words = words();
+        if (results.length < inputs.length * words) {
+            throw new IllegalArgumentException(
+                "results needs " + inputs.length * words + " longs, has " + results.length);
+        }
+        for (int i = 0; i < inputs.length; i++) {
+            match(inputs[i], results, i * words);
+        }
+    }
+
+    /**
+     * Ids of the patterns matching the input, in ascending order.
+     */
+    default int[] match(String input) {
+        long[] bits = new long[words()];
+        match(input, bits, 0);
+        return ids(bits, 0, bits.length);
+    }
+
+    @Override
+    default void close() {
+    }
+
+    static int words(int patterns) {
+        return (patterns + 63) >>> 6;
+    }
+
+    /**
+     * The ids set in a bitset written by {@link #match(CharSequence, long[], int)}.
+     */
+    static int[] ids(long[] bits, int offset, int words) {
+        int count = 0;
+        for (int w = 0; w < words; w++) {
+            count += Long.bitCount(bits[offset + w]);
+        }
+        int[] ids = new int[count];
+        int found = 0;
+        for (int w = 0; w < words; w++) {
+            long word = bits[offset + w];
+            while (word != 0) {
+                ids[found++] = (w << 6) + Long.numberOfTrailingZeros(word);
+                word &= word - 1;
+            }
+        }
+        return ids;
+    }
+
+    static void clear(long[] bits, int offset, int words) {
+        Arrays.fill(bits, offset, offset + words, 0L);
+    }
+}
@@ -0,0 +1,158 @@
+package com.galiglobal.java.playground.regex;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Classifies a regex as safe or at risk of catastrophic backtracking in java.util.regex.
+ * <p>
+ * This is a syntactic check, it doesn't build the automaton, so it is conservative: {@link Regexps#EMAIL} is
+ * flagged because of {@code (\.[\w\-]+)*} although the literal dot keeps it linear. A false positive only costs
+ * running the pattern on a linear-time engine, see {@link SafeMultiPatternMatcher}.
+ */
+public class PatternAnalyzer {
+
+    public enum Risk {
+        // A repeated group that contains an unbounded quantifier, e.g. (a+)+ or (.*a){20}
+        NESTED_QUANTIFIER,
+        // A repeated group with alternatives, e.g. (a|aa)+, alternatives can overlap
+        QUANTIFIED_ALTERNATION,
+        // \1 or \k<name>, no linear-time engine supports them
+        BACKREFERENCE
+    }
+
+    public record Analysis(String regex, Set<Risk> risks) {
+
+        public boolean isSafe() {
+            return risks.isEmpty();
+        }
+    }
+
+    private static class Group {
+        boolean unbounded;
+        boolean alternation;
+    }
+
+    public static Analysis analyze(String regex) {
+        Set<Risk> risks = EnumSet.noneOf(Risk.class);
+        Deque<Group> groups = new ArrayDeque<>();
+        groups.push(new Group());
+
+        int i = 0;
+        int n = regex.length();
+        while (i < n) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (i + 1 < n) {
+                        char next = regex.charAt(i + 1);
+                        if (next == 'Q') {
+                            int end = regex.indexOf("\\E", i + 2);
+                            i = end < 0 ? n : end + 2;
+                        } else {
+                            if ((next >= '1' && next <= '9') || next == 'k') risks.add(Risk.BACKREFERENCE);
+                            i += 2;
+                        }
+                    } else {
+                        i++;
+                    }
+                    i = quantifier(regex, i, groups.peek());
+                    break;
+                case '[':
+                    i = quantifier(regex, skipClass(regex, i), groups.peek());
+                    break;
+                case '(':
+                    groups.push(new Group());
+                    i++;
+                    break;
+                case ')':
+                    Group closed = groups.size() > 1 ? groups.pop() : new Group();
+                    i++;
+                    int repeat = repeat(regex, i);
+                    if (repeat > 0) {
+                        if (closed.unbounded) risks.add(Risk.NESTED_QUANTIFIER);
+                        if (closed.alternation) risks.add(Risk.QUANTIFIED_ALTERNATION);
+                    }
+                    Group parent = groups.peek();
+                    parent.unbounded |= closed.unbounded;
+                    i = quantifier(regex, i, parent);
+                    break;
+                case '|':
+                    groups.peek().alternation = true;
+                    i++;
+                    break;
+                default:
+                    i = quantifier(regex, i + 1, groups.peek());
+            }
+        }
+        return new Analysis(regex, risks);
+    }
+
+    /**
+     * Skips the quantifier at {@code i}, if any, flagging the group when it is unbounded.
+     */
+    private static int quantifier(String regex, int i, Group group) {
+        int repeat = repeat(regex, i);
+        if (repeat == 0) return i;
+        if (isUnbounded(regex, i)) group.unbounded = true;
+        i += repeat;
+        // lazy and possessive modifiers
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) i++;
+        return i;
+    }
+
+    /**
+     * Length of the quantifier at {@code i} if it can repeat more than once ({@code *}, {@code +}, {@code {n,m}}
+     * with m > 1), 1 for {@code ?} and 0 if there isn't a quantifier.
+     */
+    private static int repeat(String regex, int i) {
+        if (i >= regex.length()) return 0;
+        char c = regex.charAt(i);
+        if (c == '*' || c == '+') return 1;
+        if (c == '?') return 0;
+        if (c == '{') {
+            int end = regex.indexOf('}', i);
+            if (end < 0) return 0;
+            String[] bounds = regex.substring(i + 1, end).split(",", -1);
+            try {
+                int max = bounds.length == 1 ? Integer.parseInt(bounds[0].trim())
+                    : bounds[1].isBlank() ? Integer.MAX_VALUE : Integer.parseInt(bounds[1].trim());
+                return max > 1 ? end - i + 1 : 0;
+            } catch (NumberFormatException e) {
+                return 0;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean isUnbounded(String regex, int i) {
+        char c = regex.charAt(i);
+        if (c == '*' || c == '+') return true;
+        int end = regex.indexOf('}', i);
+        return regex.substring(i + 1, end).matches("\\s*\\d+\\s*,\\s*");
+    }
+
+    private static int skipClass(String regex, int i) {
+        int depth = 0;
+        int n = regex.length();
+        while (i < n) {
+            char c = regex.charAt(i);
+            if (c == '\\') {
+                i += 2;
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                // a ']' right after '[' or '[^' is a literal
+                if (i + 1 < n && regex.charAt(i + 1) == '^') i++;
+                if (i + 1 < n && regex.charAt(i + 1) == ']') i++;
+            } else if (c == ']' && --depth == 0) {
+                return i + 1;
+            }
+            i++;
+        }
+        return n;
+    }
+}
@@ -0,0 +1,333 @@
+package com.galiglobal.java.playground.regex;
+
+import com.gliwka.hyperscan.wrapper.CompileErrorException;
+import com.gliwka.hyperscan.wrapper.Database;
+import com.gliwka.hyperscan.wrapper.Expression;
+import com.gliwka.hyperscan.wrapper.ExpressionFlag;
+import com.gliwka.hyperscan.wrapper.Scanner;
+import org.apache.regexp.RE;
+import org.apache.regexp.RESyntaxException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded LRU cache of compiled patterns shared by all the {@link RegexEngine}s, so callers get precompiled
+ * throughput passing plain regex strings, e.g. {@code cache.find(RegexEngine.RE2J, regex, 0, input)} instead of
+ * {@code com.google.re2j.Pattern.matches(regex, input)}.
+ * <p>
+ * Entries are keyed by engine, regex and flags. The flags are always {@link Pattern} flags
+ * ({@link Pattern#CASE_INSENSITIVE}, {@link Pattern#MULTILINE} and {@link Pattern#DOTALL}) and are translated to each
+ * engine. The cache is bounded by bytes, not entries: each entry weighs the deep size of the compiled pattern as
+ * measured by {@link PatternFootprint#deepSize} (jamm), plus the native database size for Hyperscan. Least recently
+ * used entries are evicted until the total fits the budget, and a pattern bigger than the whole budget is returned
+ * but not cached.
+ * <p>
+ * Native memory is freed eagerly: an evicted Hyperscan database (JNI or FFM) is closed as soon as no {@link #find} is
+ * using it, and {@link #close()} frees the cached databases and every thread's Hyperscan scratch space.
+ */
+public class PatternCache implements Closeable {
+
+    static final int SUPPORTED_FLAGS = Pattern.CASE_INSENSITIVE | Pattern.MULTILINE | Pattern.DOTALL;
+
+    private final long maxBytes;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    //not thread-safe, create per thread
+    private final ThreadLocal<Scanner> scanners = ThreadLocal.withInitial(this::newScanner);
+    // Every thread's scanner, closed by close()
+    private final Set<Scanner> allScanners = ConcurrentHashMap.newKeySet();
+
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public PatternCache(long maxBytes) {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        this.maxBytes = maxBytes;
+    }
+
+    public record Stats(long hits, long misses, long evictions, int entries, long bytes) {
+
+        public double hitRatio() {
+            long requests = hits + misses;
+            return requests == 0 ? 0 : (double) hits / requests;
+        }
+    }
+
+    private record Key(RegexEngine engine, String regex, int flags) {
+    }
+
+    /**
+     * A compiled pattern and the finds using it, guarded by the cache's lock. An evicted entry is freed by the last of
+     * them to finish.
+     */
+    private static final class Entry {
+
+        final Object compiled;
+        final long bytes;
+        int users;
+        boolean evicted;
+
+        Entry(Object compiled, long bytes) {
+            this.compiled = compiled;
+            this.bytes = bytes;
+        }
+    }
+
+    public Pattern util(String regex, int flags) {
+        return (Pattern) get(RegexEngine.UTIL, regex, flags);
+    }
+
+    public com.google.re2j.Pattern re2j(String regex, int flags) {
+        return (com.google.re2j.Pattern) get(RegexEngine.RE2J, regex, flags);
+    }
+
+    /**
+     * Only for the engines without native memory, the pattern may be evicted as soon as it is returned.
+     */
+    private Object get(RegexEngine engine, String regex, int flags) {
+        Entry entry = acquire(engine, regex, flags);
+        release(entry);
+        return entry.compiled;
+    }
+
+    /**
+     * Whether the pattern matches anywhere in the input, with the given engine.
+     */
+    public boolean find(RegexEngine engine, String regex, int flags, String input) {
+        Entry entry = acquire(engine, regex, flags);
+        try {
+            return find(engine, entry.compiled, input);
+        } finally {
+            release(entry);
+        }
+    }
+
+    private boolean find(RegexEngine engine, Object compiled, String input) {
+        switch (engine) {
+            case UTIL:
+                return ((Pattern) compiled).matcher(input).find();
+            case RE2J:
+                return ((com.google.re2j.Pattern) compiled).matcher(input).find();
+            case APACHE_RE:
+                // RE keeps the match state, so it can't be shared between threads
+                synchronized (compiled) {
+                    return ((RE) compiled).match(input);
+                }
+            case BYTECODE:
+                BytecodeMultiPatternMatcher bytecode = (BytecodeMultiPatternMatcher) compiled;
+                long[] bits = new long[1];
+                if (bytecode.fallbackCount() == 0) {
+                    // The generated code is stateless
+                    bytecode.match(input, bits, 0);
+                } else {
+                    synchronized (bytecode) {
+                        bytecode.match(input, bits, 0);
+                    }
+                }
+                return bits[0] != 0;
+            case HYPERSCAN_FFM:
+                FfmHyperscanMultiPatternMatcher ffm = (FfmHyperscanMultiPatternMatcher) compiled;
+                long[] ffmBits = new long[1];
+                // One scratch space per compiled pattern
+                synchronized (ffm) {
+                    ffm.match(input, ffmBits, 0);
+                }
+                return ffmBits[0] != 0;
+            case HYPERSCAN:
+                Database database = (Database) compiled;
+                Scanner scanner = scanners.get();
+                // No-op when the scratch space is already big enough for this database
+                scanner.allocScratch(database);
+                return !scanner.scan(database, input).isEmpty();
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    /**
+     * Frees every cached pattern and every thread's scanner. Finds still running free their pattern when they finish,
+     * but the cache must not be used after.
+     */
+    @Override
+    public void close() {
+        List<Object> free = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : entries.values()) {
+                entry.evicted = true;
+                if (entry.users == 0) free.add(entry.compiled);
+            }
+            entries.clear();
+            bytes = 0;
+        }
+        free.forEach(PatternCache::free);
+        for (Scanner scanner : allScanners) {
+            close(scanner);
+        }
+        allScanners.clear();
+    }
+
+    private Scanner newScanner() {
+        Scanner scanner = new Scanner();
+        allScanners.add(scanner);
+        return scanner;
+    }
+
+    /**
+     * The pattern's entry with one more user, a new one if it isn't cached. A pattern too big for the cache gets an
+     * entry that is already evicted, so its only user frees it.
+     */
+    private Entry acquire(RegexEngine engine, String regex, int flags) {
+        if ((flags & ~SUPPORTED_FLAGS) != 0) {
+            throw new IllegalArgumentException("Unsupported flags: " + flags);
+        }
+        Key key = new Key(engine, regex, flags);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null) {
+                hits++;
+                entry.users++;
+                return entry;
+            }
+            misses++;
+        }
+
+        // Compile and measure outside the lock, they are the expensive part
+        Object compiled = compile(engine, regex, flags);
+        long size = PatternFootprint.deepSize(compiled);
+        if (compiled instanceof Database database) {
+            size += database.getSize();
+        } else if (compiled instanceof FfmHyperscanMultiPatternMatcher ffm) {
+            size += ffm.databaseSize();
+        }
+        Entry entry = new Entry(compiled, size);
+        entry.users = 1;
+        if (size > maxBytes) {
+            entry.evicted = true;
+            return entry;
+        }
+
+        List<Object> free = new ArrayList<>();
+        synchronized (this) {
+            // Another thread may have compiled the same pattern meanwhile
+            Entry existing = entries.get(key);
+            if (existing != null) {
+                existing.users++;
+                free.add(compiled);
+                entry = existing;
+            } else {
+                entries.put(key, entry);
+                bytes += size;
+                Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+                while (bytes > maxBytes) {
+                    Entry evicted = eldest.next().getValue();
+                    eldest.remove();
+                    bytes -= evicted.bytes;
+                    evictions++;
+                    // A find still scanning with it frees it when done
+                    evicted.evicted = true;
+                    if (evicted.users == 0) free.add(evicted.compiled);
+                }
+            }
+        }
+        free.forEach(PatternCache::free);
+        return entry;
+    }
+
+    private void release(Entry entry) {
+        synchronized (this) {
+            if (--entry.users > 0 || !entry.evicted) return;
+        }
+        free(entry.compiled);
+    }
+
+    /**
+     * Frees the native memory of a compiled pattern, Hyperscan's database and FFM's scratch too.
+     */
+    private static void free(Object compiled) {
+        if (compiled instanceof Database database) {
+            close(database);
+        } else if (compiled instanceof FfmHyperscanMultiPatternMatcher ffm) {
+            ffm.close();
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * The compiled form of a pattern for each engine: {@link Pattern}, re2j's Pattern, {@link RE}, {@link Database},
+     * a {@link BytecodeMultiPatternMatcher} or an {@link FfmHyperscanMultiPatternMatcher}.
+     */
+    static Object compile(RegexEngine engine, String regex, int flags) {
+        switch (engine) {
+            case UTIL:
+                return Pattern.compile(regex, flags);
+            case RE2J:
+                int re2jFlags = 0;
+                if ((flags & Pattern.CASE_INSENSITIVE) != 0) re2jFlags |= com.google.re2j.Pattern.CASE_INSENSITIVE;
+                if ((flags & Pattern.MULTILINE) != 0) re2jFlags |= com.google.re2j.Pattern.MULTILINE;
+                if ((flags & Pattern.DOTALL) != 0) re2jFlags |= com.google.re2j.Pattern.DOTALL;
+                return com.google.re2j.Pattern.compile(regex, re2jFlags);
+            case APACHE_RE:
+                int reFlags = RE.MATCH_NORMAL;
+                if ((flags & Pattern.CASE_INSENSITIVE) != 0) reFlags |= RE.MATCH_CASEINDEPENDENT;
+                if ((flags & Pattern.MULTILINE) != 0) reFlags |= RE.MATCH_MULTILINE;
+                if ((flags & Pattern.DOTALL) != 0) reFlags |= RE.MATCH_SINGLELINE;
+                try {
+                    return new RE(regex, reFlags);
+                } catch (RESyntaxException e) {
+                    throw new IllegalArgumentException("Apache Regex can't compile " + regex, e);
+                }
+            case HYPERSCAN:
+                EnumSet<ExpressionFlag> hsFlags = EnumSet.of(
+                    ExpressionFlag.UTF8, ExpressionFlag.ALLOWEMPTY, ExpressionFlag.SINGLEMATCH);
+                if ((flags & Pattern.CASE_INSENSITIVE) != 0) hsFlags.add(ExpressionFlag.CASELESS);
+                if ((flags & Pattern.MULTILINE) != 0) hsFlags.add(ExpressionFlag.MULTILINE);
+                if ((flags & Pattern.DOTALL) != 0) hsFlags.add(ExpressionFlag.DOTALL);
+                try {
+                    return Database.compile(new Expression(regex, hsFlags));
+                } catch (CompileErrorException e) {
+                    throw new IllegalArgumentException("Hyperscan can't compile " + regex, e);
+                }
+            case BYTECODE:
+                // Dfa only supports (?s), with other flags the pattern falls back to java.util.regex
+                return new BytecodeMultiPatternMatcher(List.of(inline(regex, flags)));
+            case HYPERSCAN_FFM:
+                return new FfmHyperscanMultiPatternMatcher(List.of(inline(regex, flags)));
+            default:
+                throw new IllegalArgumentException("Unknown engine " + engine);
+        }
+    }
+
+    /**
+     * The regex with the flags as an inline group, for the matchers that take patterns only.
+     */
+    private static String inline(String regex, int flags) {
+        String inline = ((flags & Pattern.CASE_INSENSITIVE) != 0 ? "i" : "")
+            + ((flags & Pattern.MULTILINE) != 0 ? "m" : "") + ((flags & Pattern.DOTALL) != 0 ? "s" : "");
+        return inline.isEmpty() ? regex : "(?" + inline + ")" + regex;
+    }
+}
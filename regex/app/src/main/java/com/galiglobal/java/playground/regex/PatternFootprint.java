@@ -0,0 +1,213 @@
+package com.galiglobal.java.playground.regex;
+
+import com.gliwka.hyperscan.wrapper.Database;
+import org.ehcache.sizeof.SizeOf;
+import org.github.jamm.MemoryMeter;
+import org.openjdk.jol.info.GraphLayout;
+import org.openjdk.jol.vm.VM;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.ToLongFunction;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+/**
+ * Memory cost of compiled patterns, per pattern and per engine, to size heaps from the number of rules.
+ * <p>
+ * Shallow and deep sizes are measured with the three libraries on the classpath, JOL, jamm and ehcache
+ * {@link SizeOf}, because they don't agree: on JDK 17+ SizeOf silently stops at the JDK internals of
+ * {@link java.util.regex.Pattern} (88 bytes deep) and JOL can't read the fields of the lambdas Pattern uses as char
+ * predicates. jamm reads them only with java.base opened ({@code --add-opens java.base/java.util.regex=ALL-UNNAMED},
+ * set by the build for tests, benchmarks and the application). A tool that fails reports -1 and its error.
+ * <p>
+ * Retained is what dropping the pattern would free while the other patterns of the list and the regex strings stay
+ * alive: the deep size, measured with jamm, of all the compiled patterns minus the same without this one. Objects
+ * shared between patterns or with the engine (singletons reachable from any compiled pattern) don't count. Off-heap
+ * is the Hyperscan database, allocated by the native library (through JNI or FFM), or the class file of a
+ * {@link RegexEngine#BYTECODE} pattern, a lower bound of its metaspace.
+ */
+public class PatternFootprint {
+
+    // Deep sizes within this ratio of each other are consistent
+    static final double TOLERANCE = 0.1;
+
+    private static final MemoryMeter JAMM = MemoryMeter.builder().build();
+    private static final SizeOf SIZE_OF = SizeOf.newInstance();
+
+    public record Measurement(RegexEngine engine, String regex,
+                              long shallowJol, long shallowJamm, long shallowSizeOf,
+                              long deepJol, long deepJamm, long deepSizeOf,
+                              long retained, long offHeap, List<String> errors) {
+
+        /**
+         * Deep heap size, jamm's unless it failed.
+         */
+        public long deep() {
+            return deepJamm >= 0 ? deepJamm : Math.max(deepJol, deepSizeOf);
+        }
+
+        /**
+         * Retained heap plus off-heap bytes, the cost of one more rule like this one.
+         */
+        public long total() {
+            return Math.max(retained, 0) + offHeap;
+        }
+
+        /**
+         * Whether the tools that measured a deep size agree within {@link #TOLERANCE}.
+         */
+        public boolean consistent() {
+            long[] deep = LongStream.of(deepJol, deepJamm, deepSizeOf).filter(size -> size >= 0).toArray();
+            if (deep.length == 0) return false;
+            long min = Arrays.stream(deep).min().getAsLong();
+            long max = Arrays.stream(deep).max().getAsLong();
+            return max - min <= max * TOLERANCE;
+        }
+    }
+
+    /**
+     * Measures every pattern the engine can compile, the others are skipped.
+     */
+    public static List<Measurement> measure(RegexEngine engine, List<String> regexps) {
+        List<String> compiledRegexps = new ArrayList<>();
+        List<Object> compiled = new ArrayList<>();
+        for (String regex : regexps) {
+            try {
+                compiled.add(PatternCache.compile(engine, regex, 0));
+                compiledRegexps.add(regex);
+            } catch (IllegalArgumentException e) {
+                // The engine doesn't support it, e.g. Hyperscan and RANDOM
+            }
+        }
+
+        // The strings and the engine's singletons, reached through a trivial pattern, stay in both measurements
+        Object trivial = PatternCache.compile(engine, "x", 0);
+        Object baseline = new Object[]{regexps, trivial};
+        Object[] roots = compiled.toArray(new Object[0]);
+        long all = deepJamm(new Object[]{baseline, roots});
+
+        List<Measurement> measurements = new ArrayList<>();
+        for (int i = 0; i < roots.length; i++) {
+            Object pattern = roots[i];
+            // Same array length, so only the pattern itself differs
+            roots[i] = null;
+            long retained = all >= 0 ? all - deepJamm(new Object[]{baseline, roots}) : -1;
+            roots[i] = pattern;
+            measurements.add(measure(engine, compiledRegexps.get(i), pattern, retained));
+        }
+        for (Object pattern : roots) close(pattern);
+        close(trivial);
+        return measurements;
+    }
+
+    private static Measurement measure(RegexEngine engine, String regex, Object compiled, long retained) {
+        List<String> errors = new ArrayList<>();
+        long offHeap = 0;
+        if (compiled instanceof Database database) {
+            offHeap = database.getSize();
+        } else if (compiled instanceof BytecodeMultiPatternMatcher bytecode) {
+            offHeap = bytecode.classBytes();
+        } else if (compiled instanceof FfmHyperscanMultiPatternMatcher ffm) {
+            offHeap = ffm.databaseSize();
+        }
+        return new Measurement(engine, regex,
+            size("jol shallow", VM.current()::sizeOf, compiled, errors),
+            size("jamm shallow", JAMM::measure, compiled, errors),
+            size("sizeof shallow", SIZE_OF::sizeOf, compiled, errors),
+            size("jol deep", o -> GraphLayout.parseInstance(o).totalSize(), compiled, errors),
+            size("jamm deep", JAMM::measureDeep, compiled, errors),
+            size("sizeof deep", SIZE_OF::deepSizeOf, compiled, errors),
+            retained, offHeap, errors);
+    }
+
+    /**
+     * Deep heap size of a compiled pattern, as used by {@link PatternCache} to weigh its entries.
+     */
+    static long deepSize(Object compiled) {
+        long deep = deepJamm(compiled);
+        return deep >= 0 ? deep : SIZE_OF.deepSizeOf(compiled);
+    }
+
+    private static long deepJamm(Object root) {
+        return size("jamm deep", JAMM::measureDeep, root, new ArrayList<>());
+    }
+
+    private static long size(String tool, ToLongFunction<Object> measure, Object compiled, List<String> errors) {
+        try {
+            return measure.applyAsLong(compiled);
+        } catch (RuntimeException e) {
+            errors.add(tool + ": " + e);
+            return -1;
+        }
+    }
+
+    private static void close(Object compiled) {
+        if (compiled instanceof Database database) database.close();
+        if (compiled instanceof FfmHyperscanMultiPatternMatcher ffm) ffm.close();
+    }
+
+    static final String CSV_HEADER = "engine,regex,shallowJol,shallowJamm,shallowSizeOf,deepJol,deepJamm,deepSizeOf,"
+        + "retained,offHeap,total,consistent";
+
+    public static String csv(List<Measurement> measurements) {
+        StringBuilder csv = new StringBuilder(CSV_HEADER).append('\n');
+        for (Measurement m : measurements) {
+            csv.append(m.engine()).append(',')
+                .append('"').append(m.regex().replace("\"", "\"\"")).append('"').append(',')
+                .append(m.shallowJol()).append(',').append(m.shallowJamm()).append(',').append(m.shallowSizeOf())
+                .append(',').append(m.deepJol()).append(',').append(m.deepJamm()).append(',').append(m.deepSizeOf())
+                .append(',').append(m.retained()).append(',').append(m.offHeap()).append(',').append(m.total())
+                .append(',').append(m.consistent()).append('\n');
+        }
+        return csv.toString();
+    }
+
+    public static String json(List<Measurement> measurements) {
+        return measurements.stream().map(m -> String.format(Locale.ROOT,
+                "  {\"engine\": \"%s\", \"regex\": %s, "
+                    + "\"shallow\": {\"jol\": %d, \"jamm\": %d, \"sizeOf\": %d}, "
+                    + "\"deep\": {\"jol\": %d, \"jamm\": %d, \"sizeOf\": %d}, "
+                    + "\"retained\": %d, \"offHeap\": %d, \"total\": %d, \"consistent\": %b, \"errors\": [%s]}",
+                m.engine(), quote(m.regex()), m.shallowJol(), m.shallowJamm(), m.shallowSizeOf(),
+                m.deepJol(), m.deepJamm(), m.deepSizeOf(), m.retained(), m.offHeap(), m.total(), m.consistent(),
+                m.errors().stream().map(PatternFootprint::quote).collect(Collectors.joining(", "))))
+            .collect(Collectors.joining(",\n", "[\n", "\n]\n"));
+    }
+
+    private static String quote(String s) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : s.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                quoted.append('\\').append(c);
+            } else if (c < ' ') {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+
+    /**
+     * Writes footprint.csv and footprint.json with every engine and {@link Regexps#all()} to the given directory,
+     * the current one by default.
+     */
+    public static void main(String[] args) throws IOException {
+        Path dir = Path.of(args.length > 0 ? args[0] : ".");
+        List<Measurement> measurements = new ArrayList<>();
+        for (RegexEngine engine : RegexEngine.values()) {
+            measurements.addAll(measure(engine, Regexps.all()));
+        }
+        Files.writeString(dir.resolve("footprint.csv"), csv(measurements));
+        Files.writeString(dir.resolve("footprint.json"), json(measurements));
+        System.out.print(csv(measurements));
+        measurements.stream().filter(m -> !m.consistent()).forEach(m ->
+            System.out.println("> " + m.engine() + " " + m.regex() + ": tools disagree " + m.errors()));
+    }
+}
@@ -0,0 +1,33 @@
+package com.galiglobal.java.playground.regex;
+
+/**
+ * Cheap test run before the regex engines by {@link PrefilteredMultiPatternMatcher}, it must never reject an input a
+ * pattern matches. Implementations are immutable once built and safe to share between threads.
+ */
+public interface Prefilter {
+
+    int size();
+
+    /**
+     * False if no pattern can match the input.
+     */
+    boolean mayMatch(CharSequence input);
+
+    /**
+     * Overwrites {@link MultiPatternMatcher#words(int)} longs of {@code bits} from {@code offset} with the bitset of
+     * the patterns that may match the input, only these need to run on a regex engine. False if there is none.
+     */
+    boolean candidates(CharSequence input, long[] bits, int offset);
+
+    long inputs();
+
+    long rejected();
+
+    /**
+     * Share of the inputs rejected so far.
+     */
+    default double rejectRate() {
+        long total = inputs();
+        return total == 0 ? 0 : (double) rejected() / total;
+    }
+}
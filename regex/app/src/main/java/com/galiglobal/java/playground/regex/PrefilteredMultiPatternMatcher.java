@@ -0,0 +1,77 @@
+package com.galiglobal.java.playground.regex;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Puts a {@link Prefilter} in front of any {@link MultiPatternMatcher}: inputs no pattern can match get no ids
+ * without reaching the engine, the others only run the candidate patterns on engines that scan pattern by pattern.
+ * Prefilters stack, e.g. a {@link CharClassPrefilter} in front of a matcher with a {@link LiteralPrefilter}.
+ */
+public class PrefilteredMultiPatternMatcher implements MultiPatternMatcher {
+
+    private final Prefilter prefilter;
+    private final MultiPatternMatcher delegate;
+    private final long[] candidates;
+    private final Latin1CharSequence view = new Latin1CharSequence();
+
+    public PrefilteredMultiPatternMatcher(RegexEngine engine, List<String> regexps) {
+        this(new LiteralPrefilter(regexps), engine.compile(regexps));
+    }
+
+    /**
+     * The prefilter must be built from the same patterns as the delegate, it can be shared between matchers.
+     */
+    public PrefilteredMultiPatternMatcher(Prefilter prefilter, MultiPatternMatcher delegate) {
+        if (prefilter.size() != delegate.size()) {
+            throw new IllegalArgumentException(
+                "Prefilter has " + prefilter.size() + " patterns, matcher has " + delegate.size());
+        }
+        this.prefilter = prefilter;
+        this.delegate = delegate;
+        this.candidates = new long[delegate.words()];
+    }
+
+    public Prefilter prefilter() {
+        return prefilter;
+    }
+
+    @Override
+    public int size() {
+        return delegate.size();
+    }
+
+    @Override
+    public void match(CharSequence input, long[] bits, int offset) {
+        if (prefilter.candidates(input, candidates, 0)) {
+            delegate.match(input, candidates, bits, offset);
+        } else {
+            MultiPatternMatcher.clear(bits, offset, words());
+        }
+    }
+
+    @Override
+    public void match(CharSequence input, long[] candidates, long[] bits, int offset) {
+        if (prefilter.candidates(input, this.candidates, 0)) {
+            for (int w = 0; w < this.candidates.length; w++) this.candidates[w] &= candidates[w];
+            delegate.match(input, this.candidates, bits, offset);
+        } else {
+            MultiPatternMatcher.clear(bits, offset, words());
+        }
+    }
+
+    @Override
+    public void match(ByteBuffer bytes, int from, int to, long[] bits, int offset) {
+        if (prefilter.candidates(view.wrap(bytes, from, to), candidates, 0)) {
+            delegate.match(bytes, from, to, bits, offset);
+            for (int w = 0; w < candidates.length; w++) bits[offset + w] &= candidates[w];
+        } else {
+            MultiPatternMatcher.clear(bits, offset, words());
+        }
+    }
+
+    @Override
+    public void close() {
+        delegate.close();
+    }
+}
@@ -0,0 +1,75 @@
+package com.galiglobal.java.playground.regex;
+
+import com.google.re2j.Matcher;
+import com.google.re2j.Pattern;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * re2j backend. re2j has no public pattern set API, so this is still N linear-time scans per input.
+ * <p>
+ * re2j matches a {@code byte[]} as UTF-8, but only a whole array. ASCII lines of a buffer, where UTF-8 and ISO-8859-1
+ * agree, are copied into an array of their exact length, one reused per length up to {@link #MAX_BYTE_LINE}, and
+ * matched as bytes. Longer or non-ASCII lines go through a reused {@link Latin1CharSequence}.
+ */
+public class Re2jMultiPatternMatcher implements MultiPatternMatcher {
+
+    static final int MAX_BYTE_LINE = 1024;
+
+    private final Matcher[] matchers;
+    // lines[n] holds a line of n bytes, allocated the first time a line has that length
+    private final byte[][] lines = new byte[MAX_BYTE_LINE + 1][];
+    private final Latin1CharSequence view = new Latin1CharSequence();
+
+    public Re2jMultiPatternMatcher(List<String> regexps) {
+        this.matchers = regexps.stream().map(r -> Pattern.compile(r).matcher("")).toArray(Matcher[]::new);
+    }
+
+    @Override
+    public int size() {
+        return matchers.length;
+    }
+
+    @Override
+    public void match(CharSequence input, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        for (int i = 0; i < matchers.length; i++) {
+            if (matchers[i].reset(input).find()) bits[offset + (i >>> 6)] |= 1L << i;
+        }
+    }
+
+    @Override
+    public void match(CharSequence input, long[] candidates, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        for (int i = 0; i < matchers.length; i++) {
+            if ((candidates[i >>> 6] & 1L << i) != 0 && matchers[i].reset(input).find()) {
+                bits[offset + (i >>> 6)] |= 1L << i;
+            }
+        }
+    }
+
+    @Override
+    public void match(ByteBuffer bytes, int from, int to, long[] bits, int offset) {
+        int length = to - from;
+        if (from < 0 || length < 0 || length > MAX_BYTE_LINE) {
+            match(view.wrap(bytes, from, to), bits, offset);
+            return;
+        }
+        byte[] line = lines[length];
+        if (line == null) {
+            line = lines[length] = new byte[length];
+        }
+        bytes.get(from, line, 0, length);
+        for (byte b : line) {
+            if (b < 0) {
+                match(view.wrap(line, 0, length), bits, offset);
+                return;
+            }
+        }
+        MultiPatternMatcher.clear(bits, offset, words());
+        for (int i = 0; i < matchers.length; i++) {
+            if (matchers[i].reset(line).find()) bits[offset + (i >>> 6)] |= 1L << i;
+        }
+    }
+}
@@ -2,9 +2,8 @@ package com.galiglobal.java.playground.regex;
 
 import com.gliwka.hyperscan.util.PatternFilter;
 import org.apache.regexp.RE;
-import org.ehcache.sizeof.SizeOf;
+import org.github.jamm.MemoryMeter;
 
-import java.util.Arrays;
 import java.util.List;
 import java.util.Random;
 import java.util.regex.Pattern;
@@ -21,11 +20,19 @@ public class RegexApp {
 
     public static void main(String[] args) throws Exception {
 
+        // File mode: RegexApp <file> [engine], scans a log file instead of random longs
+        if (args.length > 0) {
+            LogScanner.main(args);
+            return;
+        }
+
         // DISCLAIMER
-        // This is a quick and dirty benchmark. Use JMH for better results
+        // This is a quick and dirty benchmark. Use JMH for better results: gradle jmh (see RegexBenchmark)
         // Results: https://excalidraw.com/#json=5109261076004864,b8cy0HOxaAn587sKrDhz6Q
 
-        SizeOf sizeOf = SizeOf.newInstance();
+        // ehcache SizeOf stops at the JDK internals of java.util.regex.Pattern, see PatternFootprint for per-pattern
+        // sizes cross-checked with JOL, jamm and SizeOf
+        MemoryMeter meter = MemoryMeter.builder().build();
 
         //long totalRecords = 10_000_000;
         long totalRecords = 100_000;
@@ -36,17 +43,7 @@ public class RegexApp {
             .mapToObj(String::valueOf)
             .collect(Collectors.toList());
 
-        var regexps = Arrays.asList(
-            "^[\\w\\-]+(\\.[\\w\\-]+)*@[\\w\\-]+(\\.[\\w\\-]+)*(\\.)[a-zA-Z]+$", // Email
-            "(?s)^(\\.\\*\\??)?(.*)", // Bomb!
-            "([0-9]{4})-?(1[0-2]|0[1-9])-?(3[01]|0[1-9]|[12][0-9])", // Date
-            "[\\w\\.]+@[\\w\\.]+", // Email 2
-            "([0-9]{3})-([0-9]{3})-([0-9]{4})", // Phone 2
-            "($+((((($+((a+a*)+(b+c))*)((cc)(b+b))+a)+((b+c*)+(c+c)))+a)+(c*a+($+(c+c)b))))+c", // Random
-            "[0-8][0-9]{2}-[0-9]{2}-[0-9]{4}", // Social
-            "A[ZLRK]|C[TAO]|D[CE]|FL|GA|HI|I[ALND]|K[SY]|LA|M[ADEINOST]|"
-                + "N[HCDEJMVY]|O[HKR]|PA|RI|S[CD]|T[XN]|UT|V[AT]|W[VAIY]" // States
-        );
+        var regexps = Regexps.all();
 
         //***************************************************************/
         //      Hyperscan: https://github.com/gliwka/hyperscan-java      /
@@ -65,8 +62,8 @@ public class RegexApp {
         );
 
         long elapsedTimeHyperScale = System.nanoTime() - startTimeHyperScale;
-        long hyperscaleShallowSize = sizeOf.sizeOf(filter);
-        long hyperscaleDeepSize = sizeOf.deepSizeOf(filter);
+        long hyperscaleShallowSize = meter.measure(filter);
+        long hyperscaleDeepSize = meter.measureDeep(filter);
 
         System.out.println("> hyperscan shallow size is: " + hyperscaleShallowSize);
         System.out.println("> hyperscan deep size is: " + hyperscaleDeepSize);
@@ -94,8 +91,8 @@ public class RegexApp {
         );
 
         long elapsedApacheRegex = System.nanoTime() - startApacheRegex;
-        long apacheRegexShallowSize = sizeOf.sizeOf(res);
-        long apacheRegexDeepSize = sizeOf.deepSizeOf(res);
+        long apacheRegexShallowSize = meter.measure(res);
+        long apacheRegexDeepSize = meter.measureDeep(res);
 
         System.out.println("> Apache Regex shallow size is: " + apacheRegexShallowSize);
         System.out.println("> Apache Regex deep size is: " + apacheRegexDeepSize);
@@ -113,8 +110,8 @@ public class RegexApp {
         );
 
         long elapsedUtil = System.nanoTime() - startUtil;
-        long utilShallowSize = sizeOf.sizeOf(regexps);
-        long utilDeepSize = sizeOf.deepSizeOf(regexps);
+        long utilShallowSize = meter.measure(regexps);
+        long utilDeepSize = meter.measureDeep(regexps);
 
         System.out.println("> java.util.regex without compilation shallow size is: " + utilShallowSize);
         System.out.println("> java.util.regex without compilation deep size is: " + utilDeepSize);
@@ -132,9 +129,8 @@ public class RegexApp {
         );
 
         long elapsedUtilComp = System.nanoTime() - startUtilComp;
-        // Note: we can't create patterns again, the JVM will optimize to use the same object...
-        long utilCompShallowSize = hyperscaleShallowSize;
-        long utilCompDeepSize = hyperscaleDeepSize;
+        long utilCompShallowSize = meter.measure(patterns);
+        long utilCompDeepSize = meter.measureDeep(patterns);
 
         System.out.println("> java.util.regex with compilation shallow size is: " + utilCompShallowSize);
         System.out.println("> java.util.regex with compilation deep size is: " + utilCompDeepSize);
@@ -154,9 +150,9 @@ public class RegexApp {
         );
 
         long elapsedRe2 = System.nanoTime() - startRe2;
-        // Note: avoid JVM optimizations
-        long re2ShallowSize = utilShallowSize;
-        long re2DeepSize = utilShallowSize;
+        // Like java.util.regex without compilation, only the regex strings are kept
+        long re2ShallowSize = meter.measure(regexps);
+        long re2DeepSize = meter.measureDeep(regexps);
 
         System.out.println("> Google Re2 without compilation shallow size is: " + re2ShallowSize);
         System.out.println("> Google Re2 without compilation deep size is: " + re2DeepSize);
@@ -177,9 +173,8 @@ public class RegexApp {
         );
 
         long elapsedRe2Comp = System.nanoTime() - startRe2Comp;
-        // Todo: is the JVM reusing part of patterns?
-        long re2CompShallowSize = sizeOf.sizeOf(patternsRe2);
-        long re2CompDeepSize = sizeOf.deepSizeOf(patternsRe2);
+        long re2CompShallowSize = meter.measure(patternsRe2);
+        long re2CompDeepSize = meter.measureDeep(patternsRe2);
 
         System.out.println("> Google Re2 with compilation shallow size is: " + re2CompShallowSize);
         System.out.println("> Google Re2 with compilation deep size is: " + re2CompDeepSize);
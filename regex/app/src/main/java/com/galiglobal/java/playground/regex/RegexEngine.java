@@ -0,0 +1,53 @@
+package com.galiglobal.java.playground.regex;
+
+import java.util.List;
+
+/**
+ * The regex engines available as {@link MultiPatternMatcher} backends.
+ */
+public enum RegexEngine {
+
+    HYPERSCAN {
+        @Override
+        public MultiPatternMatcher compile(List<String> regexps) {
+            return new HyperscanMultiPatternMatcher(regexps);
+        }
+    },
+    RE2J {
+        @Override
+        public MultiPatternMatcher compile(List<String> regexps) {
+            return new Re2jMultiPatternMatcher(regexps);
+        }
+    },
+    UTIL {
+        @Override
+        public MultiPatternMatcher compile(List<String> regexps) {
+            return new UtilMultiPatternMatcher(regexps);
+        }
+    },
+    APACHE_RE {
+        @Override
+        public MultiPatternMatcher compile(List<String> regexps) {
+            return new ApacheMultiPatternMatcher(regexps);
+        }
+    },
+    BYTECODE {
+        @Override
+        public MultiPatternMatcher compile(List<String> regexps) {
+            return new BytecodeMultiPatternMatcher(regexps);
+        }
+    },
+    HYPERSCAN_FFM {
+        @Override
+        public MultiPatternMatcher compile(List<String> regexps) {
+            return new FfmHyperscanMultiPatternMatcher(regexps);
+        }
+    };
+
+    /**
+     * Compiles the whole pattern set, the id of each pattern is its index in {@code regexps}.
+     *
+     * @throws IllegalArgumentException if the engine can't compile one of the patterns
+     */
+    public abstract MultiPatternMatcher compile(List<String> regexps);
+}
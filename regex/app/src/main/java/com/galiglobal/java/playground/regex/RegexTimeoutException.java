@@ -0,0 +1,12 @@
+package com.galiglobal.java.playground.regex;
+
+/**
+ * Thrown by {@link DeadlineCharSequence} when a match runs past its deadline.
+ */
+public class RegexTimeoutException extends RuntimeException {
+
+    public RegexTimeoutException(String message) {
+        // No stack trace, a runaway pattern may throw one of these for every input
+        super(message, null, false, false);
+    }
+}
@@ -0,0 +1,35 @@
+package com.galiglobal.java.playground.regex;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The regular expressions used by {@link RegexApp} and the JMH benchmarks.
+ */
+public enum Regexps {
+
+    EMAIL("^[\\w\\-]+(\\.[\\w\\-]+)*@[\\w\\-]+(\\.[\\w\\-]+)*(\\.)[a-zA-Z]+$"),
+    BOMB("(?s)^(\\.\\*\\??)?(.*)"),
+    DATE("([0-9]{4})-?(1[0-2]|0[1-9])-?(3[01]|0[1-9]|[12][0-9])"),
+    EMAIL_2("[\\w\\.]+@[\\w\\.]+"),
+    PHONE_2("([0-9]{3})-([0-9]{3})-([0-9]{4})"),
+    RANDOM("($+((((($+((a+a*)+(b+c))*)((cc)(b+b))+a)+((b+c*)+(c+c)))+a)+(c*a+($+(c+c)b))))+c"),
+    SOCIAL("[0-8][0-9]{2}-[0-9]{2}-[0-9]{4}"),
+    STATES("A[ZLRK]|C[TAO]|D[CE]|FL|GA|HI|I[ALND]|K[SY]|LA|M[ADEINOST]|"
+        + "N[HCDEJMVY]|O[HKR]|PA|RI|S[CD]|T[XN]|UT|V[AT]|W[VAIY]");
+
+    private final String regex;
+
+    Regexps(String regex) {
+        this.regex = regex;
+    }
+
+    public String regex() {
+        return regex;
+    }
+
+    public static List<String> all() {
+        return Arrays.stream(values()).map(Regexps::regex).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,368 @@
+package com.galiglobal.java.playground.regex;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Extracts the literals a regex needs: a set of strings such that every match contains at least one of them, e.g.
+ * {@code "@"} for {@link Regexps#EMAIL_2} or {@code "AZ", "AL", ...} for {@link Regexps#STATES}.
+ * <p>
+ * Works on the syntax tree like RE2's prefilter: every node knows the exact set of strings it matches, when that
+ * set is small, and a required set. Sequences multiply exact sets, alternatives join them, and when a product grows
+ * too big the most selective set seen so far (longest shortest literal, then fewest literals) is kept. Constructs
+ * it doesn't model (case-insensitive or comments mode, unicode classes) make the whole pattern unconstrained, which
+ * is always safe: the prefilter then lets every input through for that pattern.
+ */
+public class RequiredLiterals {
+
+    // Biggest exact set kept per node, STATES needs ~50
+    static final int MAX_EXACT = 256;
+
+    private final String regex;
+    private int pos;
+
+    private RequiredLiterals(String regex) {
+        this.regex = regex;
+    }
+
+    /**
+     * The required literals of the regex, or {@code null} if any input could match it.
+     */
+    public static Set<String> of(String regex) {
+        try {
+            Info info = new RequiredLiterals(regex).parse();
+            Set<String> required = better(info.required(), info.exact());
+            return required == null ? null : Collections.unmodifiableSet(required);
+        } catch (UnsupportedOperationException | IndexOutOfBoundsException e) {
+            return null;
+        }
+    }
+
+    /**
+     * exact: all the strings the node matches, or null if unknown or too many.
+     * required: every match of the node contains one of them, or null if no constraint.
+     */
+    private record Info(Set<String> exact, Set<String> required) {
+
+        static final Info ANY = new Info(null, null);
+        static final Info EMPTY = new Info(Set.of(""), null);
+
+        static Info exact(Set<String> exact) {
+            return new Info(exact, exact.contains("") ? null : exact);
+        }
+    }
+
+    private Info parse() {
+        Info info = alternation();
+        if (pos < regex.length()) {
+            throw new UnsupportedOperationException("Unbalanced ) at " + pos);
+        }
+        return info;
+    }
+
+    private Info alternation() {
+        Info info = sequence();
+        while (pos < regex.length() && regex.charAt(pos) == '|') {
+            pos++;
+            Info other = sequence();
+            Set<String> exact = null;
+            if (info.exact() != null && other.exact() != null
+                && info.exact().size() + other.exact().size() <= MAX_EXACT) {
+                exact = union(info.exact(), other.exact());
+            }
+            Set<String> left = better(info.required(), info.exact());
+            Set<String> right = better(other.required(), other.exact());
+            Set<String> required = left == null || right == null ? null : union(left, right);
+            info = exact != null ? Info.exact(exact) : new Info(null, required);
+        }
+        return info;
+    }
+
+    private Info sequence() {
+        Set<String> product = Set.of("");
+        boolean exact = true;
+        Set<String> best = null;
+        while (pos < regex.length() && regex.charAt(pos) != '|' && regex.charAt(pos) != ')') {
+            Info item = repeat(atom());
+            if (item.exact() != null && (long) product.size() * item.exact().size() <= MAX_EXACT) {
+                product = cross(product, item.exact());
+            } else {
+                exact = false;
+                best = better(best, product);
+                best = better(best, item.required());
+                if (item.exact() == null) {
+                    product = Set.of("");
+                } else {
+                    best = better(best, item.exact());
+                    product = item.exact();
+                }
+            }
+        }
+        if (exact) {
+            return Info.exact(product);
+        }
+        return new Info(null, better(best, product));
+    }
+
+    private Info repeat(Info atom) {
+        if (pos >= regex.length()) return atom;
+        char c = regex.charAt(pos);
+        int min;
+        int max;
+        if (c == '*') {
+            min = 0;
+            max = -1;
+            pos++;
+        } else if (c == '+') {
+            min = 1;
+            max = -1;
+            pos++;
+        } else if (c == '?') {
+            min = 0;
+            max = 1;
+            pos++;
+        } else if (c == '{' && regex.indexOf('}', pos) > 0) {
+            int end = regex.indexOf('}', pos);
+            String[] bounds = regex.substring(pos + 1, end).split(",", -1);
+            try {
+                min = Integer.parseInt(bounds[0].trim());
+                max = bounds.length == 1 ? min : bounds[1].isBlank() ? -1 : Integer.parseInt(bounds[1].trim());
+            } catch (NumberFormatException e) {
+                // java.util.regex rejects it anyway
+                throw new UnsupportedOperationException("Bad repetition at " + pos);
+            }
+            pos = end + 1;
+        } else {
+            return atom;
+        }
+        // lazy and possessive modifiers don't change what matches
+        if (pos < regex.length() && (regex.charAt(pos) == '?' || regex.charAt(pos) == '+')) pos++;
+
+        if (min == 0) {
+            if (max == 1 && atom.exact() != null) return Info.exact(union(atom.exact(), Set.of("")));
+            return Info.EMPTY.exact().equals(atom.exact()) ? Info.EMPTY : Info.ANY;
+        }
+        if (min == max && atom.exact() != null && Math.pow(atom.exact().size(), min) <= MAX_EXACT) {
+            Set<String> product = Set.of("");
+            for (int i = 0; i < min; i++) product = cross(product, atom.exact());
+            return Info.exact(product);
+        }
+        return new Info(null, better(atom.required(), atom.exact()));
+    }
+
+    private Info atom() {
+        char c = regex.charAt(pos);
+        switch (c) {
+            case '(':
+                return group();
+            case '[':
+                Set<String> chars = charClass();
+                return chars == null ? Info.ANY : Info.exact(chars);
+            case '.':
+                pos++;
+                return Info.ANY;
+            case '^':
+            case '$':
+                pos++;
+                return Info.EMPTY;
+            case '\\':
+                return escape();
+            default:
+                pos++;
+                return Info.exact(Set.of(String.valueOf(c)));
+        }
+    }
+
+    private Info group() {
+        pos++;
+        if (regex.startsWith("?", pos)) {
+            pos++;
+            char kind = regex.charAt(pos);
+            if (kind == ':') {
+                pos++;
+            } else if (kind == '=' || kind == '!' || (kind == '<' && "=!".indexOf(regex.charAt(pos + 1)) >= 0)) {
+                // lookarounds are zero-width, their constraint can be ignored
+                pos += kind == '<' ? 2 : 1;
+                alternation();
+                expect(')');
+                return Info.EMPTY;
+            } else if (kind == '<') {
+                pos = regex.indexOf('>', pos) + 1;
+            } else {
+                // inline flags: (?s) or (?s:...)
+                int end = pos;
+                while (end < regex.length() && (Character.isLetter(regex.charAt(end)) || regex.charAt(end) == '-')) end++;
+                String flags = regex.substring(pos, end);
+                // Only the flags that change nothing the parser models, (?U) for one widens \d and \w
+                if (!flags.chars().allMatch(f -> "smd-".indexOf(f) >= 0)) {
+                    throw new UnsupportedOperationException("Unsupported flags " + flags);
+                }
+                pos = end;
+                if (regex.charAt(pos) == ')') {
+                    pos++;
+                    return Info.EMPTY;
+                }
+                expect(':');
+            }
+        }
+        Info info = alternation();
+        expect(')');
+        return info;
+    }
+
+    private void expect(char c) {
+        if (pos >= regex.length() || regex.charAt(pos) != c) {
+            throw new UnsupportedOperationException("Expected " + c + " at " + pos);
+        }
+        pos++;
+    }
+
+    private Info escape() {
+        char c = regex.charAt(pos + 1);
+        pos += 2;
+        switch (c) {
+            case 'b':
+            case 'B':
+            case 'A':
+            case 'z':
+            case 'Z':
+            case 'G':
+                return Info.EMPTY;
+            case 'Q':
+                int end = regex.indexOf("\\E", pos);
+                String quoted = regex.substring(pos, end < 0 ? regex.length() : end);
+                pos = end < 0 ? regex.length() : end + 2;
+                return Info.exact(Set.of(quoted));
+            case 'D':
+            case 'W':
+            case 'S':
+            case 'h':
+            case 'H':
+            case 'v':
+            case 'V':
+            case 'R':
+            case 'X':
+                return Info.ANY;
+            default:
+                Set<String> chars = escapeClass(c);
+                if (chars != null) return Info.exact(chars);
+                String literal = escapeLiteral(c);
+                if (literal == null) throw new UnsupportedOperationException("Unsupported escape \\" + c);
+                return Info.exact(Set.of(literal));
+        }
+    }
+
+    private static Set<String> escapeClass(char c) {
+        switch (c) {
+            case 'd':
+                return range('0', '9', new TreeSet<>());
+            case 'w':
+                Set<String> word = range('a', 'z', new TreeSet<>());
+                range('A', 'Z', word);
+                range('0', '9', word);
+                word.add("_");
+                return word;
+            case 's':
+                return new TreeSet<>(Set.of(" ", "\t", "\n", "\u000B", "\f", "\r"));
+            default:
+                return null;
+        }
+    }
+
+    private static String escapeLiteral(char c) {
+        switch (c) {
+            case 't':
+                return "\t";
+            case 'n':
+                return "\n";
+            case 'r':
+                return "\r";
+            case 'f':
+                return "\f";
+            case 'e':
+                return "\u001B";
+            default:
+                // \. \- \\ \$ and friends, but not the ones with arguments: \p{..} \1 \k<..> hex and unicode escapes
+                return Character.isLetterOrDigit(c) ? null : String.valueOf(c);
+        }
+    }
+
+    /**
+     * The characters of a [...] class, or null for negated, nested or too big classes.
+     */
+    private Set<String> charClass() {
+        pos++;
+        if (regex.charAt(pos) == '^') throw new UnsupportedOperationException("Negated class at " + pos);
+        Set<String> chars = new TreeSet<>();
+        boolean first = true;
+        while (regex.charAt(pos) != ']' || first) {
+            first = false;
+            char c = regex.charAt(pos);
+            if (c == '[' || (c == '&' && regex.startsWith("&&", pos))) {
+                throw new UnsupportedOperationException("Nested class at " + pos);
+            }
+            if (c == '\\') {
+                char e = regex.charAt(pos + 1);
+                pos += 2;
+                Set<String> escaped = escapeClass(e);
+                if (escaped != null) {
+                    chars.addAll(escaped);
+                    continue;
+                }
+                String literal = escapeLiteral(e);
+                if (literal == null) throw new UnsupportedOperationException("Unsupported escape \\" + e);
+                c = literal.charAt(0);
+            } else {
+                pos++;
+            }
+            if (regex.charAt(pos) == '-' && regex.charAt(pos + 1) != ']') {
+                char to = regex.charAt(pos + 1);
+                if (to == '\\') throw new UnsupportedOperationException("Escaped range at " + pos);
+                pos += 2;
+                range(c, to, chars);
+            } else {
+                chars.add(String.valueOf(c));
+            }
+        }
+        pos++;
+        if (chars.size() > MAX_EXACT) throw new UnsupportedOperationException("Class too big");
+        return chars;
+    }
+
+    private static Set<String> range(char from, char to, Set<String> chars) {
+        for (char c = from; c <= to; c++) chars.add(String.valueOf(c));
+        return chars;
+    }
+
+    private static Set<String> union(Set<String> a, Set<String> b) {
+        Set<String> union = new HashSet<>(a);
+        union.addAll(b);
+        return union;
+    }
+
+    private static Set<String> cross(Set<String> a, Set<String> b) {
+        Set<String> product = new HashSet<>();
+        for (String x : a) {
+            for (String y : b) product.add(x + y);
+        }
+        return product;
+    }
+
+    private static final Comparator<Set<String>> SELECTIVITY = Comparator
+        .comparingInt((Set<String> s) -> s.stream().mapToInt(String::length).min().orElse(0))
+        .thenComparing(Comparator.comparingInt(Set<String>::size).reversed());
+
+    /**
+     * The more selective of two required sets, null and sets with "" don't constrain anything.
+     */
+    private static Set<String> better(Set<String> a, Set<String> b) {
+        boolean useA = a != null && !a.contains("");
+        boolean useB = b != null && !b.contains("");
+        if (!useA) return useB ? b : null;
+        if (!useB) return a;
+        return SELECTIVITY.compare(a, b) >= 0 ? a : b;
+    }
+}
@@ -0,0 +1,160 @@
+package com.galiglobal.java.playground.regex;
+
+import com.google.re2j.PatternSyntaxException;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * {@link MultiPatternMatcher} that keeps one bad rule from pinning a CPU.
+ * <p>
+ * Every pattern goes through {@link PatternAnalyzer}. Safe patterns run on java.util.regex, the fastest engine for
+ * them. Risky ones are routed to a linear-time engine: Hyperscan if it supports the pattern, otherwise re2j. The
+ * patterns neither supports (backreferences, lookarounds) stay on java.util.regex, and every java.util.regex match
+ * runs over a {@link DeadlineCharSequence}: a match that times out counts as no match and is reported by
+ * {@link #timeouts()}.
+ */
+public class SafeMultiPatternMatcher implements MultiPatternMatcher {
+
+    private final int size;
+    private final PatternAnalyzer.Analysis[] analyses;
+    private final RegexEngine[] routes;
+    private final long timeoutNanos;
+
+    private final int[] utilIds;
+    private final Matcher[] utilMatchers;
+    private final int[] hyperscanIds;
+    private final MultiPatternMatcher hyperscan;
+    private final int[] re2jIds;
+    private final MultiPatternMatcher re2j;
+    // Results of the sub-matchers, in their own ids
+    private final long[] hyperscanBits;
+    private final long[] re2jBits;
+    // Re-armed for every java.util.regex match
+    private final DeadlineCharSequence deadline = new DeadlineCharSequence();
+    private final Latin1CharSequence view = new Latin1CharSequence();
+
+    private long timeouts;
+
+    public SafeMultiPatternMatcher(List<String> regexps, Duration matchTimeout) {
+        this.size = regexps.size();
+        this.analyses = new PatternAnalyzer.Analysis[size];
+        this.routes = new RegexEngine[size];
+        this.timeoutNanos = matchTimeout.toNanos();
+
+        for (int id = 0; id < size; id++) {
+            String regex = regexps.get(id);
+            analyses[id] = PatternAnalyzer.analyze(regex);
+            routes[id] = analyses[id].isSafe() ? RegexEngine.UTIL : linearTimeEngine(regex);
+        }
+
+        this.utilIds = ids(RegexEngine.UTIL);
+        this.utilMatchers = Arrays.stream(utilIds)
+            .mapToObj(id -> Pattern.compile(regexps.get(id)).matcher(""))
+            .toArray(Matcher[]::new);
+        this.hyperscanIds = ids(RegexEngine.HYPERSCAN);
+        this.hyperscan = hyperscanIds.length == 0 ? null : RegexEngine.HYPERSCAN.compile(select(regexps, hyperscanIds));
+        this.re2jIds = ids(RegexEngine.RE2J);
+        this.re2j = re2jIds.length == 0 ? null : RegexEngine.RE2J.compile(select(regexps, re2jIds));
+        this.hyperscanBits = new long[MultiPatternMatcher.words(hyperscanIds.length)];
+        this.re2jBits = new long[MultiPatternMatcher.words(re2jIds.length)];
+    }
+
+    private static RegexEngine linearTimeEngine(String regex) {
+        if (HyperscanMultiPatternMatcher.supports(regex)) {
+            return RegexEngine.HYPERSCAN;
+        }
+        try {
+            com.google.re2j.Pattern.compile(regex);
+            return RegexEngine.RE2J;
+        } catch (PatternSyntaxException e) {
+            return RegexEngine.UTIL;
+        }
+    }
+
+    private int[] ids(RegexEngine engine) {
+        List<Integer> ids = new ArrayList<>();
+        for (int id = 0; id < size; id++) {
+            if (routes[id] == engine) ids.add(id);
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static List<String> select(List<String> regexps, int[] ids) {
+        return Arrays.stream(ids).mapToObj(regexps::get).toList();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    public PatternAnalyzer.Analysis analysis(int id) {
+        return analyses[id];
+    }
+
+    /**
+     * The engine pattern {@code id} runs on.
+     */
+    public RegexEngine route(int id) {
+        return routes[id];
+    }
+
+    /**
+     * Number of java.util.regex matches aborted by the deadline so far.
+     */
+    public long timeouts() {
+        return timeouts;
+    }
+
+    @Override
+    public void match(CharSequence input, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        for (int i = 0; i < utilMatchers.length; i++) {
+            try {
+                if (utilMatchers[i].reset(deadline.arm(input, timeoutNanos)).find()) {
+                    set(bits, offset, utilIds[i]);
+                }
+            } catch (RegexTimeoutException e) {
+                timeouts++;
+            }
+        }
+        if (hyperscan != null) merge(hyperscan, hyperscanIds, hyperscanBits, input, bits, offset);
+        if (re2j != null) merge(re2j, re2jIds, re2jBits, input, bits, offset);
+    }
+
+    @Override
+    public void match(ByteBuffer bytes, int from, int to, long[] bits, int offset) {
+        match(view.wrap(bytes, from, to), bits, offset);
+    }
+
+    /**
+     * Runs a sub-matcher into its scratch bitset and maps its ids back to ids of this matcher.
+     */
+    private static void merge(MultiPatternMatcher matcher, int[] ids, long[] scratch, CharSequence input,
+                              long[] bits, int offset) {
+        matcher.match(input, scratch, 0);
+        for (int w = 0; w < scratch.length; w++) {
+            long word = scratch[w];
+            while (word != 0) {
+                set(bits, offset, ids[(w << 6) + Long.numberOfTrailingZeros(word)]);
+                word &= word - 1;
+            }
+        }
+    }
+
+    private static void set(long[] bits, int offset, int id) {
+        bits[offset + (id >>> 6)] |= 1L << id;
+    }
+
+    @Override
+    public void close() {
+        if (hyperscan != null) hyperscan.close();
+        if (re2j != null) re2j.close();
+    }
+}
@@ -0,0 +1,47 @@
+package com.galiglobal.java.playground.regex;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * java.util.regex backend: one {@link Matcher} per pattern, reset for every input, so N scans per input.
+ */
+public class UtilMultiPatternMatcher implements MultiPatternMatcher {
+
+    private final Matcher[] matchers;
+    private final Latin1CharSequence view = new Latin1CharSequence();
+
+    public UtilMultiPatternMatcher(List<String> regexps) {
+        this.matchers = regexps.stream().map(r -> Pattern.compile(r).matcher("")).toArray(Matcher[]::new);
+    }
+
+    @Override
+    public int size() {
+        return matchers.length;
+    }
+
+    @Override
+    public void match(CharSequence input, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        for (int i = 0; i < matchers.length; i++) {
+            if (matchers[i].reset(input).find()) bits[offset + (i >>> 6)] |= 1L << i;
+        }
+    }
+
+    @Override
+    public void match(CharSequence input, long[] candidates, long[] bits, int offset) {
+        MultiPatternMatcher.clear(bits, offset, words());
+        for (int i = 0; i < matchers.length; i++) {
+            if ((candidates[i >>> 6] & 1L << i) != 0 && matchers[i].reset(input).find()) {
+                bits[offset + (i >>> 6)] |= 1L << i;
+            }
+        }
+    }
+
+    @Override
+    public void match(ByteBuffer bytes, int from, int to, long[] bits, int offset) {
+        match(view.wrap(bytes, from, to), bits, offset);
+    }
+}
@@ -0,0 +1,93 @@
+package com.galiglobal.java.playground.regex
+
+import spock.lang.Specification
+
+import java.util.regex.Pattern
+
+class BytecodeMultiPatternMatcherTest extends Specification {
+
+    static final List<String> PATTERNS = Regexps.all() + [
+        "abc", "a.c", "(?s)a.c", "^abc", "abc\$", "^\$", "", "[^0-9]{2}x", "a{2,3}b", "a{2,}b", "(ab|cd)+e?",
+        "\\d+\\.\\d*", "[\\w-]+@", "\\Q.*\\E", "[]a]", "x\\u0041\\x42", "colou?r", "(?:ab)*c", "a+?b", "[a-c&&b]",
+        "(a|b)\\1", "\\bword", "(?i)abc", "a++", "^abc\$", "^a+\$"
+    ]
+
+    static final List<String> INPUTS = [
+        "", "email@email.com", "2021-12-31", "20211231", "555-123-4567", "123-45-6789", "TX", "123456789",
+        "The color is blue", "abc", "xabcx", "abc\n", "abc\r\n", "abc\n\n", "a\nc", "aab", "aaab", "aaaab", "ababcde",
+        "3.14", "my-name@x", ".*", "]", "xAB", "colour", "ababc", "c", "b", "ab12", "ccaccb", "word",
+        // $ also matches before a final line terminator, after the anchored DFAs are dead on it
+        "\n", "\r\n", "\u0085", "abc\u0085", "abc\r", "abc\n\r", "aaa\r\n", "email@email.com\n",
+        "email@email.com\r\n", "email@email.com\u0085", "555-123-4567\r\n", "TX\n"
+    ]
+
+    def "the interpreted DFA of #regex agrees with java.util.regex find"() {
+        setup:
+        def dfa = Dfa.compile(regex)
+
+        expect:
+        INPUTS.each { input ->
+            assert dfa.find(input) == Pattern.compile(regex).matcher(input).find(), input
+        }
+
+        where:
+        regex << PATTERNS.findAll { Dfa.supports(it) }
+    }
+
+    def "the generated matcher agrees with java.util.regex find on every pattern"() {
+        setup:
+        def matcher = new BytecodeMultiPatternMatcher(PATTERNS)
+
+        expect:
+        INPUTS.each { input ->
+            def expected = (0..<PATTERNS.size()).findAll { Pattern.compile(PATTERNS[it]).matcher(input).find() }
+            assert matcher.match(input) as List == expected, input
+        }
+
+        and:
+        matcher.fallbackCount() == PATTERNS.count { !Dfa.supports(it) }
+    }
+
+    def "the generated matcher agrees with java.util.regex on random inputs"() {
+        setup:
+        def regexps = [Regexps.PHONE_2, Regexps.SOCIAL, Regexps.DATE, Regexps.STATES]*.regex()
+        def matcher = new BytecodeMultiPatternMatcher(regexps)
+        def random = new Random(11)
+        def alphabet = "0123456789-ATXCOL "
+
+        expect:
+        (0..<5000).every {
+            def input = (0..<random.nextInt(20)).collect { alphabet[random.nextInt(alphabet.length())] }.join()
+            def expected = (0..<regexps.size()).findAll { Pattern.compile(regexps[it]).matcher(input).find() }
+            matcher.match(input) as List == expected
+        }
+    }
+
+    def "#regex is supported: #supported"() {
+        expect:
+        Dfa.supports(regex) == supported
+
+        where:
+        regex                    | supported
+        Regexps.PHONE_2.regex()  | true
+        Regexps.SOCIAL.regex()   | true
+        Regexps.DATE.regex()     | true
+        Regexps.STATES.regex()   | true
+        Regexps.EMAIL.regex()    | true
+        Regexps.BOMB.regex()     | true
+        Regexps.RANDOM.regex()   | false
+        "(a|b)\\1"               | false
+        "(?=a)b"                 | false
+        "\\bword"                | false
+        "a|b\$"                  | false
+        "a++"                    | false
+        "(?i)abc"                | false
+    }
+
+    def "the DFAs of the fixed-format patterns are small"() {
+        expect:
+        Dfa.compile(Regexps.PHONE_2.regex()).states() < 32
+        Dfa.compile(Regexps.STATES.regex()).states() < 32
+        Dfa.compile(Regexps.DATE.regex()).states() <= Dfa.MAX_STATES
+    }
+}
@@ -0,0 +1,139 @@
+package com.galiglobal.java.playground.regex
+
+import spock.lang.Specification
+
+import java.nio.charset.StandardCharsets
+import java.util.regex.Pattern
+
+class CharClassPrefilterTest extends Specification {
+
+    def "span of #pattern"() {
+        when:
+        def span = Dfa.span(pattern.regex())
+
+        then:
+        span.alphabet() as List == alphabet.collect { it instanceof String ? (int) (it as char) : it }
+        span.minLength() == minLength
+
+        where:
+        pattern         | alphabet                               | minLength
+        Regexps.PHONE_2 | ['-', '-', '0', '9']                   | 12
+        Regexps.SOCIAL  | ['-', '-', '0', '9']                   | 11
+        Regexps.STATES  | ['A', 'A', 'C', 'P', 'R', 'Z']         | 2
+        Regexps.BOMB    | [0, 0xFFFF]                            | 0
+    }
+
+    def "#lanes lanes find the same runs as the scalar loop"() {
+        setup:
+        def scanner = CharClassScanner.of("[0-9]", lanes)
+        def random = new Random(lanes)
+        def bytes = new byte[300]
+
+        expect:
+        scanner.lanes() == lanes
+        (0..<200).every {
+            // Mostly digits, so runs of every length cross the vector steps
+            for (int i = 0; i < bytes.length; i++) bytes[i] = (byte) (random.nextInt(8) == 0 ? 120 : 48 + random.nextInt(10))
+            int from = random.nextInt(20)
+            int to = from + random.nextInt(bytes.length - from)
+            int minRun = 1 + random.nextInt(80)
+            scanner.indexOfRun(bytes, from, to, minRun) == scanner.indexOfRunScalar(bytes, from, to, minRun)
+        }
+
+        where:
+        lanes << [16, 32, 64]
+    }
+
+    def "#lanes lanes span and runs over step boundaries"() {
+        setup:
+        def scanner = CharClassScanner.of("\\w", lanes)
+        def bytes = ("-" * 70 + "a" * 130 + "-" + "b" * 5).getBytes(StandardCharsets.ISO_8859_1)
+
+        expect:
+        scanner.span(bytes, 70, bytes.length) == 200
+        scanner.span(bytes, 0, bytes.length) == 0
+        scanner.indexOfRun(bytes, 0, bytes.length, 130) == 70
+        scanner.indexOfRun(bytes, 0, bytes.length, 131) == -1
+        scanner.indexOfRun(bytes, 0, bytes.length, 5) == 70
+        scanner.indexOfRun(bytes, 195, bytes.length, 5) == 195
+        scanner.indexOfRun(bytes, 200, bytes.length, 5) == 201
+        scanner.contains((int) ('_' as char))
+        !scanner.contains((int) ('-' as char))
+
+        where:
+        lanes << [16, 32, 64]
+    }
+
+    def "bytes above 127 compare unsigned"() {
+        setup:
+        def scanner = new CharClassScanner([0xE0, 0xFF] as int[], 16)
+        def bytes = new byte[40]
+        bytes[30] = (byte) 0xE9
+        bytes[31] = (byte) 0xFF
+
+        expect:
+        scanner.indexOfRun(bytes, 0, 40, 2) == 30
+        scanner.indexOfRun(bytes, 0, 40, 3) == -1
+    }
+
+    def "numbers shorter than a pattern are rejected for it"() {
+        setup:
+        def regexps = [Regexps.PHONE_2.regex(), Regexps.SOCIAL.regex(), Regexps.STATES.regex(), Regexps.DATE.regex()]
+        def prefilter = new CharClassPrefilter(regexps, 16)
+        def bits = new long[1]
+
+        expect:
+        prefilter.scanners() == 4
+        prefilter.candidates("123456789", bits, 0)
+        bits[0] == 0b1000
+        !prefilter.mayMatch("12345")
+        !prefilter.candidates("ab", bits, 0)
+        bits[0] == 0
+        prefilter.candidates("555-123-4567 TX", bits, 0)
+        bits[0] == 0b1111
+        prefilter.rejected() == 2
+    }
+
+    def "the prefilter only rejects patterns that don't match"() {
+        setup:
+        def regexps = Regexps.all()
+        def prefilter = new CharClassPrefilter(regexps)
+        def random = new Random(1)
+        def inputs = (0..<500).collect { String.valueOf(random.nextLong()) } +
+            ["email@email.com", "555-123-4567", "123-45-6789", "TX", "1999-12-31", "aİb", "été", ""]
+        def bits = new long[1]
+
+        expect:
+        inputs.every { input ->
+            prefilter.candidates(input, bits, 0)
+            regexps.findIndexValues { Pattern.compile(it).matcher(input).find() }.every { (bits[0] & 1L << it) != 0 }
+        }
+    }
+
+    def "#engine gives the same ids behind both prefilters"() {
+        setup:
+        def regexps = Regexps.all() - Regexps.BOMB.regex() - Regexps.RANDOM.regex()
+        def plain = engine.compile(regexps)
+        def prefiltered = new PrefilteredMultiPatternMatcher(new CharClassPrefilter(regexps),
+            new PrefilteredMultiPatternMatcher(new LiteralPrefilter(regexps), engine.compile(regexps)))
+        def random = new Random(1)
+        def inputs = (0..<1000).collect { String.valueOf(random.nextInt()) } +
+            ["a@b.c", "1999-12-31", "555-123-4567", "123-45-6789 in CA", "x" * 5000]
+
+        expect:
+        inputs.every { plain.match(it) == prefiltered.match(it) }
+        inputs.every {
+            def line = new Latin1CharSequence(it.getBytes(StandardCharsets.ISO_8859_1), 0, it.length())
+            def bits = new long[1]
+            prefiltered.match(line, bits, 0)
+            MultiPatternMatcher.ids(bits, 0, 1) == plain.match(it)
+        }
+
+        cleanup:
+        plain.close()
+        prefiltered.close()
+
+        where:
+        engine << [RegexEngine.UTIL, RegexEngine.RE2J, RegexEngine.HYPERSCAN, RegexEngine.BYTECODE]
+    }
+}
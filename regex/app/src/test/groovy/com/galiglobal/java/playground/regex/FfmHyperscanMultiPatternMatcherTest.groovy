@@ -0,0 +1,181 @@
+package com.galiglobal.java.playground.regex
+
+import spock.lang.Specification
+
+import java.lang.foreign.Arena
+import java.lang.foreign.MemorySegment
+import java.lang.foreign.ValueLayout
+import java.nio.ByteBuffer
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.Callable
+import java.util.concurrent.Executors
+
+class FfmHyperscanMultiPatternMatcherTest extends Specification {
+
+    def "same database and fallback as the JNI matcher"() {
+        setup:
+        def jni = new HyperscanMultiPatternMatcher(Regexps.all())
+        def ffm = new FfmHyperscanMultiPatternMatcher(Regexps.all())
+
+        expect:
+        ffm.fallbackCount() == jni.fallbackCount()
+        ffm.databaseSize() == jni.databaseSize()
+        ["email@email.com", "555-123-4567", "123-45-6789 TX", "1999-12-31", "ccab", "héllo 42"].every {
+            ffm.match(it) == jni.match(it)
+        }
+
+        cleanup:
+        jni.close()
+        ffm.close()
+    }
+
+    def "scans a native segment in place"() {
+        setup:
+        // Hyperscan doesn't support backreferences, the last one falls back to java.util.regex
+        def regexps = [Regexps.PHONE_2.regex(), Regexps.STATES.regex(), "(ab)\\1"]
+        def matcher = new FfmHyperscanMultiPatternMatcher(regexps)
+        def bytes = "call 555-123-4567|from TX|abab".getBytes(StandardCharsets.ISO_8859_1)
+        def arena = Arena.ofConfined()
+        def segment = arena.allocate(bytes.length)
+        MemorySegment.copy(bytes, 0, segment, ValueLayout.JAVA_BYTE, 0, bytes.length)
+        def bits = new long[1]
+
+        when:
+        def ids = [[0, 17], [18, 25], [26, 30]].collect { from, to ->
+            matcher.match(segment, from, to, bits, 0)
+            MultiPatternMatcher.ids(bits, 0, 1) as List
+        }
+
+        then:
+        matcher.fallbackCount() == 1
+        ids == [[0], [1], [2]]
+
+        when:
+        matcher.match(MemorySegment.ofArray(bytes), 0, bytes.length, bits, 0)
+
+        then:
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        matcher.close()
+        arena.close()
+    }
+
+    def "buffer indexes are absolute whatever the position, as in the JNI matcher"() {
+        setup:
+        def regexps = [Regexps.PHONE_2.regex(), Regexps.STATES.regex()]
+        def jni = new HyperscanMultiPatternMatcher(regexps)
+        def ffm = new FfmHyperscanMultiPatternMatcher(regexps)
+        def bytes = "call 555-123-4567|from TX".getBytes(StandardCharsets.ISO_8859_1)
+        def direct = ByteBuffer.allocateDirect(bytes.length).put(bytes)
+        def lines = [[0, 17], [18, 25]]
+
+        expect:
+        [ByteBuffer.wrap(bytes), direct].every { buffer ->
+            // Matched once at position 0, then again at other positions reusing the same buffer
+            [0, 5, 18].every { position ->
+                buffer.position(position)
+                lines.every { from, to ->
+                    def expected = new long[1]
+                    def actual = new long[1]
+                    jni.match(buffer, from, to, expected, 0)
+                    ffm.match(buffer, from, to, actual, 0)
+                    actual == expected
+                }
+            }
+        }
+        lines.collect { from, to ->
+            def bits = new long[1]
+            ffm.match(direct.position(10), from, to, bits, 0)
+            MultiPatternMatcher.ids(bits, 0, 1) as List
+        } == [[0], [1]]
+
+        cleanup:
+        jni.close()
+        ffm.close()
+    }
+
+    def "matchers sharing a database scan on their own threads"() {
+        setup:
+        def regexps = Regexps.all() - Regexps.BOMB.regex()
+        def owner = new FfmHyperscanMultiPatternMatcher(regexps)
+        def expected = new UtilMultiPatternMatcher(regexps)
+        def random = new Random(1)
+        def inputs = (0..<2000).collect { String.valueOf(random.nextLong()) } + ["a@b.c", "555-123-4567", "CA"]
+        def executor = Executors.newFixedThreadPool(4)
+
+        when:
+        def results = (0..<4).collect {
+            executor.submit({
+                def matcher = new FfmHyperscanMultiPatternMatcher(owner)
+                try {
+                    inputs.collect { matcher.match(it) as List }
+                } finally {
+                    matcher.close()
+                }
+            } as Callable)
+        }*.get()
+
+        then:
+        results.every { it == inputs.collect { expected.match(it) as List } }
+
+        cleanup:
+        executor.shutdown()
+        owner.close()
+    }
+
+    def "the database outlives the matcher that compiled it"() {
+        setup:
+        def owner = new FfmHyperscanMultiPatternMatcher([Regexps.PHONE_2.regex(), Regexps.STATES.regex()])
+        def sharer = new FfmHyperscanMultiPatternMatcher(owner)
+        def bytes = ByteBuffer.wrap("from TX".getBytes(StandardCharsets.ISO_8859_1))
+        def bits = new long[1]
+
+        when:
+        owner.close()
+        sharer.match(bytes, 0, bytes.limit(), bits, 0)
+
+        then:
+        sharer.match("call 555-123-4567") as List == [0]
+        MultiPatternMatcher.ids(bits, 0, 1) as List == [1]
+
+        when:
+        sharer.close()
+        new FfmHyperscanMultiPatternMatcher(sharer)
+
+        then:
+        thrown(IllegalStateException)
+    }
+
+    def "grows the scan buffer for longer inputs"() {
+        setup:
+        def regexps = [Regexps.PHONE_2.regex(), Regexps.EMAIL.regex()]
+        def matcher = new FfmHyperscanMultiPatternMatcher(regexps)
+        def expected = new UtilMultiPatternMatcher(regexps)
+        def inputs = (0..12).collect { ("x" * (1 << it)) + " 555-123-4567" }
+
+        expect:
+        inputs.every { matcher.match(it) == expected.match(it) }
+        inputs.every {
+            def bytes = ByteBuffer.wrap(it.getBytes(StandardCharsets.ISO_8859_1))
+            def bits = new long[1]
+            matcher.match(bytes, 0, bytes.limit(), bits, 0)
+            MultiPatternMatcher.ids(bits, 0, 1) as List == [0]
+        }
+
+        cleanup:
+        matcher.close()
+    }
+
+    def "close is idempotent"() {
+        setup:
+        def matcher = new FfmHyperscanMultiPatternMatcher([Regexps.EMAIL.regex()])
+
+        when:
+        matcher.close()
+        matcher.close()
+
+        then:
+        noExceptionThrown()
+    }
+}
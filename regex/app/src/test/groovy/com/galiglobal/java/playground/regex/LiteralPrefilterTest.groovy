@@ -0,0 +1,105 @@
+package com.galiglobal.java.playground.regex
+
+import spock.lang.Specification
+
+import java.util.regex.Pattern
+
+class LiteralPrefilterTest extends Specification {
+
+    def "required literals of #pattern"() {
+        expect:
+        RequiredLiterals.of(pattern.regex()) == (literals as Set)
+
+        where:
+        pattern         | literals
+        Regexps.EMAIL   | ["@"]
+        Regexps.EMAIL_2 | ["@"]
+        Regexps.PHONE_2 | ["-"]
+        Regexps.RANDOM  | ["cc"]
+        Regexps.BOMB    | null
+    }
+
+    def "longer literals win over shorter ones"() {
+        when:
+        def literals = RequiredLiterals.of(Regexps.SOCIAL.regex())
+
+        then:
+        literals.size() == 100
+        literals.every { it ==~ /[0-9]{2}-/ }
+    }
+
+    def "states need one of the state codes"() {
+        when:
+        def literals = RequiredLiterals.of(Regexps.STATES.regex())
+
+        then:
+        literals.size() == 51
+        literals.containsAll(["AZ", "CA", "NY", "WY"])
+    }
+
+    def "required literals of #regex are #literals"() {
+        expect:
+        RequiredLiterals.of(regex) == (literals as Set)
+
+        where:
+        regex                 | literals
+        "ERROR: .*timeout"    | ["ERROR: "]
+        "E.*timeout"          | ["timeout"]
+        "(foo|bar)baz"        | ["foobaz", "barbaz"]
+        "(foo|.*)baz"         | ["baz"]
+        "(foo|.*)"            | null
+        "a?"                  | null
+        "colou?r"             | ["color", "colour"]
+        "\\Qa.b\\E+"          | ["a.b"]
+        "(?i)error"           | null
+        "(?s)id=\\d+"         | ["id="]
+        "(?U)x\\d"            | null
+        "x\\D+y"              | ["x"]
+        "\\p{Lu}+ok"          | null
+    }
+
+    def "the prefilter only rejects inputs no pattern matches"() {
+        setup:
+        def regexps = Regexps.all() - Regexps.BOMB.regex() - Regexps.DATE.regex()
+        def prefilter = new LiteralPrefilter(regexps)
+        def inputs = ["email@email.com", "555-123-4567", "123-45-6789", "TX", "123456789", "42", "abc", "xcx"]
+
+        expect:
+        inputs.each { input ->
+            def matching = regexps.findIndexValues { Pattern.compile(it).matcher(input).find() }
+            if (!matching.isEmpty()) {
+                assert prefilter.mayMatch(input)
+                def candidates = prefilter.candidates(input)
+                assert matching.every { candidates.get(it as int) }
+            }
+        }
+
+        and:
+        !prefilter.mayMatch("123456789")
+        prefilter.rejected() > 0
+        prefilter.rejectRate() > 0
+    }
+
+    def "unicode classes under (?U) are never rejected"() {
+        setup:
+        def regexps = ["(?U)\\d{3}", "(?U)[\\w]x"]
+        def prefilter = new LiteralPrefilter(regexps)
+
+        expect:
+        ["\u0661\u0662\u0663", "\u00e9x"].every { input ->
+            regexps.any { Pattern.compile(it).matcher(input).find() } && prefilter.mayMatch(input)
+        }
+    }
+
+    def "prefiltered matcher gives the same ids as the engine"() {
+        setup:
+        def regexps = Regexps.all() - Regexps.BOMB.regex()
+        def plain = RegexEngine.RE2J.compile(regexps)
+        def prefiltered = new PrefilteredMultiPatternMatcher(RegexEngine.RE2J, regexps)
+        def random = new Random(1)
+        def inputs = (0..<1000).collect { String.valueOf(random.nextInt()) } + ["a@b.c", "1999-12-31", "555-123-4567"]
+
+        expect:
+        inputs.every { plain.match(it) == prefiltered.match(it) }
+    }
+}
@@ -0,0 +1,111 @@
+package com.galiglobal.java.playground.regex
+
+import spock.lang.Specification
+import spock.lang.TempDir
+
+import java.lang.management.ManagementFactory
+import java.nio.file.Files
+import java.nio.file.Path
+
+class LogScannerTest extends Specification {
+
+    static final List<String> REGEXPS = [
+        Regexps.DATE, Regexps.EMAIL_2, Regexps.PHONE_2, Regexps.SOCIAL, Regexps.STATES
+    ]*.regex() + ["ERROR"]
+
+    static final List<String> LINES = [
+        "2021-12-31 INFO started", "", "ERROR user email@email.com", "call 555-123-4567", "ssn 123-45-6789\r",
+        "state TX", "nothing here", "ERROR 2022-01-01"
+    ]
+
+    @TempDir
+    Path dir
+
+    def "#engine counts and offsets match java.util.regex on each line, window #window"() {
+        setup:
+        def file = dir.resolve("app.log")
+        Files.writeString(file, LINES.join("\n") + (trailingNewline ? "\n" : ""))
+        def matcher = engine.compile(REGEXPS)
+        def offsets = []
+
+        when:
+        def result = new LogScanner(matcher, window).scan(file) { offset, length, bits ->
+            offsets << [offset, length, MultiPatternMatcher.ids(bits, 0, bits.length) as List]
+        }
+
+        then:
+        result.bytes() == Files.size(file)
+        result.lines() == LINES.size()
+        result.counts() as List == (0..<REGEXPS.size()).collect { id -> LINES.count { matches(id, it) } as long }
+        offsets == expectedOffsets()
+        result.matchedLines() == offsets.size()
+
+        cleanup:
+        matcher.close()
+
+        where:
+        engine                    | window                | trailingNewline
+        RegexEngine.HYPERSCAN     | LogScanner.MAX_WINDOW | true
+        RegexEngine.HYPERSCAN     | 32                    | false
+        RegexEngine.HYPERSCAN_FFM | LogScanner.MAX_WINDOW | false
+        RegexEngine.HYPERSCAN_FFM | 32                    | true
+        RegexEngine.UTIL          | LogScanner.MAX_WINDOW | false
+        RegexEngine.UTIL          | 32                    | true
+        RegexEngine.RE2J          | 32                    | true
+    }
+
+    def "#engine scans a file without allocating per line"() {
+        setup:
+        def file = dir.resolve("big.log")
+        Files.write(file, (0..<20_000).collect { LINES[it % LINES.size()] })
+        def matcher = engine.compile(REGEXPS)
+        def scanner = new LogScanner(matcher)
+        def threads = (com.sun.management.ThreadMXBean) ManagementFactory.threadMXBean
+        // Sizes the views and scratch space for the longest line and lets the JIT compile the loop
+        5.times { scanner.scan(file) }
+
+        when:
+        long before = threads.currentThreadAllocatedBytes
+        def result = scanner.scan(file)
+        long allocated = threads.currentThreadAllocatedBytes - before
+
+        then:
+        result.lines() == 20_000
+        // The channel, the mapping and the result, not a copy of every line
+        allocated < result.lines()
+
+        cleanup:
+        matcher.close()
+
+        where:
+        // re2j and Apache RE allocate match state inside the libraries, the FFM matcher segments in the downcall
+        engine << [RegexEngine.HYPERSCAN, RegexEngine.UTIL, RegexEngine.BYTECODE]
+    }
+
+    def "Latin1CharSequence reads a range of the buffer"() {
+        setup:
+        def buffer = java.nio.ByteBuffer.wrap("xxhello worldxx".bytes)
+        def view = new Latin1CharSequence(buffer, 2, 13)
+
+        expect:
+        view.length() == 11
+        view.toString() == "hello world"
+        view.subSequence(6, 11).toString() == "world"
+        view.charAt(4) == 'o' as char
+    }
+
+    static boolean matches(int id, String line) {
+        java.util.regex.Pattern.compile(REGEXPS[id]).matcher(line - "\r").find()
+    }
+
+    static List expectedOffsets() {
+        def offsets = []
+        long offset = 0
+        LINES.each { line ->
+            def ids = (0..<REGEXPS.size()).findAll { matches(it, line) }
+            if (ids) offsets << [offset, (line - "\r").length(), ids]
+            offset += line.length() + 1
+        }
+        offsets
+    }
+}
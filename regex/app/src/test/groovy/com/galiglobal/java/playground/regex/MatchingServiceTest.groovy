@@ -0,0 +1,82 @@
+package com.galiglobal.java.playground.regex
+
+import spock.lang.Specification
+
+import java.util.concurrent.Callable
+import java.util.concurrent.CountDownLatch
+import java.util.concurrent.Executors
+
+class MatchingServiceTest extends Specification {
+
+    static final List<String> REGEXPS = [
+        Regexps.DATE, Regexps.PHONE_2, Regexps.SOCIAL, Regexps.STATES
+    ]*.regex() + ["12[0-9]{2}", "^9"]
+
+    def "#engine batch results match the single-threaded matcher"() {
+        setup:
+        def random = new Random(7)
+        def inputs = (0..<10_000).collect { String.valueOf(random.nextInt(1_000_000_000)) }
+        def service = new MatchingService(engine, REGEXPS, 4)
+        def matcher = engine.compile(REGEXPS)
+
+        when:
+        def results = service.matchAll(inputs)
+
+        then:
+        results.size() == inputs.size()
+        inputs.indices.every { results[it] == matcher.match(inputs[it]) }
+
+        cleanup:
+        service.close()
+        matcher.close()
+
+        where:
+        engine << [RegexEngine.HYPERSCAN, RegexEngine.RE2J]
+    }
+
+    def "closing waits for the batch in flight and rejects later ones"() {
+        setup:
+        def random = new Random(11)
+        def inputs = (0..<200_000).collect { String.valueOf(random.nextInt(1_000_000_000)) }
+        def service = new MatchingService(RegexEngine.HYPERSCAN, REGEXPS, 4)
+        def matcher = RegexEngine.HYPERSCAN.compile(REGEXPS)
+        def started = new CountDownLatch(1)
+        def executor = Executors.newSingleThreadExecutor()
+
+        when:
+        def batch = executor.submit({
+            started.countDown()
+            try {
+                service.matchAll(inputs)
+            } catch (IllegalStateException e) {
+                // Closed before the batch got in
+                null
+            }
+        } as Callable)
+        started.await()
+        service.close()
+        def results = batch.get()
+
+        then:
+        // Either rejected or complete, never scanned with freed matchers
+        results == null || inputs.indices.every { results[it] == matcher.match(inputs[it]) }
+
+        when:
+        service.matchAll(["555-123-4567"])
+
+        then:
+        thrown(IllegalStateException)
+
+        cleanup:
+        executor.shutdown()
+        matcher.close()
+    }
+
+    def "parallelism must be positive"() {
+        when:
+        new MatchingService(RegexEngine.UTIL, REGEXPS, 0)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
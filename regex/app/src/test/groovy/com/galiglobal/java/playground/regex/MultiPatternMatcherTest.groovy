@@ -0,0 +1,124 @@
+package com.galiglobal.java.playground.regex
+
+import spock.lang.Specification
+
+import java.util.regex.Pattern
+
+class MultiPatternMatcherTest extends Specification {
+
+    static final List<String> REGEXPS = [
+        Regexps.EMAIL, Regexps.DATE, Regexps.EMAIL_2, Regexps.PHONE_2, Regexps.SOCIAL, Regexps.STATES
+    ]*.regex()
+
+    static final List<String> INPUTS = [
+        "email@email.com", "2021-12-31", "555-123-4567", "123-45-6789", "TX", "123456789", "", "The color is blue"
+    ]
+
+    def "#engine reports the same ids as java.util.regex find"() {
+        setup:
+        def matcher = engine.compile(REGEXPS)
+
+        expect:
+        INPUTS.each { input ->
+            assert matcher.match(input) as List == expected(REGEXPS, input)
+        }
+
+        cleanup:
+        matcher.close()
+
+        where:
+        engine << RegexEngine.values()
+    }
+
+    def "#engine batch bitsets have the same ids as match"() {
+        setup:
+        // More than 64 patterns so the bitsets take two longs
+        def matcher = engine.compile(REGEXPS + (100..<194).collect { "$it[0-9]{2}" as String })
+        def inputs = (INPUTS + ["10512", "17099x"]) as CharSequence[]
+        // Dirty on purpose, every bitset must be overwritten
+        long[] results = new long[inputs.length * matcher.words()]
+        Arrays.fill(results, -1L)
+
+        when:
+        matcher.matchAll(inputs, results)
+
+        then:
+        matcher.words() == 2
+        inputs.eachWithIndex { input, i ->
+            assert MultiPatternMatcher.ids(results, i * matcher.words(), matcher.words()) == matcher.match(input)
+        }
+
+        cleanup:
+        matcher.close()
+
+        where:
+        engine << RegexEngine.values()
+    }
+
+    def "#engine reads bytes as ISO-8859-1 in direct and heap buffers alike, even if they aren't UTF-8"() {
+        setup:
+        def regexps = ["caf. ERROR", "^\\w+ \\w+ .\$", "\\xC3"]
+        def matcher = engine.compile(regexps)
+        // "café ERROR " in ISO-8859-1, then a lone UTF-8 lead byte
+        byte[] line = "caf\u00e9 ERROR \u00c3".getBytes("ISO-8859-1")
+        def direct = java.nio.ByteBuffer.allocateDirect(line.length).put(line).flip()
+        def latin1 = new String(line, "ISO-8859-1")
+        long[] directBits = new long[matcher.words()]
+        long[] heapBits = new long[matcher.words()]
+
+        when:
+        matcher.match(direct, 0, line.length, directBits, 0)
+        matcher.match(java.nio.ByteBuffer.wrap(line), 0, line.length, heapBits, 0)
+
+        then:
+        MultiPatternMatcher.ids(directBits, 0, directBits.length) as List == expected(regexps, latin1)
+        MultiPatternMatcher.ids(heapBits, 0, heapBits.length) as List == expected(regexps, latin1)
+
+        cleanup:
+        matcher.close()
+
+        where:
+        engine << [RegexEngine.HYPERSCAN, RegexEngine.UTIL, RegexEngine.RE2J, RegexEngine.BYTECODE]
+    }
+
+    def "matchAll rejects a results array that is too small"() {
+        setup:
+        def matcher = RegexEngine.UTIL.compile(REGEXPS)
+
+        when:
+        matcher.matchAll(INPUTS as CharSequence[], new long[INPUTS.size() - 1])
+
+        then:
+        thrown(IllegalArgumentException)
+
+        cleanup:
+        matcher.close()
+    }
+
+    def "hyperscan falls back to java.util.regex for the patterns it doesn't support"() {
+        setup:
+        def regexps = Regexps.all()
+        def matcher = new HyperscanMultiPatternMatcher(regexps)
+
+        expect:
+        matcher.fallbackCount() > 0
+        INPUTS.each { input ->
+            assert matcher.match(input) as List == expected(regexps, input)
+        }
+
+        cleanup:
+        matcher.close()
+    }
+
+    def "apache regex rejects the patterns it can't compile"() {
+        when:
+        RegexEngine.APACHE_RE.compile([Regexps.BOMB.regex()])
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+
+    static List<Integer> expected(List<String> regexps, String input) {
+        (0..<regexps.size()).findAll { Pattern.compile(regexps[it]).matcher(input).find() }
+    }
+}
@@ -0,0 +1,34 @@
+package com.galiglobal.java.playground.regex
+
+import spock.lang.Specification
+
+import static com.galiglobal.java.playground.regex.PatternAnalyzer.Risk.BACKREFERENCE
+import static com.galiglobal.java.playground.regex.PatternAnalyzer.Risk.NESTED_QUANTIFIER
+import static com.galiglobal.java.playground.regex.PatternAnalyzer.Risk.QUANTIFIED_ALTERNATION
+
+class PatternAnalyzerTest extends Specification {
+
+    def "#regex has risks #risks"() {
+        expect:
+        PatternAnalyzer.analyze(regex).risks() == risks as Set
+
+        where:
+        regex                       | risks
+        Regexps.DATE.regex()        | []
+        Regexps.PHONE_2.regex()     | []
+        Regexps.SOCIAL.regex()      | []
+        Regexps.STATES.regex()      | []
+        Regexps.EMAIL_2.regex()     | []
+        Regexps.BOMB.regex()        | []
+        Regexps.EMAIL.regex()       | [NESTED_QUANTIFIER]
+        Regexps.RANDOM.regex()      | [NESTED_QUANTIFIER]
+        "(a+)+\$"                   | [NESTED_QUANTIFIER]
+        "(.*a){20}"                 | [NESTED_QUANTIFIER]
+        "(a|aa)+"                   | [QUANTIFIED_ALTERNATION]
+        "(a|b)?c"                   | []
+        "([a-z]+)\\1"               | [BACKREFERENCE]
+        "[(]+[)]*"                  | []
+        "\\Q(a+)+\\E"               | []
+        "(\\w+)\\s"                 | []
+    }
+}
@@ -0,0 +1,107 @@
+package com.galiglobal.java.playground.regex
+
+import spock.lang.Specification
+
+import java.util.regex.Pattern
+
+class PatternCacheTest extends Specification {
+
+    def "#engine compiles a pattern once and then hits the cache"() {
+        setup:
+        def cache = new PatternCache(10_000_000)
+
+        expect:
+        cache.find(engine, Regexps.PHONE_2.regex(), 0, "555-123-4567")
+        !cache.find(engine, Regexps.PHONE_2.regex(), 0, "123456789")
+        cache.find(engine, "abc", Pattern.CASE_INSENSITIVE, "xABCx")
+
+        and:
+        with(cache.stats()) {
+            misses() == 2
+            hits() == 1
+            entries() == 2
+            bytes() > 0
+        }
+
+        where:
+        engine << RegexEngine.values()
+    }
+
+    def "keys include engine and flags"() {
+        setup:
+        def cache = new PatternCache(10_000_000)
+
+        when:
+        def p1 = cache.util("abc", 0)
+        def p2 = cache.util("abc", Pattern.CASE_INSENSITIVE)
+        cache.re2j("abc", 0)
+
+        then:
+        !p1.is(p2)
+        cache.util("abc", 0).is(p1)
+        cache.stats().misses() == 3
+        cache.stats().hits() == 1
+    }
+
+    def "least recently used patterns are evicted to stay under the byte budget"() {
+        setup:
+        def size = new PatternCache(Long.MAX_VALUE).with { util("[0-9]{10}", 0); stats().bytes() }
+        def cache = new PatternCache(size * 3)
+
+        when:
+        cache.util("[0-9]{10}", 0)
+        cache.util("[1-9]{10}", 0)
+        cache.util("[0-9]{10}", 0)
+        cache.util("[2-9]{10}", 0)
+        cache.util("[3-9]{10}", 0)
+
+        then:
+        cache.stats().evictions() > 0
+        cache.stats().bytes() <= size * 3
+
+        when: "the most recently used pattern is still there"
+        def hits = cache.stats().hits()
+        cache.util("[3-9]{10}", 0)
+
+        then:
+        cache.stats().hits() == hits + 1
+    }
+
+    def "#engine frees evicted databases without breaking the finds that follow"() {
+        setup:
+        def both = new PatternCache(Long.MAX_VALUE).with {
+            find(engine, Regexps.PHONE_2.regex(), 0, "")
+            find(engine, Regexps.SOCIAL.regex(), 0, "")
+            def bytes = stats().bytes()
+            close()
+            bytes
+        }
+        // Room for either database but not both, every find evicts the other one
+        def cache = new PatternCache(both - 1)
+
+        expect:
+        (1..20).every {
+            cache.find(engine, Regexps.PHONE_2.regex(), 0, "555-123-4567") &&
+                !cache.find(engine, Regexps.SOCIAL.regex(), 0, "555-123-4567")
+        }
+        cache.stats().evictions() > 0
+
+        when:
+        cache.close()
+
+        then:
+        cache.stats().entries() == 0
+        cache.stats().bytes() == 0
+
+        where:
+        engine << [RegexEngine.HYPERSCAN, RegexEngine.HYPERSCAN_FFM]
+    }
+
+    def "unsupported flags are rejected"() {
+        when:
+        new PatternCache(1000).util("abc", Pattern.COMMENTS)
+
+        then:
+        thrown(IllegalArgumentException)
+    }
+}
@@ -0,0 +1,61 @@
+package com.galiglobal.java.playground.regex
+
+import spock.lang.Specification
+
+class PatternFootprintTest extends Specification {
+
+    def "#engine reports a footprint for every pattern it compiles"() {
+        when:
+        def measurements = PatternFootprint.measure(engine, Regexps.all())
+
+        then:
+        measurements*.regex() == Regexps.all().findAll { supported(engine, it) }
+        measurements.every { it.deepJamm() > 0 && it.shallowJamm() > 0 }
+        measurements.every { it.retained() > 0 && it.retained() <= it.deep() }
+
+        where:
+        engine << RegexEngine.values()
+    }
+
+    def "off-heap bytes are the Hyperscan database and the generated class"() {
+        expect:
+        PatternFootprint.measure(engine, [Regexps.PHONE_2.regex()])[0].offHeap() > 0 == offHeap
+
+        where:
+        engine                    | offHeap
+        RegexEngine.HYPERSCAN     | true
+        RegexEngine.HYPERSCAN_FFM | true
+        RegexEngine.BYTECODE      | true
+        RegexEngine.UTIL          | false
+        RegexEngine.RE2J          | false
+    }
+
+    def "bigger patterns retain more"() {
+        when:
+        def measurements = PatternFootprint.measure(RegexEngine.RE2J, ["a", "[a-z]{2}[0-9]{10}[A-Z]{30}"])
+
+        then:
+        measurements[1].retained() > measurements[0].retained()
+    }
+
+    def "reports as CSV and JSON"() {
+        setup:
+        def measurements = PatternFootprint.measure(RegexEngine.RE2J, [Regexps.STATES.regex(), 'a"b\\d'])
+
+        expect:
+        PatternFootprint.csv(measurements).readLines().size() == 3
+        PatternFootprint.csv(measurements).readLines()[0] == PatternFootprint.CSV_HEADER
+        PatternFootprint.csv(measurements).contains('"a""b\\d"')
+        PatternFootprint.json(measurements).contains('"regex": "a\\"b\\\\d"')
+        PatternFootprint.json(measurements).readLines().size() == 4
+    }
+
+    static boolean supported(RegexEngine engine, String regex) {
+        try {
+            PatternCache.compile(engine, regex, 0)
+            true
+        } catch (IllegalArgumentException e) {
+            false
+        }
+    }
+}
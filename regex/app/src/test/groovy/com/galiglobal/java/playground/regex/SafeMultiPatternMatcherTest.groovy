@@ -0,0 +1,102 @@
+package com.galiglobal.java.playground.regex
+
+import groovy.transform.CompileStatic
+import spock.lang.Specification
+
+import java.lang.management.ManagementFactory
+import java.time.Duration
+import java.util.regex.Pattern
+
+class SafeMultiPatternMatcherTest extends Specification {
+
+    def "risky patterns are routed to a linear-time engine"() {
+        setup:
+        def matcher = new SafeMultiPatternMatcher(Regexps.all(), Duration.ofMillis(100))
+
+        expect:
+        Regexps.values().each { r ->
+            def route = matcher.route(r.ordinal())
+            assert matcher.analysis(r.ordinal()).safe ? route == RegexEngine.UTIL : route != RegexEngine.UTIL
+        }
+
+        and:
+        ["email@email.com", "2021-12-31", "555-123-4567", "TX", "123456789"].each { input ->
+            assert matcher.match(input) as List == Regexps.values()
+                .findAll { Pattern.compile(it.regex()).matcher(input).find() }*.ordinal()
+        }
+
+        cleanup:
+        matcher.close()
+    }
+
+    def "a catastrophic pattern on java.util.regex is aborted by the deadline"() {
+        setup:
+        // The backreference keeps it away from re2j and Hyperscan
+        def matcher = new SafeMultiPatternMatcher(["(a|a)+(b)\\2", "a"], Duration.ofMillis(50))
+        def input = "a" * 40 + "!"
+
+        expect:
+        matcher.route(0) == RegexEngine.UTIL
+
+        when:
+        long start = System.nanoTime()
+        def ids = matcher.match(input)
+
+        then:
+        ids as List == [1]
+        matcher.timeouts() == 1
+        System.nanoTime() - start < Duration.ofSeconds(5).toNanos()
+
+        cleanup:
+        matcher.close()
+    }
+
+    def "the deadline wrapper is transparent to matches that finish in time"() {
+        expect:
+        Pattern.compile(Regexps.PHONE_2.regex())
+            .matcher(new DeadlineCharSequence("call 555-123-4567", Duration.ofSeconds(1).toNanos()))
+            .find()
+    }
+
+    def "the deadline wrapper is re-armed for every input"() {
+        setup:
+        def wrapper = new DeadlineCharSequence()
+
+        expect:
+        !Pattern.compile("a").matcher(wrapper.arm("bbb", Duration.ofSeconds(1).toNanos())).find()
+        Pattern.compile("a").matcher(wrapper.arm("bab", Duration.ofSeconds(1).toNanos())).find()
+        wrapper.subSequence(1, 3).toString() == "ab"
+    }
+
+    def "matching safe patterns doesn't allocate in the steady state"() {
+        setup:
+        def regexps = [Regexps.PHONE_2, Regexps.SOCIAL, Regexps.DATE, Regexps.STATES]*.regex()
+        def matcher = new SafeMultiPatternMatcher(regexps, Duration.ofMillis(100))
+        def inputs = ["call 555-123-4567", "2021-12-31", "TX", "nothing here"] as CharSequence[]
+        long[] results = new long[inputs.length * matcher.words()]
+        int times = 1000
+        allocated(matcher, inputs, results, times)
+
+        expect:
+        regexps.indices.every { matcher.route(it) == RegexEngine.UTIL }
+        // Less than a byte per call, a new wrapper per match would be hundreds
+        allocated(matcher, inputs, results, times) < times
+
+        cleanup:
+        matcher.close()
+    }
+
+    /**
+     * Bytes the thread allocates matching the inputs {@code times} times, compiled statically so the loop itself
+     * doesn't allocate.
+     */
+    @CompileStatic
+    static long allocated(MultiPatternMatcher matcher, CharSequence[] inputs, long[] results, int times) {
+        def threads = (com.sun.management.ThreadMXBean) ManagementFactory.threadMXBean
+        long before = threads.currentThreadAllocatedBytes
+        for (int i = 0; i < times; i++) {
+            matcher.matchAll(inputs, results)
+        }
+        threads.currentThreadAllocatedBytes - before
+    }
+}